@@ -0,0 +1,113 @@
+package org.jhades.agent;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.instrument.Instrumentation;
+import java.util.List;
+import org.jhades.model.LoadedClass;
+import org.jhades.model.LoadedClassConflict;
+import org.jhades.model.LoadedClasses;
+import org.jhades.model.LoadedClassesIndex;
+import org.jhades.reports.LoadedClassConflictsReport;
+import org.jhades.utils.StdOutLogger;
+
+/**
+ *
+ * Java agent that reports the loaded classes that have conflicting versions on the classpath, and the jar each one was
+ * defined from.
+ *
+ * The agent can be started with the JVM, with -javaagent:jhades-agent.jar, or attached to a running JVM. In both
+ * cases it only starts a low priority daemon thread and returns: the thread takes a snapshot of the loaded classes and
+ * of their code source, scans the classpath of their class loaders sequentially and prints the report, so that the
+ * application threads are not slowed down.
+ *
+ * The agent arguments are a comma separated list of options:
+ *
+ * delay=<seconds> - waits before taking the snapshot, 60 seconds by default when started with the JVM, so that the
+ * application has loaded its classes, and no delay when attached to a running JVM
+ *
+ * out=<file> - the file where the report is written, the standard output by default
+ *
+ */
+public final class JHadesAgent {
+
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private static final int PREMAIN_DELAY_SECONDS = 60;
+    private static final String DELAY_OPTION = "delay=";
+    private static final String OUT_OPTION = "out=";
+
+    private JHadesAgent() {
+        throw new UnsupportedOperationException("Utility classes cannot be instantiated.");
+    }
+
+    public static void premain(String agentArgs, Instrumentation instrumentation) {
+        start(agentArgs, instrumentation, PREMAIN_DELAY_SECONDS);
+    }
+
+    public static void agentmain(String agentArgs, Instrumentation instrumentation) {
+        start(agentArgs, instrumentation, 0);
+    }
+
+    private static void start(String agentArgs, final Instrumentation instrumentation, int defaultDelaySeconds) {
+        int delaySeconds = defaultDelaySeconds;
+        String outFile = null;
+        if (agentArgs != null) {
+            for (String option : agentArgs.split(",")) {
+                option = option.trim();
+                if (option.startsWith(DELAY_OPTION)) {
+                    try {
+                        delaySeconds = Integer.parseInt(option.substring(DELAY_OPTION.length()));
+                    } catch (NumberFormatException exc) {
+                        logger.warn("Invalid jHades agent delay, using " + delaySeconds + " seconds: " + option);
+                    }
+                } else if (option.startsWith(OUT_OPTION)) {
+                    outFile = option.substring(OUT_OPTION.length());
+                } else if (!option.isEmpty()) {
+                    logger.warn("Unknown jHades agent option: " + option);
+                }
+            }
+        }
+
+        final long delayMillis = delaySeconds * 1000L;
+        final String reportFile = outFile;
+        Thread reportThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(delayMillis);
+                    report(instrumentation, reportFile);
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception exc) {
+                    // the host JVM must never be affected by a failed report
+                    logger.error("The jHades agent report failed - reason:" + exc, exc);
+                } catch (LinkageError exc) {
+                    logger.error("The jHades agent report failed - reason:" + exc);
+                }
+            }
+        }, "jhades-agent");
+        reportThread.setDaemon(true);
+        reportThread.setPriority(Thread.MIN_PRIORITY);
+        reportThread.start();
+    }
+
+    private static void report(Instrumentation instrumentation, String reportFile) throws IOException {
+        long start = System.currentTimeMillis();
+        List<LoadedClass> loadedClasses = LoadedClasses.snapshot(instrumentation.getAllLoadedClasses());
+        logger.debug("Snapshot of " + loadedClasses.size() + " loaded classes taken in " + (System.currentTimeMillis() - start) + " ms");
+
+        LoadedClassesIndex index = LoadedClasses.buildIndex(loadedClasses, logger, null, null);
+        List<LoadedClassConflict> conflicts = LoadedClasses.findConflicts(loadedClasses, index);
+        LoadedClassConflictsReport report = new LoadedClassConflictsReport(loadedClasses.size(), conflicts);
+        if (reportFile == null) {
+            report.print();
+        } else {
+            try (PrintStream out = new PrintStream(new FileOutputStream(reportFile), false, "UTF-8")) {
+                report.print(out);
+            }
+            logger.info("jHades loaded classes report written to " + reportFile);
+        }
+        logger.debug("jHades agent report done in " + (System.currentTimeMillis() - start) + " ms");
+    }
+}
@@ -0,0 +1,25 @@
+package org.jhades.benchmarks;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ *
+ * Location of the generated benchmark inputs: the folder given by the system property jhades.benchmarks.dir, or
+ * jhades-benchmarks in the temporary folder. The inputs are kept between runs, delete the folder to regenerate them.
+ *
+ */
+final class BenchmarkFiles {
+
+    static final String DIR_PROPERTY = "jhades.benchmarks.dir";
+    static final long SEED = 42;
+
+    private BenchmarkFiles() {
+        throw new UnsupportedOperationException("Utility classes cannot be instantiated.");
+    }
+
+    static Path getBaseDir() {
+        String dir = System.getProperty(DIR_PROPERTY);
+        return dir != null ? Paths.get(dir) : Paths.get(System.getProperty("java.io.tmpdir"), "jhades-benchmarks");
+    }
+}
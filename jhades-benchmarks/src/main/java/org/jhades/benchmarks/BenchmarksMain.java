@@ -0,0 +1,45 @@
+package org.jhades.benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ *
+ * Runs the jHades benchmarks, always with the JMH GC profiler so that the allocation rate and the bytes allocated per
+ * operation are reported next to the timings.
+ *
+ * Usage: java -jar jhades-benchmarks/target/benchmarks.jar [JMH options] [benchmark regexp]
+ *
+ * For example, to run only the classpath scan on 500 jars: java -jar benchmarks.jar ClasspathScan -p jars=500
+ *
+ * The synthetic classpaths are generated on the first run, in the folder given by -Djhades.benchmarks.dir (the
+ * temporary folder by default), which takes a few seconds for the 5000 jars one.
+ *
+ */
+public final class BenchmarksMain {
+
+    private BenchmarksMain() {
+        throw new UnsupportedOperationException("Utility classes cannot be instantiated.");
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        if (commandLineOptions.shouldHelp() || commandLineOptions.shouldList()) {
+            Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class);
+        // the forked benchmark JVMs don't inherit the system properties
+        String baseDir = System.getProperty(BenchmarkFiles.DIR_PROPERTY);
+        if (baseDir != null) {
+            options.jvmArgsAppend("-D" + BenchmarkFiles.DIR_PROPERTY + "=" + baseDir);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,67 @@
+package org.jhades.benchmarks;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.UrlClazzLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * Scan of a single classpath entry: a small jar, a huge jar, and a jar nested three levels deep inside other jars.
+ *
+ * A new entry is created for each invocation, because entries keep their contents once scanned.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClasspathEntryScanBenchmark {
+
+    @Param({"small", "huge", "nested"})
+    public String jar;
+    private UrlClazzLoader classLoader;
+    private String url;
+
+    @Setup
+    public void generateJar() throws IOException {
+        Path baseDir = BenchmarkFiles.getBaseDir();
+        switch (jar) {
+            case "small":
+                url = SyntheticClasspath.generateJar(baseDir.resolve("small.jar"), 50, BenchmarkFiles.SEED).toUri().toString();
+                break;
+            case "huge":
+                url = SyntheticClasspath.generateJar(baseDir.resolve("huge.jar"), 50000, BenchmarkFiles.SEED).toUri().toString();
+                break;
+            case "nested":
+                url = SyntheticClasspath.generateNestedJar(baseDir.resolve("nested.jar"), 3, 1000, BenchmarkFiles.SEED);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown jar: " + jar);
+        }
+        classLoader = new UrlClazzLoader("benchmark", null, new URL[0]);
+    }
+
+    @Benchmark
+    public List<ClasspathResourceVersion> getResourceVersions() throws URISyntaxException, IOException {
+        return new ClasspathEntry(classLoader, url).getResourceVersions();
+    }
+}
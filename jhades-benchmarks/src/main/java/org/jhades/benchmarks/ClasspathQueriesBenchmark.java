@@ -0,0 +1,115 @@
+package org.jhades.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathIndex;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResources;
+import org.jhades.model.JarPair;
+import org.jhades.model.ResolvedResource;
+import org.jhades.reports.DuplicatesReport;
+import org.jhades.utils.StdOutLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * Queries on an already scanned synthetic classpath: overlapping jars, regular expression searches, the batch
+ * resolution of all the resource names and the duplicates report. The report is printed to a stream that discards its
+ * output.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClasspathQueriesBenchmark {
+
+    private static final Pattern ANCHORED_PATTERN = Pattern.compile("^/com/shared/p1/.*\\.class");
+    private static final Pattern UNANCHORED_PATTERN = Pattern.compile("Shared1\\d*\\.class");
+    @Param({"10", "500", "5000"})
+    public int jars;
+    @Param({"50"})
+    public int classesPerJar;
+    @Param({"0.1", "0.5"})
+    public double overlap;
+    @Param({"0.5"})
+    public double conflicting;
+    private List<ClasspathResource> resources;
+    private List<ClasspathResource> resourcesWithDuplicates;
+    private ClasspathIndex index;
+    private List<String> resourceNames;
+    private PrintStream discardingStream;
+
+    @Setup
+    public void scanClasspath() throws IOException {
+        SyntheticClasspath classpath = SyntheticClasspath.generate(BenchmarkFiles.getBaseDir(), jars, classesPerJar,
+                overlap, conflicting, BenchmarkFiles.SEED);
+        resources = ClasspathEntries.findClasspathResourcesInEntries(classpath.newClasspathEntries(), StdOutLogger.getLogger(), null);
+        resourcesWithDuplicates = ClasspathResources.findResourcesWithDuplicates(resources, false);
+        index = ClasspathIndex.build(Collections.singletonList(classpath.newClassLoader()), StdOutLogger.getLogger(), null, null);
+        // builds the trie of resource names before the measurements
+        index.findByRegex(ANCHORED_PATTERN, null);
+        resourceNames = new ArrayList<>(resources.size());
+        for (ClasspathResource resource : resources) {
+            resourceNames.add(resource.getName());
+        }
+        discardingStream = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+            }
+        });
+    }
+
+    @Benchmark
+    public List<JarPair> findOverlappingJars() {
+        return ClasspathResources.findOverlappingJars(resources, false);
+    }
+
+    @Benchmark
+    public List<JarPair> findOverlappingJarsExcludingIdenticalCopies() {
+        return ClasspathResources.findOverlappingJars(resources, true);
+    }
+
+    @Benchmark
+    public List<ClasspathResource> findByAnchoredRegex() {
+        return index.findByRegex(ANCHORED_PATTERN, null);
+    }
+
+    @Benchmark
+    public List<ClasspathResource> findByUnanchoredRegex() {
+        return index.findByRegex(UNANCHORED_PATTERN, null);
+    }
+
+    @Benchmark
+    public List<ResolvedResource> resolveAllResources() {
+        return index.resolveResources(resourceNames);
+    }
+
+    @Benchmark
+    public void printDuplicatesReport() {
+        new DuplicatesReport(resourcesWithDuplicates).print(discardingStream);
+    }
+}
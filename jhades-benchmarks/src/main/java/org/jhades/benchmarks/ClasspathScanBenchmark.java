@@ -0,0 +1,70 @@
+package org.jhades.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathResource;
+import org.jhades.utils.StdOutLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * Scan of a whole synthetic classpath, grouping the resource versions per resource name, sequentially and with a
+ * fork-join pool.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClasspathScanBenchmark {
+
+    @Param({"10", "500", "5000"})
+    public int jars;
+    @Param({"50"})
+    public int classesPerJar;
+    @Param({"0.1", "0.5"})
+    public double overlap;
+    @Param({"0.5"})
+    public double conflicting;
+    private SyntheticClasspath classpath;
+    private ForkJoinPool scanPool;
+
+    @Setup
+    public void generateClasspath() throws IOException {
+        classpath = SyntheticClasspath.generate(BenchmarkFiles.getBaseDir(), jars, classesPerJar, overlap, conflicting,
+                BenchmarkFiles.SEED);
+        scanPool = new ForkJoinPool();
+    }
+
+    @TearDown
+    public void shutdownPool() {
+        scanPool.shutdown();
+    }
+
+    @Benchmark
+    public List<ClasspathResource> findClasspathResourcesInEntries() throws IOException {
+        return ClasspathEntries.findClasspathResourcesInEntries(classpath.newClasspathEntries(), StdOutLogger.getLogger(), null);
+    }
+
+    @Benchmark
+    public List<ClasspathResource> findClasspathResourcesInEntriesForkJoin() throws IOException {
+        return ClasspathEntries.findClasspathResourcesInEntries(classpath.newClasspathEntries(), StdOutLogger.getLogger(),
+                null, scanPool);
+    }
+}
@@ -0,0 +1,209 @@
+package org.jhades.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClazzLoader;
+import org.jhades.model.UrlClazzLoader;
+
+/**
+ *
+ * Deterministic generator of synthetic classpaths, used as input of the benchmarks.
+ *
+ * A classpath is a list of jars with the same number of fake class files each. A configurable fraction of the classes
+ * of each jar is taken from a pool of shared class names, so that jars overlap, and a configurable fraction of those
+ * shared classes have jar specific contents, so that the overlaps are conflicting versions and not identical copies.
+ *
+ * The same parameters and seed always produce the same jars, byte for byte. The jars are generated in a folder named
+ * after the parameters and reused if they are already there, so that the benchmark forks don't generate them again.
+ *
+ */
+public final class SyntheticClasspath {
+
+    private static final String COMPLETE_MARKER = "complete";
+    private static final int CLASSES_PER_PACKAGE = 20;
+    private final List<Path> jars;
+
+    private SyntheticClasspath(List<Path> jars) {
+        this.jars = Collections.unmodifiableList(jars);
+    }
+
+    /**
+     *
+     * @param baseDir - the folder where the classpath folder is created
+     * @param numberOfJars - the number of jars
+     * @param classesPerJar - the number of class files of each jar
+     * @param overlap - the fraction of the classes of each jar that come from the shared pool, from 0 to 1
+     * @param conflicting - the fraction of the shared classes that have jar specific contents, from 0 to 1
+     * @param seed - the seed of the generator
+     * @return - the generated classpath
+     */
+    public static SyntheticClasspath generate(Path baseDir, int numberOfJars, int classesPerJar, double overlap,
+            double conflicting, long seed) throws IOException {
+
+        Path folder = baseDir.resolve("classpath-" + numberOfJars + "-" + classesPerJar + "-" + overlap + "-"
+                + conflicting + "-" + seed);
+        List<Path> jars = new ArrayList<>(numberOfJars);
+        for (int jarIndex = 0; jarIndex < numberOfJars; jarIndex++) {
+            jars.add(folder.resolve(String.format("lib-%05d.jar", jarIndex)));
+        }
+        if (Files.exists(folder.resolve(COMPLETE_MARKER))) {
+            return new SyntheticClasspath(jars);
+        }
+
+        Files.createDirectories(folder);
+        int sharedClasses = (int) Math.round(classesPerJar * overlap);
+        int sharedPoolSize = Math.max(1, sharedClasses * 4);
+        for (int jarIndex = 0; jarIndex < numberOfJars; jarIndex++) {
+            Random random = new Random(seed * 31 + jarIndex);
+            try (ZipOutputStream jar = new ZipOutputStream(Files.newOutputStream(jars.get(jarIndex)))) {
+                // consecutive slots of the pool from a random start, the pool is bigger than a jar so they are distinct
+                int firstShared = random.nextInt(sharedPoolSize);
+                for (int i = 0; i < sharedClasses; i++) {
+                    int sharedIndex = (firstShared + i) % sharedPoolSize;
+                    long contentSeed = random.nextDouble() < conflicting ? seed + jarIndex * 1000003L + sharedIndex : seed + sharedIndex;
+                    addClassFile(jar, "com/shared/p" + sharedIndex / CLASSES_PER_PACKAGE + "/Shared" + sharedIndex + ".class", contentSeed);
+                }
+                for (int i = sharedClasses; i < classesPerJar; i++) {
+                    addClassFile(jar, "com/lib" + jarIndex + "/p" + i / CLASSES_PER_PACKAGE + "/Class" + i + ".class",
+                            seed + jarIndex * 1000003L + sharedPoolSize + i);
+                }
+            }
+        }
+        Files.createFile(folder.resolve(COMPLETE_MARKER));
+        return new SyntheticClasspath(jars);
+    }
+
+    /**
+     *
+     * Generates a single jar with no shared classes, if it does not exist yet.
+     *
+     * @param file - the jar file
+     * @param numberOfClasses - the number of class files of the jar
+     * @param seed - the seed of the generator
+     * @return the jar file
+     */
+    public static Path generateJar(Path file, int numberOfClasses, long seed) throws IOException {
+        if (!Files.exists(file)) {
+            Files.createDirectories(file.getParent());
+            Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmpFile)) {
+                out.write(jarBytes("com/single", numberOfClasses, seed));
+            }
+            Files.move(tmpFile, file);
+        }
+        return file;
+    }
+
+    /**
+     *
+     * Generates a jar nested in a jar several levels deep, if it does not exist yet - each level contains its own
+     * classes plus the jar of the next level.
+     *
+     * @param file - the outermost jar file
+     * @param depth - the number of nested levels, 1 for a jar inside the outermost jar
+     * @param classesPerLevel - the number of class files of each jar
+     * @param seed - the seed of the generator
+     * @return the url of the innermost jar, such as jar:file:/tmp/outer.jar!/lib/level1.jar!/lib/level2.jar
+     */
+    public static String generateNestedJar(Path file, int depth, int classesPerLevel, long seed) throws IOException {
+        if (!Files.exists(file)) {
+            Files.createDirectories(file.getParent());
+            byte[] jarBytes = jarBytes("com/level" + depth, classesPerLevel, seed + depth);
+            for (int level = depth - 1; level >= 0; level--) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ZipOutputStream jar = new ZipOutputStream(bytes)) {
+                    addClassFiles(jar, "com/level" + level, classesPerLevel, seed + level);
+                    jar.putNextEntry(new ZipEntry("lib/level" + (level + 1) + ".jar"));
+                    jar.write(jarBytes);
+                    jar.closeEntry();
+                }
+                jarBytes = bytes.toByteArray();
+            }
+            Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmpFile)) {
+                out.write(jarBytes);
+            }
+            Files.move(tmpFile, file);
+        }
+
+        StringBuilder url = new StringBuilder("jar:").append(file.toUri());
+        for (int level = 1; level <= depth; level++) {
+            url.append("!/lib/level").append(level).append(".jar");
+        }
+        return url.toString();
+    }
+
+    private static byte[] jarBytes(String packagePrefix, int numberOfClasses, long seed) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream jar = new ZipOutputStream(bytes)) {
+            addClassFiles(jar, packagePrefix, numberOfClasses, seed);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void addClassFiles(ZipOutputStream jar, String packagePrefix, int numberOfClasses, long seed) throws IOException {
+        for (int i = 0; i < numberOfClasses; i++) {
+            addClassFile(jar, packagePrefix + "/p" + i / CLASSES_PER_PACKAGE + "/Class" + i + ".class", seed * 31 + i);
+        }
+    }
+
+    /**
+     *
+     * Adds a fake class file: the class file magic number followed by 200 to 2000 pseudo-random bytes derived from the
+     * content seed, so that equal seeds give identical copies.
+     *
+     */
+    private static void addClassFile(ZipOutputStream jar, String name, long contentSeed) throws IOException {
+        Random random = new Random(contentSeed);
+        byte[] content = new byte[200 + random.nextInt(1800)];
+        random.nextBytes(content);
+        content[0] = (byte) 0xCA;
+        content[1] = (byte) 0xFE;
+        content[2] = (byte) 0xBA;
+        content[3] = (byte) 0xBE;
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(0);
+        jar.putNextEntry(entry);
+        jar.write(content);
+        jar.closeEntry();
+    }
+
+    /**
+     * @return the jar files, in classpath order
+     */
+    public List<Path> getJars() {
+        return jars;
+    }
+
+    /**
+     *
+     * Classpath entries cache their contents once scanned, so each call returns new entries that are not scanned yet.
+     *
+     * @return a new class loader with the jars as classpath entries
+     */
+    public ClazzLoader newClassLoader() throws IOException {
+        URL[] urls = new URL[jars.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = jars.get(i).toUri().toURL();
+        }
+        return new UrlClazzLoader("synthetic", "synthetic classpath of " + jars.size() + " jars", urls);
+    }
+
+    /**
+     * @return new classpath entries for the jars, not scanned yet
+     */
+    public List<ClasspathEntry> newClasspathEntries() throws IOException {
+        return newClassLoader().getClasspathEntries();
+    }
+}
@@ -1,6 +1,7 @@
 package org.jhades.json;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -8,33 +9,37 @@ import java.util.Map.Entry;
  *
  * Simple JSON serializer - allows to generate json based on a single level map of string keys and values.
  *
+ * The properties are written in the order they were set, with their values escaped. To write many objects, use the
+ * JsonLinesWriter instead, which doesn't build a string per object.
  *
  */
 public class Json {
 
-    private Map<String, String> content = new HashMap<>();
+    private Map<String, String> content = new LinkedHashMap<>();
 
     public void setProperty(String propertyName, String propertyValue) {
         content.put(propertyName, propertyValue);
     }
 
     public String stringify() {
-        String json = "";
-        int totalEntries = content.size();
-        int counter = 1;
-        for (Entry<String, String> entry : content.entrySet()) {
-            if (counter == 1) {
-                json += "{";
-            } else {
-                json += ",";
+        StringBuilder json = new StringBuilder(content.size() * 32 + 2);
+        json.append('{');
+        try {
+            for (Entry<String, String> entry : content.entrySet()) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                JsonLinesWriter.writeString(entry.getKey(), json);
+                json.append(':');
+                if (entry.getValue() == null) {
+                    json.append("null");
+                } else {
+                    JsonLinesWriter.writeString(entry.getValue(), json);
+                }
             }
-            json += "\"" + entry.getKey() + "\" : \"" + entry.getValue() + "\" ";
-
-            if (counter == totalEntries) {
-                json += "}";
-            }
-            counter++;
+        } catch (IOException ex) {
+            throw new IllegalStateException("A StringBuilder does not throw I/O exceptions.", ex);
         }
-        return json;
+        return json.append('}').toString();
     }
 }
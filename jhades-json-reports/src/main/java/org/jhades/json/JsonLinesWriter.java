@@ -0,0 +1,191 @@
+package org.jhades.json;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *
+ * Streaming writer of tagged JSON lines, such as: #OVERLAP_JARS# {"jar1":"a.jar","jar2":"b.jar","dupsTotal":"3"}
+ *
+ * The objects are written property by property straight to a buffered UTF-8 writer, so nothing is allocated per line.
+ * Values are escaped as required by JSON, including control characters and the line separators U+2028 and U+2029.
+ *
+ * Like a PrintStream, the writer never throws I/O exceptions, use checkError to know if the output failed.
+ *
+ * A writer is not thread-safe, callers writing from several threads must synchronize on it.
+ *
+ */
+public class JsonLinesWriter implements Flushable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private final Writer writer;
+    private boolean inObject;
+    private boolean firstProperty;
+    private boolean error;
+
+    public JsonLinesWriter(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     *
+     * Starts a line with a JSON object.
+     *
+     * @param tag - written before the object, such as #OVERLAP_JARS#, can be null
+     */
+    public JsonLinesWriter beginObject(String tag) {
+        if (inObject) {
+            throw new IllegalStateException("The previous object was not ended.");
+        }
+        try {
+            if (tag != null) {
+                writer.write(tag);
+                writer.write(' ');
+            }
+            writer.write('{');
+        } catch (IOException ex) {
+            error = true;
+        }
+        inObject = true;
+        firstProperty = true;
+        return this;
+    }
+
+    public JsonLinesWriter property(String name, String value) {
+        if (!inObject) {
+            throw new IllegalStateException("No object was started.");
+        }
+        try {
+            if (!firstProperty) {
+                writer.write(',');
+            }
+            firstProperty = false;
+            writeString(name, writer);
+            writer.write(':');
+            if (value == null) {
+                writer.write("null");
+            } else {
+                writeString(value, writer);
+            }
+        } catch (IOException ex) {
+            error = true;
+        }
+        return this;
+    }
+
+    /**
+     *
+     * Numbers are written as strings, as the consumers of the reports expect all values to be strings.
+     *
+     */
+    public JsonLinesWriter property(String name, long value) {
+        return property(name, Long.toString(value));
+    }
+
+    /**
+     *
+     * Ends the current object and its line.
+     *
+     */
+    public void endObject() {
+        if (!inObject) {
+            throw new IllegalStateException("No object was started.");
+        }
+        try {
+            writer.write("}\n");
+        } catch (IOException ex) {
+            error = true;
+        }
+        inObject = false;
+    }
+
+    /**
+     *
+     * Writes a line of plain text, such as #SUMMARY_FINISHED#.
+     *
+     */
+    public void writeLine(String line) {
+        if (inObject) {
+            throw new IllegalStateException("The current object was not ended.");
+        }
+        try {
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException ex) {
+            error = true;
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            writer.flush();
+        } catch (IOException ex) {
+            error = true;
+        }
+    }
+
+    /**
+     *
+     * Flushes the output, and tells if an I/O error occurred so far.
+     *
+     * @return true if some output could not be written
+     */
+    public boolean checkError() {
+        flush();
+        return error;
+    }
+
+    /**
+     *
+     * Writes a JSON string literal, with its quotes.
+     *
+     */
+    static void writeString(String value, Appendable out) throws IOException {
+        out.append('"');
+        int length = value.length();
+        int unescapedStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            out.append(value, unescapedStart, i);
+            unescapedStart = i + 1;
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                default:
+                    out.append("\\u").append(HEX_DIGITS[c >> 12 & 0xF]).append(HEX_DIGITS[c >> 8 & 0xF])
+                            .append(HEX_DIGITS[c >> 4 & 0xF]).append(HEX_DIGITS[c & 0xF]);
+            }
+        }
+        out.append(value, unescapedStart, length);
+        out.append('"');
+    }
+}
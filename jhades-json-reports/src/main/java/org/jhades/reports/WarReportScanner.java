@@ -6,15 +6,17 @@ import java.net.URISyntaxException;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import org.jhades.json.Json;
+import org.jhades.json.JsonLinesWriter;
 import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.EntryScanStats;
 import org.jhades.model.JarPair;
+import org.jhades.model.ScanMetrics;
 import org.jhades.service.ClasspathScanner;
 import org.jhades.utils.StdOutLogger;
 
 /**
  *
- * Takes a WAR file, unzip's it and runs the jHades duplicates report on it.
+ * Takes a WAR file, unzip's it (or reads it in memory) and runs the jHades duplicates report on it.
  *
  *
  */
@@ -23,6 +25,7 @@ public class WarReportScanner extends WarScannerTemplate {
     private static final Pattern FILE_NAME = Pattern.compile("^/(.*)/([^/]+)\\.class$");
     private static final Pattern JAR_NAME = Pattern.compile("^.*/([^/]+\\.jar)$");
     private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private static final int SLOWEST_ENTRIES = 10;
     private ClasspathScanner scanner = new ClasspathScanner();
     // for the moment this functionality is permanently turned off
     private boolean isReportClassFileDuplicatesOn = false;
@@ -33,7 +36,7 @@ public class WarReportScanner extends WarScannerTemplate {
 
     public static void main(String[] args) throws URISyntaxException, IOException {
 
-        if (args.length != 2) {
+        if (args.length == 0 || args.length > 2) {
             printUsage();
             System.exit(-1);
         }
@@ -41,7 +44,7 @@ public class WarReportScanner extends WarScannerTemplate {
         logger.setDebug(false);
 
         String warFilePath = args[0];
-        String tmpPath = args[1];
+        String tmpPath = args.length == 2 ? args[1] : null;
         logger.info("warFilePath = " + warFilePath);
         logger.info("tmpPath = " + tmpPath);
 
@@ -54,72 +57,109 @@ public class WarReportScanner extends WarScannerTemplate {
     public static void printUsage() {
         System.out.println("\njHades war scanner utility - the following arguments are needed:\n");
         System.out.println("    warFilePath - the path to your war file");
-        System.out.println("    tmpPath - the path to a temporary directory, needed to unzip files");
+        System.out.println("    tmpPath (optional) - the path to a temporary directory to unzip files, if omitted the WAR is scanned in memory");
 
     }
 
+    private void printScanMetrics(JsonLinesWriter out) {
+        ScanMetrics scanMetrics = getScanMetrics();
+        if (scanMetrics == null) {
+            return;
+        }
+        ScanMetrics.LatencyHistogram histogram = scanMetrics.getLatencyHistogram();
+        out.beginObject("#SCAN_METRICS#")
+                .property("entries", scanMetrics.getEntryCount())
+                .property("resources", scanMetrics.getResourceCount())
+                .property("duplicates", scanMetrics.getDuplicateCount())
+                .property("bytesRead", scanMetrics.getBytesRead())
+                .property("elapsedMillis", scanMetrics.getElapsedNanos() / 1000000)
+                .property("cacheHits", scanMetrics.getCacheHits())
+                .property("cacheMisses", scanMetrics.getCacheMisses())
+                .property("p50Millis", histogram.getPercentileUpperBoundMillis(50))
+                .property("p99Millis", histogram.getPercentileUpperBoundMillis(99))
+                .endObject();
+
+        for (EntryScanStats stats : scanMetrics.getSlowestEntries(SLOWEST_ENTRIES)) {
+            out.beginObject("#SLOW_ENTRY#")
+                    .property("entry", stats.getClasspathEntry().getUrl())
+                    .property("wallTimeMillis", stats.getWallTimeNanos() / 1000000)
+                    .property("bytesRead", stats.getBytesRead())
+                    .property("resources", stats.getResourceCount())
+                    .property("duplicates", stats.getDuplicateCount())
+                    .property("cache", stats.getCacheStatus().toString())
+                    .endObject();
+        }
+    }
+
     @Override
     protected void processClasspathResources(List<ClasspathResource> classpathResources) {
 
         updateStatus("Searching for overlaping jars");
         List<JarPair> overlapReportLines = scanner.findOverlappingJars(classpathResources, false);
 
-        for (JarPair overlapPair : overlapReportLines) {
-            Json jsonObject = new Json();
-            jsonObject.setProperty("jar1", overlapPair.getJar1().getUrl());
-            jsonObject.setProperty("jar2", overlapPair.getJar2().getUrl());
-            jsonObject.setProperty("dupsTotal", overlapPair.getDupClassesTotal().toString());
-            String json = jsonObject.stringify();
-            System.out.println("#OVERLAP_JARS# " + json);
-        }
+        JsonLinesWriter out = getOut();
+        synchronized (out) {
+            for (JarPair overlapPair : overlapReportLines) {
+                out.beginObject("#OVERLAP_JARS#")
+                        .property("jar1", overlapPair.getJar1().getUrl())
+                        .property("jar2", overlapPair.getJar2().getUrl())
+                        .property("dupsTotal", overlapPair.getDupClassesTotal())
+                        .endObject();
+            }
 
-        System.out.println("#SUMMARY_FINISHED#");
+            out.writeLine("#SUMMARY_FINISHED#");
+
+            printScanMetrics(out);
+        }
 
         if (isReportClassFileDuplicatesOn) {
             updateStatus("Searching for class file duplicates");
             List<ClasspathResource> classFilesWithDuplicates = scanner.findClassFileDuplicates(classpathResources, false);
 
-            // class file duplicates report
-            for (ClasspathResource classFile : classFilesWithDuplicates) {
-                Matcher matcher = FILE_NAME.matcher(classFile.getName());
-                if (matcher.matches()) {
-                    String packageName = matcher.group(1);
-                    String className = matcher.group(2);
+            out = getOut();
+            synchronized (out) {
+                // class file duplicates report
+                for (ClasspathResource classFile : classFilesWithDuplicates) {
+                    Matcher matcher = FILE_NAME.matcher(classFile.getName());
+                    if (matcher.matches()) {
+                        String packageName = matcher.group(1);
+                        String className = matcher.group(2);
+
+                        if (packageName != null) {
+                            packageName = packageName.replace('/', '.');
+                        }
 
-                    if (packageName != null) {
-                        packageName = packageName.replaceAll("/", "\\.");
+                        out.beginObject("#DUPLICATE_CLASS#")
+                                .property("packageName", packageName)
+                                .property("className", className)
+                                .property("numberOfVersions", classFile.getNumberOfVersions())
+                                .property("identicalCopies", Boolean.toString(classFile.hasOnlyIdenticalCopies()))
+                                .endObject();
+                    } else {
+                        logger.error("could not process " + classFile.getName());
                     }
-
-                    Json jsonObject = new Json();
-                    jsonObject.setProperty("packageName", packageName);
-                    jsonObject.setProperty("className", className);
-                    jsonObject.setProperty("numberOfVersions", "" + classFile.getNumberOfVersions());
-                    String json = jsonObject.stringify();
-                    System.out.println("#DUPLICATE_CLASS# " + json);
-                } else {
-                    logger.error("could not process " + classFile.getName());
                 }
-            }
 
-            for (ClasspathResource classFile : classFilesWithDuplicates) {
-                for (ClasspathResourceVersion resourceVersion : classFile.getResourceFileVersions()) {
-                    String fileFullPathName = classFile.getName();
-                    String classpathEntry = resourceVersion.getClasspathEntry().getUrl();
-                    if (classpathEntry != null) {
-                        Matcher matcher = JAR_NAME.matcher(classpathEntry);
-                        if (matcher.matches()) {
-                            classpathEntry = matcher.group(1);
+                for (ClasspathResource classFile : classFilesWithDuplicates) {
+                    for (ClasspathResourceVersion resourceVersion : classFile.getResourceFileVersions()) {
+                        String classpathEntry = resourceVersion.getClasspathEntry().getUrl();
+                        if (classpathEntry != null) {
+                            Matcher matcher = JAR_NAME.matcher(classpathEntry);
+                            if (matcher.matches()) {
+                                classpathEntry = matcher.group(1);
+                            }
+                        }
+                        out.beginObject("#DETAIL#")
+                                .property("size", resourceVersion.getFileSize());
+                        if (resourceVersion.getCrc() != -1) {
+                            out.property("crc", Long.toHexString(resourceVersion.getCrc()));
                         }
+                        out.property("file", classFile.getName())
+                                .property("entry", classpathEntry)
+                                .endObject();
                     }
-                    long size = resourceVersion.getFileSize();
-                    Json json = new Json();
-                    json.setProperty("size", Long.toString(size));
-                    json.setProperty("file", fileFullPathName);
-                    json.setProperty("entry", classpathEntry);
-                    System.out.println("#DETAIL# " + json.stringify());
                 }
             }
-
         }
     }
 }
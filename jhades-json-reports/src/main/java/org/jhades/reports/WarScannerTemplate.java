@@ -15,28 +15,114 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import org.jhades.json.Json;
+import org.jhades.json.JsonLinesWriter;
 import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ScanMetrics;
 import org.jhades.service.ClasspathScannerListener;
+import org.jhades.service.CompositeClasspathScannerListener;
 import org.jhades.utils.StdOutLogger;
 
+/**
+ *
+ * Template of the WAR scanners: reads the WAR, scans its classes folder and jars, and hands over the resources found to
+ * the report implementation.
+ *
+ * The output is written as tagged JSON lines through a single JsonLinesWriter on System.out. The status updates are
+ * throttled to at most status.updates.per.second per second (10 by default), the updates that come too soon after the
+ * previous one are dropped, except for the last one, that is written when the scan completes.
+ *
+ */
 public abstract class WarScannerTemplate {
 
+    public static final String STATUS_UPDATES_PER_SECOND_PROPERTY = "status.updates.per.second";
+    private static final int DEFAULT_STATUS_UPDATES_PER_SECOND = 10;
+
     private static final StdOutLogger logger = StdOutLogger.getLogger();
     private static final Pattern JAR_NAME = Pattern.compile("^.*/(.*jar)$");
     private static final String SEP = System.getProperty("file.separator");
     private final String tmpPath;
     private final String warFilePath;
-    private Json status = new Json();
+    private final JsonLinesWriter out = new JsonLinesWriter(System.out);
+    private final long minStatusIntervalNanos;
+    private long lastStatusNanos;
+    private boolean statusSent;
+    private String pendingStatus;
+    private ScanMetrics scanMetrics;
 
     public WarScannerTemplate(String warFilePath, String tmpPath) {
         this.warFilePath = warFilePath;
         this.tmpPath = tmpPath;
+        int statusUpdatesPerSecond = Integer.getInteger(STATUS_UPDATES_PER_SECOND_PROPERTY, DEFAULT_STATUS_UPDATES_PER_SECOND);
+        this.minStatusIntervalNanos = statusUpdatesPerSecond > 0 ? 1000000000L / statusUpdatesPerSecond : 0;
     }
 
     public void scan() throws IOException, URISyntaxException {
+        try {
+            scanWar();
+        } finally {
+            flushPendingStatus();
+            out.flush();
+        }
+    }
+
+    private void scanWar() throws IOException, URISyntaxException {
+        final List<ClasspathEntry> classpathEntries;
+        if (isScanInMemory()) {
+            updateStatus("Reading WAR");
+            classpathEntries = ClasspathEntries.findWarClasspathEntries(Paths.get(warFilePath));
+        } else {
+            classpathEntries = extractWar();
+        }
+
+        ClasspathScannerListener statusListener = (new ClasspathScannerListener() {
+            @Override
+            public void onEntryScanStart(ClasspathEntry entry) {
+                String filePath = entry.getUrl().toString();
+                Matcher matcher = JAR_NAME.matcher(filePath);
+                if (matcher.matches()) {
+                    updateStatus("Processing jar " + matcher.group(1));
+                }
+            }
+
+            @Override
+            public void onEntryScanEnd(ClasspathEntry entry) {
+                String filePath = entry.getUrl().toString();
+                Matcher matcher = JAR_NAME.matcher(filePath);
+                if (matcher.matches()) {
+                    updateStatus("Finished processing jar " + matcher.group(1));
+                }
+            }
+        });
+
+        scanMetrics = new ScanMetrics();
+        ClasspathScannerListener listener = new CompositeClasspathScannerListener(statusListener, scanMetrics);
+
+        int scanThreads = Integer.getInteger("scan.threads", 1);
+        ForkJoinPool scanPool = scanThreads > 1 ? new ForkJoinPool(scanThreads) : null;
+
+        List<ClasspathResource> classpathResources;
+        try {
+            classpathResources = ClasspathEntries.findClasspathResourcesInEntries(classpathEntries, logger, listener, scanPool);
+        } finally {
+            if (scanPool != null) {
+                scanPool.shutdown();
+            }
+        }
+
+        scanMetrics.recordDuplicates(classpathResources);
+
+        processClasspathResources(classpathResources);
+    }
+
+    /**
+     *
+     * Unzips the WAR into the temporary directory, and lists its classes folder and jars.
+     *
+     */
+    private List<ClasspathEntry> extractWar() throws IOException {
         logger.debug("Extracting war " + warFilePath + "...");
 
         updateStatus("Deleting temporary directory");
@@ -59,7 +145,8 @@ public abstract class WarScannerTemplate {
         String classesFolderPath = tmpPath + SEP + "WEB-INF" + SEP + "classes";
         Path classesFolder = Paths.get(classesFolderPath);
         if (Files.exists(classesFolder)) {
-            classpathEntries.add(new ClasspathEntry(null, classesFolderPath));
+            // a class folder url ends with a slash
+            classpathEntries.add(new ClasspathEntry(null, classesFolder.toUri().toString()));
         }
 
         Path start = Paths.get(tmpPath);
@@ -85,29 +172,17 @@ public abstract class WarScannerTemplate {
             }
         });
 
-        ClasspathScannerListener listener = (new ClasspathScannerListener() {
-            @Override
-            public void onEntryScanStart(ClasspathEntry entry) {
-                String filePath = entry.getUrl().toString();
-                Matcher matcher = JAR_NAME.matcher(filePath);
-                if (matcher.matches()) {
-                    updateStatus("Processing jar " + matcher.group(1));
-                }
-            }
-
-            @Override
-            public void onEntryScanEnd(ClasspathEntry entry) {
-                String filePath = entry.getUrl().toString();
-                Matcher matcher = JAR_NAME.matcher(filePath);
-                if (matcher.matches()) {
-                    updateStatus("Finished processing jar " + matcher.group(1));
-                }
-            }
-        });
-
-        List<ClasspathResource> classpathResources = ClasspathEntries.findClasspathResourcesInEntries(classpathEntries, logger, listener);
+        return classpathEntries;
+    }
 
-        processClasspathResources(classpathResources);
+    /**
+     *
+     * The WAR is scanned in memory, without extracting it, if no temporary directory is given or if the system property
+     * scan.in.memory is true.
+     *
+     */
+    protected boolean isScanInMemory() {
+        return tmpPath == null || "true".equals(System.getProperty("scan.in.memory"));
     }
 
     protected abstract void processClasspathResources(List<ClasspathResource> classpathResources);
@@ -120,8 +195,55 @@ public abstract class WarScannerTemplate {
         return tmpPath;
     }
 
+    /**
+     * @return the metrics of the last scan, or null if the WAR was not scanned yet
+     */
+    public ScanMetrics getScanMetrics() {
+        return scanMetrics;
+    }
+
+    /**
+     *
+     * The writer of the report output, shared with the status updates - synchronize on it when writing from several
+     * threads. A status update dropped by the throttling is written first, so that it precedes the report lines it
+     * announces: get the writer again before each part of the report.
+     *
+     */
+    protected JsonLinesWriter getOut() {
+        flushPendingStatus();
+        return out;
+    }
+
     protected void updateStatus(String statusUpdate) {
-        status.setProperty("statusUpdate", statusUpdate);
-        System.out.println("#STATUS_UPDATE# " + status.stringify());
+        synchronized (out) {
+            long now = System.nanoTime();
+            if (statusSent && now - lastStatusNanos < minStatusIntervalNanos) {
+                pendingStatus = statusUpdate;
+                return;
+            }
+            statusSent = true;
+            lastStatusNanos = now;
+            writeStatus(statusUpdate);
+        }
+    }
+
+    /**
+     *
+     * Writes the last status update if it was dropped by the throttling, so that the current status is never lost.
+     *
+     */
+    private void flushPendingStatus() {
+        synchronized (out) {
+            if (pendingStatus != null) {
+                writeStatus(pendingStatus);
+            }
+        }
+    }
+
+    private void writeStatus(String statusUpdate) {
+        pendingStatus = null;
+        out.beginObject("#STATUS_UPDATE#").property("statusUpdate", statusUpdate).endObject();
+        // the status updates are followed live, don't keep them in the buffer
+        out.flush();
     }
 }
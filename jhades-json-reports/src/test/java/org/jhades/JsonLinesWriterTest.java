@@ -0,0 +1,96 @@
+package org.jhades;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.jhades.json.JsonLinesWriter;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class JsonLinesWriterTest {
+
+    @Test
+    public void testTaggedObject() throws IOException {
+        assertEquals("#OVERLAP_JARS# {\"jar1\":\"a.jar\",\"jar2\":null,\"dupsTotal\":\"3\"}\n",
+                write("#OVERLAP_JARS#", "jar1", "a.jar", "jar2", null, "dupsTotal", 3L));
+        assertEquals("{}\n", write(null));
+    }
+
+    @Test
+    public void testQuotesAndBackslashesEscaped() throws IOException {
+        assertEquals("{\"a\\\"b\":\"C:\\\\jars\\\\\\\"x\\\".jar\"}\n", write(null, "a\"b", "C:\\jars\\\"x\".jar"));
+    }
+
+    @Test
+    public void testControlCharactersEscaped() throws IOException {
+        assertEquals("{\"v\":\"\\n\\r\\t\\b\\f\\u0000\\u001f \"}\n", write(null, "v", "\n\r\t\b\f\u0000\u001f\u0020"));
+        // valid JSON, but they end a line in JavaScript
+        assertEquals("{\"v\":\"\\u2028\\u2029\"}\n", write(null, "v", "\u2028\u2029"));
+        assertEquals("{\"v\":\"\u007f\u00e9\"}\n", write(null, "v", "\u007f\u00e9"));
+    }
+
+    @Test
+    public void testNonBmpCharactersWrittenAsUtf8() throws IOException {
+        // U+1F600, a surrogate pair in Java, must be written as one 4-byte UTF-8 sequence
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonLinesWriter out = new JsonLinesWriter(bytes);
+        out.beginObject(null).property("v", "a\ud83d\ude00b").endObject();
+        assertFalse(out.checkError());
+
+        byte[] expected = {'{', '"', 'v', '"', ':', '"', 'a', (byte) 0xf0, (byte) 0x9f, (byte) 0x98, (byte) 0x80, 'b', '"', '}', '\n'};
+        assertArrayEquals(expected, bytes.toByteArray());
+        assertEquals("{\"v\":\"a\ud83d\ude00b\"}\n", bytes.toString("UTF-8"));
+    }
+
+    @Test
+    public void testLinesAndStateChecks() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonLinesWriter out = new JsonLinesWriter(bytes);
+        out.writeLine("#SUMMARY_FINISHED#");
+        out.beginObject(null);
+        try {
+            out.writeLine("#SUMMARY_FINISHED#");
+            fail("a line cannot be written inside an object.");
+        } catch (IllegalStateException exc) {
+            assertEquals("The current object was not ended.", exc.getMessage());
+        }
+        out.endObject();
+        try {
+            out.endObject();
+            fail("an object cannot be ended twice.");
+        } catch (IllegalStateException exc) {
+            assertEquals("No object was started.", exc.getMessage());
+        }
+        assertFalse(out.checkError());
+        assertEquals("#SUMMARY_FINISHED#\n{}\n", bytes.toString("UTF-8"));
+    }
+
+    @Test
+    public void testOutputErrorReported() {
+        JsonLinesWriter out = new JsonLinesWriter(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        });
+        out.beginObject("#STATUS_UPDATE#").property("statusUpdate", "Reading WAR").endObject();
+        assertTrue("the I/O error must be reported.", out.checkError());
+    }
+
+    private static String write(String tag, Object... namesAndValues) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonLinesWriter out = new JsonLinesWriter(bytes);
+        out.beginObject(tag);
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            Object value = namesAndValues[i + 1];
+            if (value instanceof Long) {
+                out.property((String) namesAndValues[i], (Long) value);
+            } else {
+                out.property((String) namesAndValues[i], (String) value);
+            }
+        }
+        out.endObject();
+        assertFalse(out.checkError());
+        return bytes.toString("UTF-8");
+    }
+}
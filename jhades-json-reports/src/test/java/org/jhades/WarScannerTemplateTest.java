@@ -0,0 +1,120 @@
+package org.jhades;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.jhades.model.ClasspathResource;
+import org.jhades.reports.WarReportScanner;
+import org.jhades.reports.WarScannerTemplate;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class WarScannerTemplateTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testLastStatusWrittenWhenThrottled() throws Exception {
+        String[] lines = scan(writeWar("WEB-INF/classes/org/jhades/A.class"), new ScannerFactory() {
+            @Override
+            public WarScannerTemplate create(String warFilePath) {
+                return new WarScannerTemplate(warFilePath, null) {
+                    @Override
+                    protected void processClasspathResources(List<ClasspathResource> classpathResources) {
+                        updateStatus("Searching for overlaping jars");
+                        updateStatus("Report done");
+                    }
+                };
+            }
+        });
+        assertEquals("#STATUS_UPDATE# {\"statusUpdate\":\"Reading WAR\"}", lines[0]);
+        assertEquals("the last status update must not be dropped.", "#STATUS_UPDATE# {\"statusUpdate\":\"Report done\"}",
+                lines[lines.length - 1]);
+        assertEquals("the updates in between must be throttled.", 2, lines.length);
+    }
+
+    @Test
+    public void testThrottledStatusWrittenBeforeReport() throws Exception {
+        String[] lines = scan(writeWar("WEB-INF/lib/a.jar", "WEB-INF/lib/b.jar"), new ScannerFactory() {
+            @Override
+            public WarScannerTemplate create(String warFilePath) {
+                return new WarReportScanner(warFilePath, null);
+            }
+        });
+
+        List<String> report = Arrays.asList(lines);
+        int summary = report.indexOf("#SUMMARY_FINISHED#");
+        assertTrue("the summary must be written: " + report, summary > 0);
+        assertTrue("the throttled status must precede the report: " + report,
+                report.subList(0, summary).contains("#STATUS_UPDATE# {\"statusUpdate\":\"Searching for overlaping jars\"}"));
+        for (String line : report.subList(summary + 1, report.size())) {
+            assertFalse("no status update can follow the summary: " + report, line.startsWith("#STATUS_UPDATE#"));
+        }
+    }
+
+    /**
+     *
+     * Creates the scanner once the standard output is redirected, the scanner writes to the standard output it finds
+     * when created.
+     *
+     */
+    private interface ScannerFactory {
+
+        WarScannerTemplate create(String warFilePath);
+    }
+
+    private static String[] scan(File war, ScannerFactory factory) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream stdOut = System.out;
+        String statusUpdatesPerSecond = System.getProperty(WarScannerTemplate.STATUS_UPDATES_PER_SECOND_PROPERTY);
+        System.setOut(new PrintStream(bytes, true, "UTF-8"));
+        System.setProperty(WarScannerTemplate.STATUS_UPDATES_PER_SECOND_PROPERTY, "1");
+        try {
+            factory.create(war.getPath()).scan();
+        } finally {
+            System.setOut(stdOut);
+            if (statusUpdatesPerSecond == null) {
+                System.clearProperty(WarScannerTemplate.STATUS_UPDATES_PER_SECOND_PROPERTY);
+            } else {
+                System.setProperty(WarScannerTemplate.STATUS_UPDATES_PER_SECOND_PROPERTY, statusUpdatesPerSecond);
+            }
+        }
+        return bytes.toString("UTF-8").split("\n");
+    }
+
+    /**
+     *
+     * Writes a WAR with the given entries, the jars contain one class file each.
+     *
+     */
+    private File writeWar(String... entryNames) throws IOException {
+        File war = tmp.newFile("app.war");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(war))) {
+            for (String entryName : entryNames) {
+                zip.putNextEntry(new ZipEntry(entryName));
+                if (entryName.endsWith(".jar")) {
+                    ByteArrayOutputStream jar = new ByteArrayOutputStream();
+                    try (ZipOutputStream jarZip = new ZipOutputStream(jar)) {
+                        jarZip.putNextEntry(new ZipEntry("org/jhades/A.class"));
+                        jarZip.write(entryName.getBytes("UTF-8"));
+                        jarZip.closeEntry();
+                    }
+                    zip.write(jar.toByteArray());
+                } else {
+                    zip.write("A".getBytes("UTF-8"));
+                }
+                zip.closeEntry();
+            }
+        }
+        return war;
+    }
+}
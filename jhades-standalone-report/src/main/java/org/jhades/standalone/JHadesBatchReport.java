@@ -0,0 +1,255 @@
+package org.jhades.standalone;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathIndex;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResources;
+import org.jhades.model.JarPair;
+import org.jhades.model.ScanMetrics;
+import org.jhades.reports.ScanMetricsReport;
+import org.jhades.service.NestedJarCache;
+import org.jhades.utils.StdOutLogger;
+
+/**
+ *
+ * Scans a batch of WARs in parallel and writes the standalone report of each WAR to its own file, plus a summary of all
+ * the WARs.
+ *
+ * The WARs are scanned in memory, and the jars they contain are listed only once for the whole batch: the nested jar
+ * cache identifies each jar by the CRC-32 and size recorded in the WAR, so a third-party jar shipped in every WAR is
+ * read from the first WAR only.
+ *
+ * The report of a WAR is named after the WAR file. When several WARs of the batch have the same file name, such as
+ * the same application taken from two directories, each report is written to a sub-directory named after the position
+ * of its WAR in the batch, so that no report overwrites another.
+ *
+ */
+public class JHadesBatchReport {
+
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private static final String SUMMARY_FILE = "summary.txt";
+    private static final int MOST_SHARED_JARS = 20;
+    private final Path outputDir;
+    private final List<Path> warFiles;
+
+    public JHadesBatchReport(Path outputDir, List<Path> warFiles) {
+        this.outputDir = outputDir;
+        this.warFiles = warFiles;
+    }
+
+    /**
+     *
+     * The outcome of the scan of one WAR.
+     *
+     */
+    private static final class WarSummary {
+
+        private final Path warFile;
+        private final Path reportFile;
+        private int entries;
+        private int resources;
+        private int overlappingJarPairs;
+        private long classesWithDuplicates;
+        private long cacheHits;
+        private String failure;
+
+        WarSummary(Path warFile, Path reportFile) {
+            this.warFile = warFile;
+            this.reportFile = reportFile;
+        }
+    }
+
+    public static void printUsage() {
+        System.out.println("\njHades standalone batch utility - the following arguments are needed:\n");
+        System.out.println("    outputDir - the directory where the report of each war and the summary are written");
+        System.out.println("    warFilePath... - the paths to the war files, or to directories containing war files");
+        System.out.println();
+        System.out.println("Options:");
+        System.out.println();
+        System.out.println("    -Ddetail=true -> the reports include the classes with duplicates and their locations");
+        System.out.println("    -Dexclude.same.size.dups=true -> don't count as classpath duplicates the classes that have multiple class files, but they are all identical copies (same size and CRC-32)");
+        System.out.println("    -Dscan.threads=<number of threads> -> the number of wars scanned concurrently, the number of processors by default");
+        System.out.println();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            printUsage();
+            System.exit(-1);
+        }
+
+        logger.setDebug(false);
+
+        List<Path> warFiles = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            Path path = Paths.get(args[i]);
+            if (Files.isDirectory(path)) {
+                List<Path> dirWarFiles = new ArrayList<>();
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(path, "*.war")) {
+                    for (Path file : files) {
+                        dirWarFiles.add(file);
+                    }
+                }
+                Collections.sort(dirWarFiles);
+                warFiles.addAll(dirWarFiles);
+            } else {
+                warFiles.add(path);
+            }
+        }
+
+        logger.info("outputDir = " + args[0]);
+        logger.info("wars = " + warFiles.size());
+
+        new JHadesBatchReport(Paths.get(args[0]), warFiles).scan();
+    }
+
+    public void scan() throws IOException {
+        Files.createDirectories(outputDir);
+        int scanThreads = Integer.getInteger("scan.threads", Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, scanThreads));
+        final NestedJarCache jarCache = new NestedJarCache();
+        final List<Path> reportFiles = findReportFiles();
+        long start = System.nanoTime();
+        List<WarSummary> summaries = new ArrayList<>();
+        try {
+            final AtomicInteger finished = new AtomicInteger();
+            List<Future<WarSummary>> futures = new ArrayList<>();
+            for (int i = 0; i < warFiles.size(); i++) {
+                final Path warFile = warFiles.get(i);
+                final Path reportFile = reportFiles.get(i);
+                futures.add(executor.submit(new Callable<WarSummary>() {
+                    @Override
+                    public WarSummary call() {
+                        WarSummary summary = scanWar(warFile, reportFile, jarCache);
+                        updateStatus("Finished " + warFile.getFileName() + " (" + finished.incrementAndGet() + "/" + warFiles.size() + ")");
+                        return summary;
+                    }
+                }));
+            }
+            for (Future<WarSummary> future : futures) {
+                summaries.add(future.get());
+            }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch scan interrupted.", exc);
+        } catch (ExecutionException exc) {
+            throw new IOException("Batch scan failed: " + exc.getCause(), exc.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (PrintStream summaryOut = new PrintStream(Files.newOutputStream(outputDir.resolve(SUMMARY_FILE)), false, "UTF-8")) {
+            printSummary(summaryOut, summaries, jarCache, System.nanoTime() - start);
+        }
+        printSummary(System.out, summaries, jarCache, System.nanoTime() - start);
+    }
+
+    /**
+     *
+     * @return the report file of each WAR, in WAR order
+     */
+    private List<Path> findReportFiles() throws IOException {
+        Map<String, Integer> warsByName = new HashMap<>();
+        for (Path warFile : warFiles) {
+            String name = warFile.getFileName().toString();
+            Integer count = warsByName.get(name);
+            warsByName.put(name, count == null ? 1 : count + 1);
+        }
+        List<Path> reportFiles = new ArrayList<>();
+        for (int i = 0; i < warFiles.size(); i++) {
+            String reportName = warFiles.get(i).getFileName() + ".txt";
+            if (warsByName.get(warFiles.get(i).getFileName().toString()) > 1) {
+                Path reportDir = Files.createDirectories(outputDir.resolve(String.valueOf(i + 1)));
+                reportFiles.add(reportDir.resolve(reportName));
+            } else {
+                reportFiles.add(outputDir.resolve(reportName));
+            }
+        }
+        return reportFiles;
+    }
+
+    /**
+     *
+     * Scans a WAR and writes its report, only the summary is kept in memory.
+     *
+     */
+    private WarSummary scanWar(Path warFile, Path reportFile, NestedJarCache jarCache) {
+        WarSummary summary = new WarSummary(warFile, reportFile);
+        try {
+            List<ClasspathEntry> classpathEntries = ClasspathEntries.findWarClasspathEntries(warFile, jarCache);
+            ScanMetrics scanMetrics = new ScanMetrics();
+            ClasspathIndex index = ClasspathIndex.buildFromEntries(classpathEntries, logger, scanMetrics, null);
+            List<ClasspathResource> classpathResources = index.findResourcesWithDuplicates(false);
+            scanMetrics.recordDuplicates(classpathResources);
+
+            boolean isExcludeSameSizeDups = "true".equals(System.getProperty("exclude.same.size.dups"));
+            List<JarPair> overlappingJars = ClasspathResources.findOverlappingJars(classpathResources, isExcludeSameSizeDups);
+            summary.entries = classpathEntries.size();
+            summary.resources = index.getResources().size();
+            summary.overlappingJarPairs = overlappingJars.size();
+            for (JarPair jarPair : overlappingJars) {
+                summary.classesWithDuplicates += jarPair.getDupClassesTotal();
+            }
+            summary.cacheHits = scanMetrics.getCacheHits();
+
+            try (PrintStream out = new PrintStream(Files.newOutputStream(reportFile), false, "UTF-8")) {
+                out.println("jHades report of " + warFile);
+                JHadesStandaloneReport.printDuplicatesReports(out, classpathResources);
+                new ScanMetricsReport(scanMetrics, new StandaloneReportUrlFormatter(), 10).print(out);
+            }
+        } catch (IOException | RuntimeException exc) {
+            summary.failure = exc.toString();
+        }
+        return summary;
+    }
+
+    private void printSummary(PrintStream out, List<WarSummary> summaries, NestedJarCache jarCache, long elapsedNanos) {
+        long nestedJars = jarCache.getHits() + jarCache.getMisses();
+        out.println("\n>> jHades batch report summary: \n");
+        out.println("WARs: " + summaries.size() + " - nested jars: " + nestedJars + " - distinct jars listed: "
+                + jarCache.getMisses() + " - elapsed time: " + elapsedNanos / 1000000 + " ms");
+
+        out.println("\n>>> WARs:\n");
+        for (WarSummary summary : summaries) {
+            // the full path tells apart the WARs that have the same file name
+            Path warName = summary.reportFile.getParent().equals(outputDir) ? summary.warFile.getFileName() : summary.warFile;
+            if (summary.failure != null) {
+                out.println("    " + warName + " - FAILED: " + summary.failure);
+            } else {
+                out.println("    " + warName + " - " + summary.entries + " entries, " + summary.resources
+                        + " resources, " + summary.overlappingJarPairs + " overlapping jar pairs, "
+                        + summary.classesWithDuplicates + " overlapping classes, " + summary.cacheHits + " jars already listed");
+            }
+        }
+
+        out.println("\n>>> Jars shared by the most WARs:\n");
+        List<NestedJarCache.CachedJar> cachedJars = jarCache.getCachedJars();
+        for (NestedJarCache.CachedJar cachedJar : cachedJars.subList(0, Math.min(MOST_SHARED_JARS, cachedJars.size()))) {
+            out.println("    " + cachedJar.getName() + " - crc = " + Long.toHexString(cachedJar.getCrc()) + ", size = "
+                    + cachedJar.getSize() + " - found " + cachedJar.getUses() + " times");
+        }
+        out.println();
+    }
+
+    protected synchronized void updateStatus(String statusUpdate) {
+        System.out.println(statusUpdate);
+    }
+}
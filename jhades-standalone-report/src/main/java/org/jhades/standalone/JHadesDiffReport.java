@@ -0,0 +1,90 @@
+package org.jhades.standalone;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import org.jhades.model.ClasspathDiff;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathIndex;
+import org.jhades.model.ClasspathSnapshot;
+import org.jhades.reports.ClasspathDiffReport;
+import org.jhades.utils.StdOutLogger;
+
+/**
+ *
+ * Compares two WARs, for instance the current and the previous release, and reports the added, removed and changed
+ * jars and resources, and the duplicates and overlapping jars that appeared or were resolved.
+ *
+ * Each WAR is scanned in memory, without extracting it. A classpath snapshot written by the standalone report can be
+ * given instead of a WAR, so that the previous release doesn't need to be scanned again.
+ *
+ */
+public class JHadesDiffReport {
+
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private final String oldPath;
+    private final String newPath;
+
+    public JHadesDiffReport(String oldPath, String newPath) {
+        this.oldPath = oldPath;
+        this.newPath = newPath;
+    }
+
+    public static void printUsage() {
+        System.out.println("\njHades standalone diff utility - the following arguments are needed:\n");
+        System.out.println("    oldWarFilePath - the path to the previous war file, or to a classpath snapshot of it");
+        System.out.println("    newWarFilePath - the path to the new war file, or to a classpath snapshot of it");
+        System.out.println();
+        System.out.println("Options:");
+        System.out.println();
+        System.out.println("    -Ddetail=true -> also lists the added and removed resources");
+        System.out.println("    -Dexclude.same.size.dups=true -> don't count as duplicates the resources whose versions are all identical copies (same size and CRC-32)");
+        System.out.println("    -Dscan.threads=<number of threads> -> scans the jars of the WARs concurrently using the given number of threads");
+        System.out.println();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            printUsage();
+            System.exit(-1);
+        }
+
+        logger.setDebug(false);
+
+        logger.info("oldWarFilePath = " + args[0]);
+        logger.info("newWarFilePath = " + args[1]);
+
+        new JHadesDiffReport(args[0], args[1]).diff();
+    }
+
+    public void diff() throws IOException {
+        int scanThreads = Integer.getInteger("scan.threads", 1);
+        ForkJoinPool scanPool = scanThreads > 1 ? new ForkJoinPool(scanThreads) : null;
+        ClasspathIndex oldIndex;
+        ClasspathIndex newIndex;
+        try {
+            oldIndex = loadIndex(Paths.get(oldPath), scanPool);
+            newIndex = loadIndex(Paths.get(newPath), scanPool);
+        } finally {
+            if (scanPool != null) {
+                scanPool.shutdown();
+            }
+        }
+
+        boolean isExcludeSameSizeDups = "true".equals(System.getProperty("exclude.same.size.dups"));
+        ClasspathDiff diff = ClasspathDiff.compute(oldIndex, newIndex, isExcludeSameSizeDups);
+
+        boolean isDetailedMode = "true".equals(System.getProperty("detail"));
+        new ClasspathDiffReport(diff, new StandaloneReportUrlFormatter(), isDetailedMode).print(System.out);
+    }
+
+    private static ClasspathIndex loadIndex(Path path, ForkJoinPool scanPool) throws IOException {
+        if (ClasspathSnapshot.isSnapshot(path)) {
+            System.out.println("Reading snapshot " + path);
+            return ClasspathSnapshot.read(path);
+        }
+        System.out.println("Scanning WAR " + path);
+        return ClasspathIndex.buildFromEntries(ClasspathEntries.findWarClasspathEntries(path), logger, null, scanPool);
+    }
+}
@@ -1,6 +1,7 @@
 package org.jhades.standalone;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.net.URISyntaxException;
 import java.nio.file.FileVisitResult;
 import static java.nio.file.FileVisitResult.CONTINUE;
@@ -11,16 +12,25 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jhades.model.ClasspathEntries;
 import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathIndex;
 import org.jhades.model.ClasspathResource;
 import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.ClasspathResources;
+import org.jhades.model.ClasspathSnapshot;
+import org.jhades.model.JarOverlaps;
 import org.jhades.model.JarPair;
+import org.jhades.model.ScanMetrics;
+import org.jhades.model.SpillingDuplicatesFinder;
 import org.jhades.reports.DuplicatesReport;
+import org.jhades.reports.ScanMetricsReport;
 import org.jhades.service.ClasspathScanner;
 import org.jhades.service.ClasspathScannerListener;
+import org.jhades.service.CompositeClasspathScannerListener;
 import org.jhades.utils.FileUtils;
 import org.jhades.utils.StdOutLogger;
 import org.jhades.utils.ZipUtils;
@@ -33,6 +43,8 @@ public class JHadesStandaloneReport {
     private static final String SEP = System.getProperty("file.separator");
     private final String warFilePath;
     private final String tmpPath;
+    private ScanMetrics scanMetrics;
+    private ClasspathIndex classpathIndex;
 
     public JHadesStandaloneReport(String warFilePath, String tmpPath) {
         this.warFilePath = warFilePath;
@@ -41,14 +53,25 @@ public class JHadesStandaloneReport {
 
     public static void printUsage() {
         System.out.println("\njHades standalone war scanner utility - the following arguments are needed:\n");
-        System.out.println("    warFilePath - the path to your war file");
+        System.out.println("    warFilePath - the path to your war file, or to a classpath snapshot written with -Dsnapshot.write");
         System.out.println("    tmpPath (optional) - the path to a temporary directory, needed to unzip files");
         System.out.println();
         System.out.println("Options:");
         System.out.println();
         System.out.println("    -Ddetail=true -> displays classes with duplicates and their locations");
-        System.out.println("    -Dexclude.same.size.dups=true -> don't count as classpath duplicates the classes that have multiple class files, but they all have the same size");
+        System.out.println("    -Dexclude.same.size.dups=true -> don't count as classpath duplicates the classes that have multiple class files, but they are all identical copies (same size and CRC-32)");
         System.out.println("    -Dsearch.by.file.name=\"<search regex>\" -> searches the WAR for a resource file using a Java regular expression");
+        System.out.println("    -Dscan.threads=<number of threads> -> scans the jars of the WAR concurrently using the given number of threads");
+        System.out.println("    -Dscan.in.memory=true -> scans the WAR without extracting it to the temporary directory");
+        System.out.println("    -Djhades.cache.dir=<cache directory> -> caches the contents of the scanned jars, unchanged jars are not scanned again");
+        System.out.println("    -Djhades.cache.max.size.mb=<size> -> maximum size of the jar scan cache, 256 Mb by default");
+        System.out.println("    -Djhades.cache.content.hash=true -> uses the jar content hash to detect changed jars, besides the jar size and modification time");
+        System.out.println("    -Ddiff.against=<previous war file or snapshot> -> instead of the report, compares the war with a previous one and reports the changed jars, resources, duplicates and overlaps");
+        System.out.println("    -Dsnapshot.write=<snapshot file> -> saves the scanned WAR to a classpath snapshot, that can be given instead of the WAR to report on it again without scanning");
+        System.out.println("    -Dspill.dir=<spill directory> -> finds the duplicates with a bounded amount of memory, by spilling the scanned resources to sorted run files in the given directory");
+        System.out.println("    -Dspill.buffer.mb=<size> -> the resources buffered in memory before spilling them to disk, a quarter of the maximum heap size by default");
+        System.out.println("    -Djhades.scan.class.versions=true -> reads the bytecode version of the class files, and reports the jars compiled for a newer JVM than the target one");
+        System.out.println("    -Djhades.target.class.version=<major version> -> the bytecode major version of the production JVM, such as 52 for Java 8, the running JVM by default");
         System.out.println();
     }
 
@@ -62,12 +85,22 @@ public class JHadesStandaloneReport {
 
         String warFilePath = args[0];
 
+        String diffAgainst = System.getProperty("diff.against");
+        if (diffAgainst != null) {
+            logger.info("diffAgainst = " + diffAgainst);
+            logger.info("warFilePath = " + warFilePath);
+            new JHadesDiffReport(diffAgainst, warFilePath).diff();
+            return;
+        }
+
         String tmpPath;
         if (args.length == 2) {
             tmpPath = args[1];
         } else {
             tmpPath = System.getProperty("java.io.tmpdir") + "/jhades";
-            Files.createDirectories(Paths.get(tmpPath));
+            if (!isScanInMemory() && !ClasspathSnapshot.isSnapshot(Paths.get(warFilePath))) {
+                Files.createDirectories(Paths.get(tmpPath));
+            }
         }
 
         logger.info("warFilePath = " + warFilePath);
@@ -80,6 +113,105 @@ public class JHadesStandaloneReport {
     }
 
     public void scan() throws IOException, URISyntaxException {
+        if (ClasspathSnapshot.isSnapshot(Paths.get(warFilePath))) {
+            scanSnapshot();
+            return;
+        }
+
+        final List<ClasspathEntry> classpathEntries;
+        if (isScanInMemory()) {
+            updateStatus("Reading WAR");
+            classpathEntries = ClasspathEntries.findWarClasspathEntries(Paths.get(warFilePath));
+        } else {
+            classpathEntries = extractWar();
+        }
+
+        ClasspathScannerListener statusListener = (new ClasspathScannerListener() {
+            @Override
+            public void onEntryScanStart(ClasspathEntry entry) {
+                String filePath = entry.getUrl().toString();
+                Matcher matcher = JAR_NAME.matcher(filePath);
+                if (matcher.matches()) {
+                    updateStatus("Processing jar " + matcher.group(1));
+                }
+            }
+
+            @Override
+            public void onEntryScanEnd(ClasspathEntry entry) {
+                String filePath = entry.getUrl().toString();
+                Matcher matcher = JAR_NAME.matcher(filePath);
+                if (matcher.matches()) {
+                    updateStatus("Finished processing jar " + matcher.group(1));
+                }
+            }
+        });
+
+        scanMetrics = new ScanMetrics();
+        ClasspathScannerListener listener = new CompositeClasspathScannerListener(statusListener, scanMetrics);
+
+        int scanThreads = Integer.getInteger("scan.threads", 1);
+        ForkJoinPool scanPool = scanThreads > 1 ? new ForkJoinPool(scanThreads) : null;
+
+        String snapshotFile = System.getProperty("snapshot.write");
+        String spillDir = System.getProperty("spill.dir");
+        List<ClasspathResource> classpathResources = null;
+        SpillingDuplicatesFinder spillingFinder = null;
+        try {
+            if (snapshotFile != null) {
+                // a snapshot needs all the resources
+                classpathIndex = ClasspathIndex.buildFromEntries(classpathEntries, logger, listener, scanPool);
+                classpathResources = classpathIndex.findResourcesWithDuplicates(false);
+            } else if (spillDir != null) {
+                spillingFinder = new SpillingDuplicatesFinder(Paths.get(spillDir), getSpillBufferBytes());
+                ClasspathEntries.visitResourceVersionsInEntries(classpathEntries, logger, listener, spillingFinder, scanPool);
+            } else {
+                // the reports only need the resources with duplicates, the others are not kept in memory
+                classpathResources = ClasspathEntries.findDuplicateResourcesInEntries(classpathEntries, logger, listener, null, scanPool);
+            }
+        } finally {
+            if (scanPool != null) {
+                scanPool.shutdown();
+            }
+        }
+
+        if (spillingFinder != null) {
+            try (SpillingDuplicatesFinder finder = spillingFinder) {
+                processSpilledDuplicates(finder);
+            }
+            return;
+        }
+
+        scanMetrics.recordDuplicates(classpathResources);
+
+        if (snapshotFile != null) {
+            updateStatus("Writing snapshot " + snapshotFile);
+            ClasspathSnapshot.write(classpathIndex, Paths.get(snapshotFile));
+        }
+
+        processClasspathResources(classpathResources);
+    }
+
+    /**
+     *
+     * Reports on a classpath snapshot instead of a WAR, the jars of the snapshot are not needed.
+     *
+     */
+    private void scanSnapshot() throws IOException {
+        updateStatus("Reading snapshot");
+        classpathIndex = ClasspathSnapshot.read(Paths.get(warFilePath));
+        List<ClasspathResource> classpathResources = classpathIndex.findResourcesWithDuplicates(false);
+        scanMetrics = new ScanMetrics();
+        scanMetrics.recordDuplicates(classpathResources);
+
+        processClasspathResources(classpathResources);
+    }
+
+    /**
+     *
+     * Unzips the WAR into the temporary directory, and lists its classes folder and jars.
+     *
+     */
+    private List<ClasspathEntry> extractWar() throws IOException {
         logger.debug("Extracting war " + warFilePath + "...");
 
         updateStatus("Deleting temporary directory");
@@ -102,7 +234,8 @@ public class JHadesStandaloneReport {
         String classesFolderPath = tmpPath + SEP + "WEB-INF" + SEP + "classes";
         Path classesFolder = Paths.get(classesFolderPath);
         if (Files.exists(classesFolder)) {
-            classpathEntries.add(new ClasspathEntry(null, classesFolderPath));
+            // a class folder url ends with a slash
+            classpathEntries.add(new ClasspathEntry(null, classesFolder.toUri().toString()));
         }
 
         Path start = Paths.get(tmpPath);
@@ -128,82 +261,130 @@ public class JHadesStandaloneReport {
             }
         });
 
-        ClasspathScannerListener listener = (new ClasspathScannerListener() {
-            @Override
-            public void onEntryScanStart(ClasspathEntry entry) {
-                String filePath = entry.getUrl().toString();
-                Matcher matcher = JAR_NAME.matcher(filePath);
-                if (matcher.matches()) {
-                    updateStatus("Processing jar " + matcher.group(1));
-                }
-            }
+        return classpathEntries;
+    }
+
+    private static boolean isScanInMemory() {
+        return "true".equals(System.getProperty("scan.in.memory"));
+    }
+
+    private static long getSpillBufferBytes() {
+        Integer spillBufferMb = Integer.getInteger("spill.buffer.mb");
+        return spillBufferMb != null ? spillBufferMb * 1024L * 1024L : Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    private void processClasspathResources(List<ClasspathResource> classpathResources) {
+
+        printDuplicatesReports(System.out, classpathResources);
+        printSearchResultsAndMetrics();
+    }
 
+    /**
+     *
+     * Prints the reports of a scan whose resources were spilled to disk: the duplicates are merged out of the run files
+     * one at a time, once to count the overlapping jars and again to list them in detailed mode.
+     *
+     */
+    private void processSpilledDuplicates(SpillingDuplicatesFinder finder) throws IOException {
+        updateStatus("Merging " + finder.getSpilledRecords() + " resources spilled to " + finder.getSpilledRuns() + " run files");
+
+        final boolean isExcludeSameSizeDups = "true".equals(System.getProperty("exclude.same.size.dups"));
+        final JarOverlaps.Counter overlapsCounter = new JarOverlaps.Counter();
+        finder.findDuplicates(new SpillingDuplicatesFinder.DuplicateVisitor() {
             @Override
-            public void onEntryScanEnd(ClasspathEntry entry) {
-                String filePath = entry.getUrl().toString();
-                Matcher matcher = JAR_NAME.matcher(filePath);
-                if (matcher.matches()) {
-                    updateStatus("Finished processing jar " + matcher.group(1));
+            public void visitDuplicate(ClasspathResource resource) {
+                scanMetrics.recordDuplicate(resource);
+                if (isClassFileDuplicate(resource, isExcludeSameSizeDups)) {
+                    overlapsCounter.add(resource);
                 }
             }
         });
+        printOverlapReport(System.out, overlapsCounter.toJarOverlaps().getOverlappingJars(), isExcludeSameSizeDups);
+
+        if ("true".equals(System.getProperty("detail"))) {
+            System.out.println("\n>> jHades multipleClassVersionsReport >> Duplicate classpath resources report, in class name order: \n");
+            final DuplicatesReport report = new DuplicatesReport(new ArrayList<ClasspathResource>(), new StandaloneReportUrlFormatter());
+            finder.findDuplicates(new SpillingDuplicatesFinder.DuplicateVisitor() {
+                @Override
+                public void visitDuplicate(ClasspathResource resource) {
+                    if (isClassFileDuplicate(resource, isExcludeSameSizeDups)) {
+                        report.printResource(resource, System.out);
+                    }
+                }
+            });
+        }
 
-        List<ClasspathResource> classpathResources = ClasspathEntries.findClasspathResourcesInEntries(classpathEntries, logger, listener);
+        printSearchResultsAndMetrics();
+    }
 
-        processClasspathResources(classpathResources);
+    private static boolean isClassFileDuplicate(ClasspathResource resource, boolean isExcludeSameSizeDups) {
+        return resource.getName().endsWith(".class") && resource.hasDuplicates(isExcludeSameSizeDups);
     }
 
-    private void processClasspathResources(List<ClasspathResource> classpathResources) {
+    private void printSearchResultsAndMetrics() {
+        String searchByFileName = System.getProperty("search.by.file.name");
+
+        if (searchByFileName != null) {
+            List<ClasspathResource> searchResults = classpathIndex != null
+                    ? classpathIndex.findByRegex(Pattern.compile(searchByFileName), null)
+                    : scanner.findByRegex(searchByFileName);
+            if (searchResults != null && !searchResults.isEmpty()) {
+                System.out.println("\nSearch results using regular expression: " + searchByFileName + "\n");
+                for (ClasspathResource match : searchResults) {
+                    System.out.println(match.getName() + "\n");
+                    for (ClasspathResourceVersion version : match.getResourceFileVersions()) {
+                        System.out.println("    " + version.getClasspathEntry().getUrl());
+                    }
+                    System.out.println("");
+                }
+            }
+        }
+
+        new ScanMetricsReport(scanMetrics, new StandaloneReportUrlFormatter(), 10).print(System.out);
+    }
+
+    /**
+     *
+     * Prints the jar overlap report and, in detailed mode, the class file duplicates report.
+     *
+     */
+    static void printDuplicatesReports(PrintStream out, List<ClasspathResource> classpathResources) {
 
         boolean isDetailedMode = "true".equals(System.getProperty("detail"));
         boolean isExcludeSameSizeDups = "true".equals(System.getProperty("exclude.same.size.dups"));
 
-        List<JarPair> overlapReportLines = scanner.findOverlappingJars(classpathResources, isExcludeSameSizeDups);
+        List<JarPair> overlapReportLines = ClasspathResources.findOverlappingJars(classpathResources, isExcludeSameSizeDups);
+        printOverlapReport(out, overlapReportLines, isExcludeSameSizeDups);
+
+        if (isDetailedMode) {
+            List<ClasspathResource> resourcesWithDifferentSizeDups = ClasspathResources.findClassFileDuplicates(classpathResources, isExcludeSameSizeDups);
+            DuplicatesReport report = new DuplicatesReport(resourcesWithDifferentSizeDups, new StandaloneReportUrlFormatter());
+            report.print(out);
+        }
+    }
+
+    private static void printOverlapReport(PrintStream out, List<JarPair> overlapReportLines, boolean isExcludeSameSizeDups) {
 
         long totalDupClasses = 0;
 
-        System.out.println("\n>>>> Jar overlap report: \n");
+        out.println("\n>>>> Jar overlap report: \n");
 
         for (JarPair jarOverlapReportLine : overlapReportLines) {
             String reportLine = getJarName(jarOverlapReportLine.getJar1().getUrl()) + " overlaps with "
                     + getJarName(jarOverlapReportLine.getJar2().getUrl())
                     + " - total overlapping classes: " + jarOverlapReportLine.getDupClassesTotal();
-            System.out.println(reportLine);
+            out.println(reportLine);
             totalDupClasses += jarOverlapReportLine.getDupClassesTotal();
         }
 
-        System.out.println("\nTotal number of classes with more than one version: " + totalDupClasses + "\n");
+        out.println("\nTotal number of classes with more than one version: " + totalDupClasses + "\n");
 
         if (!isExcludeSameSizeDups) {
-            System.out.println("\nUse -Dexclude.same.size.dups=true for considering as a duplicate only classes with multiple class files of different sizes.\n");
+            out.println("\nUse -Dexclude.same.size.dups=true for considering as a duplicate only classes with multiple class files of different contents.\n");
         }
-
-
-        if (isDetailedMode) {
-            List<ClasspathResource> resourcesWithDifferentSizeDups = scanner.findClassFileDuplicates(classpathResources, isExcludeSameSizeDups);
-            DuplicatesReport report = new DuplicatesReport(resourcesWithDifferentSizeDups, new StandaloneReportUrlFormatter());
-            report.print();
-        }
-
-        String searchByFileName = System.getProperty("search.by.file.name");
-
-        if (searchByFileName != null) {
-            List<ClasspathResource> searchResults = scanner.findByRegex(searchByFileName);
-            if (searchResults != null && !searchResults.isEmpty()) {
-                System.out.println("\nSearch results using regular expression: " + searchByFileName + "\n");
-                for (ClasspathResource match : searchResults) {
-                    System.out.println(match.getName() + "\n");
-                    for (ClasspathResourceVersion version : match.getResourceFileVersions()) {
-                        System.out.println("    " + version.getClasspathEntry().getUrl());
-                    }
-                    System.out.println("");
-                }
-            }
-        }
-
     }
 
-    private String getJarName(String url) {
+    private static String getJarName(String url) {
         String jarName = "";
         if (url != null) {
             Matcher matcher = JAR_NAME.matcher(url);
@@ -215,7 +396,7 @@ public class JHadesStandaloneReport {
         return jarName;
     }
 
-    protected void updateStatus(String statusUpdate) {
+    protected synchronized void updateStatus(String statusUpdate) {
         System.out.println(statusUpdate);
     }
 }
@@ -1,6 +1,9 @@
 package org.jhades;
 
+import java.io.IOException;
+import java.io.PrintStream;
 import java.net.URL;
+import java.nio.file.Paths;
 import java.util.List;
 import org.jhades.model.ClasspathEntry;
 import org.jhades.model.ClasspathResource;
@@ -8,36 +11,104 @@ import org.jhades.model.ClasspathResourceVersion;
 import org.jhades.model.ClazzLoader;
 import org.jhades.model.JarPair;
 import org.jhades.reports.DuplicatesReport;
+import org.jhades.reports.ScanMetricsReport;
 import org.jhades.service.ClasspathScanner;
 
 /**
  *
  * See jHades documentation for how to use these commands - http://jhades.org
  *
+ * The classpath is scanned once on the first command, call refresh() to scan it again.
+ *
+ * The reports are printed to System.out, unless another print stream is given.
+ *
+ * The scanned classpath can be saved with writeSnapshot, and loaded back elsewhere with loadSnapshot: the commands then
+ * report on the classpath of the snapshot instead of the current classpath.
+ *
  */
 public class JHades {
 
     private ClasspathScanner scanner = new ClasspathScanner();
+    private final PrintStream out;
+
+    public JHades() {
+        this(System.out);
+    }
+
+    public JHades(PrintStream out) {
+        this.out = out;
+    }
+
+    public JHades refresh() {
+        scanner.refresh();
+        return this;
+    }
+
+    /**
+     *
+     * Saves the scanned classpath to a snapshot file.
+     *
+     * @param snapshotFile - the path of the snapshot file, replaced if it already exists
+     */
+    public JHades writeSnapshot(String snapshotFile) {
+        if (snapshotFile == null) {
+            throw new IllegalArgumentException("Snapshot file cannot be null.");
+        }
+
+        out.println("\n>> jHades writeSnapshot >> Saving the classpath to " + snapshotFile + "\n");
+
+        try {
+            scanner.writeSnapshot(Paths.get(snapshotFile));
+        } catch (IOException exc) {
+            out.println("Could not write the classpath snapshot: " + exc.getMessage() + "\n");
+        }
+
+        return this;
+    }
+
+    /**
+     *
+     * Loads a classpath snapshot, the following commands report on the classpath of the snapshot, until refresh is
+     * called. The commands that ask the class loaders directly, findResource and findClassByName, still report on the
+     * current classpath.
+     *
+     * @param snapshotFile - the path of a snapshot file written by writeSnapshot
+     */
+    public JHades loadSnapshot(String snapshotFile) {
+        if (snapshotFile == null) {
+            throw new IllegalArgumentException("Snapshot file cannot be null.");
+        }
+
+        out.println("\n>> jHades loadSnapshot >> Loading the classpath from " + snapshotFile + "\n");
+
+        try {
+            scanner.loadSnapshot(Paths.get(snapshotFile));
+        } catch (IOException exc) {
+            throw new IllegalArgumentException("Could not load the classpath snapshot: " + exc.getMessage(), exc);
+        }
+
+        return this;
+    }
 
     public JHades printClassLoaderNames() {
 
-        System.out.println("\n>> jHades printClassLoaders >> Printing classloader class names (ordered from child to parent):\n");
+        out.println("\n>> jHades printClassLoaders >> Printing classloader class names (ordered from child to parent):\n");
 
         List<ClazzLoader> classLoaders = scanner.findAllClassLoaders();
         boolean notSupportedFound = false;
 
         for (ClazzLoader classLoader : classLoaders) {
             if (classLoader.isSupported()) {
-                System.out.println(classLoader.getName());
+                out.println(classLoader.getName());
             } else {
                 notSupportedFound = true;
-                System.out.println(classLoader.getName() + " - NOT SUPORTED");
+                out.println(classLoader.getName() + " - NOT SUPORTED");
             }
         }
         endCommand(classLoaders.size() > 0);
 
         if (notSupportedFound) {
-            System.out.println("Note: NOT SUPPORTED class loader means that any classes loaded by such a classloader will not be found on any jHades queries. \n");
+            out.println("Note: NOT SUPPORTED class loader means that any classes loaded by such a classloader will not be found on any jHades queries. \n");
         }
 
         return this;
@@ -45,24 +116,24 @@ public class JHades {
 
     public JHades dumpClassloaderInfo() {
 
-        System.out.println("\n>> jHades printClassLoaders >> Printing all classloader available info (from the class loader toString(), ordered from child to parent):\n");
+        out.println("\n>> jHades printClassLoaders >> Printing all classloader available info (from the class loader toString(), ordered from child to parent):\n");
 
         List<ClazzLoader> classLoaders = scanner.findAllClassLoaders();
         boolean notSupportedFound = false;
 
         for (ClazzLoader classLoader : classLoaders) {
             if (classLoader.isSupported()) {
-                System.out.println("\n>>> Dumping available info for classloader " + classLoader.getName() + "\n");
-                System.out.println(classLoader.getDetails());
+                out.println("\n>>> Dumping available info for classloader " + classLoader.getName() + "\n");
+                out.println(classLoader.getDetails());
             } else {
                 notSupportedFound = true;
-                System.out.println(classLoader.getName() + " - NOT SUPORTED");
+                out.println(classLoader.getName() + " - NOT SUPORTED");
             }
         }
         endCommand(classLoaders.size() > 0);
 
         if (notSupportedFound) {
-            System.out.println("Note: NOT SUPPORTED class loader means that any classes loaded by such a classloader will not be found on any jHades queries. \n");
+            out.println("Note: NOT SUPPORTED class loader means that any classes loaded by such a classloader will not be found on any jHades queries. \n");
         }
 
         return this;
@@ -70,17 +141,17 @@ public class JHades {
 
     public JHades printClasspath() {
 
-        System.out.println("\n>> jHades printClasspath >> Printing all class folder and jars on the classpath:\n");
+        out.println("\n>> jHades printClasspath >> Printing all class folder and jars on the classpath:\n");
 
         List<ClasspathEntry> classpathEntries = scanner.findAllClasspathEntries();
         ClazzLoader clazzLoader = null;
 
         for (ClasspathEntry entry : classpathEntries) {
             if (entry.getClassLoader() != null && !entry.getClassLoader().equals(clazzLoader)) {
-                System.out.println(); // line break between class loaders
+                out.println(); // line break between class loaders
                 clazzLoader = entry.getClassLoader();
             }
-            System.out.println(entry.getClassLoaderName() + " - " + entry.getUrl());
+            out.println(entry.getClassLoaderName() + " - " + entry.getUrl());
         }
 
         endCommand(classpathEntries.size() > 0);
@@ -94,20 +165,20 @@ public class JHades {
             throw new IllegalArgumentException("Resource path cannot be null.");
         }
 
-        System.out.println(">> jHades printResourcePath >> searching for " + resource + "\n");
+        out.println(">> jHades printResourcePath >> searching for " + resource + "\n");
 
         List<URL> allVersions = scanner.findAllResourceVersions(resource);
         boolean resultsFound = allVersions != null && allVersions.size() > 0;
 
-        System.out.println("All versions:\n");
+        out.println("All versions:\n");
         for (URL version : allVersions) {
-            System.out.println(version);
+            out.println(version);
         }
 
         URL currentVersion = scanner.findCurrentResourceVersion(resource);
 
         if (resultsFound && currentVersion != null) {
-            System.out.println("\nCurrent version being used: \n\n" + currentVersion);
+            out.println("\nCurrent version being used: \n\n" + currentVersion);
         }
 
         endCommand(resultsFound);
@@ -132,12 +203,14 @@ public class JHades {
             throw new IllegalArgumentException("Class name cannot be null.");
         }
 
-        System.out.println(">> jHades searchClass >> Searching for class: " + clazz.getCanonicalName() + "\n");
+        out.println(">> jHades searchClass >> Searching for class: " + clazz.getCanonicalName() + "\n");
 
         ClasspathResource foundClass = scanner.findClass(clazz);
 
-        for (ClasspathResourceVersion version : foundClass.getResourceFileVersions()) {
-            System.out.println(version.getClasspathEntry().getUrl() + foundClass.getName() + " size = " + version.getFileSize());
+        if (foundClass != null) {
+            for (ClasspathResourceVersion version : foundClass.getResourceFileVersions()) {
+                out.println(version.getClasspathEntry().getUrl() + foundClass.getName() + " size = " + version.getFileSize());
+            }
         }
 
         endCommand(foundClass != null);
@@ -151,16 +224,16 @@ public class JHades {
             throw new IllegalArgumentException("search string cannot be null or empty.");
         }
 
-        System.out.println(">> jHades search >> Searching for resorce using search string: " + search + "\n");
+        out.println(">> jHades search >> Searching for resorce using search string: " + search + "\n");
 
         List<ClasspathResource> classpathResources = scanner.findByRegex(search);
 
         boolean resultsFound = classpathResources != null && classpathResources.size() > 0;
 
         if (resultsFound) {
-            System.out.println("\nResults Found:\n");
+            out.println("\nResults Found:\n");
             for (ClasspathResource classpathResource : classpathResources) {
-                System.out.println(classpathResource.getName());
+                out.println(classpathResource.getName());
             }
         }
 
@@ -178,13 +251,24 @@ public class JHades {
         List<ClasspathResource> resourcesWithDuplicates = scanner.findAllResourcesWithDuplicates(excludeSameSizeDups);
 
         DuplicatesReport report = new DuplicatesReport(resourcesWithDuplicates);
-        report.print();
+        report.print(out);
+
+        return this;
+    }
 
+    /**
+     *
+     * Prints the metrics of the classpath scan: scan times, bytes read, resources and duplicates per entry, and the
+     * slowest entries.
+     *
+     */
+    public JHades scanMetricsReport() {
+        new ScanMetricsReport(scanner.getScanMetrics()).print(out);
         return this;
     }
 
     public JHades overlappingJarsReport() {
-        System.out.println("\n>> jHades - scanning classpath for overlapping jars: \n");
+        out.println("\n>> jHades - scanning classpath for overlapping jars: \n");
 
         List<JarPair> jarOverlapReportLines = scanner.findOverlappingJars();
 
@@ -196,7 +280,7 @@ public class JHades {
             } else {
                 reportLine += "different classloaders.\n";
             }
-            System.out.println(reportLine);
+            out.println(reportLine);
         }
 
         endCommand(jarOverlapReportLines.size() > 0);
@@ -206,9 +290,9 @@ public class JHades {
 
     private void endCommand(boolean resultsFound) {
         if (!resultsFound) {
-            System.out.println("No results found.\n");
+            out.println("No results found.\n");
         } else {
-            System.out.println("");
+            out.println("");
         }
     }
 }
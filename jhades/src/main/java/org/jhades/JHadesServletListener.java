@@ -1,7 +1,20 @@
 package org.jhades;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
+import org.jhades.service.ScanCache;
 
 /**
  *
@@ -10,32 +23,190 @@ import javax.servlet.ServletContextListener;
  * This servlet listener (or a subclass) should be the first configured in web.xml
  *
  * The default behaviour is to print to the server log information that is normally needed to debug classpath problems:
- * classloader chain, jar locations, overlapping jars, etc.
+ * classloader chain, jar locations, overlapping jars, etc. followed by the scan metrics.
+ *
+ * The jar scan cache can be enabled via the jhades.cache.dir, jhades.cache.max.size.mb and jhades.cache.content.hash
+ * context parameters, see ScanCache.
+ *
+ * With the context parameter jhades.async set to true, the reports don't delay the application startup: they run on a
+ * low priority daemon thread, jhades.async.delay.seconds after the context is initialized (0 by default), and are
+ * cancelled if they take more than jhades.async.budget.seconds (60 by default). The reports are printed to the server
+ * log in one go when finished, and published as the servlet context attribute org.jhades.report. A cancelled scan
+ * stops at the next classpath entry, and its partial results are not kept. The thread is stopped when the context is
+ * destroyed.
+ *
+ * With the context parameter jhades.snapshot.file, the scanned classpath is also saved to that file once the reports
+ * are printed, so that it can be analyzed offline - see ClasspathSnapshot.
  *
  */
 public class JHadesServletListener implements ServletContextListener {
 
+    public static final String ASYNC_PARAM = "jhades.async";
+    public static final String ASYNC_DELAY_PARAM = "jhades.async.delay.seconds";
+    public static final String ASYNC_BUDGET_PARAM = "jhades.async.budget.seconds";
+    public static final String REPORT_ATTRIBUTE = "org.jhades.report";
+    public static final String SNAPSHOT_FILE_PARAM = "jhades.snapshot.file";
+    private static final long DEFAULT_BUDGET_SECONDS = 60;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
     private JHades console = new JHades();
+    private ScheduledExecutorService asyncExecutor;
+    private String snapshotFile;
 
     @Override
     public void contextDestroyed(ServletContextEvent arg0) {
+        ScheduledExecutorService executor = asyncExecutor;
+        if (executor != null) {
+            asyncExecutor = null;
+            executor.shutdownNow();
+            try {
+                if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    System.out.println("JHades - the asynchronous scan did not stop within " + SHUTDOWN_TIMEOUT_SECONDS + " seconds.");
+                }
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     @Override
     public void contextInitialized(ServletContextEvent arg0) {
         try {
-            runJHades(console);
+            ServletContext servletContext = arg0.getServletContext();
+            configureScanCache(servletContext);
+            snapshotFile = servletContext.getInitParameter(SNAPSHOT_FILE_PARAM);
+            if ("true".equals(servletContext.getInitParameter(ASYNC_PARAM))) {
+                startAsyncScan(servletContext);
+            } else {
+                runReports(console);
+            }
         } catch (Exception exc) {
             System.out.println("JHades - error occurred: " + exc.getMessage());
             exc.printStackTrace();
         }
     }
 
+    private void configureScanCache(ServletContext servletContext) {
+        String cacheDir = servletContext.getInitParameter(ScanCache.CACHE_DIR_PROPERTY);
+        if (cacheDir != null) {
+            ScanCache.configure(cacheDir, servletContext.getInitParameter(ScanCache.CACHE_MAX_SIZE_PROPERTY),
+                    servletContext.getInitParameter(ScanCache.CACHE_CONTENT_HASH_PROPERTY));
+        }
+    }
+
+    /**
+     *
+     * Schedules the reports on a daemon thread, and their cancellation once the time budget is over - the executor has
+     * a second thread so that the cancellation is not blocked by the running reports. The cancellation waits for the
+     * reports to actually stop before publishing what they printed so far. The executor is shut down as soon as the
+     * reports end, one way or the other.
+     *
+     */
+    private void startAsyncScan(final ServletContext servletContext) {
+        long delaySeconds = getLongParameter(servletContext, ASYNC_DELAY_PARAM, 0);
+        final long budgetSeconds = getLongParameter(servletContext, ASYNC_BUDGET_PARAM, DEFAULT_BUDGET_SECONDS);
+
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "jhades-async-scan");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        asyncExecutor = executor;
+
+        final ByteArrayOutputStream reportBytes = new ByteArrayOutputStream();
+        final AtomicBoolean finished = new AtomicBoolean();
+        final CountDownLatch stopped = new CountDownLatch(1);
+        final Runnable scan = new Runnable() {
+            @Override
+            public void run() {
+                boolean cancelled = false;
+                try (PrintStream reportStream = new PrintStream(reportBytes, true, "UTF-8")) {
+                    runReports(new JHades(reportStream));
+                } catch (CancellationException exc) {
+                    // by the time budget, that reports it, or by contextDestroyed
+                    cancelled = true;
+                } catch (Exception exc) {
+                    System.out.println("JHades - error occurred: " + exc.getMessage());
+                    exc.printStackTrace();
+                } finally {
+                    stopped.countDown();
+                }
+                if (!cancelled && finished.compareAndSet(false, true)) {
+                    publishReport(servletContext, reportBytes, null);
+                }
+                // also cancels the pending budget check, the threads end once idle
+                executor.shutdown();
+            }
+        };
+
+        final Future<?> scanFuture = executor.schedule(scan, delaySeconds, TimeUnit.SECONDS);
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (finished.compareAndSet(false, true)) {
+                    scanFuture.cancel(true);
+                    boolean stoppedInTime;
+                    try {
+                        stoppedInTime = stopped.await(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    } catch (InterruptedException exc) {
+                        // the context is destroyed, nothing to publish
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    publishReport(servletContext, reportBytes, "JHades - the reports did not finish within the time budget of "
+                            + budgetSeconds + " seconds, they were cancelled" + (stoppedInTime ? "" : " but did not stop within "
+                            + SHUTDOWN_TIMEOUT_SECONDS + " seconds") + ". Increase the budget with the context parameter "
+                            + ASYNC_BUDGET_PARAM + ".");
+                }
+                executor.shutdown();
+            }
+        }, delaySeconds + budgetSeconds, TimeUnit.SECONDS);
+    }
+
+    private void publishReport(ServletContext servletContext, ByteArrayOutputStream reportBytes, String failure) {
+        String report;
+        try {
+            report = reportBytes.toString("UTF-8");
+        } catch (UnsupportedEncodingException exc) {
+            report = reportBytes.toString();
+        }
+        if (failure != null) {
+            report += "\n" + failure + "\n";
+        }
+        System.out.println(report);
+        servletContext.setAttribute(REPORT_ATTRIBUTE, report);
+    }
+
+    private static long getLongParameter(ServletContext servletContext, String name, long defaultValue) {
+        String value = servletContext.getInitParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException exc) {
+            System.out.println("JHades - invalid value for context parameter " + name + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private void runReports(JHades console) {
+        runJHades(console);
+        if (snapshotFile != null) {
+            console.writeSnapshot(snapshotFile);
+        }
+    }
+
     protected void runJHades(JHades console) {
         console.overlappingJarsReport()
                 .printClassLoaderNames()
                 .dumpClassloaderInfo()
                 .printClasspath()
-                .multipleClassVersionsReport();
+                .multipleClassVersionsReport()
+                .scanMetricsReport();
     }
 }
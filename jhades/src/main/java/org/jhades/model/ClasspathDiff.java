@@ -0,0 +1,551 @@
+package org.jhades.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *
+ * Differences between two classpath indexes, typically the previous and the next release of a WAR: added, removed and
+ * changed jars, added, removed and changed resources, and the duplicates and overlapping jars that appeared or were
+ * resolved.
+ *
+ * The entries of both indexes are matched by their key: the name of their class loader and their path relative to the
+ * WAR or to the classpath root, so that the same jar or class folder found in two different WAR files or temporary
+ * directories is the same entry. A matched entry has changed when its fingerprint changed - a hash of the names, sizes
+ * and CRC-32 of all its resources, computed in one pass over the resource tables. The CRC-32 of class folder resources
+ * is only computed if the sizes are the same on both sides, and if it's still not known on one side, the matched
+ * entries are compared by the names and sizes of their resources only.
+ *
+ * The resources are compared by a merge of the resource names of both indexes in name order, so the cost is linear in
+ * the size of the indexes once their names are sorted. A resource has changed when the version that is found first on
+ * the classpath has a different size or CRC-32.
+ *
+ */
+public final class ClasspathDiff {
+
+    private final List<ClasspathEntry> addedEntries = new ArrayList<>();
+    private final List<ClasspathEntry> removedEntries = new ArrayList<>();
+    private final List<EntryChange> changedEntries = new ArrayList<>();
+    private final List<ClasspathResource> addedResources = new ArrayList<>();
+    private final List<ClasspathResource> removedResources = new ArrayList<>();
+    private final List<ResourceChange> changedResources = new ArrayList<>();
+    private final List<ClasspathResource> newDuplicates = new ArrayList<>();
+    private final List<ClasspathResource> resolvedDuplicates = new ArrayList<>();
+    private final List<JarPair> newOverlaps = new ArrayList<>();
+    private final List<JarPair> resolvedOverlaps = new ArrayList<>();
+
+    private ClasspathDiff() {
+    }
+
+    /**
+     *
+     * A classpath entry found in both indexes, with different contents.
+     *
+     */
+    public static final class EntryChange {
+
+        private final ClasspathEntry oldEntry;
+        private final ClasspathEntry newEntry;
+
+        EntryChange(ClasspathEntry oldEntry, ClasspathEntry newEntry) {
+            this.oldEntry = oldEntry;
+            this.newEntry = newEntry;
+        }
+
+        public ClasspathEntry getOldEntry() {
+            return oldEntry;
+        }
+
+        public ClasspathEntry getNewEntry() {
+            return newEntry;
+        }
+    }
+
+    /**
+     *
+     * A resource found in both indexes, whose first version on the classpath has different contents.
+     *
+     */
+    public static final class ResourceChange {
+
+        private final ClasspathResource oldResource;
+        private final ClasspathResource newResource;
+
+        ResourceChange(ClasspathResource oldResource, ClasspathResource newResource) {
+            this.oldResource = oldResource;
+            this.newResource = newResource;
+        }
+
+        public String getName() {
+            return newResource.getName();
+        }
+
+        public ClasspathResource getOldResource() {
+            return oldResource;
+        }
+
+        public ClasspathResource getNewResource() {
+            return newResource;
+        }
+    }
+
+    /**
+     *
+     * @param oldIndex - the index of the previous classpath
+     * @param newIndex - the index of the next classpath
+     * @param excludeSameSizeDups - excludes the duplicates and overlaps for which all versions are identical copies
+     * @return - the differences from the old to the new index
+     */
+    public static ClasspathDiff compute(ClasspathIndex oldIndex, ClasspathIndex newIndex, boolean excludeSameSizeDups) {
+        ClasspathDiff diff = new ClasspathDiff();
+        ResourceTable oldTable = oldIndex.getResourceTable();
+        ResourceTable newTable = newIndex.getResourceTable();
+        String[][] keys = entryKeys(oldTable.getClasspathEntries(), newTable.getClasspathEntries());
+        String[] oldKeys = keys[0];
+        String[] newKeys = keys[1];
+        diff.compareEntries(oldTable, oldKeys, newTable, newKeys);
+        diff.compareResources(oldTable, newTable);
+        diff.compareDuplicates(oldIndex.findResourcesWithDuplicates(excludeSameSizeDups),
+                newIndex.findResourcesWithDuplicates(excludeSameSizeDups));
+        diff.compareOverlaps(oldIndex, oldKeys, newIndex, newKeys, excludeSameSizeDups);
+        return diff;
+    }
+
+    /**
+     *
+     * The key of an entry is the same in two WARs or two classpaths if it's the same jar or folder, wherever the WAR is:
+     * the class loader name and the path of the entry relative to the WAR, or to the classpath root - the last path
+     * elements that tell apart the entries with the same class loader and file name, in both indexes. The entries with
+     * the same key in the same classpath, such as the same url twice, are told apart by their position.
+     *
+     * @return the keys of the old entries and the keys of the new entries
+     */
+    private static String[][] entryKeys(List<ClasspathEntry> oldEntries, List<ClasspathEntry> newEntries) {
+        String[][] oldPaths = entryPaths(oldEntries);
+        String[][] newPaths = entryPaths(newEntries);
+
+        // the entries of both indexes with the same class loader and file name need the same number of path elements
+        Map<String, List<String[]>> oldByName = pathsByName(oldEntries, oldPaths);
+        Map<String, List<String[]>> newByName = pathsByName(newEntries, newPaths);
+        Map<String, Integer> pathLengths = new HashMap<>();
+        Set<String> names = new HashSet<>(oldByName.keySet());
+        names.addAll(newByName.keySet());
+        for (String name : names) {
+            List<String[]> old = oldByName.get(name);
+            List<String[]> current = newByName.get(name);
+            int maxLength = Math.max(maxLength(old), maxLength(current));
+            int length = 1;
+            while (length < maxLength && !(uniqueSuffixes(old, length) && uniqueSuffixes(current, length))) {
+                length++;
+            }
+            pathLengths.put(name, length);
+        }
+        return new String[][]{keys(oldEntries, oldPaths, pathLengths), keys(newEntries, newPaths, pathLengths)};
+    }
+
+    /**
+     *
+     * @return the path elements of each entry, relative to the WAR if the entry is in a WAR - nested in the WAR file or
+     * extracted in a WEB-INF folder - and absolute otherwise
+     */
+    private static String[][] entryPaths(List<ClasspathEntry> classpathEntries) {
+        String[][] paths = new String[classpathEntries.size()][];
+        for (int entryId = 0; entryId < paths.length; entryId++) {
+            String url = classpathEntries.get(entryId).getUrl();
+            if (url == null) {
+                paths[entryId] = new String[0];
+                continue;
+            }
+            String path = url.replace('\\', '/');
+            int nestedPath = path.lastIndexOf("!/");
+            int webInf = path.lastIndexOf("/WEB-INF/");
+            if (nestedPath >= 0) {
+                path = path.substring(nestedPath + 2);
+            } else if (webInf >= 0) {
+                path = path.substring(webInf + 1);
+            }
+            List<String> elements = new ArrayList<>();
+            for (String element : path.split("/")) {
+                if (!element.isEmpty()) {
+                    elements.add(element);
+                }
+            }
+            paths[entryId] = elements.toArray(new String[elements.size()]);
+        }
+        return paths;
+    }
+
+    private static Map<String, List<String[]>> pathsByName(List<ClasspathEntry> classpathEntries, String[][] paths) {
+        Map<String, List<String[]>> pathsByName = new HashMap<>();
+        for (int entryId = 0; entryId < paths.length; entryId++) {
+            String name = nameKey(classpathEntries.get(entryId), paths[entryId]);
+            List<String[]> namePaths = pathsByName.get(name);
+            if (namePaths == null) {
+                namePaths = new ArrayList<>();
+                pathsByName.put(name, namePaths);
+            }
+            namePaths.add(paths[entryId]);
+        }
+        return pathsByName;
+    }
+
+    private static String nameKey(ClasspathEntry classpathEntry, String[] path) {
+        String classLoaderName = classpathEntry.getClassLoaderName();
+        return (classLoaderName != null ? classLoaderName : "") + "|" + (path.length > 0 ? path[path.length - 1] : "");
+    }
+
+    private static int maxLength(List<String[]> paths) {
+        int maxLength = 0;
+        if (paths != null) {
+            for (String[] path : paths) {
+                maxLength = Math.max(maxLength, path.length);
+            }
+        }
+        return maxLength;
+    }
+
+    private static boolean uniqueSuffixes(List<String[]> paths, int length) {
+        if (paths == null || paths.size() == 1) {
+            return true;
+        }
+        Set<String> suffixes = new HashSet<>();
+        for (String[] path : paths) {
+            if (!suffixes.add(suffix(path, length))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String suffix(String[] path, int length) {
+        StringBuilder suffix = new StringBuilder();
+        for (int i = Math.max(0, path.length - length); i < path.length; i++) {
+            suffix.append('/').append(path[i]);
+        }
+        return suffix.toString();
+    }
+
+    private static String[] keys(List<ClasspathEntry> classpathEntries, String[][] paths, Map<String, Integer> pathLengths) {
+        String[] keys = new String[paths.length];
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (int entryId = 0; entryId < keys.length; entryId++) {
+            String name = nameKey(classpathEntries.get(entryId), paths[entryId]);
+            String classLoaderName = classpathEntries.get(entryId).getClassLoaderName();
+            String key = (classLoaderName != null ? classLoaderName : "") + "|" + suffix(paths[entryId], pathLengths.get(name));
+            Integer occurrence = occurrences.get(key);
+            occurrences.put(key, occurrence == null ? 1 : occurrence + 1);
+            keys[entryId] = occurrence == null ? key : key + "#" + occurrence;
+        }
+        return keys;
+    }
+
+    private void compareEntries(ResourceTable oldTable, String[] oldKeys, ResourceTable newTable, String[] newKeys) {
+        Map<String, Integer> oldEntryIds = new HashMap<>();
+        for (int entryId = 0; entryId < oldKeys.length; entryId++) {
+            oldEntryIds.put(oldKeys[entryId], entryId);
+        }
+        // the old entry id matched by each new entry, or -1
+        int[] matchedEntryIds = new int[newKeys.length];
+        Set<String> matchedKeys = new HashSet<>();
+        for (int entryId = 0; entryId < newKeys.length; entryId++) {
+            Integer oldEntryId = oldEntryIds.get(newKeys[entryId]);
+            matchedEntryIds[entryId] = oldEntryId != null ? oldEntryId : -1;
+            if (oldEntryId == null) {
+                addedEntries.add(newTable.getClasspathEntries().get(entryId));
+            } else {
+                matchedKeys.add(newKeys[entryId]);
+            }
+        }
+        for (int entryId = 0; entryId < oldKeys.length; entryId++) {
+            if (!matchedKeys.contains(oldKeys[entryId])) {
+                removedEntries.add(oldTable.getClasspathEntries().get(entryId));
+            }
+        }
+
+        EntryFingerprints oldFingerprints = new EntryFingerprints(oldTable, null);
+        EntryFingerprints newFingerprints = new EntryFingerprints(newTable, null);
+        boolean[] oldCrcsToCompute = new boolean[oldKeys.length];
+        boolean[] newCrcsToCompute = new boolean[newKeys.length];
+        boolean computeCrcs = false;
+        for (int entryId = 0; entryId < newKeys.length; entryId++) {
+            int oldEntryId = matchedEntryIds[entryId];
+            if (oldEntryId >= 0 && oldFingerprints.sizes[oldEntryId] == newFingerprints.sizes[entryId]
+                    && (oldFingerprints.crcUnknown[oldEntryId] || newFingerprints.crcUnknown[entryId])) {
+                oldCrcsToCompute[oldEntryId] = oldFingerprints.crcUnknown[oldEntryId];
+                newCrcsToCompute[entryId] = newFingerprints.crcUnknown[entryId];
+                computeCrcs = true;
+            }
+        }
+        if (computeCrcs) {
+            oldFingerprints = new EntryFingerprints(oldTable, oldCrcsToCompute);
+            newFingerprints = new EntryFingerprints(newTable, newCrcsToCompute);
+        }
+
+        for (int entryId = 0; entryId < newKeys.length; entryId++) {
+            int oldEntryId = matchedEntryIds[entryId];
+            if (oldEntryId >= 0 && !oldFingerprints.sameContents(oldEntryId, newFingerprints, entryId)) {
+                changedEntries.add(new EntryChange(oldTable.getClasspathEntries().get(oldEntryId),
+                        newTable.getClasspathEntries().get(entryId)));
+            }
+        }
+    }
+
+    /**
+     *
+     * The fingerprints of the entries of a table. The fingerprint of an entry is the sum of a hash of each of its
+     * resources, so it doesn't depend on the order in which the resources were found: one with the names and sizes
+     * only, and one with the CRC-32 too, only meaningful if the CRC-32 of all the resources of the entry is known.
+     *
+     */
+    private static final class EntryFingerprints {
+
+        private final long[] sizes;
+        private final long[] contents;
+        private final boolean[] crcUnknown;
+
+        /**
+         * @param computeCrcs - the entries whose unknown CRC-32 is computed, or null
+         */
+        EntryFingerprints(ResourceTable table, boolean[] computeCrcs) {
+            int entryCount = table.getClasspathEntries().size();
+            sizes = new long[entryCount];
+            contents = new long[entryCount];
+            crcUnknown = new boolean[entryCount];
+            for (int nameId = 0; nameId < table.getNameCount(); nameId++) {
+                long nameHash = table.getNameHash(nameId);
+                for (int i = 0; i < table.getNumberOfVersions(nameId); i++) {
+                    int entryId = table.getVersionEntryId(nameId, i);
+                    long crc = versionCrc(table, nameId, i, computeCrcs != null && computeCrcs[entryId]);
+                    long sizeHash = nameHash * 0x9E3779B97F4A7C15L + table.getVersionSize(nameId, i) * 31;
+                    sizes[entryId] += mix(sizeHash);
+                    contents[entryId] += mix(sizeHash + crc);
+                    crcUnknown[entryId] |= crc == -1;
+                }
+            }
+        }
+
+        boolean sameContents(int entryId, EntryFingerprints other, int otherEntryId) {
+            if (crcUnknown[entryId] || other.crcUnknown[otherEntryId]) {
+                return sizes[entryId] == other.sizes[otherEntryId];
+            }
+            return contents[entryId] == other.contents[otherEntryId];
+        }
+
+        /**
+         * finalizer of MurmurHash3, so that close values give unrelated hashes
+         */
+        private static long mix(long hash) {
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+
+    /**
+     *
+     * @param compute - true to compute the CRC-32 of a class folder or module resource if it's not known
+     * @return the CRC-32 of a version of a resource, or -1 if not known
+     */
+    private static long versionCrc(ResourceTable table, int nameId, int index, boolean compute) {
+        return compute ? table.computeVersionCrc(nameId, index) : table.getVersionCrc(nameId, index);
+    }
+
+    private void compareResources(ResourceTable oldTable, ResourceTable newTable) {
+        int[] oldNameIds = oldTable.getNameIdsInNameOrder();
+        int[] newNameIds = newTable.getNameIdsInNameOrder();
+        int oldPosition = 0;
+        int newPosition = 0;
+        while (oldPosition < oldNameIds.length || newPosition < newNameIds.length) {
+            int comparison;
+            if (oldPosition == oldNameIds.length) {
+                comparison = 1;
+            } else if (newPosition == newNameIds.length) {
+                comparison = -1;
+            } else {
+                comparison = oldTable.compareNames(oldNameIds[oldPosition], newTable, newNameIds[newPosition]);
+            }
+
+            if (comparison < 0) {
+                removedResources.add(oldTable.getResource(oldNameIds[oldPosition++]));
+            } else if (comparison > 0) {
+                addedResources.add(newTable.getResource(newNameIds[newPosition++]));
+            } else {
+                int oldNameId = oldNameIds[oldPosition++];
+                int newNameId = newNameIds[newPosition++];
+                if (!sameFirstVersion(oldTable, oldNameId, newTable, newNameId)) {
+                    changedResources.add(new ResourceChange(oldTable.getResource(oldNameId), newTable.getResource(newNameId)));
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * Compares the sizes first, the CRC-32 of class folder resources is only computed if the sizes are equal, as for the
+     * entry fingerprints.
+     *
+     */
+    private static boolean sameFirstVersion(ResourceTable oldTable, int oldNameId, ResourceTable newTable, int newNameId) {
+        if (oldTable.getVersionSize(oldNameId, 0) != newTable.getVersionSize(newNameId, 0)) {
+            return false;
+        }
+        long oldCrc = versionCrc(oldTable, oldNameId, 0, true);
+        long newCrc = versionCrc(newTable, newNameId, 0, true);
+        // if a CRC-32 is still not known, the sizes only are compared on both sides
+        return oldCrc == -1 || newCrc == -1 || oldCrc == newCrc;
+    }
+
+    private void compareDuplicates(List<ClasspathResource> oldDuplicates, List<ClasspathResource> currentDuplicates) {
+        Set<String> oldNames = new HashSet<>();
+        for (ClasspathResource resource : oldDuplicates) {
+            oldNames.add(resource.getName());
+        }
+        Set<String> newNames = new HashSet<>();
+        for (ClasspathResource resource : currentDuplicates) {
+            newNames.add(resource.getName());
+            if (!oldNames.contains(resource.getName())) {
+                newDuplicates.add(resource);
+            }
+        }
+        for (ClasspathResource resource : oldDuplicates) {
+            if (!newNames.contains(resource.getName())) {
+                resolvedDuplicates.add(resource);
+            }
+        }
+    }
+
+    private void compareOverlaps(ClasspathIndex oldIndex, String[] oldKeys, ClasspathIndex newIndex, String[] newKeys,
+            boolean excludeSameSizeDups) {
+        Map<String, JarPair> oldOverlaps = overlapsByKey(oldIndex, oldKeys, excludeSameSizeDups);
+        Map<String, JarPair> currentOverlaps = overlapsByKey(newIndex, newKeys, excludeSameSizeDups);
+        for (Map.Entry<String, JarPair> overlap : currentOverlaps.entrySet()) {
+            if (!oldOverlaps.containsKey(overlap.getKey())) {
+                newOverlaps.add(overlap.getValue());
+            }
+        }
+        for (Map.Entry<String, JarPair> overlap : oldOverlaps.entrySet()) {
+            if (!currentOverlaps.containsKey(overlap.getKey())) {
+                resolvedOverlaps.add(overlap.getValue());
+            }
+        }
+        JarPairComparator comparator = new JarPairComparator();
+        Collections.sort(newOverlaps, comparator);
+        Collections.sort(resolvedOverlaps, comparator);
+    }
+
+    private static Map<String, JarPair> overlapsByKey(ClasspathIndex index, String[] keys, boolean excludeSameSizeDups) {
+        Map<ClasspathEntry, String> keysByEntry = new HashMap<>();
+        List<ClasspathEntry> classpathEntries = index.getResourceTable().getClasspathEntries();
+        for (int entryId = 0; entryId < keys.length; entryId++) {
+            keysByEntry.put(classpathEntries.get(entryId), keys[entryId]);
+        }
+        Map<String, JarPair> overlaps = new HashMap<>();
+        for (JarPair jarPair : index.findOverlappingJars(excludeSameSizeDups)) {
+            String key1 = keysByEntry.get(jarPair.getJar1());
+            String key2 = keysByEntry.get(jarPair.getJar2());
+            // the pairs are not ordered
+            overlaps.put(key1.compareTo(key2) <= 0 ? key1 + "\n" + key2 : key2 + "\n" + key1, jarPair);
+        }
+        return overlaps;
+    }
+
+    /**
+     *
+     * The pairs with the most overlapping classes first, as in the overlap reports.
+     *
+     */
+    private static final class JarPairComparator implements Comparator<JarPair> {
+
+        @Override
+        public int compare(JarPair pair1, JarPair pair2) {
+            return pair2.getDupClassesTotal().compareTo(pair1.getDupClassesTotal());
+        }
+    }
+
+    /**
+     * @return the entries of the new index that are not in the old index, in classpath order
+     */
+    public List<ClasspathEntry> getAddedEntries() {
+        return Collections.unmodifiableList(addedEntries);
+    }
+
+    /**
+     * @return the entries of the old index that are not in the new index, in classpath order
+     */
+    public List<ClasspathEntry> getRemovedEntries() {
+        return Collections.unmodifiableList(removedEntries);
+    }
+
+    /**
+     * @return the entries found in both indexes whose contents changed, in the classpath order of the new index
+     */
+    public List<EntryChange> getChangedEntries() {
+        return Collections.unmodifiableList(changedEntries);
+    }
+
+    /**
+     * @return the resources of the new index that are not in the old index, in name order
+     */
+    public List<ClasspathResource> getAddedResources() {
+        return Collections.unmodifiableList(addedResources);
+    }
+
+    /**
+     * @return the resources of the old index that are not in the new index, in name order
+     */
+    public List<ClasspathResource> getRemovedResources() {
+        return Collections.unmodifiableList(removedResources);
+    }
+
+    /**
+     * @return the resources found in both indexes whose first version changed, in name order
+     */
+    public List<ResourceChange> getChangedResources() {
+        return Collections.unmodifiableList(changedResources);
+    }
+
+    /**
+     * @return the resources with duplicates in the new index, that had no duplicates in the old index
+     */
+    public List<ClasspathResource> getNewDuplicates() {
+        return Collections.unmodifiableList(newDuplicates);
+    }
+
+    /**
+     * @return the resources with duplicates in the old index, that have no duplicates in the new index
+     */
+    public List<ClasspathResource> getResolvedDuplicates() {
+        return Collections.unmodifiableList(resolvedDuplicates);
+    }
+
+    /**
+     * @return the overlapping jars of the new index that did not overlap in the old index
+     */
+    public List<JarPair> getNewOverlaps() {
+        return Collections.unmodifiableList(newOverlaps);
+    }
+
+    /**
+     * @return the overlapping jars of the old index that don't overlap in the new index
+     */
+    public List<JarPair> getResolvedOverlaps() {
+        return Collections.unmodifiableList(resolvedOverlaps);
+    }
+
+    /**
+     * @return true if the indexes have the same entries and resources, with the same contents
+     */
+    public boolean isEmpty() {
+        return addedEntries.isEmpty() && removedEntries.isEmpty() && changedEntries.isEmpty() && addedResources.isEmpty()
+                && removedResources.isEmpty() && changedResources.isEmpty();
+    }
+}
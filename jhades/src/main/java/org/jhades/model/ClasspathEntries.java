@@ -1,13 +1,30 @@
 package org.jhades.model;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.jhades.service.ClasspathScannerListener;
+import org.jhades.service.DuplicateResourceListener;
+import org.jhades.service.NestedJarCache;
 import org.jhades.utils.StdOutLogger;
+import org.jhades.utils.ZipCentralDirectory;
 
 /**
  *
@@ -17,6 +34,9 @@ import org.jhades.utils.StdOutLogger;
  */
 public final class ClasspathEntries {
 
+    private static final String WAR_CLASSES = "WEB-INF/classes/";
+    private static final String WAR_LIB = "WEB-INF/lib/";
+
     private ClasspathEntries() {
         throw new UnsupportedOperationException("Utility classes cannot be instantiated.");
     }
@@ -29,6 +49,7 @@ public final class ClasspathEntries {
      *
      * @param classpathEntries - the list of classpath entries to be scanned
      * @return - the list of classpath resources found by scanning the provided classpath entries.
+     * @throws CancellationException if the calling thread is interrupted, the interrupt status is kept
      */
     public static List<ClasspathResource> findClasspathResourcesInEntries(List<ClasspathEntry> classpathEntries,
             StdOutLogger logger, ClasspathScannerListener listener) {
@@ -41,6 +62,7 @@ public final class ClasspathEntries {
         try {
 
             for (ClasspathEntry entry : classpathEntries) {
+                checkInterrupted();
                 if (listener != null) {
                     listener.onEntryScanStart(entry);
                 }
@@ -58,10 +80,449 @@ public final class ClasspathEntries {
                     resourcesPerNameMap.get(resourceName).getResourceFileVersions().add(resourceVersion);
                 }
             }
+        } catch (InterruptedIOException ex) {
+            throw scanCancelled(ex);
         } catch (URISyntaxException | IOException ex) {
             logger.error(ex.getMessage(), ex);
         }
 
         return new ArrayList<>(resourcesPerNameMap.values());
     }
+
+    /**
+     *
+     * Scans for classpath resources in a list of classpath entries, scanning several entries concurrently.
+     *
+     * Each fork-join task scans a contiguous slice of the classpath and groups its own results per resource name, the
+     * partial groupings are then merged. Because slices are merged left to right, the versions of each resource are
+     * kept in classpath order, exactly as in the sequential scan.
+     *
+     * The listener callbacks are invoked from the pool worker threads, so the listener must be thread-safe. The caller
+     * thread waits for the scan: if it's interrupted, the tasks stop before their next entry.
+     *
+     * @param classpathEntries - the list of classpath entries to be scanned
+     * @param scanPool - the pool used for scanning, if null the entries are scanned sequentially on the caller thread
+     * @return - the list of classpath resources found by scanning the provided classpath entries.
+     * @throws CancellationException if the calling thread is interrupted, the interrupt status is kept
+     */
+    public static List<ClasspathResource> findClasspathResourcesInEntries(List<ClasspathEntry> classpathEntries,
+            StdOutLogger logger, ClasspathScannerListener listener, ForkJoinPool scanPool) {
+
+        if (scanPool == null) {
+            return findClasspathResourcesInEntries(classpathEntries, logger, listener);
+        }
+
+        checkInterrupted();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        ForkJoinTask<Map<String, ClasspathResource>> scan = scanPool.submit(
+                new ScanEntriesTask(classpathEntries, 0, classpathEntries.size(), logger, listener, cancelled));
+        Map<String, ClasspathResource> resourcesPerNameMap;
+        try {
+            resourcesPerNameMap = scan.get();
+        } catch (InterruptedException ex) {
+            // cancelling a fork-join task does not interrupt it, the flag stops the tasks that are running
+            cancelled.set(true);
+            scan.cancel(true);
+            throw scanCancelled(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            } else if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+
+        return new ArrayList<>(resourcesPerNameMap.values());
+    }
+
+    /**
+     *
+     * Scans a list of classpath entries keeping only the resources that have more than one version.
+     *
+     * The resource versions are streamed out of each entry instead of being collected first: a resource found only once
+     * is only remembered by its interned name and the fields of its version, and a ClasspathResource is only created when
+     * a second version shows up, at which point the duplicate listener is notified. The entries are not kept loaded after the scan.
+     *
+     * @param classpathEntries - the list of classpath entries to be scanned
+     * @param listener - the scan listener, can be null
+     * @param duplicateListener - notified of each duplicate resource version as soon as it's found, can be null
+     * @param scanPool - the pool used for scanning ahead, if null the entries are scanned sequentially
+     * @return - the resources with more than one version, in the order in which they became duplicates
+     * @throws CancellationException if the calling thread is interrupted, the interrupt status is kept
+     */
+    public static List<ClasspathResource> findDuplicateResourcesInEntries(List<ClasspathEntry> classpathEntries,
+            StdOutLogger logger, ClasspathScannerListener listener, DuplicateResourceListener duplicateListener,
+            ForkJoinPool scanPool) {
+
+        DuplicatesCollector collector = new DuplicatesCollector(duplicateListener);
+        visitResourceVersionsInEntries(classpathEntries, logger, listener, collector, scanPool);
+        return collector.duplicates;
+    }
+
+    /**
+     *
+     * Streams the resource versions of a list of classpath entries to a visitor, in classpath order, without keeping
+     * them loaded in the entries.
+     *
+     * With a scan pool, a bounded window of entries is scanned ahead concurrently while the results are consumed in
+     * classpath order on the caller thread, so the visitor sees the versions in the same order as in a sequential scan
+     * and doesn't need to be thread-safe.
+     *
+     * If the calling thread is interrupted, the scan stops and throws a CancellationException, so that the partial
+     * results of the visitor are not mistaken for the whole classpath. The entries scanned ahead are cancelled too.
+     *
+     * @param classpathEntries - the list of classpath entries to be scanned
+     * @param listener - the scan listener, can be null
+     * @param visitor - receives the resource versions, always on the caller thread
+     * @param scanPool - the pool used for scanning ahead, if null the entries are scanned sequentially
+     * @throws CancellationException if the calling thread is interrupted, the interrupt status is kept
+     */
+    public static void visitResourceVersionsInEntries(List<ClasspathEntry> classpathEntries, StdOutLogger logger,
+            ClasspathScannerListener listener, ClasspathEntry.ResourceVersionVisitor visitor, ForkJoinPool scanPool) {
+
+        if (scanPool == null) {
+            for (ClasspathEntry entry : classpathEntries) {
+                checkInterrupted();
+                if (listener != null) {
+                    listener.onEntryScanStart(entry);
+                }
+                try {
+                    entry.visitResourceVersions(visitor);
+                } catch (InterruptedIOException ex) {
+                    throw scanCancelled(ex);
+                } catch (URISyntaxException | IOException ex) {
+                    logger.error(ex.getMessage(), ex);
+                }
+                if (listener != null) {
+                    listener.onEntryScanEnd(entry);
+                }
+            }
+            checkInterrupted();
+            return;
+        }
+
+        int window = scanPool.getParallelism() * 2;
+        Deque<Future<List<ClasspathResourceVersion>>> pendingScans = new ArrayDeque<>();
+        int next = 0;
+        try {
+            while (next < classpathEntries.size() || !pendingScans.isEmpty()) {
+                while (next < classpathEntries.size() && pendingScans.size() < window) {
+                    pendingScans.add(scanPool.submit(new EntryScan(classpathEntries.get(next++), logger, listener)));
+                }
+                try {
+                    for (ClasspathResourceVersion resourceVersion : pendingScans.poll().get()) {
+                        visitor.visitResourceVersion(resourceVersion);
+                    }
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof CancellationException) {
+                        throw (CancellationException) ex.getCause();
+                    }
+                    logger.error(ex.getMessage(), ex);
+                }
+            }
+            checkInterrupted();
+        } catch (InterruptedException ex) {
+            throw scanCancelled(ex);
+        } finally {
+            // empty unless the scan failed, nothing keeps running once it's over
+            for (Future<List<ClasspathResourceVersion>> pendingScan : pendingScans) {
+                pendingScan.cancel(true);
+            }
+        }
+    }
+
+    private static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Classpath scan interrupted");
+        }
+    }
+
+    /**
+     *
+     * @return the exception that stops an interrupted scan, the interrupt status of the calling thread is restored
+     */
+    private static CancellationException scanCancelled(Exception cause) {
+        Thread.currentThread().interrupt();
+        return entryScanCancelled(cause);
+    }
+
+    /**
+     *
+     * The exception that stops the scan of an entry in a pool worker: the worker is not interrupted again, the pool
+     * reuses it for other tasks. The caller thread restores its own interrupt status.
+     *
+     */
+    private static CancellationException entryScanCancelled(Exception cause) {
+        CancellationException cancelled = new CancellationException("Classpath scan interrupted");
+        cancelled.initCause(cause);
+        return cancelled;
+    }
+
+    /**
+     *
+     * Groups streamed resource versions per name, creating resources only for names seen more than once.
+     *
+     * The names are interned as UTF-8 bytes by a resource table builder, whose versions are not used. The first version
+     * of each name is kept as its entry id, size, CRC-32 and bytecode version, and only becomes a ClasspathResourceVersion
+     * if a second version of the name shows up: most resources have a single version, that costs no object.
+     *
+     */
+    private static class DuplicatesCollector implements ClasspathEntry.ResourceVersionVisitor {
+
+        private final ResourceTable.Builder names = new ResourceTable.Builder();
+        private final List<ClasspathEntry> entries = new ArrayList<>();
+        private ClasspathEntry lastEntry;
+        private int[] firstEntryIds = new int[1024];
+        private long[] firstSizes = new long[1024];
+        private long[] firstCrcs = new long[1024];
+        private short[] firstClassMajorVersions = new short[1024];
+        private final Map<Integer, ClasspathResource> duplicatesByNameId = new HashMap<>();
+        private final List<ClasspathResource> duplicates = new ArrayList<>();
+        private final DuplicateResourceListener duplicateListener;
+
+        DuplicatesCollector(DuplicateResourceListener duplicateListener) {
+            this.duplicateListener = duplicateListener;
+        }
+
+        @Override
+        public void visitResourceVersion(ClasspathResourceVersion resourceVersion) {
+            String resourceName = resourceVersion.getResourceName();
+            byte[] name = resourceName.getBytes(StandardCharsets.UTF_8);
+            int nameCount = names.getNameCount();
+            int nameId = names.addName(name, name.length);
+            if (nameId == nameCount) {
+                addFirstVersion(nameId, resourceVersion);
+                return;
+            }
+
+            ClasspathResource duplicate = duplicatesByNameId.get(nameId);
+            if (duplicate == null) {
+                ClasspathResourceVersion firstVersion = new ClasspathResourceVersion(entries.get(firstEntryIds[nameId]),
+                        resourceName, firstSizes[nameId], firstCrcs[nameId], firstClassMajorVersions[nameId]);
+                duplicate = new ClasspathResource(resourceName, firstVersion);
+                duplicatesByNameId.put(nameId, duplicate);
+                duplicates.add(duplicate);
+            }
+            duplicate.getResourceFileVersions().add(resourceVersion);
+            if (duplicateListener != null) {
+                duplicateListener.onDuplicateResourceVersion(duplicate, resourceVersion);
+            }
+        }
+
+        private void addFirstVersion(int nameId, ClasspathResourceVersion resourceVersion) {
+            // the versions of an entry are visited one after the other
+            if (resourceVersion.getClasspathEntry() != lastEntry) {
+                lastEntry = resourceVersion.getClasspathEntry();
+                entries.add(lastEntry);
+            }
+            if (nameId == firstEntryIds.length) {
+                int capacity = nameId * 2;
+                firstEntryIds = Arrays.copyOf(firstEntryIds, capacity);
+                firstSizes = Arrays.copyOf(firstSizes, capacity);
+                firstCrcs = Arrays.copyOf(firstCrcs, capacity);
+                firstClassMajorVersions = Arrays.copyOf(firstClassMajorVersions, capacity);
+            }
+            firstEntryIds[nameId] = entries.size() - 1;
+            firstSizes[nameId] = resourceVersion.getFileSize();
+            firstCrcs[nameId] = resourceVersion.getKnownCrc();
+            firstClassMajorVersions[nameId] = (short) resourceVersion.getClassMajorVersion();
+        }
+    }
+
+    /**
+     *
+     * Scans one classpath entry ahead of the consumer, without keeping the result in the entry.
+     *
+     */
+    private static class EntryScan implements Callable<List<ClasspathResourceVersion>> {
+
+        private final ClasspathEntry entry;
+        private final StdOutLogger logger;
+        private final ClasspathScannerListener listener;
+
+        EntryScan(ClasspathEntry entry, StdOutLogger logger, ClasspathScannerListener listener) {
+            this.entry = entry;
+            this.logger = logger;
+            this.listener = listener;
+        }
+
+        @Override
+        public List<ClasspathResourceVersion> call() {
+            final List<ClasspathResourceVersion> resourceVersions = new ArrayList<>();
+            if (listener != null) {
+                listener.onEntryScanStart(entry);
+            }
+            try {
+                entry.visitResourceVersions(new ClasspathEntry.ResourceVersionVisitor() {
+                    @Override
+                    public void visitResourceVersion(ClasspathResourceVersion resourceVersion) {
+                        resourceVersions.add(resourceVersion);
+                    }
+                });
+            } catch (InterruptedIOException ex) {
+                throw entryScanCancelled(ex);
+            } catch (URISyntaxException | IOException ex) {
+                logger.error(ex.getMessage(), ex);
+            }
+            if (listener != null) {
+                listener.onEntryScanEnd(entry);
+            }
+            return resourceVersions;
+        }
+    }
+
+    /**
+     *
+     * Lists the classpath entries of a WAR without extracting it: WEB-INF/classes and the jars of WEB-INF/lib become
+     * entries nested in the WAR, such as jar:file:/app.war!/WEB-INF/lib/jhades.jar, that are scanned straight from the WAR.
+     *
+     * @param warFile - the WAR file
+     * @return - the classpath entries of the WAR, the classes folder first and then the jars in WAR order
+     * @throws IOException if the WAR cannot be read
+     */
+    public static List<ClasspathEntry> findWarClasspathEntries(Path warFile) throws IOException {
+        return findWarClasspathEntries(warFile, null);
+    }
+
+    /**
+     *
+     * Lists the classpath entries of a WAR without extracting it, see findWarClasspathEntries(Path). The jars of the WAR
+     * are listed through a nested jar cache, so that the jars already listed in another WAR of the same scan are not read
+     * again.
+     *
+     * @param warFile - the WAR file
+     * @param jarCache - the nested jar cache of the scan, or null
+     * @return - the classpath entries of the WAR, the classes folder first and then the jars in WAR order
+     * @throws IOException if the WAR cannot be read
+     */
+    public static List<ClasspathEntry> findWarClasspathEntries(Path warFile, final NestedJarCache jarCache) throws IOException {
+        final String warUrl = "jar:" + warFile.toUri().toString() + "!/";
+        final List<ClasspathEntry> jars = new ArrayList<>();
+        final boolean[] hasClasses = new boolean[1];
+
+        try (ZipCentralDirectory war = ZipCentralDirectory.open(warFile)) {
+            war.accept(new ZipCentralDirectory.EntryVisitor() {
+                @Override
+                public void visitEntry(ZipCentralDirectory.Entry entry) {
+                    String name = entry.getName();
+                    if (name.startsWith(WAR_CLASSES) && !entry.isDirectory()) {
+                        hasClasses[0] = true;
+                    } else if (name.startsWith(WAR_LIB) && name.endsWith(".jar") && name.indexOf('/', WAR_LIB.length()) < 0) {
+                        jars.add(new ClasspathEntry(null, warUrl + name, jarCache));
+                    }
+                }
+            });
+        }
+
+        List<ClasspathEntry> classpathEntries = new ArrayList<>();
+        if (hasClasses[0]) {
+            classpathEntries.add(new ClasspathEntry(null, warUrl + WAR_CLASSES));
+        }
+        classpathEntries.addAll(jars);
+        return classpathEntries;
+    }
+
+    /**
+     *
+     * Merges the resources found on a classpath slice into the resources found on the slice that precedes it.
+     *
+     * The smaller map is merged into the bigger one, the versions of the preceding slice are always placed first.
+     *
+     */
+    private static Map<String, ClasspathResource> mergeResources(Map<String, ClasspathResource> preceding,
+            Map<String, ClasspathResource> following) {
+
+        if (preceding.size() >= following.size()) {
+            for (ClasspathResource resource : following.values()) {
+                ClasspathResource existing = preceding.get(resource.getName());
+                if (existing == null) {
+                    preceding.put(resource.getName(), resource);
+                } else {
+                    existing.getResourceFileVersions().addAll(resource.getResourceFileVersions());
+                }
+            }
+            return preceding;
+        } else {
+            for (ClasspathResource resource : preceding.values()) {
+                ClasspathResource existing = following.get(resource.getName());
+                if (existing == null) {
+                    following.put(resource.getName(), resource);
+                } else {
+                    existing.getResourceFileVersions().addAll(0, resource.getResourceFileVersions());
+                }
+            }
+            return following;
+        }
+    }
+
+    /**
+     *
+     * Fork-join task that scans a slice of the classpath, one classpath entry per leaf task.
+     *
+     */
+    private static class ScanEntriesTask extends RecursiveTask<Map<String, ClasspathResource>> {
+
+        private final List<ClasspathEntry> classpathEntries;
+        private final int from;
+        private final int to;
+        private final StdOutLogger logger;
+        private final ClasspathScannerListener listener;
+        private final AtomicBoolean cancelled;
+
+        ScanEntriesTask(List<ClasspathEntry> classpathEntries, int from, int to, StdOutLogger logger,
+                ClasspathScannerListener listener, AtomicBoolean cancelled) {
+            this.classpathEntries = classpathEntries;
+            this.from = from;
+            this.to = to;
+            this.logger = logger;
+            this.listener = listener;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected Map<String, ClasspathResource> compute() {
+            if (to - from <= 1) {
+                return scanSlice();
+            }
+            int middle = (from + to) >>> 1;
+            ScanEntriesTask preceding = new ScanEntriesTask(classpathEntries, from, middle, logger, listener, cancelled);
+            ScanEntriesTask following = new ScanEntriesTask(classpathEntries, middle, to, logger, listener, cancelled);
+            following.fork();
+            Map<String, ClasspathResource> precedingResources = preceding.compute();
+            return mergeResources(precedingResources, following.join());
+        }
+
+        private Map<String, ClasspathResource> scanSlice() {
+            Map<String, ClasspathResource> resourcesPerNameMap = new HashMap<>();
+            for (int i = from; i < to; i++) {
+                if (cancelled.get()) {
+                    throw new CancellationException("Classpath scan interrupted");
+                }
+                ClasspathEntry entry = classpathEntries.get(i);
+                if (listener != null) {
+                    listener.onEntryScanStart(entry);
+                }
+                try {
+                    for (ClasspathResourceVersion resourceVersion : entry.getResourceVersions()) {
+                        String resourceName = resourceVersion.getResourceName();
+                        ClasspathResource resource = resourcesPerNameMap.get(resourceName);
+                        if (resource == null) {
+                            resourcesPerNameMap.put(resourceName, new ClasspathResource(resourceName, resourceVersion));
+                        } else {
+                            resource.getResourceFileVersions().add(resourceVersion);
+                        }
+                    }
+                } catch (InterruptedIOException ex) {
+                    throw entryScanCancelled(ex);
+                } catch (URISyntaxException | IOException ex) {
+                    logger.error(ex.getMessage(), ex);
+                }
+                if (listener != null) {
+                    listener.onEntryScanEnd(entry);
+                }
+            }
+            return resourcesPerNameMap;
+        }
+    }
 }
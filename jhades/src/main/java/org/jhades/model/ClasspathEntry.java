@@ -1,11 +1,15 @@
 package org.jhades.model;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.FileVisitResult;
 import static java.nio.file.FileVisitResult.CONTINUE;
 import java.nio.file.Files;
@@ -14,13 +18,18 @@ import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Objects;
 import java.util.jar.Attributes;
 import java.util.jar.JarInputStream;
 import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import org.jhades.service.JdkImageIndex;
+import org.jhades.service.NestedJarCache;
+import org.jhades.service.ScanCache;
+import org.jhades.utils.ClassFiles;
 import org.jhades.utils.StdOutLogger;
+import org.jhades.utils.ZipCentralDirectory;
 
 /**
  *
@@ -30,14 +39,28 @@ import org.jhades.utils.StdOutLogger;
 public class ClasspathEntry {
 
     private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private static final String MANIFEST_NAME = "META-INF/MANIFEST.MF";
     private final ClazzLoader classLoader;
     private final String url;
+    private final NestedJarCache jarCache;
     private List<ClasspathResourceVersion> resourceVersions = new ArrayList<>();
     private boolean lazyLoadDone = false;
+    private volatile EntryScanStats lastScanStats;
 
     public ClasspathEntry(ClazzLoader classLoader, String url) {
+        this(classLoader, url, null);
+    }
+
+    /**
+     *
+     * @param classLoader - the class loader of the entry
+     * @param url - the url of the entry
+     * @param jarCache - the cache of the jars nested in a zip, used if the entry is a nested jar, or null
+     */
+    public ClasspathEntry(ClazzLoader classLoader, String url, NestedJarCache jarCache) {
         this.classLoader = classLoader;
         this.url = url;
+        this.jarCache = jarCache;
     }
 
     public ClazzLoader getClassLoader() {
@@ -83,45 +106,218 @@ public class ClasspathEntry {
         return url != null && url.endsWith("/");
     }
 
+    /**
+     *
+     * @return true if the entry is a module of the JDK image of Java 9 and later JVMs, such as jrt:/java.base
+     */
+    public boolean isModule() {
+        return JdkImageIndex.isModuleUrl(url);
+    }
+
+    /**
+     *
+     * @return true if the entry is inside a zip file, such as jar:file:/app.war!/WEB-INF/lib/jhades.jar for a jar inside
+     * a WAR or jar:file:/app.war!/WEB-INF/classes/ for a class folder inside a WAR
+     */
+    public boolean isNested() {
+        return url != null && url.startsWith("jar:") && url.contains("!/");
+    }
+
     public String getClassLoaderName() {
         return classLoader != null ? classLoader.getName() : null;
     }
 
+    /**
+     *
+     * Receives the resource versions of a classpath entry, one at a time, while the entry is being scanned.
+     *
+     */
+    public interface ResourceVersionVisitor {
+
+        void visitResourceVersion(ClasspathResourceVersion resourceVersion);
+    }
+
     /**
      * The contents of a jar are only loaded if accessed the first time.
      *
+     * Entries can be scanned from several threads, the lazy loading is done only once.
+     *
      */
-    public List<ClasspathResourceVersion> getResourceVersions() throws URISyntaxException, IOException {
+    public synchronized List<ClasspathResourceVersion> getResourceVersions() throws URISyntaxException, IOException {
         if (!lazyLoadDone) {
-            if (isClassFolder()) {
-                logger.debug("\nScanning class folder: " + getUrl());
+            // only kept once the scan is complete, an interrupted scan is done again next time
+            final List<ClasspathResourceVersion> scannedVersions = new ArrayList<>();
+            scan(new ResourceVersionVisitor() {
+                @Override
+                public void visitResourceVersion(ClasspathResourceVersion resourceVersion) {
+                    scannedVersions.add(resourceVersion);
+                }
+            });
+            resourceVersions = scannedVersions;
+            lazyLoadDone = true;
+        }
+
+        return resourceVersions;
+    }
+
+    /**
+     *
+     * Passes the resource versions of this entry to a visitor, without keeping them in the entry.
+     *
+     * If the entry was already loaded, the loaded versions are visited, otherwise the entry is scanned again and the
+     * visitor receives each version as soon as it's found.
+     *
+     * @param visitor - the visitor of the resource versions
+     */
+    public void visitResourceVersions(ResourceVersionVisitor visitor) throws URISyntaxException, IOException {
+        synchronized (this) {
+            if (lazyLoadDone) {
+                long start = System.nanoTime();
+                EntryScanStats stats = new EntryScanStats(this);
+                for (ClasspathResourceVersion resourceVersion : resourceVersions) {
+                    visitor.visitResourceVersion(resourceVersion);
+                    stats.maxClassMajorVersion = Math.max(stats.maxClassMajorVersion, resourceVersion.getClassMajorVersion());
+                }
+                stats.cacheStatus = EntryScanStats.CacheStatus.IN_MEMORY;
+                stats.resourceCount = resourceVersions.size();
+                stats.wallTimeNanos = System.nanoTime() - start;
+                lastScanStats = stats;
+                return;
+            }
+        }
+        scan(visitor);
+    }
+
+    /**
+     *
+     * The statistics are replaced each time the entry is scanned or visited, a scan listener can read them from its
+     * onEntryScanEnd callback.
+     *
+     * @return the statistics of the last scan of this entry, or null if it was never scanned
+     */
+    public EntryScanStats getLastScanStats() {
+        return lastScanStats;
+    }
 
+    private void scan(final ResourceVersionVisitor visitor) throws URISyntaxException, IOException {
+        final EntryScanStats stats = new EntryScanStats(this);
+        ResourceVersionVisitor countingVisitor = new ResourceVersionVisitor() {
+            @Override
+            public void visitResourceVersion(ClasspathResourceVersion resourceVersion) {
+                stats.resourceCount++;
+                if (resourceVersion.getClassMajorVersion() > stats.maxClassMajorVersion) {
+                    stats.maxClassMajorVersion = resourceVersion.getClassMajorVersion();
+                }
+                visitor.visitResourceVersion(resourceVersion);
+            }
+        };
+        long start = System.nanoTime();
+        try {
+            scan(countingVisitor, stats);
+        } finally {
+            stats.wallTimeNanos = System.nanoTime() - start;
+            lastScanStats = stats;
+        }
+    }
+
+    private void scan(ResourceVersionVisitor visitor, EntryScanStats stats) throws URISyntaxException, IOException {
+        if (isModule()) {
+            logger.debug("\nScanning JDK module: " + getUrl());
+
+            try {
+                boolean hit = JdkImageIndex.getInstance().visitModule(this, visitor);
+                stats.cacheStatus = hit ? EntryScanStats.CacheStatus.HIT : EntryScanStats.CacheStatus.MISS;
+            } catch (IOException exc) {
+                rethrowIfInterrupted(exc);
+                logger.debug("Could not scan JDK module: " + getUrl() + " - reason:" + exc.getMessage());
+            }
+
+        } else if (isNested()) {
+            logger.debug("\nScanning nested entry: " + getUrl());
+
+            try {
+                scanNestedEntry(visitor, stats);
+            } catch (Exception exc) {
+                rethrowIfInterrupted(exc);
+                logger.debug("Could not scan nested entry: " + getUrl() + " - reason:" + exc.getMessage());
+            }
+
+        } else if (isClassFolder()) {
+            logger.debug("\nScanning class folder: " + getUrl());
+
+            try {
                 URI uri = new URI(getUrl());
                 Path start = Paths.get(uri);
 
-                scanClasspathEntry(start);
-
-            } else if (isJar()) {
-                logger.debug("\nScanning jar: " + getUrl());
+                scanClasspathEntry(start, visitor);
+            } catch (IllegalArgumentException | FileSystemNotFoundException exc) {
+                logger.debug("Could not scan class folder: " + getUrl() + " - reason:" + exc.getMessage());
+            }
 
-                URI uri = new URI("jar:" + getUrl());
+        } else if (isJar()) {
+            logger.debug("\nScanning jar: " + getUrl());
 
-                try (FileSystem jarFS = FileSystems.newFileSystem(uri, new HashMap<String, String>())) {
-                    Path zipInJarPath = jarFS.getPath("/");
+            try {
+                URI uri = new URI(getUrl());
+                scanJar(Paths.get(uri), visitor, stats);
+            } catch (Exception exc) {
+                rethrowIfInterrupted(exc);
+                logger.debug("Could not scan jar: " + getUrl() + " - reason:" + exc.getMessage());
+            }
+        }
+    }
 
-                    scanClasspathEntry(zipInJarPath);
+    /**
+     *
+     * An interrupted scan is not logged as an unreadable entry: its partial results must not be taken for the whole
+     * entry, so the interrupt is passed on to the caller.
+     *
+     */
+    private void rethrowIfInterrupted(Exception exc) throws InterruptedIOException {
+        if (exc instanceof InterruptedIOException) {
+            throw (InterruptedIOException) exc;
+        }
+        if (exc instanceof ClosedByInterruptException) {
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted while scanning " + getUrl());
+            interrupted.initCause(exc);
+            throw interrupted;
+        }
+    }
 
-                } catch (Exception exc) {
-                    logger.debug("Could not scan jar: " + getUrl() + " - reason:" + exc.getMessage());
+    /**
+     *
+     * Computes the CRC-32 of a resource of a class folder or of a JDK module, jar resources have their CRC-32 stored in
+     * the jar.
+     *
+     * @param resourceName - the resource name, relative to the class folder or module
+     * @return - the CRC-32 of the resource contents, or -1 if it could not be read
+     */
+    public long computeResourceCrc(String resourceName) {
+        if (!isClassFolder() && !isModule()) {
+            return -1;
+        }
+        try {
+            Path root = isModule() ? JdkImageIndex.findModuleDir(getUrl()) : Paths.get(new URI(getUrl()));
+            Path resource = root.resolve(resourceName.startsWith("/") ? resourceName.substring(1) : resourceName);
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[8192];
+            try (InputStream in = Files.newInputStream(resource)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    crc.update(buffer, 0, read);
                 }
             }
-            lazyLoadDone = true;
+            return crc.getValue();
+        } catch (URISyntaxException | IOException | IllegalArgumentException | FileSystemNotFoundException exc) {
+            logger.debug("Could not compute CRC of " + resourceName + " in " + getUrl() + " - reason:" + exc.getMessage());
+            return -1;
         }
-
-        return resourceVersions;
     }
 
     /**
+     *
+     * The manifest is read from the jar central directory, without streaming the jar, and cached - see ManifestCache.
+     * The Class-Path paths are relative urls, they are resolved against the url of this jar as a class loader does.
      *
      * @return the list of classpath entries (jars, folders) linked to this jar via it's manifest Class-Path property
      *
@@ -130,43 +326,269 @@ public class ClasspathEntry {
         List<ClasspathEntry> manifestClasspathEntries = new ArrayList<>();
         // scan for Class-Path entries on MANIFEST.MF
         if (isJar()) {
-            JarInputStream jarStream;
             try {
-                jarStream = new JarInputStream(new URL(getUrl()).openStream());
-                Manifest manifest = jarStream.getManifest();
-                if (manifest != null) {
-                    Attributes attrs = manifest.getMainAttributes();
-                    if (attrs != null) {
-                        String manifestClasspath = attrs.getValue("Class-Path");
-                        if (manifestClasspath != null) {
-                            String[] jarPaths = manifestClasspath.split(" ");
-                            if (jarPaths != null) {
-                                for (String jarPath : jarPaths) {
-                                    logger.debug("Manifest jar path: " + jarPath);
-                                    manifestClasspathEntries.add(new ClasspathEntry(classLoader, jarPath));
-                                }
-                            }
+                String manifestClasspath = readManifestClasspath();
+                if (manifestClasspath != null) {
+                    for (String jarPath : manifestClasspath.trim().split("\\s+")) {
+                        if (!jarPath.isEmpty()) {
+                            String resolvedPath = resolveManifestPath(jarPath);
+                            logger.debug("Manifest jar path: " + jarPath + " -> " + resolvedPath);
+                            manifestClasspathEntries.add(new ClasspathEntry(classLoader, resolvedPath));
                         }
                     }
                 }
-            } catch (IOException ex) {
+            } catch (URISyntaxException | IOException | IllegalArgumentException | FileSystemNotFoundException ex) {
                 logger.warn("Problem scanning Manifest classpath: " + ex.getMessage());
             }
         }
         return manifestClasspathEntries;
     }
 
-    private List<ClasspathResourceVersion> scanClasspathEntry(Path start) throws IOException {
+    private String readManifestClasspath() throws URISyntaxException, IOException {
+        if (isNested()) {
+            String[] path = getUrl().substring("jar:".length()).split("!/", -1);
+            Path outerFile = Paths.get(new URI(path[0]));
+            String cached = ManifestCache.get(getUrl(), outerFile);
+            if (cached != null) {
+                return cached;
+            }
+            try (ZipCentralDirectory outerZip = ZipCentralDirectory.open(outerFile)) {
+                ZipCentralDirectory zip = outerZip;
+                for (int i = 1; i < path.length; i++) {
+                    zip = openNestedZip(zip, path[i]);
+                }
+                String manifestClasspath = readManifestClasspath(zip);
+                ManifestCache.put(getUrl(), outerFile, manifestClasspath);
+                return manifestClasspath;
+            }
+        } else if (getUrl().startsWith("file:")) {
+            Path jar = Paths.get(new URI(getUrl()));
+            String cached = ManifestCache.get(getUrl(), jar);
+            if (cached != null) {
+                return cached;
+            }
+            try (ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(jar)) {
+                String manifestClasspath = readManifestClasspath(centralDirectory);
+                ManifestCache.put(getUrl(), jar, manifestClasspath);
+                return manifestClasspath;
+            }
+        }
+
+        // other url schemes, such as the virtual file systems of some application servers
+        try (JarInputStream jarStream = new JarInputStream(new URL(getUrl()).openStream())) {
+            Manifest manifest = jarStream.getManifest();
+            return manifest != null ? manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH) : null;
+        }
+    }
+
+    /**
+     *
+     * @return the Class-Path attribute of the zip manifest, or null if it has none
+     */
+    private static String readManifestClasspath(ZipCentralDirectory zip) throws IOException {
+        ZipCentralDirectory.Entry manifestEntry = zip.findEntry(MANIFEST_NAME);
+        if (manifestEntry == null) {
+            return null;
+        }
+        ByteBuffer contents = zip.readEntry(manifestEntry).duplicate();
+        byte[] bytes = new byte[contents.remaining()];
+        contents.get(bytes);
+        return new Manifest(new ByteArrayInputStream(bytes)).getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+    }
+
+    /**
+     *
+     * Resolves a relative url of the manifest Class-Path against the url of this jar, absolute urls are kept as they are.
+     * The paths of a nested jar are resolved inside its outer zip, such as jar:file:/app.war!/WEB-INF/lib/lib.jar for
+     * lib.jar in the manifest of jar:file:/app.war!/WEB-INF/lib/app.jar.
+     *
+     * @param path - a path of the manifest Class-Path
+     * @return - the url of the classpath entry
+     */
+    String resolveManifestPath(String path) {
+        try {
+            URI pathUri = new URI(path);
+            if (pathUri.isAbsolute()) {
+                return path;
+            }
+            int separator = url.lastIndexOf("!/");
+            if (separator >= 0) {
+                // jar: urls are opaque, the path is resolved against the location inside the outer zip
+                String zipPath = new URI(null, null, "/" + url.substring(separator + 2), null).resolve(pathUri).getPath();
+                return url.substring(0, separator + 1) + zipPath;
+            }
+            return new URI(url).resolve(pathUri).toString();
+        } catch (URISyntaxException exc) {
+            logger.debug("Could not resolve manifest path " + path + " against " + url + " - reason:" + exc.getMessage());
+            return url.substring(0, url.lastIndexOf('/') + 1) + path;
+        }
+    }
+
+    /**
+     *
+     * Lists the contents of a jar by reading its central directory, without opening it as a zip file system.
+     *
+     * If the scan cache is enabled, the jar is only opened if its contents are not cached yet. The cache doesn't keep the
+     * bytecode versions, so it's not used when they are read.
+     *
+     */
+    private void scanJar(Path jar, final ResourceVersionVisitor visitor, EntryScanStats stats) throws IOException {
+        final boolean scanClassVersions = ClassFiles.isScanClassVersions();
+        ScanCache scanCache = scanClassVersions ? null : ScanCache.getInstance();
+        // the key is computed once, the content hash reads the whole jar
+        ScanCache.JarKey cacheKey = scanCache != null ? scanCache.getJarKey(jar) : null;
+        if (scanCache != null) {
+            List<ClasspathResourceVersion> cachedVersions = cacheKey != null ? scanCache.load(cacheKey, this) : null;
+            stats.cacheStatus = cachedVersions != null ? EntryScanStats.CacheStatus.HIT : EntryScanStats.CacheStatus.MISS;
+            if (cachedVersions != null) {
+                for (ClasspathResourceVersion cachedVersion : cachedVersions) {
+                    visitor.visitResourceVersion(cachedVersion);
+                }
+                return;
+            }
+        }
+
+        final List<ClasspathResourceVersion> versionsToCache = cacheKey != null ? new ArrayList<ClasspathResourceVersion>() : null;
+
+        try (final ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(jar)) {
+            centralDirectory.accept(new ZipCentralDirectory.EntryVisitor() {
+                @Override
+                public void visitEntry(ZipCentralDirectory.Entry entry) {
+                    if (!entry.isDirectory()) {
+                        String resourceName = "/" + entry.getName();
+                        logger.debug(getUrl() + " -" + resourceName);
+                        ClasspathResourceVersion resourceVersion = new ClasspathResourceVersion(ClasspathEntry.this,
+                                resourceName, entry.getSize(), entry.getCrc(),
+                                readClassMajorVersion(centralDirectory, entry, scanClassVersions));
+                        if (versionsToCache != null) {
+                            versionsToCache.add(resourceVersion);
+                        }
+                        visitor.visitResourceVersion(resourceVersion);
+                    }
+                }
+            });
+            stats.bytesRead = centralDirectory.getBytesRead();
+
+            if (classLoader != null && ManifestCache.get(getUrl(), jar) == null) {
+                // read while the central directory is open, so that the next class loader model finds it cached
+                try {
+                    ManifestCache.put(getUrl(), jar, readManifestClasspath(centralDirectory));
+                } catch (IOException exc) {
+                    logger.debug("Could not read the manifest of " + getUrl() + " - reason:" + exc.getMessage());
+                }
+            }
+        }
+
+        if (cacheKey != null) {
+            scanCache.store(cacheKey, versionsToCache);
+        }
+    }
+
+    /**
+     *
+     * Lists a jar or a class folder nested in a zip file straight from the zip bytes, without extracting anything: nested
+     * jars are read in memory and their central directory is read from there. Each !/ of the url is one more level of
+     * nesting.
+     *
+     * If the entry has a nested jar cache, the innermost jar is only read if the same jar was not listed before.
+     *
+     */
+    private void scanNestedEntry(ResourceVersionVisitor visitor, EntryScanStats stats) throws URISyntaxException, IOException {
+        String[] path = getUrl().substring("jar:".length()).split("!/", -1);
+        try (ZipCentralDirectory outerZip = ZipCentralDirectory.open(Paths.get(new URI(path[0])))) {
+            ZipCentralDirectory zip = outerZip;
+            for (int i = 1; i < path.length - 1; i++) {
+                zip = openNestedZip(zip, path[i]);
+            }
+            String last = path[path.length - 1];
+            if (last.isEmpty() || last.endsWith("/")) {
+                scanZipFolder(zip, last, visitor);
+            } else if (jarCache != null) {
+                boolean hit = jarCache.visitJar(zip, findNestedEntry(zip, last), this, visitor);
+                stats.cacheStatus = hit ? EntryScanStats.CacheStatus.HIT : EntryScanStats.CacheStatus.MISS;
+            } else {
+                scanZipFolder(openNestedZip(zip, last), "", visitor);
+            }
+            // the nested zips are read in memory, only the outer zip reads from storage
+            stats.bytesRead = outerZip.getBytesRead();
+        }
+    }
+
+    private static ZipCentralDirectory openNestedZip(ZipCentralDirectory zip, String name) throws IOException {
+        return ZipCentralDirectory.wrap(zip.readEntry(findNestedEntry(zip, name)));
+    }
+
+    private static ZipCentralDirectory.Entry findNestedEntry(ZipCentralDirectory zip, String name) throws IOException {
+        ZipCentralDirectory.Entry entry = zip.findEntry(name);
+        if (entry == null) {
+            throw new IOException("Nested zip not found: " + name);
+        }
+        return entry;
+    }
+
+    private void scanZipFolder(final ZipCentralDirectory zip, final String folder, final ResourceVersionVisitor visitor) throws IOException {
+        final boolean scanClassVersions = ClassFiles.isScanClassVersions();
+        zip.accept(new ZipCentralDirectory.EntryVisitor() {
+            @Override
+            public void visitEntry(ZipCentralDirectory.Entry entry) {
+                if (!entry.isDirectory() && entry.getName().startsWith(folder)) {
+                    String resourceName = "/" + entry.getName().substring(folder.length());
+                    logger.debug(getUrl() + " -" + resourceName);
+                    visitor.visitResourceVersion(new ClasspathResourceVersion(ClasspathEntry.this, resourceName,
+                            entry.getSize(), entry.getCrc(), readClassMajorVersion(zip, entry, scanClassVersions)));
+                }
+            }
+        });
+    }
+
+    /**
+     *
+     * Reads the bytecode version of a class file of a zip, in the same pass as the listing of the zip: only the class
+     * file header is inflated.
+     *
+     * @return the major version, or -1 if the versions are not scanned, if the entry is not a class file or if it cannot
+     * be read
+     */
+    private int readClassMajorVersion(ZipCentralDirectory zip, ZipCentralDirectory.Entry entry, boolean scanClassVersions) {
+        if (!scanClassVersions || !ClassFiles.isClassFile(entry.getName())) {
+            return -1;
+        }
+        try {
+            return ClassFiles.readMajorVersion(zip, entry);
+        } catch (IOException exc) {
+            logger.debug("Could not read the class file header of " + entry.getName() + " in " + getUrl() + " - reason:" + exc.getMessage());
+            return -1;
+        }
+    }
+
+    private int readClassMajorVersion(Path classFile) {
+        try {
+            return ClassFiles.readMajorVersion(classFile);
+        } catch (IOException exc) {
+            logger.debug("Could not read the class file header of " + classFile + " - reason:" + exc.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     *
+     * Walks a class folder - the resource names are relative to the folder, the same way as the names of jar resources.
+     *
+     */
+    private void scanClasspathEntry(final Path start, final ResourceVersionVisitor visitor) throws IOException {
+        final String separator = start.getFileSystem().getSeparator();
+        final boolean scanClassVersions = ClassFiles.isScanClassVersions();
         Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path classpathResourceFile, BasicFileAttributes attrs) throws IOException {
-                String resourceName = classpathResourceFile.toString();
+                String resourceName = "/" + start.relativize(classpathResourceFile).toString().replace(separator, "/");
                 logger.debug(getUrl() + " -" + resourceName);
-                ClasspathResourceVersion classFileVersion = new ClasspathResourceVersion(ClasspathEntry.this, resourceName, attrs.size());
-                resourceVersions.add(classFileVersion);
+                int classMajorVersion = scanClassVersions && ClassFiles.isClassFile(resourceName) ? readClassMajorVersion(classpathResourceFile) : -1;
+                ClasspathResourceVersion classFileVersion = new ClasspathResourceVersion(ClasspathEntry.this, resourceName,
+                        attrs.size(), -1, classMajorVersion);
+                visitor.visitResourceVersion(classFileVersion);
                 return CONTINUE;
             }
         });
-        return resourceVersions;
     }
 }
@@ -0,0 +1,412 @@
+package org.jhades.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+import org.jhades.service.ClasspathScannerListener;
+import org.jhades.utils.StdOutLogger;
+
+/**
+ *
+ * Immutable snapshot of a classpath scan: the class loaders, their classpath entries and all the resources found on
+ * them.
+ *
+ * The classpath is scanned only once when the index is built, all queries are then answered from memory: resources
+ * can be looked up by exact name or by class name in constant time, regular expression searches use a trie of the
+ * resource names, and the duplicates and overlapping jars are computed only once.
+ *
+ * The resources are kept in a compact ResourceTable, the resources returned by the index are views over that table.
+ * Set the system property jhades.index.off.heap=true to keep the resource names outside of the java heap.
+ *
+ */
+public final class ClasspathIndex {
+
+    private final List<ClazzLoader> classLoaders;
+    private final List<ClasspathEntry> classpathEntries;
+    private final ResourceTable resourceTable;
+    private final List<ClasspathResource> resources;
+    private final Duplicates duplicates;
+    private JarOverlaps jarOverlaps;
+    private JarOverlaps conflictingJarOverlaps;
+    private ResourceNameTrie resourceNameTrie;
+    private int[] delegationRanks;
+
+    ClasspathIndex(List<ClazzLoader> classLoaders, List<ClasspathEntry> classpathEntries, ResourceTable resourceTable) {
+        this(classLoaders, classpathEntries, resourceTable, Duplicates.find(resourceTable));
+    }
+
+    private ClasspathIndex(List<ClazzLoader> classLoaders, List<ClasspathEntry> classpathEntries, ResourceTable resourceTable,
+            Duplicates duplicates) {
+        this.classLoaders = Collections.unmodifiableList(new ArrayList<>(classLoaders));
+        this.classpathEntries = Collections.unmodifiableList(new ArrayList<>(classpathEntries));
+        this.resourceTable = resourceTable;
+        this.resources = Collections.unmodifiableList(resourceTable.asResourceList());
+        this.duplicates = duplicates;
+    }
+
+    /**
+     *
+     * The resources that have several versions, in name id order, and which of them have versions with different
+     * contents.
+     *
+     * Only these few resources are materialized, the reports go through them over and over: their versions are not
+     * views, so that they don't keep a reference to the table once the index is updated.
+     *
+     */
+    private static final class Duplicates {
+
+        private final int[] nameIds;
+        private final boolean[] conflicting;
+        private final List<ClasspathResource> resources;
+        private final List<ClasspathResource> conflictingResources;
+
+        private Duplicates(int[] nameIds, boolean[] conflicting, List<ClasspathResource> resources) {
+            this.nameIds = nameIds;
+            this.conflicting = conflicting;
+            this.resources = Collections.unmodifiableList(resources);
+            List<ClasspathResource> conflictingResources = new ArrayList<>();
+            for (int i = 0; i < conflicting.length; i++) {
+                if (conflicting[i]) {
+                    conflictingResources.add(resources.get(i));
+                }
+            }
+            this.conflictingResources = Collections.unmodifiableList(conflictingResources);
+        }
+
+        static Duplicates find(ResourceTable resourceTable) {
+            int[] nameIds = new int[16];
+            List<ClasspathResource> resources = new ArrayList<>();
+            for (int nameId = 0; nameId < resourceTable.getNameCount(); nameId++) {
+                if (resourceTable.getNumberOfVersions(nameId) > 1) {
+                    if (resources.size() == nameIds.length) {
+                        nameIds = Arrays.copyOf(nameIds, nameIds.length * 2);
+                    }
+                    nameIds[resources.size()] = nameId;
+                    resources.add(materialize(resourceTable, nameId));
+                }
+            }
+            boolean[] conflicting = new boolean[resources.size()];
+            for (int i = 0; i < conflicting.length; i++) {
+                conflicting[i] = resources.get(i).hasConflictingVersions();
+            }
+            return new Duplicates(Arrays.copyOf(nameIds, resources.size()), conflicting, resources);
+        }
+
+        /**
+         *
+         * Updates the duplicates of a table for a new table where the versions of some entries were replaced: only the
+         * names that have a version in one of these entries, in either table, are looked at again.
+         *
+         * @param newNameIds - the id in the new table of each name of the previous table, or -1 if removed
+         */
+        Duplicates update(ResourceTable previousTable, ResourceTable resourceTable, int[] newNameIds,
+                boolean[] replacedEntries) {
+            boolean[] affected = new boolean[resourceTable.getNameCount()];
+            for (int nameId = 0; nameId < affected.length; nameId++) {
+                affected[nameId] = resourceTable.hasVersionInEntries(nameId, replacedEntries);
+            }
+            for (int previousNameId : nameIds) {
+                int nameId = newNameIds[previousNameId];
+                if (nameId >= 0 && previousTable.hasVersionInEntries(previousNameId, replacedEntries)) {
+                    affected[nameId] = true;
+                }
+            }
+
+            // the kept names have the same order in both tables, the previous duplicates are merged by name id
+            int[] updatedNameIds = new int[nameIds.length + 16];
+            boolean[] updatedConflicting = new boolean[updatedNameIds.length];
+            List<ClasspathResource> updatedResources = new ArrayList<>();
+            int previous = 0;
+            for (int nameId = 0; nameId < affected.length; nameId++) {
+                while (previous < nameIds.length && newNameIds[nameIds[previous]] < nameId) {
+                    previous++;
+                }
+                ClasspathResource resource = null;
+                boolean resourceConflicting = false;
+                if (affected[nameId]) {
+                    if (resourceTable.getNumberOfVersions(nameId) > 1) {
+                        resource = materialize(resourceTable, nameId);
+                        resourceConflicting = resource.hasConflictingVersions();
+                    }
+                } else if (previous < nameIds.length && newNameIds[nameIds[previous]] == nameId) {
+                    resource = resources.get(previous);
+                    resourceConflicting = conflicting[previous];
+                }
+                if (resource != null) {
+                    if (updatedResources.size() == updatedNameIds.length) {
+                        updatedNameIds = Arrays.copyOf(updatedNameIds, updatedNameIds.length * 2);
+                        updatedConflicting = Arrays.copyOf(updatedConflicting, updatedConflicting.length * 2);
+                    }
+                    updatedNameIds[updatedResources.size()] = nameId;
+                    updatedConflicting[updatedResources.size()] = resourceConflicting;
+                    updatedResources.add(resource);
+                }
+            }
+            return new Duplicates(Arrays.copyOf(updatedNameIds, updatedResources.size()),
+                    Arrays.copyOf(updatedConflicting, updatedResources.size()), updatedResources);
+        }
+
+        private static ClasspathResource materialize(ResourceTable resourceTable, int nameId) {
+            String name = resourceTable.getName(nameId);
+            List<ClasspathResourceVersion> versions = new ArrayList<>();
+            for (ClasspathResourceVersion version : resourceTable.getResource(nameId).getResourceFileVersions()) {
+                versions.add(new ClasspathResourceVersion(version.getClasspathEntry(), name, version.getFileSize(),
+                        version.getKnownCrc(), version.getClassMajorVersion()));
+            }
+            return new ClasspathResource(name, Collections.unmodifiableList(versions));
+        }
+    }
+
+    /**
+     *
+     * Scans the classpath entries of the given class loaders and builds the index.
+     *
+     * @param classLoaders - the class loaders, ordered from child to parent
+     * @param listener - the scan listener, can be null
+     * @param scanPool - the pool used to scan entries concurrently, or null to scan them sequentially
+     * @return - the classpath index
+     */
+    public static ClasspathIndex build(List<ClazzLoader> classLoaders, StdOutLogger logger,
+            ClasspathScannerListener listener, ForkJoinPool scanPool) {
+        return build(classLoaders, ClazzLoaders.findAllClasspathEntries(classLoaders), logger, listener, scanPool);
+    }
+
+    /**
+     *
+     * Scans a list of classpath entries that don't belong to a known class loader, such as the jars of a WAR file, and
+     * builds the index.
+     *
+     * @param classpathEntries - the classpath entries, in classpath order
+     * @param listener - the scan listener, can be null
+     * @param scanPool - the pool used to scan entries concurrently, or null to scan them sequentially
+     * @return - the classpath index, with no class loaders
+     */
+    public static ClasspathIndex buildFromEntries(List<ClasspathEntry> classpathEntries, StdOutLogger logger,
+            ClasspathScannerListener listener, ForkJoinPool scanPool) {
+        return build(Collections.<ClazzLoader>emptyList(), classpathEntries, logger, listener, scanPool);
+    }
+
+    private static ClasspathIndex build(List<ClazzLoader> classLoaders, List<ClasspathEntry> classpathEntries,
+            StdOutLogger logger, ClasspathScannerListener listener, ForkJoinPool scanPool) {
+        ResourceTable.Builder resourceTable = new ResourceTable.Builder();
+        for (ClasspathEntry classpathEntry : classpathEntries) {
+            resourceTable.addClasspathEntry(classpathEntry);
+        }
+        ClasspathEntries.visitResourceVersionsInEntries(classpathEntries, logger, listener, resourceTable, scanPool);
+        return new ClasspathIndex(classLoaders, classpathEntries, resourceTable.build(isOffHeap()));
+    }
+
+    static boolean isOffHeap() {
+        return Boolean.getBoolean("jhades.index.off.heap");
+    }
+
+    /**
+     *
+     * Creates a new index where the resources of some classpath entries are replaced, for instance the class folders
+     * that changed since the index was built. The other entries are not scanned again, their resources are copied from
+     * this index, and the duplicates are looked at again only for the resources of the changed entries. This index is
+     * left unchanged.
+     *
+     * @param replacedVersions - the current resource versions of each changed entry
+     * @return - the updated index
+     */
+    public ClasspathIndex withEntryVersions(Map<ClasspathEntry, ? extends Collection<ClasspathResourceVersion>> replacedVersions) {
+        int[] newNameIds = new int[resourceTable.getNameCount()];
+        ResourceTable updatedTable = resourceTable.replaceEntryVersions(replacedVersions, newNameIds);
+        List<ClasspathEntry> tableEntries = resourceTable.getClasspathEntries();
+        boolean[] replacedEntries = new boolean[tableEntries.size()];
+        for (int entryId = 0; entryId < replacedEntries.length; entryId++) {
+            replacedEntries[entryId] = replacedVersions.containsKey(tableEntries.get(entryId));
+        }
+        return new ClasspathIndex(classLoaders, classpathEntries, updatedTable,
+                duplicates.update(resourceTable, updatedTable, newNameIds, replacedEntries));
+    }
+
+    /**
+     * @return the class loaders, ordered from child to parent
+     */
+    public List<ClazzLoader> getClassLoaders() {
+        return classLoaders;
+    }
+
+    /**
+     * @return the classpath entries, in classpath order
+     */
+    public List<ClasspathEntry> getClasspathEntries() {
+        return classpathEntries;
+    }
+
+    /**
+     * @return the compact table of all the resource versions of the classpath
+     */
+    public ResourceTable getResourceTable() {
+        return resourceTable;
+    }
+
+    /**
+     * @return all the resources of the classpath, including all their versions - the elements are views created on
+     * access
+     */
+    public List<ClasspathResource> getResources() {
+        return resources;
+    }
+
+    /**
+     *
+     * @param resourceName - the resource name, such as /org/jhades/JHades.class - the leading slash is optional
+     * @return the resource with the given name, or null if not found
+     */
+    public ClasspathResource findResource(String resourceName) {
+        if (resourceName == null) {
+            return null;
+        }
+        int nameId = resourceTable.findNameId(resourceName.startsWith("/") ? resourceName : "/" + resourceName);
+        return nameId >= 0 ? resourceTable.getResource(nameId) : null;
+    }
+
+    /**
+     *
+     * @param className - the fully qualified class name, such as org.jhades.JHades
+     * @return the class file resource, or null if not found
+     */
+    public ClasspathResource findClass(String className) {
+        return findResource("/" + className.replace('.', '/') + ".class");
+    }
+
+    /**
+     *
+     * Finds the resources whose names match a regular expression, using the trie of resource names.
+     *
+     * @param pattern - the regular expression, that can match anywhere in the resource name
+     * @param pool - the pool used to split big searches, or null to search sequentially
+     * @return the matching resources, in path order - folder by folder, in alphabetical order
+     */
+    public List<ClasspathResource> findByRegex(Pattern pattern, ForkJoinPool pool) {
+        return getResourceNameTrie().search(pattern, pool);
+    }
+
+    private synchronized ResourceNameTrie getResourceNameTrie() {
+        if (resourceNameTrie == null) {
+            resourceNameTrie = ResourceNameTrie.build(resourceTable);
+        }
+        return resourceNameTrie;
+    }
+
+    /**
+     *
+     * Resolves a batch of resource names at once, the way the class loaders of the index would with parent-first
+     * delegation: the parent class loaders are searched before their children, and the entries of a class loader in
+     * classpath order. The names are looked up in the index, the class loaders are not called, so the cost is linear in
+     * the number of names.
+     *
+     * @param resourceNames - the resource names, such as /org/jhades/JHades.class - the leading slash is optional
+     * @return the resolution of each name, in the same order as the names
+     */
+    public List<ResolvedResource> resolveResources(Collection<String> resourceNames) {
+        int[] ranks = getDelegationRanks();
+        List<ResolvedResource> resolvedResources = new ArrayList<>(resourceNames.size());
+        for (String resourceName : resourceNames) {
+            int nameId = resourceName == null ? -1
+                    : resourceTable.findNameId(resourceName.startsWith("/") ? resourceName : "/" + resourceName);
+            if (nameId < 0) {
+                resolvedResources.add(new ResolvedResource(resourceName, Collections.<ClasspathResourceVersion>emptyList()));
+                continue;
+            }
+            // the versions are in classpath order, child class loaders first - usually one or two of them
+            int versionCount = resourceTable.getNumberOfVersions(nameId);
+            int[] order = new int[versionCount];
+            int[] orderRanks = new int[versionCount];
+            for (int i = 0; i < versionCount; i++) {
+                int rank = ranks[resourceTable.getVersionEntryId(nameId, i)];
+                int j = i;
+                while (j > 0 && orderRanks[j - 1] > rank) {
+                    order[j] = order[j - 1];
+                    orderRanks[j] = orderRanks[j - 1];
+                    j--;
+                }
+                order[j] = i;
+                orderRanks[j] = rank;
+            }
+            List<ClasspathResourceVersion> versions = resourceTable.getResource(nameId).getResourceFileVersions();
+            List<ClasspathResourceVersion> orderedVersions = new ArrayList<>(versionCount);
+            for (int i = 0; i < versionCount; i++) {
+                orderedVersions.add(versions.get(order[i]));
+            }
+            resolvedResources.add(new ResolvedResource(resourceName, Collections.unmodifiableList(orderedVersions)));
+        }
+        return resolvedResources;
+    }
+
+    /**
+     *
+     * The position of each classpath entry of the resource table in delegation order: the entries of the last class
+     * loader, the bootstrap one, come first. The entries that don't belong to a class loader of the index keep their
+     * classpath order, after the others.
+     *
+     */
+    private synchronized int[] getDelegationRanks() {
+        if (delegationRanks == null) {
+            Map<ClasspathEntry, Integer> entryRanks = new IdentityHashMap<>();
+            for (int i = classLoaders.size() - 1; i >= 0; i--) {
+                for (ClasspathEntry classpathEntry : classLoaders.get(i).getClasspathEntries()) {
+                    if (!entryRanks.containsKey(classpathEntry)) {
+                        entryRanks.put(classpathEntry, entryRanks.size());
+                    }
+                }
+            }
+            List<ClasspathEntry> tableEntries = resourceTable.getClasspathEntries();
+            int[] ranks = new int[tableEntries.size()];
+            for (int entryId = 0; entryId < ranks.length; entryId++) {
+                Integer rank = entryRanks.get(tableEntries.get(entryId));
+                ranks[entryId] = rank != null ? rank : entryRanks.size() + entryId;
+            }
+            delegationRanks = ranks;
+        }
+        return delegationRanks;
+    }
+
+    /**
+     *
+     * @param excludeSameSizeDups - excludes the resources for which all versions are identical copies
+     * @return the resources that have multiple versions on the classpath
+     */
+    public List<ClasspathResource> findResourcesWithDuplicates(boolean excludeSameSizeDups) {
+        return excludeSameSizeDups ? duplicates.conflictingResources : duplicates.resources;
+    }
+
+    /**
+     *
+     * @param excludeSameSizeDups - excludes the classes for which all versions are identical copies
+     * @return the jar pairs that have overlapping class files, the pairs with the most overlapping classes first.
+     */
+    public List<JarPair> findOverlappingJars(boolean excludeSameSizeDups) {
+        return countJarOverlaps(excludeSameSizeDups).getOverlappingJars();
+    }
+
+    /**
+     *
+     * The overlaps are counted only once per value of excludeSameSizeDups, together with their split per class loader.
+     *
+     * @param excludeSameSizeDups - excludes the classes for which all versions are identical copies
+     * @return the overlapping class files counts of each jar pair
+     */
+    public synchronized JarOverlaps countJarOverlaps(boolean excludeSameSizeDups) {
+        if (excludeSameSizeDups) {
+            if (conflictingJarOverlaps == null) {
+                conflictingJarOverlaps = ClasspathResources.countJarOverlaps(duplicates.conflictingResources, true);
+            }
+            return conflictingJarOverlaps;
+        } else {
+            if (jarOverlaps == null) {
+                jarOverlaps = ClasspathResources.countJarOverlaps(duplicates.resources, false);
+            }
+            return jarOverlaps;
+        }
+    }
+}
@@ -16,13 +16,24 @@ import java.util.Objects;
 public class ClasspathResource {
 
     private final String name;
-    private final List<ClasspathResourceVersion> resourceFileVersions = new ArrayList<>();
+    private final List<ClasspathResourceVersion> resourceFileVersions;
 
     public ClasspathResource(String name, ClasspathResourceVersion resourceFileVersion) {
         this.name = name;
+        this.resourceFileVersions = new ArrayList<>();
         this.resourceFileVersions.add(resourceFileVersion);
     }
 
+    /**
+     *
+     * Creates a resource backed by an existing list of versions, such as a read-only view over a ResourceTable.
+     *
+     */
+    ClasspathResource(String name, List<ClasspathResourceVersion> resourceFileVersions) {
+        this.name = name;
+        this.resourceFileVersions = resourceFileVersions;
+    }
+
     public String getName() {
         return name;
     }
@@ -66,24 +77,42 @@ public class ClasspathResource {
         return "Clazz{" + "name=" + name + ", classFileVersions=" + resourceFileVersions + '}';
     }
 
+    /**
+     *
+     * @param excludeSameSizeDups - true to ignore the resources for which all versions are identical copies, see
+     * hasConflictingVersions
+     * @return - true if the resource has more than one version
+     */
     public boolean hasDuplicates(boolean excludeSameSizeDups) {
-        boolean hasDuplicates = false;
-
         if (!excludeSameSizeDups) {
-            hasDuplicates = resourceFileVersions.size() > 1;
-        } else if (resourceFileVersions.size() > 1) {
-            // exclude resource files for which all versions have the same size
-            boolean multipleSizesExist = false;
-            long size = resourceFileVersions.get(0).getFileSize();
-            for (ClasspathResourceVersion resourceFileVersion : resourceFileVersions) {
-                if (resourceFileVersion.getFileSize() != size) {
-                    multipleSizesExist = true;
-                    break;
+            return resourceFileVersions.size() > 1;
+        }
+        return hasConflictingVersions();
+    }
+
+    /**
+     *
+     * The versions are compared by CRC-32 and size, as stored in the jar central directories, so no jar entry is
+     * inflated. Versions for which no CRC-32 is known are compared by size only.
+     *
+     * @return - true if the resource has several versions with different contents
+     */
+    public boolean hasConflictingVersions() {
+        if (resourceFileVersions.size() > 1) {
+            ClasspathResourceVersion first = resourceFileVersions.get(0);
+            for (int i = 1; i < resourceFileVersions.size(); i++) {
+                if (!resourceFileVersions.get(i).isIdenticalTo(first)) {
+                    return true;
                 }
             }
-            hasDuplicates = multipleSizesExist;
         }
+        return false;
+    }
 
-        return hasDuplicates;
+    /**
+     * @return - true if the resource has several versions, and they are all copies of the same file
+     */
+    public boolean hasOnlyIdenticalCopies() {
+        return resourceFileVersions.size() > 1 && !hasConflictingVersions();
     }
 }
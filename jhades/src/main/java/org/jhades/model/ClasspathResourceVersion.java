@@ -14,11 +14,28 @@ public class ClasspathResourceVersion {
     private final ClasspathEntry classpathEntry;
     private String resourceName;
     private final long fileSize;
+    private long crc;
+    private final int classMajorVersion;
 
     public ClasspathResourceVersion(ClasspathEntry classpathEntry, String resourceName, long classSize) {
+        this(classpathEntry, resourceName, classSize, -1);
+    }
+
+    public ClasspathResourceVersion(ClasspathEntry classpathEntry, String resourceName, long classSize, long crc) {
+        this(classpathEntry, resourceName, classSize, crc, -1);
+    }
+
+    /**
+     *
+     * @param classMajorVersion - the major version of the class file bytecode, or -1 if not known
+     */
+    public ClasspathResourceVersion(ClasspathEntry classpathEntry, String resourceName, long classSize, long crc,
+            int classMajorVersion) {
         this.classpathEntry = classpathEntry;
         this.resourceName = resourceName;
         this.fileSize = classSize;
+        this.crc = crc;
+        this.classMajorVersion = classMajorVersion;
     }
 
     public ClasspathEntry getClasspathEntry() {
@@ -29,10 +46,66 @@ public class ClasspathResourceVersion {
         return fileSize;
     }
 
+    /**
+     *
+     * The CRC-32 of jar resources is read from the jar central directory, the CRC-32 of class folder and JDK module
+     * resources is computed the first time it's requested.
+     *
+     * @return the CRC-32 of the resource contents, or -1 if not known
+     */
+    public long getCrc() {
+        if (crc == -1 && classpathEntry != null && (classpathEntry.isClassFolder() || classpathEntry.isModule())) {
+            crc = classpathEntry.computeResourceCrc(resourceName);
+        }
+        return crc;
+    }
+
+    /**
+     * @return the CRC-32 if it's already known, without computing it - or -1
+     */
+    long getKnownCrc() {
+        return crc;
+    }
+
+    /**
+     *
+     * Compares the contents of two versions by size and CRC-32, without reading them. If the CRC-32 of one of the versions
+     * is not known, only the sizes are compared.
+     *
+     * @param other - the other version of the resource
+     * @return - true if both versions are copies of the same file
+     */
+    public boolean isIdenticalTo(ClasspathResourceVersion other) {
+        if (fileSize != other.getFileSize()) {
+            return false;
+        }
+        long otherCrc = other.getCrc();
+        return getCrc() == -1 || otherCrc == -1 || getCrc() == otherCrc;
+    }
+
     public String getResourceName() {
         return resourceName;
     }
 
+    /**
+     *
+     * The bytecode version is only read by the scans if enabled, see ClassFiles.isScanClassVersions.
+     *
+     * @return the major version of the class file bytecode, such as 52 for Java 8, or -1 if not known or not a class file
+     */
+    public int getClassMajorVersion() {
+        return classMajorVersion;
+    }
+
+    /**
+     * @return the package of the resource, such as org.jhades.model for /org/jhades/model/ClasspathEntry.class, or an
+     * empty string for the resources at the root of the classpath entry
+     */
+    public String getPackageName() {
+        int lastSlash = resourceName.lastIndexOf('/');
+        return lastSlash > 0 ? resourceName.substring(resourceName.charAt(0) == '/' ? 1 : 0, lastSlash).replace('/', '.') : "";
+    }
+
     @Override
     public int hashCode() {
         int hash = 5;
@@ -43,10 +116,8 @@ public class ClasspathResourceVersion {
 
     @Override
     public boolean equals(Object obj) {
-        if (obj == null) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
+        // the versions viewed over a resource table are equal to the scanned ones
+        if (!(obj instanceof ClasspathResourceVersion)) {
             return false;
         }
         final ClasspathResourceVersion other = (ClasspathResourceVersion) obj;
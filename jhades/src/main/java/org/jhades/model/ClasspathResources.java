@@ -65,8 +65,8 @@ public final class ClasspathResources {
      * Inspects a given list of classpath resources, and returns only the resources that contain multiple versions.
      *
      * @param resourceFiles - the resource files to be inspected
-     * @param excludeSameSizeDups - true to consider only as duplicates files with multiple versions with different file
-     * sizes
+     * @param excludeSameSizeDups - true to consider only as duplicates files with multiple versions with different
+     * contents, compared by CRC-32 and size
      * @return - the list of resources with duplicates
      */
     public static List<ClasspathResource> findResourcesWithDuplicates(List<ClasspathResource> resourceFiles, boolean excludeSameSizeDups) {
@@ -81,4 +81,38 @@ public final class ClasspathResources {
         return resourcesWithDuplicates;
 
     }
+
+    /**
+     *
+     * Finds all class files that have more than one version on the classpath
+     *
+     * @param classpathResources - the list of classpath resources
+     * @param excludeSameSizeDups - true if only duplicates with different contents are considered
+     * @return - the list of class files that have multiple versions
+     */
+    public static List<ClasspathResource> findClassFileDuplicates(List<ClasspathResource> classpathResources, boolean excludeSameSizeDups) {
+        List<ClasspathResource> classFilesWithDuplicates = findResourcesWithDuplicates(classpathResources, excludeSameSizeDups);
+        return filterClassFilesOnly(classFilesWithDuplicates);
+    }
+
+    /**
+     *
+     * @return - a list of jar pairs that have overlapping class files, the pairs with the most overlapping classes first.
+     *
+     */
+    public static List<JarPair> findOverlappingJars(List<ClasspathResource> classpathResources, boolean excludeSameSizeDups) {
+        return new ArrayList<>(countJarOverlaps(classpathResources, excludeSameSizeDups).getOverlappingJars());
+    }
+
+    /**
+     *
+     * Counts the overlapping class files of each pair of jars, including the split per class loader.
+     *
+     * @param classpathResources - the list of classpath resources
+     * @param excludeSameSizeDups - true if only duplicates with different contents are considered
+     * @return - the overlap counts
+     */
+    public static JarOverlaps countJarOverlaps(List<ClasspathResource> classpathResources, boolean excludeSameSizeDups) {
+        return JarOverlaps.count(findClassFileDuplicates(classpathResources, excludeSameSizeDups));
+    }
 }
@@ -0,0 +1,243 @@
+package org.jhades.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.jhades.utils.VarInts.readVarInt;
+import static org.jhades.utils.VarInts.readVarLong;
+import static org.jhades.utils.VarInts.writeVarLong;
+
+/**
+ *
+ * Saves a complete classpath index to a binary file and loads it back, so that a classpath captured once - for
+ * instance on a production server - can be analyzed offline as many times as needed, without the original jars.
+ *
+ * The file contains the class loaders, the classpath entry urls and all the resource versions with their size and
+ * CRC-32, the CRC-32 of the class folder resources is computed when the snapshot is written. All numbers are varints,
+ * see VarInts. The layout is:
+ *
+ * magic and format version, as two 4 bytes integers
+ *
+ * class loaders: count, then name, details and supported flag of each class loader
+ *
+ * classpath entries: count, then class loader position (0 for none, 1 for the first class loader) and url of each entry
+ *
+ * resources: count, then for each resource its name and its versions in classpath order. Each name is written only
+ * once, as the length of the prefix shared with the previous name followed by the remaining bytes. Each version is
+ * written as its entry position, size and CRC-32 + 1 (0 when not known).
+ *
+ * Strings are written as their UTF-8 length + 1 followed by their bytes, 0 is null.
+ *
+ * The file is memory-mapped when loaded and decoded straight into a ResourceTable, without creating a String per
+ * resource name. The entries of a loaded index are not scanned again: their urls point to the machine where the
+ * snapshot was taken.
+ *
+ */
+public final class ClasspathSnapshot {
+
+    public static final int FORMAT_VERSION = 1;
+    private static final int MAGIC = 0x4a485331;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private ClasspathSnapshot() {
+        throw new UnsupportedOperationException("Utility classes cannot be instantiated.");
+    }
+
+    /**
+     *
+     * A class loader of a snapshot: only its name and details are known.
+     *
+     */
+    private static final class SnapshotClazzLoader extends ClazzLoader {
+
+        SnapshotClazzLoader(String name, String details, boolean isSupported) {
+            super(name, details, isSupported);
+        }
+    }
+
+    /**
+     *
+     * @param classpathIndex - the index to save
+     * @param file - the snapshot file, replaced if it already exists
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(ClasspathIndex classpathIndex, Path file) throws IOException {
+        ResourceTable resourceTable = classpathIndex.getResourceTable();
+        List<ClazzLoader> classLoaders = classpathIndex.getClassLoaders();
+        List<ClasspathEntry> classpathEntries = resourceTable.getClasspathEntries();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+
+            Map<ClazzLoader, Integer> classLoaderPositions = new IdentityHashMap<>();
+            writeVarLong(out, classLoaders.size());
+            for (ClazzLoader classLoader : classLoaders) {
+                classLoaderPositions.put(classLoader, classLoaderPositions.size() + 1);
+                writeString(out, classLoader.getName());
+                writeString(out, classLoader.getDetails());
+                out.writeBoolean(classLoader.isSupported());
+            }
+
+            Map<ClasspathEntry, Integer> entryIds = new IdentityHashMap<>();
+            writeVarLong(out, classpathEntries.size());
+            for (ClasspathEntry classpathEntry : classpathEntries) {
+                entryIds.put(classpathEntry, entryIds.size());
+                Integer classLoaderPosition = classLoaderPositions.get(classpathEntry.getClassLoader());
+                writeVarLong(out, classLoaderPosition != null ? classLoaderPosition : 0);
+                writeString(out, classpathEntry.getUrl());
+            }
+
+            writeVarLong(out, resourceTable.getNameCount());
+            byte[] previousName = new byte[0];
+            for (int nameId = 0; nameId < resourceTable.getNameCount(); nameId++) {
+                ClasspathResource resource = resourceTable.getResource(nameId);
+                byte[] name = resource.getName().getBytes(UTF_8);
+                int shared = 0;
+                int maxShared = Math.min(name.length, previousName.length);
+                while (shared < maxShared && name[shared] == previousName[shared]) {
+                    shared++;
+                }
+                writeVarLong(out, shared);
+                writeVarLong(out, name.length - shared);
+                out.write(name, shared, name.length - shared);
+                previousName = name;
+
+                List<ClasspathResourceVersion> versions = resource.getResourceFileVersions();
+                writeVarLong(out, versions.size());
+                for (ClasspathResourceVersion version : versions) {
+                    writeVarLong(out, entryIds.get(version.getClasspathEntry()));
+                    writeVarLong(out, version.getFileSize());
+                    writeVarLong(out, version.getCrc() + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * @param file - the snapshot file
+     * @return the index saved in the snapshot, with the same class loaders, entries and resources as when it was saved
+     * @throws IOException if the file cannot be read, or is not a snapshot of a supported format version
+     */
+    public static ClasspathIndex read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid once the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a jHades classpath snapshot: " + file);
+        }
+        int formatVersion = buffer.getInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported classpath snapshot format version " + formatVersion + ": " + file);
+        }
+
+        try {
+            int classLoaderCount = readVarInt(buffer);
+            List<ClazzLoader> classLoaders = new ArrayList<>(classLoaderCount);
+            for (int i = 0; i < classLoaderCount; i++) {
+                String name = readString(buffer);
+                String details = readString(buffer);
+                classLoaders.add(new SnapshotClazzLoader(name, details, buffer.get() != 0));
+            }
+
+            int entryCount = readVarInt(buffer);
+            List<ClasspathEntry> classpathEntries = new ArrayList<>(entryCount);
+            ResourceTable.Builder resourceTable = new ResourceTable.Builder();
+            for (int i = 0; i < entryCount; i++) {
+                int classLoaderPosition = readVarInt(buffer);
+                if (classLoaderPosition > classLoaderCount) {
+                    throw new IOException("Invalid class loader position: " + classLoaderPosition);
+                }
+                ClazzLoader classLoader = classLoaderPosition > 0 ? classLoaders.get(classLoaderPosition - 1) : null;
+                ClasspathEntry classpathEntry = new ClasspathEntry(classLoader, readString(buffer));
+                if (classLoader != null) {
+                    classLoader.addResolvedClasspathEntry(classpathEntry);
+                }
+                classpathEntries.add(classpathEntry);
+                resourceTable.addClasspathEntry(classpathEntry);
+            }
+
+            int nameCount = readVarInt(buffer);
+            byte[] name = new byte[256];
+            for (int i = 0; i < nameCount; i++) {
+                int shared = readVarInt(buffer);
+                int suffixLength = readVarInt(buffer);
+                int length = shared + suffixLength;
+                if (length > name.length) {
+                    name = Arrays.copyOf(name, Math.max(length, name.length * 2));
+                }
+                buffer.get(name, shared, suffixLength);
+                int nameId = resourceTable.addName(name, length);
+
+                int versionCount = readVarInt(buffer);
+                for (int j = 0; j < versionCount; j++) {
+                    int entryId = readVarInt(buffer);
+                    if (entryId >= entryCount) {
+                        throw new IOException("Invalid classpath entry position: " + entryId);
+                    }
+                    long size = readVarLong(buffer);
+                    long crc = readVarLong(buffer) - 1;
+                    resourceTable.addVersion(nameId, entryId, size, crc);
+                }
+            }
+            if (buffer.hasRemaining()) {
+                throw new IOException("Unexpected data at the end of the snapshot.");
+            }
+            return new ClasspathIndex(classLoaders, classpathEntries, resourceTable.build(ClasspathIndex.isOffHeap()));
+        } catch (IOException | RuntimeException exc) {
+            throw new IOException("Corrupted classpath snapshot " + file + " - " + exc.getMessage(), exc);
+        }
+    }
+
+    /**
+     *
+     * @param file - any file
+     * @return true if the file starts like a classpath snapshot, of any format version
+     */
+    public static boolean isSnapshot(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] magic = new byte[4];
+            return in.read(magic) == 4 && ByteBuffer.wrap(magic).getInt() == MAGIC;
+        } catch (IOException exc) {
+            return false;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarLong(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = readVarInt(buffer);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
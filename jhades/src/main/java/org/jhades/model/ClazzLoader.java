@@ -1,8 +1,10 @@
 package org.jhades.model;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  *
@@ -17,6 +19,7 @@ public abstract class ClazzLoader {
     private String details;
     private boolean isSupported;
     private List<ClasspathEntry> classpathEntries = new ArrayList<>();
+    private final Set<String> classpathEntryUrls = new HashSet<>();
 
     public ClazzLoader(String name, String details, boolean isSupported) {
         this.name = name;
@@ -40,7 +43,16 @@ public abstract class ClazzLoader {
         return new ArrayList<>(classpathEntries);
     }
 
+    /**
+     *
+     * Adds an entry followed by the entries of its manifest Class-Path. Like a class loader, an entry whose url was
+     * already added is skipped, so manifests that refer to each other don't cause a cycle.
+     *
+     */
     protected void addClasspathEntry(ClasspathEntry newEntry) {
+        if (!classpathEntryUrls.add(newEntry.getUrl())) {
+            return;
+        }
         classpathEntries.add(newEntry);
         if (newEntry.isJar()) {
             List<ClasspathEntry> manifestClasspath = newEntry.findManifestClasspathEntries();
@@ -50,6 +62,16 @@ public abstract class ClazzLoader {
         }
     }
 
+    /**
+     *
+     * Adds an entry whose manifest Class-Path was already followed, such as an entry read from a classpath snapshot.
+     *
+     */
+    void addResolvedClasspathEntry(ClasspathEntry newEntry) {
+        classpathEntryUrls.add(newEntry.getUrl());
+        classpathEntries.add(newEntry);
+    }
+
     @Override
     public int hashCode() {
         int hash = 5;
@@ -1,9 +1,26 @@
 package org.jhades.model;
 
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import org.jhades.service.JdkImageIndex;
+import org.jhades.utils.StdOutLogger;
 import static org.jhades.service.ClasspathScanner.BOOTSTRAP_CLASS_LOADER;
-import sun.misc.Launcher;
-import sun.misc.URLClassPath;
 
 /**
  *
@@ -11,27 +28,153 @@ import sun.misc.URLClassPath;
  *
  * Class loaders should be detected via reflection to avoid code dependencies towards specific implementations.
  *
- * For the moment only the Url classloader is supported, this already covers jetty, tomcat, jboss and standalone
- * applications.
+ * The Url classloader is supported out of the box, this already covers jetty, tomcat, jboss and standalone
+ * applications. The application and platform class loaders of Java 9 and later JVMs are not Url class loaders, they are
+ * modeled by the modules defined to them and, for the application class loader, the java.class.path entries. Other
+ * class loaders are supported by the ClazzLoaderProvider implementations found on the classpath, such as the fat jar
+ * launcher class loaders.
  *
  */
 public class ClazzLoaderFactory {
 
+    private static final String BOOT_CLASS_PATH_PROPERTY = "sun.boot.class.path";
+    private static final String APP_CLASS_LOADER = "jdk.internal.loader.ClassLoaders$AppClassLoader";
+    private static final String PLATFORM_CLASS_LOADER = "jdk.internal.loader.ClassLoaders$PlatformClassLoader";
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private static List<ClazzLoaderProvider> providers;
+
     public static ClazzLoader createClazzLoader(ClassLoader classLoader) {
+        for (ClazzLoaderProvider provider : getProviders()) {
+            ClazzLoader cl = provider.createClazzLoader(classLoader);
+            if (cl != null) {
+                return cl;
+            }
+        }
         ClazzLoader cl = null;
         if (classLoader instanceof URLClassLoader) {
             URLClassLoader urlClassLoader = (URLClassLoader) classLoader;
             if (urlClassLoader.getURLs() != null) {
                 cl = new UrlClazzLoader(classLoader.getClass().getName(), classLoader.toString(), urlClassLoader.getURLs());
             }
+        } else if (APP_CLASS_LOADER.equals(classLoader.getClass().getName())) {
+            List<String> urls = new ArrayList<>(findModuleUrls(classLoader));
+            urls.addAll(findClasspathUrls());
+            cl = new JrtClazzLoader(classLoader.getClass().getName(), classLoader.toString(), urls);
+        } else if (PLATFORM_CLASS_LOADER.equals(classLoader.getClass().getName())) {
+            cl = new JrtClazzLoader(classLoader.getClass().getName(), classLoader.toString(), findModuleUrls(classLoader));
         } else {
             System.out.println("WARNING: this classloader is not supported: " + classLoader.getClass().getName());
         }
         return cl;
     }
 
+    /**
+     *
+     * The providers are loaded once, a provider that cannot be loaded is skipped.
+     *
+     */
+    private static synchronized List<ClazzLoaderProvider> getProviders() {
+        if (providers == null) {
+            List<ClazzLoaderProvider> loadedProviders = new ArrayList<>();
+            Iterator<ClazzLoaderProvider> iterator = ServiceLoader.load(ClazzLoaderProvider.class, ClazzLoaderFactory.class.getClassLoader()).iterator();
+            while (true) {
+                try {
+                    if (!iterator.hasNext()) {
+                        break;
+                    }
+                    loadedProviders.add(iterator.next());
+                } catch (ServiceConfigurationError err) {
+                    System.out.println("WARNING: could not load a class loader provider - " + err.getMessage());
+                }
+            }
+            providers = loadedProviders;
+        }
+        return providers;
+    }
+
+    /**
+     *
+     * Java 8 and earlier JVMs list the jars of the bootstrap class loader in the sun.boot.class.path property, later
+     * JVMs have no such jars: the bootstrap classes are in the modules of the JDK image, see JdkImageIndex. The modules
+     * defined to the platform and application class loaders are left to them.
+     *
+     */
     public static ClazzLoader createBootstrapClassLoader() {
-        URLClassPath cp = Launcher.getBootstrapClassPath();
-        return new UrlClazzLoader(BOOTSTRAP_CLASS_LOADER, "N/A", cp.getURLs());
+        String bootClassPath = System.getProperty(BOOT_CLASS_PATH_PROPERTY);
+        if (bootClassPath == null) {
+            Map<String, ClassLoader> moduleClassLoaders = findModuleClassLoaders();
+            List<String> moduleUrls = new ArrayList<>();
+            for (String moduleUrl : JdkImageIndex.findModuleUrls()) {
+                if (moduleClassLoaders.get(moduleUrl) == null) {
+                    moduleUrls.add(moduleUrl);
+                }
+            }
+            return new JrtClazzLoader(BOOTSTRAP_CLASS_LOADER, "JDK image " + System.getProperty("java.home"), moduleUrls);
+        }
+        List<URL> urls = new ArrayList<>();
+        for (String path : bootClassPath.split(File.pathSeparator)) {
+            if (!path.isEmpty()) {
+                try {
+                    urls.add(Paths.get(path).toUri().toURL());
+                } catch (MalformedURLException | InvalidPathException exc) {
+                    logger.warn("Invalid bootstrap classpath entry: " + path);
+                }
+            }
+        }
+        return new UrlClazzLoader(BOOTSTRAP_CLASS_LOADER, "N/A", urls.toArray(new URL[urls.size()]));
+    }
+
+    /**
+     *
+     * @return the urls of the entries of the java.class.path system property, in classpath order
+     */
+    private static Collection<String> findClasspathUrls() {
+        Set<String> urls = new LinkedHashSet<>();
+        String classpath = System.getProperty("java.class.path");
+        if (classpath != null) {
+            for (String pathEntry : classpath.split(File.pathSeparator)) {
+                if (!pathEntry.isEmpty()) {
+                    urls.add(new File(pathEntry).getAbsoluteFile().toURI().toString());
+                }
+            }
+        }
+        return urls;
+    }
+
+    private static List<String> findModuleUrls(ClassLoader classLoader) {
+        List<String> moduleUrls = new ArrayList<>();
+        for (Map.Entry<String, ClassLoader> moduleClassLoader : findModuleClassLoaders().entrySet()) {
+            if (moduleClassLoader.getValue() == classLoader) {
+                moduleUrls.add(moduleClassLoader.getKey());
+            }
+        }
+        Collections.sort(moduleUrls);
+        return moduleUrls;
+    }
+
+    /**
+     *
+     * The modules of the boot layer and their class loaders, read via reflection: jHades is compiled against Java 7.
+     *
+     * @return the class loader of each module of the boot layer, keyed by module url, or an empty map on Java 8 and
+     * earlier JVMs
+     */
+    private static Map<String, ClassLoader> findModuleClassLoaders() {
+        Map<String, ClassLoader> moduleClassLoaders = new HashMap<>();
+        try {
+            Class<?> moduleLayerClass = Class.forName("java.lang.ModuleLayer");
+            Object bootLayer = moduleLayerClass.getMethod("boot").invoke(null);
+            Class<?> moduleClass = Class.forName("java.lang.Module");
+            Method getName = moduleClass.getMethod("getName");
+            Method getClassLoader = moduleClass.getMethod("getClassLoader");
+            for (Object module : (Set<?>) moduleLayerClass.getMethod("modules").invoke(bootLayer)) {
+                moduleClassLoaders.put(JdkImageIndex.JRT_URL_PREFIX + getName.invoke(module), (ClassLoader) getClassLoader.invoke(module));
+            }
+        } catch (ClassNotFoundException exc) {
+            // no modules before Java 9
+        } catch (ReflectiveOperationException | SecurityException exc) {
+            logger.warn("Could not read the modules of the boot layer - reason:" + exc);
+        }
+        return moduleClassLoaders;
     }
 }
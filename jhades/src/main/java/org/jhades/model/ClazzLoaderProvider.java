@@ -0,0 +1,20 @@
+package org.jhades.model;
+
+/**
+ *
+ * Service provider interface for the support of class loaders.
+ *
+ * Implementations are found with java.util.ServiceLoader: they are listed in a
+ * META-INF/services/org.jhades.model.ClazzLoaderProvider file of their jar, and need a public no-args constructor.
+ * The providers are asked before the built-in support for Url class loaders, in the order in which they are found.
+ *
+ */
+public interface ClazzLoaderProvider {
+
+    /**
+     *
+     * @param classLoader - a class loader of the JVM, not null
+     * @return the object model of the class loader, or null if the class loader is not supported by this provider
+     */
+    ClazzLoader createClazzLoader(ClassLoader classLoader);
+}
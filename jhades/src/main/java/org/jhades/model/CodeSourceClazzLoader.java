@@ -0,0 +1,21 @@
+package org.jhades.model;
+
+import java.util.Collection;
+
+/**
+ *
+ * Models a class loader that is not otherwise supported by the code source locations of the classes it defined, such
+ * as a custom class loader of an application server. Usually only the locations that defined at least one class are
+ * known, in no particular order.
+ *
+ */
+public class CodeSourceClazzLoader extends ClazzLoader {
+
+    public CodeSourceClazzLoader(String name, String details, Collection<String> locations) {
+        super(name, details, true);
+        for (String location : locations) {
+            String fatJarEntryUrl = FatJarClazzLoader.toClasspathEntryUrl(location);
+            addClasspathEntry(new ClasspathEntry(this, fatJarEntryUrl != null ? fatJarEntryUrl : location));
+        }
+    }
+}
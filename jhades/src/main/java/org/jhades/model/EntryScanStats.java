@@ -0,0 +1,100 @@
+package org.jhades.model;
+
+/**
+ *
+ * Statistics of the scan of one classpath entry: how long it took, how many bytes were read from storage, how many
+ * resources were found, and whether the jar scan cache or the nested jar cache was used.
+ *
+ * The duplicate count is not known when the entry is scanned, it's filled in later by ScanMetrics.
+ *
+ * @see ClasspathEntry#getLastScanStats
+ *
+ */
+public final class EntryScanStats {
+
+    /**
+     *
+     * Where the resources of the entry came from.
+     *
+     */
+    public enum CacheStatus {
+
+        /**
+         * the entry was scanned, and is not cacheable or the scan cache is disabled
+         */
+        NOT_CACHED,
+        /**
+         * the resources were read from the jar scan cache or the nested jar cache, the jar was not opened
+         */
+        HIT,
+        /**
+         * the jar was not in the scan cache or the nested jar cache, or had changed, and was scanned
+         */
+        MISS,
+        /**
+         * the entry was already loaded in memory, nothing was read
+         */
+        IN_MEMORY
+    }
+    private final ClasspathEntry classpathEntry;
+    long wallTimeNanos;
+    long bytesRead;
+    int resourceCount;
+    int duplicateCount;
+    int maxClassMajorVersion = -1;
+    CacheStatus cacheStatus = CacheStatus.NOT_CACHED;
+
+    EntryScanStats(ClasspathEntry classpathEntry) {
+        this.classpathEntry = classpathEntry;
+    }
+
+    public ClasspathEntry getClasspathEntry() {
+        return classpathEntry;
+    }
+
+    /**
+     * @return the time spent scanning the entry, including the time spent by the visitor of its resources
+     */
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    /**
+     * @return the number of bytes read from the jar file, zero for class folders and cache hits
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return the number of resources of the entry, directories excluded
+     */
+    public int getResourceCount() {
+        return resourceCount;
+    }
+
+    /**
+     * @return the number of resources of the entry that also have a version in another entry
+     */
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * @return the newest bytecode major version of the class files of the entry, or -1 if the bytecode versions were not
+     * read - see ClassFiles.isScanClassVersions
+     */
+    public int getMaxClassMajorVersion() {
+        return maxClassMajorVersion;
+    }
+
+    public CacheStatus getCacheStatus() {
+        return cacheStatus;
+    }
+
+    @Override
+    public String toString() {
+        return "EntryScanStats{entry=" + classpathEntry.getUrl() + ", wallTimeNanos=" + wallTimeNanos + ", bytesRead="
+                + bytesRead + ", resources=" + resourceCount + ", duplicates=" + duplicateCount + ", cache=" + cacheStatus + ", maxClassMajorVersion=" + maxClassMajorVersion + "}";
+    }
+}
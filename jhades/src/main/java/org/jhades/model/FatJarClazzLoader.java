@@ -0,0 +1,75 @@
+package org.jhades.model;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.List;
+
+/**
+ *
+ * Provides support for the class loaders of fat jar launchers, such as Spring Boot executable jars, whose classpath
+ * is made of jars and class folders nested in the launched jar.
+ *
+ * Their urls, such as jar:file:/app.jar!/BOOT-INF/lib/lib.jar!/ or jar:nested:/app.jar/!BOOT-INF/lib/lib.jar!/,
+ * become nested classpath entries such as jar:file:/app.jar!/BOOT-INF/lib/lib.jar: the nested jars are read at random
+ * from the central directory of the launched jar, they are never extracted.
+ *
+ */
+public class FatJarClazzLoader extends ClazzLoader {
+
+    private static final String JAR_PREFIX = "jar:";
+    private static final String NESTED_PREFIX = "nested:";
+    private static final String NESTED_SEPARATOR = "/!";
+    private static final String SEPARATOR = "!/";
+
+    public FatJarClazzLoader(String name, String details, List<String> urls) {
+        super(name, details, true);
+        for (String url : urls) {
+            String classpathEntryUrl = toClasspathEntryUrl(url);
+            addClasspathEntry(new ClasspathEntry(this, classpathEntryUrl != null ? classpathEntryUrl : url));
+        }
+    }
+
+    /**
+     *
+     * @param url - a url of a class loader
+     * @return - the url of the nested classpath entry of a jar or class folder inside a fat jar, or null if the url is
+     * not a fat jar url
+     */
+    static String toClasspathEntryUrl(String url) {
+        String location = url.startsWith(JAR_PREFIX) ? url.substring(JAR_PREFIX.length()) : url;
+        if (location.endsWith(SEPARATOR)) {
+            location = location.substring(0, location.length() - SEPARATOR.length());
+        }
+        String outerUrl;
+        String entryName;
+        if (location.startsWith(NESTED_PREFIX)) {
+            // nested:/app.jar/!BOOT-INF/lib/lib.jar, the path is url-encoded
+            int separator = location.indexOf(NESTED_SEPARATOR);
+            if (separator < 0) {
+                return null;
+            }
+            try {
+                String path = URLDecoder.decode(location.substring(NESTED_PREFIX.length(), separator).replace("+", "%2B"), "UTF-8");
+                outerUrl = new File(path).toURI().toString();
+            } catch (UnsupportedEncodingException | IllegalArgumentException exc) {
+                return null;
+            }
+            entryName = location.substring(separator + NESTED_SEPARATOR.length());
+        } else if (url.startsWith(JAR_PREFIX) && url.endsWith(SEPARATOR) && location.contains(SEPARATOR)) {
+            // jar:file:/app.jar!/BOOT-INF/lib/lib.jar!/
+            int separator = location.lastIndexOf(SEPARATOR);
+            outerUrl = location.substring(0, separator);
+            entryName = location.substring(separator + SEPARATOR.length());
+        } else {
+            return null;
+        }
+        if (entryName.isEmpty()) {
+            return null;
+        }
+        if (!entryName.endsWith(".jar") && !entryName.endsWith("/")) {
+            entryName += "/";
+        }
+        return JAR_PREFIX + outerUrl + SEPARATOR + entryName;
+    }
+}
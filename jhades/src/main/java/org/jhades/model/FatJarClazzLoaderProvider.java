@@ -0,0 +1,34 @@
+package org.jhades.model;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * Provides the fat jar class loaders, see FatJarClazzLoader: a class loader is supported if it has at least one url of
+ * a jar or class folder nested in a fat jar.
+ *
+ * The launcher class loaders are Url class loaders, only their urls are inspected so there is no dependency towards a
+ * specific launcher.
+ *
+ */
+public class FatJarClazzLoaderProvider implements ClazzLoaderProvider {
+
+    @Override
+    public ClazzLoader createClazzLoader(ClassLoader classLoader) {
+        if (!(classLoader instanceof URLClassLoader) || ((URLClassLoader) classLoader).getURLs() == null) {
+            return null;
+        }
+        List<String> urls = new ArrayList<>();
+        boolean hasFatJarUrl = false;
+        for (URL url : ((URLClassLoader) classLoader).getURLs()) {
+            if (url != null) {
+                urls.add(url.toString());
+                hasFatJarUrl |= FatJarClazzLoader.toClasspathEntryUrl(url.toString()) != null;
+            }
+        }
+        return hasFatJarUrl ? new FatJarClazzLoader(classLoader.getClass().getName(), classLoader.toString(), urls) : null;
+    }
+}
@@ -0,0 +1,227 @@
+package org.jhades.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ *
+ * Counts the overlapping classes of each pair of jars in one pass over the classes with duplicates.
+ *
+ * The jars are given dense integer ids, and the counts are kept in an open-addressing map keyed by the pair of ids
+ * packed in a long, so nothing is allocated per class. The JarPair objects are only created for the result, which is
+ * also split by class loader.
+ *
+ */
+public final class JarOverlaps {
+
+    private final List<JarPair> overlappingJars;
+    private final Map<ClazzLoader, List<JarPair>> overlappingJarsByClassLoader;
+    private final List<JarPair> crossClassLoaderOverlaps;
+
+    private JarOverlaps(List<JarPair> overlappingJars, Map<ClazzLoader, List<JarPair>> overlappingJarsByClassLoader,
+            List<JarPair> crossClassLoaderOverlaps) {
+        this.overlappingJars = overlappingJars;
+        this.overlappingJarsByClassLoader = overlappingJarsByClassLoader;
+        this.crossClassLoaderOverlaps = crossClassLoaderOverlaps;
+    }
+
+    /**
+     *
+     * @param resourcesWithDuplicates - the resources to count, each version pair of a resource counts as one overlap
+     * @return - the overlap counts
+     */
+    public static JarOverlaps count(List<ClasspathResource> resourcesWithDuplicates) {
+        Counter counter = new Counter();
+        for (ClasspathResource resource : resourcesWithDuplicates) {
+            counter.add(resource);
+        }
+        return counter.toJarOverlaps();
+    }
+
+    /**
+     *
+     * Counts the overlaps of resources that are added one at a time, for instance while they are streamed out of a
+     * scan, so that the resources with duplicates don't need to be kept in memory. The memory used only depends on
+     * the number of jars and jar pairs.
+     *
+     */
+    public static final class Counter {
+
+        private final Map<ClasspathEntry, Integer> entryIds = new HashMap<>();
+        private final List<ClasspathEntry> entries = new ArrayList<>();
+        private final PairCounts pairCounts = new PairCounts();
+        private int[] versionEntryIds = new int[16];
+
+        /**
+         *
+         * @param resource - a resource with duplicates, each version pair of the resource counts as one overlap
+         */
+        public void add(ClasspathResource resource) {
+            List<ClasspathResourceVersion> versions = resource.getResourceFileVersions();
+            if (versions.size() > versionEntryIds.length) {
+                versionEntryIds = new int[versions.size() * 2];
+            }
+            for (int i = 0; i < versions.size(); i++) {
+                ClasspathEntry entry = versions.get(i).getClasspathEntry();
+                Integer entryId = entryIds.get(entry);
+                if (entryId == null) {
+                    entryId = entries.size();
+                    entries.add(entry);
+                    entryIds.put(entry, entryId);
+                }
+                versionEntryIds[i] = entryId;
+            }
+            for (int i = 0; i < versions.size(); i++) {
+                for (int j = i + 1; j < versions.size(); j++) {
+                    pairCounts.increment(versionEntryIds[i], versionEntryIds[j]);
+                }
+            }
+        }
+
+        /**
+         * @return - the overlap counts of the resources added so far
+         */
+        public JarOverlaps toJarOverlaps() {
+            return build(entries, pairCounts);
+        }
+    }
+
+    private static JarOverlaps build(List<ClasspathEntry> entries, PairCounts pairCounts) {
+        final List<JarPair> overlappingJars = new ArrayList<>(pairCounts.size());
+        final long[] pairKeys = new long[pairCounts.size()];
+        Integer[] order = new Integer[pairCounts.size()];
+        int pairIndex = 0;
+        for (int slot = 0; slot < pairCounts.keys.length; slot++) {
+            long key = pairCounts.keys[slot];
+            if (key != PairCounts.EMPTY) {
+                ClasspathEntry jar1 = entries.get((int) (key >>> 32));
+                ClasspathEntry jar2 = entries.get((int) key);
+                overlappingJars.add(new JarPair(jar1, jar2, pairCounts.counts[slot]));
+                pairKeys[pairIndex] = key;
+                order[pairIndex] = pairIndex;
+                pairIndex++;
+            }
+        }
+
+        // the pairs with the most overlapping classes first, ties in order of the jar ids
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer pair1, Integer pair2) {
+                int byCount = overlappingJars.get(pair2).getDupClassesTotal().compareTo(overlappingJars.get(pair1).getDupClassesTotal());
+                return byCount != 0 ? byCount : Long.compare(pairKeys[pair1], pairKeys[pair2]);
+            }
+        });
+
+        List<JarPair> sorted = new ArrayList<>(order.length);
+        Map<ClazzLoader, List<JarPair>> byClassLoader = new LinkedHashMap<>();
+        List<JarPair> crossClassLoader = new ArrayList<>();
+        for (Integer index : order) {
+            JarPair jarPair = overlappingJars.get(index);
+            sorted.add(jarPair);
+            ClazzLoader classLoader = jarPair.getJar1().getClassLoader();
+            if (Objects.equals(classLoader, jarPair.getJar2().getClassLoader())) {
+                List<JarPair> classLoaderPairs = byClassLoader.get(classLoader);
+                if (classLoaderPairs == null) {
+                    classLoaderPairs = new ArrayList<>();
+                    byClassLoader.put(classLoader, classLoaderPairs);
+                }
+                classLoaderPairs.add(jarPair);
+            } else {
+                crossClassLoader.add(jarPair);
+            }
+        }
+
+        return new JarOverlaps(sorted, byClassLoader, crossClassLoader);
+    }
+
+    /**
+     * @return the jar pairs that have overlapping classes, the pairs with the most overlapping classes first
+     */
+    public List<JarPair> getOverlappingJars() {
+        return Collections.unmodifiableList(overlappingJars);
+    }
+
+    /**
+     * @return the overlapping jar pairs where both jars belong to the same class loader, per class loader
+     */
+    public Map<ClazzLoader, List<JarPair>> getOverlappingJarsByClassLoader() {
+        return Collections.unmodifiableMap(overlappingJarsByClassLoader);
+    }
+
+    /**
+     * @return the overlapping jar pairs where the jars belong to different class loaders
+     */
+    public List<JarPair> getCrossClassLoaderOverlaps() {
+        return Collections.unmodifiableList(crossClassLoaderOverlaps);
+    }
+
+    /**
+     *
+     * Open-addressing map from a pair of entry ids to the number of overlapping classes, the pair is stored as a long
+     * with the smallest id in the high bits.
+     *
+     */
+    private static final class PairCounts {
+
+        private static final long EMPTY = -1L;
+        private long[] keys = newKeys(256);
+        private long[] counts = new long[256];
+        private int size;
+
+        void increment(int entryId1, int entryId2) {
+            long key = entryId1 <= entryId2
+                    ? ((long) entryId1 << 32) | entryId2
+                    : ((long) entryId2 << 32) | entryId1;
+            int slot = find(keys, key);
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                size++;
+                if (size * 2 > keys.length) {
+                    resize();
+                    slot = find(keys, key);
+                }
+            }
+            counts[slot]++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            long[] oldCounts = counts;
+            keys = newKeys(oldKeys.length * 2);
+            counts = new long[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = find(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static int find(long[] keys, long key) {
+            int mask = keys.length - 1;
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.jhades.model;
+
+import java.util.List;
+
+/**
+ *
+ * Provides support for the built-in class loaders of Java 9 and later JVMs, whose classes are in the modules of the JDK
+ * image instead of jars. The application class loader also has the entries of the java.class.path system property.
+ *
+ */
+public class JrtClazzLoader extends ClazzLoader {
+
+    public JrtClazzLoader(String name, String details, List<String> urls) {
+        super(name, details, true);
+        for (String url : urls) {
+            addClasspathEntry(new ClasspathEntry(this, url));
+        }
+    }
+}
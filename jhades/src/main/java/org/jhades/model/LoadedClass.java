@@ -0,0 +1,56 @@
+package org.jhades.model;
+
+/**
+ *
+ * Model class for a class loaded by the JVM: its name, the class loader that defined it and the location of its code
+ * source.
+ *
+ * The class itself is not referenced, only its class loader, so a snapshot of the loaded classes should not be kept
+ * longer than needed for building the classpath index.
+ *
+ */
+public class LoadedClass {
+
+    private final String className;
+    private final ClassLoader classLoader;
+    private final String location;
+
+    /**
+     *
+     * @param className - the fully qualified class name
+     * @param classLoader - the class loader that defined the class, null for the bootstrap class loader
+     * @param location - the url of the code source of the class, or null if not known
+     */
+    public LoadedClass(String className, ClassLoader classLoader, String location) {
+        this.className = className;
+        this.classLoader = classLoader;
+        this.location = location;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return the name of the class file resource, such as /org/jhades/JHades.class
+     */
+    public String getResourceName() {
+        return "/" + className.replace('.', '/') + ".class";
+    }
+
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    /**
+     * @return the url of the code source of the class, such as file:/lib/jhades.jar, or null if not known
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadedClass{" + "className=" + className + ", location=" + location + '}';
+    }
+}
@@ -0,0 +1,47 @@
+package org.jhades.model;
+
+/**
+ *
+ * Model class for a loaded class that has versions with different contents on the classpath.
+ *
+ */
+public class LoadedClassConflict {
+
+    private final LoadedClass loadedClass;
+    private final ClasspathResource resource;
+
+    public LoadedClassConflict(LoadedClass loadedClass, ClasspathResource resource) {
+        this.loadedClass = loadedClass;
+        this.resource = resource;
+    }
+
+    public LoadedClass getLoadedClass() {
+        return loadedClass;
+    }
+
+    /**
+     * @return the class file resource and its versions that the defining class loader of the class can see
+     */
+    public ClasspathResource getResource() {
+        return resource;
+    }
+
+    /**
+     * @return the version the class was defined from, found by the code source location of the class, or null if the
+     * location is not known or is not a classpath entry
+     */
+    public ClasspathResourceVersion getLoadedVersion() {
+        String location = loadedClass.getLocation();
+        if (location == null) {
+            return null;
+        }
+        String fatJarEntryUrl = FatJarClazzLoader.toClasspathEntryUrl(location);
+        String entryUrl = fatJarEntryUrl != null ? fatJarEntryUrl : location;
+        for (ClasspathResourceVersion version : resource.getResourceFileVersions()) {
+            if (version.getClasspathEntry().getUrl().equals(entryUrl)) {
+                return version;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,159 @@
+package org.jhades.model;
+
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import org.jhades.service.ClasspathScannerListener;
+import org.jhades.utils.StdOutLogger;
+
+/**
+ *
+ * Utility class for cross-referencing the classes loaded by the JVM, such as the ones returned by
+ * Instrumentation.getAllLoadedClasses, with the versions found by a classpath scan.
+ *
+ */
+public final class LoadedClasses {
+
+    private LoadedClasses() {
+        throw new UnsupportedOperationException("Utility classes cannot be instantiated.");
+    }
+
+    /**
+     *
+     * Takes a snapshot of the loaded classes: only the name, the class loader and the code source location of each
+     * class are read. Array and primitive classes are skipped.
+     *
+     * @param classes - the loaded classes
+     * @return the snapshot of the loaded classes
+     */
+    public static List<LoadedClass> snapshot(Class<?>[] classes) {
+        List<LoadedClass> loadedClasses = new ArrayList<>(classes.length);
+        for (Class<?> clazz : classes) {
+            if (!clazz.isArray() && !clazz.isPrimitive()) {
+                loadedClasses.add(new LoadedClass(clazz.getName(), clazz.getClassLoader(), findLocation(clazz)));
+            }
+        }
+        return loadedClasses;
+    }
+
+    private static String findLocation(Class<?> clazz) {
+        try {
+            ProtectionDomain protectionDomain = clazz.getProtectionDomain();
+            CodeSource codeSource = protectionDomain != null ? protectionDomain.getCodeSource() : null;
+            return codeSource != null && codeSource.getLocation() != null ? codeSource.getLocation().toString() : null;
+        } catch (SecurityException exc) {
+            return null;
+        }
+    }
+
+    /**
+     *
+     * Scans the class loaders that defined the loaded classes, their ancestors, and the bootstrap class loader. Only the
+     * class loaders that defined classes with a known code source are scanned, the others are generated classes such as
+     * reflection accessors. A class loader not supported by the ClazzLoaderFactory is modeled by the code source
+     * locations of its classes, see CodeSourceClazzLoader.
+     *
+     * @param loadedClasses - the snapshot of the loaded classes
+     * @param listener - the scan listener, can be null
+     * @param scanPool - the pool used to scan entries concurrently, or null to scan them sequentially
+     * @return the classpath index of the class loaders, ordered from child to parent, and the model of each class loader
+     */
+    public static LoadedClassesIndex buildIndex(List<LoadedClass> loadedClasses, StdOutLogger logger,
+            ClasspathScannerListener listener, ForkJoinPool scanPool) {
+        final Map<ClassLoader, Set<String>> locationsByClassLoader = new IdentityHashMap<>();
+        for (LoadedClass loadedClass : loadedClasses) {
+            if (loadedClass.getClassLoader() != null && loadedClass.getLocation() != null) {
+                Set<String> locations = locationsByClassLoader.get(loadedClass.getClassLoader());
+                if (locations == null) {
+                    locations = new LinkedHashSet<>();
+                    locationsByClassLoader.put(loadedClass.getClassLoader(), locations);
+                }
+                locations.add(loadedClass.getLocation());
+            }
+        }
+        // the ancestors hold the versions their descendants can see, even if they defined no class themselves
+        for (ClassLoader classLoader : new ArrayList<>(locationsByClassLoader.keySet())) {
+            for (ClassLoader parent = classLoader.getParent(); parent != null; parent = parent.getParent()) {
+                if (!locationsByClassLoader.containsKey(parent)) {
+                    locationsByClassLoader.put(parent, Collections.<String>emptySet());
+                }
+            }
+        }
+
+        final Map<ClassLoader, Integer> depths = new IdentityHashMap<>();
+        for (ClassLoader classLoader : locationsByClassLoader.keySet()) {
+            int depth = 0;
+            for (ClassLoader parent = classLoader.getParent(); parent != null; parent = parent.getParent()) {
+                depth++;
+            }
+            depths.put(classLoader, depth);
+        }
+        List<ClassLoader> classLoaders = new ArrayList<>(locationsByClassLoader.keySet());
+        Collections.sort(classLoaders, new Comparator<ClassLoader>() {
+            @Override
+            public int compare(ClassLoader classLoader1, ClassLoader classLoader2) {
+                return Integer.compare(depths.get(classLoader2), depths.get(classLoader1));
+            }
+        });
+
+        Map<ClassLoader, ClazzLoader> clazzLoadersByClassLoader = new IdentityHashMap<>();
+        List<ClazzLoader> clazzLoaders = new ArrayList<>();
+        for (ClassLoader classLoader : classLoaders) {
+            ClazzLoader clazzLoader = ClazzLoaderFactory.createClazzLoader(classLoader);
+            if (clazzLoader == null) {
+                clazzLoader = new CodeSourceClazzLoader(classLoader.getClass().getName(), classLoader.toString(),
+                        locationsByClassLoader.get(classLoader));
+            }
+            clazzLoadersByClassLoader.put(classLoader, clazzLoader);
+            clazzLoaders.add(clazzLoader);
+        }
+        ClazzLoader bootstrapClassLoader = ClazzLoaderFactory.createBootstrapClassLoader();
+        clazzLoaders.add(bootstrapClassLoader);
+        ClasspathIndex classpathIndex = ClasspathIndex.build(clazzLoaders, logger, listener, scanPool);
+        return new LoadedClassesIndex(classpathIndex, clazzLoadersByClassLoader, bootstrapClassLoader);
+    }
+
+    /**
+     *
+     * Joins the loaded classes with the resources of an index: a loaded class is reported if its class file has
+     * versions with different contents among the versions its defining class loader can see. Identical copies of the
+     * same class file, and copies that belong to sibling class loaders, are not reported.
+     *
+     * @param loadedClasses - the snapshot of the loaded classes
+     * @param index - the index of the class loaders of the loaded classes
+     * @return the loaded classes with conflicting versions, in class name order
+     */
+    public static List<LoadedClassConflict> findConflicts(List<LoadedClass> loadedClasses, LoadedClassesIndex index) {
+        Map<String, ClasspathResource> conflictingResources = new HashMap<>();
+        for (ClasspathResource resource : index.getClasspathIndex().findResourcesWithDuplicates(true)) {
+            conflictingResources.put(resource.getName(), resource);
+        }
+        List<LoadedClassConflict> conflicts = new ArrayList<>();
+        for (LoadedClass loadedClass : loadedClasses) {
+            ClasspathResource resource = conflictingResources.get(loadedClass.getResourceName());
+            if (resource != null) {
+                ClasspathResource visibleResource = new ClasspathResource(resource.getName(),
+                        index.findVisibleVersions(resource, loadedClass.getClassLoader()));
+                if (visibleResource.hasConflictingVersions()) {
+                    conflicts.add(new LoadedClassConflict(loadedClass, visibleResource));
+                }
+            }
+        }
+        Collections.sort(conflicts, new Comparator<LoadedClassConflict>() {
+            @Override
+            public int compare(LoadedClassConflict conflict1, LoadedClassConflict conflict2) {
+                return conflict1.getLoadedClass().getClassName().compareTo(conflict2.getLoadedClass().getClassName());
+            }
+        });
+        return conflicts;
+    }
+}
@@ -0,0 +1,64 @@
+package org.jhades.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *
+ * The classpath index of the class loaders that defined the loaded classes, and the model of each of these class
+ * loaders, so that the versions of a class can be restricted to the ones its defining class loader can see: the
+ * versions of its own entries and of the entries of its ancestors. A sibling class loader, such as another web
+ * application, has its own copy of a class that is not a conflict.
+ *
+ * @see LoadedClasses#buildIndex
+ *
+ */
+public class LoadedClassesIndex {
+
+    private final ClasspathIndex classpathIndex;
+    private final Map<ClassLoader, ClazzLoader> clazzLoaders;
+    private final ClazzLoader bootstrapClassLoader;
+    private final Map<ClassLoader, Set<ClazzLoader>> visibleClazzLoaders = new IdentityHashMap<>();
+
+    LoadedClassesIndex(ClasspathIndex classpathIndex, Map<ClassLoader, ClazzLoader> clazzLoaders, ClazzLoader bootstrapClassLoader) {
+        this.classpathIndex = classpathIndex;
+        this.clazzLoaders = clazzLoaders;
+        this.bootstrapClassLoader = bootstrapClassLoader;
+    }
+
+    public ClasspathIndex getClasspathIndex() {
+        return classpathIndex;
+    }
+
+    /**
+     *
+     * @param resource - a resource of the index
+     * @param classLoader - the class loader, null for the bootstrap class loader
+     * @return the versions of the resource on the entries of the class loader and of its ancestors, in index order
+     */
+    public synchronized List<ClasspathResourceVersion> findVisibleVersions(ClasspathResource resource, ClassLoader classLoader) {
+        Set<ClazzLoader> visible = visibleClazzLoaders.get(classLoader);
+        if (visible == null) {
+            visible = Collections.newSetFromMap(new IdentityHashMap<ClazzLoader, Boolean>());
+            for (ClassLoader ancestor = classLoader; ancestor != null; ancestor = ancestor.getParent()) {
+                ClazzLoader clazzLoader = clazzLoaders.get(ancestor);
+                if (clazzLoader != null) {
+                    visible.add(clazzLoader);
+                }
+            }
+            visible.add(bootstrapClassLoader);
+            visibleClazzLoaders.put(classLoader, visible);
+        }
+        List<ClasspathResourceVersion> versions = new ArrayList<>();
+        for (ClasspathResourceVersion version : resource.getResourceFileVersions()) {
+            if (visible.contains(version.getClasspathEntry().getClassLoader())) {
+                versions.add(version);
+            }
+        }
+        return versions;
+    }
+}
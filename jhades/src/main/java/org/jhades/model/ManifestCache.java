@@ -0,0 +1,72 @@
+package org.jhades.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ *
+ * In-memory cache of the manifest Class-Path attribute of the jars, so that the jars whose manifest was already read
+ * are not opened again each time the class loader model is built.
+ *
+ * A manifest is cached either when the classpath of a class loader is resolved, or when a jar of a class loader is
+ * listed by a scan - the manifest is then read from the central directory that was opened for the listing. Each cached
+ * attribute is checked against the size and modification time of the jar file, or of the outer zip for nested jars.
+ *
+ */
+final class ManifestCache {
+
+    private static final ConcurrentMap<String, CachedClassPath> classPaths = new ConcurrentHashMap<>();
+
+    private ManifestCache() {
+        throw new UnsupportedOperationException("Utility classes cannot be instantiated.");
+    }
+
+    private static final class CachedClassPath {
+
+        private final long size;
+        private final long lastModified;
+        private final String classPath;
+
+        CachedClassPath(long size, long lastModified, String classPath) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.classPath = classPath;
+        }
+    }
+
+    /**
+     *
+     * @param url - the url of the jar
+     * @param file - the jar file, or the outer zip file for nested jars
+     * @return the Class-Path attribute of the jar manifest, empty if the jar has none, or null if not cached or if the
+     * file changed since it was cached
+     */
+    static String get(String url, Path file) throws IOException {
+        CachedClassPath cached = classPaths.get(url);
+        if (cached == null) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (cached.size != attributes.size() || cached.lastModified != attributes.lastModifiedTime().toMillis()) {
+            classPaths.remove(url, cached);
+            return null;
+        }
+        return cached.classPath;
+    }
+
+    /**
+     *
+     * @param url - the url of the jar
+     * @param file - the jar file, or the outer zip file for nested jars
+     * @param classPath - the Class-Path attribute of the jar manifest, null or empty if the jar has none
+     */
+    static void put(String url, Path file, String classPath) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        classPaths.put(url, new CachedClassPath(attributes.size(), attributes.lastModifiedTime().toMillis(),
+                classPath != null ? classPath : ""));
+    }
+}
@@ -0,0 +1,50 @@
+package org.jhades.model;
+
+import java.util.List;
+
+/**
+ *
+ * Model class for the resolution of a resource name: all the versions of the resource, in the order in which the
+ * class loaders would find them, and the version that is actually loaded.
+ *
+ */
+public class ResolvedResource {
+
+    private final String resourceName;
+    private final List<ClasspathResourceVersion> versions;
+
+    public ResolvedResource(String resourceName, List<ClasspathResourceVersion> versions) {
+        this.resourceName = resourceName;
+        this.versions = versions;
+    }
+
+    /**
+     * @return the resource name, as it was requested
+     */
+    public String getResourceName() {
+        return resourceName;
+    }
+
+    /**
+     * @return all the versions of the resource in delegation order, empty if the resource was not found
+     */
+    public List<ClasspathResourceVersion> getVersions() {
+        return versions;
+    }
+
+    /**
+     * @return the version that is loaded, the first one in delegation order, or null if the resource was not found
+     */
+    public ClasspathResourceVersion getWinningVersion() {
+        return versions.isEmpty() ? null : versions.get(0);
+    }
+
+    public boolean isFound() {
+        return !versions.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ResolvedResource{" + "resourceName=" + resourceName + ", versions=" + versions + '}';
+    }
+}
@@ -0,0 +1,331 @@
+package org.jhades.model;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.jhades.utils.RegexLiterals;
+
+/**
+ *
+ * Trie of classpath resource names, with one node per package / folder name.
+ *
+ * Regular expression searches use the literal prefix of anchored expressions to visit only the matching sub-trees, and
+ * the literal text required by the expression to discard most names before running the regular expression matcher.
+ * Big searches are split across the cores of the machine.
+ *
+ */
+public final class ResourceNameTrie {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int PARALLEL_SEARCH_THRESHOLD = 20000;
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private final ResourceTable resourceTable;
+    private final Node root = new Node(null, "");
+
+    private ResourceNameTrie(ResourceTable resourceTable) {
+        this.resourceTable = resourceTable;
+    }
+
+    /**
+     *
+     * A node of the trie, it corresponds to a folder or to a resource, or both.
+     *
+     */
+    private static final class Node {
+
+        private final Node parent;
+        private final String segment;
+        private List<Node> childList = new ArrayList<>();
+        private Node[] children = NO_CHILDREN;
+        private int nameId = -1;
+        private int resourcesInSubTree;
+
+        Node(Node parent, String segment) {
+            this.parent = parent;
+            this.segment = segment;
+        }
+
+        /**
+         *
+         * The names are added in name order, so a child can only be found again after the siblings that start with
+         * its segment: the resource /a is followed by /a-b, /a.c... before the names in the folder /a/.
+         *
+         */
+        Node getOrAddChild(String childSegment) {
+            for (int i = childList.size() - 1; i >= 0 && childList.get(i).segment.startsWith(childSegment); i--) {
+                if (childList.get(i).segment.length() == childSegment.length()) {
+                    return childList.get(i);
+                }
+            }
+            Node child = new Node(this, childSegment);
+            childList.add(child);
+            return child;
+        }
+
+        /**
+         *
+         * Replaces the children list by a sorted array, once all names are added.
+         *
+         */
+        int freeze() {
+            children = childList.toArray(new Node[childList.size()]);
+            childList = null;
+            Arrays.sort(children, new Comparator<Node>() {
+                @Override
+                public int compare(Node node1, Node node2) {
+                    return node1.segment.compareTo(node2.segment);
+                }
+            });
+            resourcesInSubTree = nameId >= 0 ? 1 : 0;
+            for (Node child : children) {
+                resourcesInSubTree += child.freeze();
+            }
+            return resourcesInSubTree;
+        }
+    }
+
+    /**
+     *
+     * Builds the trie of the resource names of a table, reading the UTF-8 names in name order without decoding them:
+     * the names under a folder are next to each other, so only the segments that differ from the previous name are
+     * decoded.
+     *
+     */
+    public static ResourceNameTrie build(ResourceTable resourceTable) {
+        ResourceNameTrie trie = new ResourceNameTrie(resourceTable);
+        // the nodes of the previous name, and the offset of the end of each of their segments
+        Node[] path = new Node[16];
+        int[] segmentEnds = new int[16];
+        int depth = 0;
+        byte[] previous = new byte[256];
+        int previousLength = 0;
+        byte[] name = new byte[256];
+        for (int nameId : resourceTable.getNameIdsInNameOrder()) {
+            int length = resourceTable.getNameLength(nameId);
+            if (length > name.length) {
+                name = new byte[Math.max(length, name.length * 2)];
+            }
+            resourceTable.copyName(nameId, name);
+
+            int common = 0;
+            int commonLength = Math.min(length, previousLength);
+            while (common < commonLength && name[common] == previous[common]) {
+                common++;
+            }
+            // the segments of the previous name kept by this name
+            int kept = 0;
+            while (kept < depth && segmentEnds[kept] <= common
+                    && (segmentEnds[kept] == length || name[segmentEnds[kept]] == '/')) {
+                kept++;
+            }
+
+            Node node = kept > 0 ? path[kept - 1] : trie.root;
+            depth = kept;
+            int start = kept > 0 ? segmentEnds[kept - 1] + 1 : 0;
+            while (start <= length) {
+                int end = start;
+                while (end < length && name[end] != '/') {
+                    end++;
+                }
+                node = node.getOrAddChild(new String(name, start, end - start, UTF_8));
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, depth * 2);
+                    segmentEnds = Arrays.copyOf(segmentEnds, depth * 2);
+                }
+                path[depth] = node;
+                segmentEnds[depth] = end;
+                depth++;
+                start = end + 1;
+            }
+            node.nameId = nameId;
+
+            byte[] swap = previous;
+            previous = name;
+            previousLength = length;
+            name = swap;
+        }
+        trie.root.freeze();
+        return trie;
+    }
+
+    public int size() {
+        return root.resourcesInSubTree;
+    }
+
+    /**
+     *
+     * Finds the resources whose names match a regular expression, in path order: folder by folder, in alphabetical
+     * order. Only the matching resources are created, as views over the resource table.
+     *
+     * @param pattern - the regular expression, that can match anywhere in the resource name
+     * @param pool - the pool used to split big searches, or null to search sequentially
+     * @return the matching resources
+     */
+    public List<ClasspathResource> search(Pattern pattern, ForkJoinPool pool) {
+        RegexLiterals literals = RegexLiterals.analyze(pattern);
+
+        List<Node> candidates = new ArrayList<>();
+        if (literals.getPrefix() != null) {
+            findPrefixNodes(literals.getPrefix(), candidates);
+        } else {
+            candidates.add(root);
+        }
+
+        int candidateResources = 0;
+        for (Node candidate : candidates) {
+            candidateResources += candidate.resourcesInSubTree;
+        }
+
+        Node[] nodes = candidates.toArray(new Node[candidates.size()]);
+        SearchTask search = new SearchTask(resourceTable, nodes, 0, nodes.length, pattern, literals.getRequiredLiteral());
+        if (candidateResources < PARALLEL_SEARCH_THRESHOLD || pool == null) {
+            return search.compute();
+        }
+        return pool.invoke(search);
+    }
+
+    /**
+     *
+     * Finds the nodes under which all names start with the given prefix: the nodes of the complete segments of the
+     * prefix are followed, and the children of the last node are selected by the last (partial) segment.
+     *
+     */
+    private void findPrefixNodes(String prefix, List<Node> candidates) {
+        String[] segments = prefix.split("/", -1);
+        Node node = root;
+        for (int i = 0; i < segments.length - 1; i++) {
+            node = findChild(node, segments[i]);
+            if (node == null) {
+                return;
+            }
+        }
+        String partialSegment = segments[segments.length - 1];
+        int first = firstChildStartingWith(node, partialSegment);
+        for (int i = first; i < node.children.length && node.children[i].segment.startsWith(partialSegment); i++) {
+            candidates.add(node.children[i]);
+        }
+    }
+
+    private static Node findChild(Node node, String segment) {
+        int index = firstChildStartingWith(node, segment);
+        if (index < node.children.length && node.children[index].segment.equals(segment)) {
+            return node.children[index];
+        }
+        return null;
+    }
+
+    private static int firstChildStartingWith(Node node, String prefix) {
+        int low = 0;
+        int high = node.children.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (node.children[middle].segment.compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     *
+     * Searches a range of sibling sub-trees, splitting the work while the range is big enough.
+     *
+     */
+    private static final class SearchTask extends RecursiveTask<List<ClasspathResource>> {
+
+        private final ResourceTable resourceTable;
+        private final Node[] nodes;
+        private final int from;
+        private final int to;
+        private final Pattern pattern;
+        private final String requiredLiteral;
+
+        SearchTask(ResourceTable resourceTable, Node[] nodes, int from, int to, Pattern pattern, String requiredLiteral) {
+            this.resourceTable = resourceTable;
+            this.nodes = nodes;
+            this.from = from;
+            this.to = to;
+            this.pattern = pattern;
+            this.requiredLiteral = requiredLiteral;
+        }
+
+        @Override
+        protected List<ClasspathResource> compute() {
+            int resources = 0;
+            for (int i = from; i < to; i++) {
+                resources += nodes[i].resourcesInSubTree;
+            }
+
+            List<ClasspathResource> matches = new ArrayList<>();
+            if (resources < PARALLEL_SEARCH_THRESHOLD || getPool() == null) {
+                Matcher matcher = pattern.matcher("");
+                for (int i = from; i < to; i++) {
+                    searchSubTree(nodes[i], pathOf(nodes[i].parent), matcher, matches);
+                }
+            } else if (to - from == 1) {
+                Node node = nodes[from];
+                if (node.nameId >= 0) {
+                    StringBuilder name = pathOf(node.parent).append(node.segment);
+                    match(node.nameId, name, pattern.matcher(""), matches);
+                }
+                matches.addAll(new SearchTask(resourceTable, node.children, 0, node.children.length, pattern,
+                        requiredLiteral).compute());
+            } else {
+                int middle = (from + to) >>> 1;
+                SearchTask following = new SearchTask(resourceTable, nodes, middle, to, pattern, requiredLiteral);
+                following.fork();
+                matches.addAll(new SearchTask(resourceTable, nodes, from, middle, pattern, requiredLiteral).compute());
+                matches.addAll(following.join());
+            }
+            return matches;
+        }
+
+        /**
+         *
+         * @return the names of the nodes from the root to the given folder node, each followed by a slash
+         */
+        private static StringBuilder pathOf(Node folder) {
+            if (folder == null || folder.parent == null) {
+                return new StringBuilder();
+            }
+            return pathOf(folder.parent).append(folder.segment).append('/');
+        }
+
+        /**
+         *
+         * The name of each node is appended to the path of its parent, no String is created for the names that don't
+         * match.
+         *
+         */
+        private void searchSubTree(Node node, StringBuilder path, Matcher matcher, List<ClasspathResource> matches) {
+            int parentLength = path.length();
+            path.append(node.segment);
+            if (node.nameId >= 0) {
+                match(node.nameId, path, matcher, matches);
+            }
+            if (node.children.length > 0) {
+                if (node.parent != null) {
+                    path.append('/');
+                }
+                for (Node child : node.children) {
+                    searchSubTree(child, path, matcher, matches);
+                }
+            }
+            path.setLength(parentLength);
+        }
+
+        private void match(int nameId, StringBuilder name, Matcher matcher, List<ClasspathResource> matches) {
+            if ((requiredLiteral == null || name.indexOf(requiredLiteral) >= 0) && matcher.reset(name).find()) {
+                matches.add(resourceTable.getResource(nameId));
+            }
+        }
+    }
+}
@@ -0,0 +1,664 @@
+package org.jhades.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * Compact table of all the resource versions of a classpath.
+ *
+ * Each resource name is stored only once, UTF-8 encoded in a byte arena that can be allocated off-heap, and is
+ * identified by its name id. The versions are stored as parallel arrays of name id, entry id, size and CRC, grouped by
+ * name in classpath order.
+ *
+ * ClasspathResource and ClasspathResourceVersion instances are not stored: they are created on demand as read-only
+ * views over the table, so callers should not rely on their identity.
+ *
+ */
+public final class ResourceTable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // the CRC-32 of a class folder or module resource that could not be read, so that it's not read again
+    private static final long UNREADABLE_CRC = -2;
+    private final List<ClasspathEntry> classpathEntries;
+    private final ByteBuffer nameArena;
+    private final int[] nameOffsets;
+    private final int[] nameHashTable;
+    private final int nameCount;
+    private final int[] versionEntryIds;
+    private final long[] versionSizes;
+    private final AtomicLongArray versionCrcs;
+    private final short[] versionClassMajorVersions;
+    private final int[] firstVersionOfName;
+    private final int[] versionsByName;
+    private int[] nameIdsInNameOrder;
+
+    private ResourceTable(Builder builder, boolean offHeap) {
+        this.classpathEntries = Collections.unmodifiableList(new ArrayList<>(builder.classpathEntries));
+        this.nameCount = builder.nameCount;
+        this.nameOffsets = Arrays.copyOf(builder.nameOffsets, nameCount + 1);
+        this.nameHashTable = builder.nameHashTable;
+
+        ByteBuffer arena = offHeap ? ByteBuffer.allocateDirect(builder.arenaSize) : ByteBuffer.allocate(builder.arenaSize);
+        arena.put(builder.arena, 0, builder.arenaSize);
+        arena.flip();
+        this.nameArena = arena;
+
+        int versionCount = builder.versionCount;
+        this.versionEntryIds = Arrays.copyOf(builder.versionEntryIds, versionCount);
+        this.versionSizes = Arrays.copyOf(builder.versionSizes, versionCount);
+        this.versionCrcs = new AtomicLongArray(Arrays.copyOf(builder.versionCrcs, versionCount));
+        this.versionClassMajorVersions = Arrays.copyOf(builder.versionClassMajorVersions, versionCount);
+
+        // counting sort of the versions by name id, the classpath order is kept within each name
+        this.firstVersionOfName = new int[nameCount + 1];
+        for (int i = 0; i < versionCount; i++) {
+            firstVersionOfName[builder.versionNameIds[i] + 1]++;
+        }
+        for (int nameId = 0; nameId < nameCount; nameId++) {
+            firstVersionOfName[nameId + 1] += firstVersionOfName[nameId];
+        }
+        this.versionsByName = new int[versionCount];
+        int[] nextPosition = Arrays.copyOf(firstVersionOfName, nameCount);
+        for (int i = 0; i < versionCount; i++) {
+            versionsByName[nextPosition[builder.versionNameIds[i]]++] = i;
+        }
+    }
+
+    /**
+     *
+     * Collects the resource versions streamed out of the classpath entries, interning the resource names as they come.
+     *
+     * A builder is not thread-safe, the versions must be visited from one thread in classpath order.
+     *
+     */
+    public static final class Builder implements ClasspathEntry.ResourceVersionVisitor {
+
+        private final List<ClasspathEntry> classpathEntries = new ArrayList<>();
+        private final Map<ClasspathEntry, Integer> entryIds = new IdentityHashMap<>();
+        private ClasspathEntry lastEntry;
+        private int lastEntryId;
+        private byte[] arena = new byte[64 * 1024];
+        private int arenaSize;
+        private int[] nameOffsets = new int[1024];
+        private int[] nameHashTable = new int[2048];
+        private int nameCount;
+        private int[] versionNameIds = new int[1024];
+        private int[] versionEntryIds = new int[1024];
+        private long[] versionSizes = new long[1024];
+        private long[] versionCrcs = new long[1024];
+        private short[] versionClassMajorVersions = new short[1024];
+        private int versionCount;
+
+        @Override
+        public void visitResourceVersion(ClasspathResourceVersion resourceVersion) {
+            byte[] name = resourceVersion.getResourceName().getBytes(UTF_8);
+            addVersion(intern(name, name.length), entryId(resourceVersion.getClasspathEntry()),
+                    resourceVersion.getFileSize(), resourceVersion.getKnownCrc(), resourceVersion.getClassMajorVersion());
+        }
+
+        /**
+         *
+         * Adds a resource name without creating a String for it, such as a name read from a snapshot file.
+         *
+         * @param name - the UTF-8 encoded name, in the first bytes of the array
+         * @param length - the length of the name in bytes
+         * @return the name id
+         */
+        int addName(byte[] name, int length) {
+            return intern(name, length);
+        }
+
+        /**
+         * @return the number of distinct names added so far, the id of the next new name
+         */
+        int getNameCount() {
+            return nameCount;
+        }
+
+        /**
+         *
+         * Adds a version of an already added name, the entry id is the position of the entry in the order the entries
+         * were added.
+         *
+         */
+        void addVersion(int nameId, int entryId, long size, long crc) {
+            addVersion(nameId, entryId, size, crc, -1);
+        }
+
+        void addVersion(int nameId, int entryId, long size, long crc, int classMajorVersion) {
+            if (versionCount == versionNameIds.length) {
+                int capacity = versionCount * 2;
+                versionNameIds = Arrays.copyOf(versionNameIds, capacity);
+                versionEntryIds = Arrays.copyOf(versionEntryIds, capacity);
+                versionSizes = Arrays.copyOf(versionSizes, capacity);
+                versionCrcs = Arrays.copyOf(versionCrcs, capacity);
+                versionClassMajorVersions = Arrays.copyOf(versionClassMajorVersions, capacity);
+            }
+            versionNameIds[versionCount] = nameId;
+            versionEntryIds[versionCount] = entryId;
+            versionSizes[versionCount] = size;
+            versionCrcs[versionCount] = crc;
+            versionClassMajorVersions[versionCount] = (short) classMajorVersion;
+            versionCount++;
+        }
+
+        /**
+         *
+         * Registers a classpath entry, so that it's part of the table even if it has no resources.
+         *
+         */
+        public void addClasspathEntry(ClasspathEntry classpathEntry) {
+            entryId(classpathEntry);
+        }
+
+        public ResourceTable build(boolean offHeap) {
+            return new ResourceTable(this, offHeap);
+        }
+
+        private int entryId(ClasspathEntry classpathEntry) {
+            if (classpathEntry != lastEntry) {
+                Integer entryId = entryIds.get(classpathEntry);
+                if (entryId == null) {
+                    entryId = classpathEntries.size();
+                    classpathEntries.add(classpathEntry);
+                    entryIds.put(classpathEntry, entryId);
+                }
+                lastEntry = classpathEntry;
+                lastEntryId = entryId;
+            }
+            return lastEntryId;
+        }
+
+        private int intern(byte[] name, int length) {
+            int mask = nameHashTable.length - 1;
+            int slot = hash(name, 0, length) & mask;
+            while (nameHashTable[slot] != 0) {
+                int nameId = nameHashTable[slot] - 1;
+                if (nameEquals(nameId, name, length)) {
+                    return nameId;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            int nameId = nameCount++;
+            if (arenaSize + length > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+            }
+            System.arraycopy(name, 0, arena, arenaSize, length);
+            if (nameCount + 1 > nameOffsets.length) {
+                nameOffsets = Arrays.copyOf(nameOffsets, nameOffsets.length * 2);
+            }
+            nameOffsets[nameId] = arenaSize;
+            arenaSize += length;
+            nameOffsets[nameCount] = arenaSize;
+            nameHashTable[slot] = nameId + 1;
+
+            // keep the hash table at most half full
+            if (nameCount * 2 > nameHashTable.length) {
+                rehash();
+            }
+            return nameId;
+        }
+
+        private boolean nameEquals(int nameId, byte[] name, int length) {
+            int offset = nameOffsets[nameId];
+            if (nameOffsets[nameId + 1] - offset != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (arena[offset + i] != name[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            int[] table = new int[nameHashTable.length * 2];
+            int mask = table.length - 1;
+            for (int nameId = 0; nameId < nameCount; nameId++) {
+                int slot = hash(arena, nameOffsets[nameId], nameOffsets[nameId + 1]) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = nameId + 1;
+            }
+            nameHashTable = table;
+        }
+    }
+
+    private static int hash(byte[] bytes) {
+        return hash(bytes, 0, bytes.length);
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        // spread the bits, the table index uses the lowest bits only
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @return the classpath entries, in classpath order - the entry id is the position in this list
+     */
+    public List<ClasspathEntry> getClasspathEntries() {
+        return classpathEntries;
+    }
+
+    /**
+     * @return the number of distinct resource names
+     */
+    public int getNameCount() {
+        return nameCount;
+    }
+
+    /**
+     * @return the total number of resource versions
+     */
+    public int getVersionCount() {
+        return versionsByName.length;
+    }
+
+    /**
+     * @return the size in bytes of the resource names arena
+     */
+    public int getNameArenaSize() {
+        return nameArena.capacity();
+    }
+
+    /**
+     *
+     * @param resourceName - the resource name, such as /org/jhades/JHades.class
+     * @return - the name id, or -1 if there is no resource with that name
+     */
+    public int findNameId(String resourceName) {
+        return findNameId(resourceName.getBytes(UTF_8));
+    }
+
+    private int findNameId(byte[] name) {
+        int mask = nameHashTable.length - 1;
+        int slot = hash(name) & mask;
+        while (nameHashTable[slot] != 0) {
+            int nameId = nameHashTable[slot] - 1;
+            if (nameEquals(nameId, name)) {
+                return nameId;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public String getName(int nameId) {
+        int offset = nameOffsets[nameId];
+        byte[] name = new byte[nameOffsets[nameId + 1] - offset];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = nameArena.get(offset + i);
+        }
+        return new String(name, UTF_8);
+    }
+
+    public int getNumberOfVersions(int nameId) {
+        return firstVersionOfName[nameId + 1] - firstVersionOfName[nameId];
+    }
+
+    /**
+     *
+     * The order is computed on the first call and kept. Names are compared by their UTF-8 bytes, which is also the
+     * order of their unicode code points.
+     *
+     * @return the name ids, sorted by resource name
+     */
+    synchronized int[] getNameIdsInNameOrder() {
+        if (nameIdsInNameOrder == null) {
+            Integer[] nameIds = new Integer[nameCount];
+            for (int nameId = 0; nameId < nameCount; nameId++) {
+                nameIds[nameId] = nameId;
+            }
+            Arrays.sort(nameIds, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer nameId1, Integer nameId2) {
+                    return compareNames(nameId1, ResourceTable.this, nameId2);
+                }
+            });
+            int[] sorted = new int[nameCount];
+            for (int i = 0; i < nameCount; i++) {
+                sorted[i] = nameIds[i];
+            }
+            nameIdsInNameOrder = sorted;
+        }
+        return nameIdsInNameOrder;
+    }
+
+    /**
+     *
+     * Compares two resource names without decoding them, the names can belong to different tables.
+     *
+     */
+    int compareNames(int nameId, ResourceTable other, int otherNameId) {
+        int offset = nameOffsets[nameId];
+        int length = nameOffsets[nameId + 1] - offset;
+        int otherOffset = other.nameOffsets[otherNameId];
+        int otherLength = other.nameOffsets[otherNameId + 1] - otherOffset;
+        int commonLength = Math.min(length, otherLength);
+        for (int i = 0; i < commonLength; i++) {
+            int b = nameArena.get(offset + i) & 0xFF;
+            int otherB = other.nameArena.get(otherOffset + i) & 0xFF;
+            if (b != otherB) {
+                return b - otherB;
+            }
+        }
+        return length - otherLength;
+    }
+
+    int getNameHash(int nameId) {
+        int hash = 0;
+        for (int i = nameOffsets[nameId]; i < nameOffsets[nameId + 1]; i++) {
+            hash = 31 * hash + nameArena.get(i);
+        }
+        return hash;
+    }
+
+    /**
+     *
+     * @param nameId - the name id
+     * @param index - the position of the version, in classpath order
+     * @return the entry id of a version of a resource
+     */
+    int getVersionEntryId(int nameId, int index) {
+        return versionEntryIds[versionsByName[firstVersionOfName[nameId] + index]];
+    }
+
+    long getVersionSize(int nameId, int index) {
+        return versionSizes[versionsByName[firstVersionOfName[nameId] + index]];
+    }
+
+    /**
+     * @return the CRC-32 of a version of a resource if it's known, or -1
+     */
+    long getVersionCrc(int nameId, int index) {
+        return knownCrc(versionsByName[firstVersionOfName[nameId] + index]);
+    }
+
+    private long knownCrc(int version) {
+        long crc = versionCrcs.get(version);
+        return crc == UNREADABLE_CRC ? -1 : crc;
+    }
+
+    /**
+     *
+     * The CRC-32 of class folder and JDK module resources is computed the first time it's requested, and kept in the
+     * table for the views created afterwards - or marked as unreadable, so that the file is not read again.
+     *
+     * @return the CRC-32 of a version of a resource, or -1 if it could not be computed
+     */
+    long computeVersionCrc(int nameId, int index) {
+        return computeVersionCrc(nameId, index, null);
+    }
+
+    private long computeVersionCrc(int nameId, int index, String name) {
+        int version = versionsByName[firstVersionOfName[nameId] + index];
+        long crc = versionCrcs.get(version);
+        if (crc == -1) {
+            ClasspathEntry classpathEntry = classpathEntries.get(versionEntryIds[version]);
+            if (classpathEntry != null && (classpathEntry.isClassFolder() || classpathEntry.isModule())) {
+                // concurrent views may compute the same CRC twice, the first one stored is kept
+                crc = classpathEntry.computeResourceCrc(name != null ? name : getName(nameId));
+                versionCrcs.compareAndSet(version, -1, crc != -1 ? crc : UNREADABLE_CRC);
+            }
+        }
+        return crc == UNREADABLE_CRC ? -1 : crc;
+    }
+
+    /**
+     *
+     * @return the length in bytes of the UTF-8 encoded resource name
+     */
+    int getNameLength(int nameId) {
+        return nameOffsets[nameId + 1] - nameOffsets[nameId];
+    }
+
+    /**
+     *
+     * Copies the UTF-8 encoded resource name without decoding it.
+     *
+     * @param buffer - the array the name is copied to, at least getNameLength(nameId) bytes long
+     * @return the length in bytes of the name
+     */
+    int copyName(int nameId, byte[] buffer) {
+        int offset = nameOffsets[nameId];
+        int length = nameOffsets[nameId + 1] - offset;
+        for (int i = 0; i < length; i++) {
+            buffer[i] = nameArena.get(offset + i);
+        }
+        return length;
+    }
+
+    /**
+     *
+     * @return a read-only view of the resource with the given name id
+     */
+    public ClasspathResource getResource(int nameId) {
+        String name = getName(nameId);
+        return new ClasspathResource(name, new VersionsView(nameId, name));
+    }
+
+    /**
+     *
+     * @return a read-only list of all the resources, in the order in which they were first found on the classpath -
+     * the resource views are created when the list elements are accessed
+     */
+    public List<ClasspathResource> asResourceList() {
+        return new ResourcesView();
+    }
+
+    /**
+     *
+     * Builds a new table where the versions of some classpath entries are replaced, such as a class folder that changed
+     * on disk - the versions of the other entries are copied from this table, without scanning them again.
+     *
+     * @param replacedVersions - the new versions of each replaced entry, which must be one of the entries of this table
+     * @return - the new table, with the same entries in the same order, and off-heap if this table is
+     */
+    public ResourceTable replaceEntryVersions(Map<ClasspathEntry, ? extends Collection<ClasspathResourceVersion>> replacedVersions) {
+        return replaceEntryVersions(replacedVersions, new int[nameCount]);
+    }
+
+    /**
+     *
+     * The names are copied as UTF-8 bytes and the versions of the other entries as array elements, only the names of
+     * the replaced versions are encoded. The names that are kept have the same order in the new table, followed by the
+     * names that are new.
+     *
+     * @param newNameIds - filled with the id in the new table of each name of this table, or -1 for the names that have
+     * no version left
+     */
+    ResourceTable replaceEntryVersions(Map<ClasspathEntry, ? extends Collection<ClasspathResourceVersion>> replacedVersions,
+            int[] newNameIds) {
+        int versionCount = getVersionCount();
+        int entryCount = classpathEntries.size();
+        boolean[] replacedEntries = new boolean[entryCount];
+        for (int entryId = 0; entryId < entryCount; entryId++) {
+            replacedEntries[entryId] = replacedVersions.containsKey(classpathEntries.get(entryId));
+        }
+
+        // the name of each version, and the number of versions of each name that are kept
+        int[] versionNameIds = new int[versionCount];
+        int[] keptVersions = new int[nameCount];
+        for (int nameId = 0; nameId < nameCount; nameId++) {
+            for (int i = firstVersionOfName[nameId]; i < firstVersionOfName[nameId + 1]; i++) {
+                int version = versionsByName[i];
+                versionNameIds[version] = nameId;
+                if (!replacedEntries[versionEntryIds[version]]) {
+                    keptVersions[nameId]++;
+                }
+            }
+        }
+        List<byte[]> replacedNames = new ArrayList<>();
+        for (int entryId = 0; entryId < entryCount; entryId++) {
+            if (replacedEntries[entryId]) {
+                for (ClasspathResourceVersion resourceVersion : replacedVersions.get(classpathEntries.get(entryId))) {
+                    byte[] name = resourceVersion.getResourceName().getBytes(UTF_8);
+                    int nameId = findNameId(name);
+                    if (nameId >= 0) {
+                        keptVersions[nameId]++;
+                    }
+                    replacedNames.add(name);
+                }
+            }
+        }
+
+        // the versions grouped by entry in the order they were added
+        int[] firstVersionOfEntry = new int[entryCount + 1];
+        for (int i = 0; i < versionCount; i++) {
+            firstVersionOfEntry[versionEntryIds[i] + 1]++;
+        }
+        for (int entryId = 0; entryId < entryCount; entryId++) {
+            firstVersionOfEntry[entryId + 1] += firstVersionOfEntry[entryId];
+        }
+        int[] versionsByEntry = new int[versionCount];
+        int[] nextPosition = Arrays.copyOf(firstVersionOfEntry, entryCount);
+        for (int i = 0; i < versionCount; i++) {
+            versionsByEntry[nextPosition[versionEntryIds[i]]++] = i;
+        }
+
+        Builder builder = new Builder();
+        byte[] name = new byte[256];
+        for (int nameId = 0; nameId < nameCount; nameId++) {
+            if (keptVersions[nameId] > 0) {
+                int length = getNameLength(nameId);
+                if (length > name.length) {
+                    name = new byte[Math.max(length, name.length * 2)];
+                }
+                newNameIds[nameId] = builder.addName(name, copyName(nameId, name));
+            } else {
+                newNameIds[nameId] = -1;
+            }
+        }
+        int replacedName = 0;
+        for (int entryId = 0; entryId < entryCount; entryId++) {
+            ClasspathEntry classpathEntry = classpathEntries.get(entryId);
+            builder.addClasspathEntry(classpathEntry);
+            if (replacedEntries[entryId]) {
+                for (ClasspathResourceVersion resourceVersion : replacedVersions.get(classpathEntry)) {
+                    byte[] replaced = replacedNames.get(replacedName++);
+                    builder.addVersion(builder.addName(replaced, replaced.length), entryId, resourceVersion.getFileSize(),
+                            resourceVersion.getKnownCrc(), resourceVersion.getClassMajorVersion());
+                }
+                continue;
+            }
+            for (int i = firstVersionOfEntry[entryId]; i < firstVersionOfEntry[entryId + 1]; i++) {
+                int version = versionsByEntry[i];
+                // the unreadable marker is kept too, the entry did not change
+                builder.addVersion(newNameIds[versionNameIds[version]], entryId, versionSizes[version],
+                        versionCrcs.get(version), versionClassMajorVersions[version]);
+            }
+        }
+        return builder.build(nameArena.isDirect());
+    }
+
+    /**
+     *
+     * @return true if one of the versions of a resource belongs to one of the given entries
+     */
+    boolean hasVersionInEntries(int nameId, boolean[] entries) {
+        for (int i = firstVersionOfName[nameId]; i < firstVersionOfName[nameId + 1]; i++) {
+            if (entries[versionEntryIds[versionsByName[i]]]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean nameEquals(int nameId, byte[] name) {
+        int offset = nameOffsets[nameId];
+        if (nameOffsets[nameId + 1] - offset != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (nameArena.get(offset + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final class ResourcesView extends AbstractList<ClasspathResource> implements RandomAccess {
+
+        @Override
+        public ClasspathResource get(int nameId) {
+            if (nameId < 0 || nameId >= nameCount) {
+                throw new IndexOutOfBoundsException("Resource index: " + nameId + ", resources: " + nameCount);
+            }
+            return getResource(nameId);
+        }
+
+        @Override
+        public int size() {
+            return nameCount;
+        }
+    }
+
+    private final class VersionsView extends AbstractList<ClasspathResourceVersion> implements RandomAccess {
+
+        private final int nameId;
+        private final String name;
+
+        VersionsView(int nameId, String name) {
+            this.nameId = nameId;
+            this.name = name;
+        }
+
+        @Override
+        public ClasspathResourceVersion get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Version index: " + index + ", versions: " + size());
+            }
+            int version = versionsByName[firstVersionOfName[nameId] + index];
+            return new TableVersion(classpathEntries.get(versionEntryIds[version]), name, versionSizes[version],
+                    knownCrc(version), versionClassMajorVersions[version], nameId, index);
+        }
+
+        @Override
+        public int size() {
+            return getNumberOfVersions(nameId);
+        }
+    }
+
+    /**
+     *
+     * A version view that keeps the CRC-32 it computes in the table, so that it's computed only once per version.
+     *
+     */
+    private final class TableVersion extends ClasspathResourceVersion {
+
+        private final int nameId;
+        private final int index;
+
+        TableVersion(ClasspathEntry classpathEntry, String name, long size, long crc, int classMajorVersion, int nameId,
+                int index) {
+            super(classpathEntry, name, size, crc, classMajorVersion);
+            this.nameId = nameId;
+            this.index = index;
+        }
+
+        @Override
+        public long getCrc() {
+            long crc = getKnownCrc();
+            return crc != -1 ? crc : computeVersionCrc(nameId, index, getResourceName());
+        }
+    }
+}
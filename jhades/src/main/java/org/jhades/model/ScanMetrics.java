@@ -0,0 +1,275 @@
+package org.jhades.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jhades.service.ClasspathScannerListener;
+
+/**
+ *
+ * Scan listener that collects the statistics of each scanned classpath entry, together with aggregate counters and a
+ * histogram of the entry scan times for the whole scan.
+ *
+ * The statistics of an entry are taken from the entry itself when its scan ends, see ClasspathEntry.getLastScanStats.
+ * The listener is thread-safe, so it can be used for concurrent scans. Use CompositeClasspathScannerListener to
+ * combine it with another listener.
+ *
+ */
+public class ScanMetrics implements ClasspathScannerListener {
+
+    private final List<EntryScanStats> entryStats = new ArrayList<>();
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+    private long scanStartNanos;
+    private long scanEndNanos;
+    private long resourceCount;
+    private long bytesRead;
+    private long totalEntryTimeNanos;
+    private int cacheHits;
+    private int cacheMisses;
+    private long duplicateCount;
+    // built on demand to record the duplicates, reset when an entry is added
+    private Map<ClasspathEntry, EntryScanStats> statsByEntry;
+
+    @Override
+    public synchronized void onEntryScanStart(ClasspathEntry classpathEntry) {
+        if (scanStartNanos == 0) {
+            scanStartNanos = System.nanoTime();
+        }
+    }
+
+    @Override
+    public synchronized void onEntryScanEnd(ClasspathEntry classpathEntry) {
+        scanEndNanos = System.nanoTime();
+        EntryScanStats stats = classpathEntry.getLastScanStats();
+        if (stats == null) {
+            return;
+        }
+        entryStats.add(stats);
+        statsByEntry = null;
+        latencyHistogram.record(stats.getWallTimeNanos());
+        resourceCount += stats.getResourceCount();
+        bytesRead += stats.getBytesRead();
+        totalEntryTimeNanos += stats.getWallTimeNanos();
+        if (stats.getCacheStatus() == EntryScanStats.CacheStatus.HIT) {
+            cacheHits++;
+        } else if (stats.getCacheStatus() == EntryScanStats.CacheStatus.MISS) {
+            cacheMisses++;
+        }
+    }
+
+    /**
+     *
+     * Fills in the duplicate counts of the scanned entries, once the duplicates are known: each version of a resource
+     * with several versions counts as one duplicate of its entry.
+     *
+     * @param resourcesWithDuplicates - the resources with more than one version found by the scan
+     */
+    public synchronized void recordDuplicates(List<ClasspathResource> resourcesWithDuplicates) {
+        for (EntryScanStats stats : entryStats) {
+            stats.duplicateCount = 0;
+        }
+        duplicateCount = 0;
+        for (ClasspathResource resource : resourcesWithDuplicates) {
+            recordDuplicate(resource);
+        }
+    }
+
+    /**
+     *
+     * Adds the duplicate counts of one resource, for duplicates that are streamed one at a time instead of collected
+     * in a list, see recordDuplicates.
+     *
+     * @param resource - a resource found by the scan, ignored if it has only one version
+     */
+    public synchronized void recordDuplicate(ClasspathResource resource) {
+        if (resource.getResourceFileVersions().size() > 1) {
+            if (statsByEntry == null) {
+                statsByEntry = new HashMap<>();
+                for (EntryScanStats stats : entryStats) {
+                    statsByEntry.put(stats.getClasspathEntry(), stats);
+                }
+            }
+            for (ClasspathResourceVersion version : resource.getResourceFileVersions()) {
+                EntryScanStats stats = statsByEntry.get(version.getClasspathEntry());
+                if (stats != null) {
+                    stats.duplicateCount++;
+                }
+                duplicateCount++;
+            }
+        }
+    }
+
+    /**
+     *
+     * Finds the entries that contain classes that the target JVM cannot load, if the bytecode versions were read by the
+     * scan - see ClassFiles.isScanClassVersions.
+     *
+     * @param targetMajorVersion - the newest bytecode major version supported by the target JVM
+     * @return the statistics of the entries with classes compiled for a newer JVM, newest bytecode first
+     */
+    public synchronized List<EntryScanStats> getEntriesNewerThan(int targetMajorVersion) {
+        List<EntryScanStats> newerEntries = new ArrayList<>();
+        for (EntryScanStats stats : entryStats) {
+            if (stats.getMaxClassMajorVersion() > targetMajorVersion) {
+                newerEntries.add(stats);
+            }
+        }
+        Collections.sort(newerEntries, new Comparator<EntryScanStats>() {
+            @Override
+            public int compare(EntryScanStats stats1, EntryScanStats stats2) {
+                return Integer.compare(stats2.getMaxClassMajorVersion(), stats1.getMaxClassMajorVersion());
+            }
+        });
+        return newerEntries;
+    }
+
+    /**
+     * @return the statistics of each scanned entry, in the order in which the scans ended
+     */
+    public synchronized List<EntryScanStats> getEntryStats() {
+        return new ArrayList<>(entryStats);
+    }
+
+    /**
+     *
+     * @param limit - the maximum number of entries to return
+     * @return the statistics of the entries that took the longest to scan, the slowest first
+     */
+    public synchronized List<EntryScanStats> getSlowestEntries(int limit) {
+        List<EntryScanStats> slowest = new ArrayList<>(entryStats);
+        Collections.sort(slowest, new Comparator<EntryScanStats>() {
+            @Override
+            public int compare(EntryScanStats stats1, EntryScanStats stats2) {
+                return Long.compare(stats2.getWallTimeNanos(), stats1.getWallTimeNanos());
+            }
+        });
+        return slowest.subList(0, Math.min(limit, slowest.size()));
+    }
+
+    public synchronized int getEntryCount() {
+        return entryStats.size();
+    }
+
+    public synchronized long getResourceCount() {
+        return resourceCount;
+    }
+
+    public synchronized long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return the total number of duplicate resource versions, zero until recordDuplicates is called
+     */
+    public synchronized long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public synchronized int getCacheHits() {
+        return cacheHits;
+    }
+
+    public synchronized int getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * @return the sum of the scan times of all entries - bigger than the elapsed time for concurrent scans
+     */
+    public synchronized long getTotalEntryTimeNanos() {
+        return totalEntryTimeNanos;
+    }
+
+    /**
+     * @return the time between the start of the first entry scan and the end of the last one
+     */
+    public synchronized long getElapsedNanos() {
+        return scanEndNanos - scanStartNanos;
+    }
+
+    /**
+     * @return a copy of the histogram of the entry scan times
+     */
+    public synchronized LatencyHistogram getLatencyHistogram() {
+        return latencyHistogram.copy();
+    }
+
+    /**
+     *
+     * Histogram of durations with power of two millisecond buckets: below 1 ms, below 2 ms, below 4 ms, and so on up to
+     * the last bucket, which has no upper bound.
+     *
+     */
+    public static final class LatencyHistogram {
+
+        private static final int BUCKETS = 16;
+        private final long[] counts;
+
+        public LatencyHistogram() {
+            this.counts = new long[BUCKETS];
+        }
+
+        private LatencyHistogram(long[] counts) {
+            this.counts = counts;
+        }
+
+        public void record(long durationNanos) {
+            long millis = durationNanos / 1000000;
+            int bucket = millis <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(millis);
+            counts[Math.min(bucket, BUCKETS - 1)]++;
+        }
+
+        LatencyHistogram copy() {
+            return new LatencyHistogram(Arrays.copyOf(counts, counts.length));
+        }
+
+        public int getBucketCount() {
+            return BUCKETS;
+        }
+
+        /**
+         * @return the exclusive upper bound of the bucket in milliseconds, or Long.MAX_VALUE for the last bucket
+         */
+        public long getBucketUpperBoundMillis(int bucket) {
+            return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+        }
+
+        public long getCount(int bucket) {
+            return counts[bucket];
+        }
+
+        public long getTotalCount() {
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         *
+         * @param percentile - the percentile, from 0 to 100
+         * @return the upper bound in milliseconds of the bucket that contains the percentile, or 0 if the histogram is
+         * empty
+         */
+        public long getPercentileUpperBoundMillis(double percentile) {
+            long total = getTotalCount();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) {
+                    return getBucketUpperBoundMillis(bucket);
+                }
+            }
+            return getBucketUpperBoundMillis(BUCKETS - 1);
+        }
+    }
+}
@@ -0,0 +1,525 @@
+package org.jhades.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import static org.jhades.utils.VarInts.readVarLong;
+import static org.jhades.utils.VarInts.writeVarLong;
+
+/**
+ *
+ * Finds the resources with duplicates of a classpath using a bounded amount of memory, for classpaths too big to be
+ * grouped in memory, such as large EARs.
+ *
+ * The resource versions are buffered as (resource name, entry, size, CRC-32) records. Once the buffer reaches its
+ * maximum size, the records are sorted by resource name and written to a run file in the spill directory. The
+ * duplicates are then found with a k-way merge of the run files and of the records still buffered: the versions of a
+ * resource come out of the merge together, so only one resource is in memory at a time, whatever the size of the
+ * classpath. When there are too many run files to merge at once, consecutive runs are first merged into bigger ones.
+ *
+ * The sort is stable and the runs are merged in the order they were written, so the versions of each resource are
+ * reported in the order they were visited - the classpath order when the finder is used as the visitor of
+ * ClasspathEntries.visitResourceVersionsInEntries.
+ *
+ * The finder is not thread-safe. The run files are deleted by close.
+ *
+ */
+public final class SpillingDuplicatesFinder implements ClasspathEntry.ResourceVersionVisitor, Closeable {
+
+    private static final int MAX_MERGED_RUNS = 64;
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+    // estimated heap used by a buffered record besides the name bytes: the byte array header and the array slots
+    private static final int RECORD_OVERHEAD_BYTES = 48;
+    private static final Comparator<RecordCursor> MERGE_ORDER = new Comparator<RecordCursor>() {
+        @Override
+        public int compare(RecordCursor cursor1, RecordCursor cursor2) {
+            int byName = compareNames(cursor1.name, cursor1.nameLength, cursor2.name, cursor2.nameLength);
+            return byName != 0 ? byName : Integer.compare(cursor1.runIndex, cursor2.runIndex);
+        }
+    };
+    private final Path spillDir;
+    private final long maxBufferBytes;
+    private final Map<ClasspathEntry, Integer> entryIds = new HashMap<>();
+    private final List<ClasspathEntry> entries = new ArrayList<>();
+    private final List<Run> runs = new ArrayList<>();
+    private byte[][] names = new byte[1024][];
+    private int[] versionEntryIds = new int[1024];
+    private long[] sizes = new long[1024];
+    private long[] crcs = new long[1024];
+    private int count;
+    private long bufferBytes;
+    private Integer[] sortedRecords;
+    private long spilledRecords;
+    private int spilledRuns;
+    private IOException spillFailure;
+    private boolean merging;
+
+    /**
+     *
+     * @param spillDir - the directory where the run files are written, created if needed
+     * @param maxBufferBytes - the estimated heap size of the buffered records above which they are spilled to disk
+     */
+    public SpillingDuplicatesFinder(Path spillDir, long maxBufferBytes) {
+        this.spillDir = spillDir;
+        this.maxBufferBytes = maxBufferBytes;
+    }
+
+    /**
+     *
+     * Receives the resources with duplicates found by the merge, in resource name order.
+     *
+     */
+    public interface DuplicateVisitor {
+
+        void visitDuplicate(ClasspathResource resource);
+    }
+
+    /**
+     *
+     * Buffers a resource version, spilling the buffer to disk if it's full. A failure to spill is reported by
+     * findDuplicates, the versions visited afterwards are ignored.
+     *
+     */
+    @Override
+    public void visitResourceVersion(ClasspathResourceVersion resourceVersion) {
+        if (merging) {
+            throw new IllegalStateException("Resource versions cannot be added once the duplicates are searched.");
+        }
+        if (spillFailure != null) {
+            return;
+        }
+        ClasspathEntry entry = resourceVersion.getClasspathEntry();
+        Integer entryId = entryIds.get(entry);
+        if (entryId == null) {
+            entryId = entries.size();
+            entries.add(entry);
+            entryIds.put(entry, entryId);
+        }
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+            versionEntryIds = Arrays.copyOf(versionEntryIds, count * 2);
+            sizes = Arrays.copyOf(sizes, count * 2);
+            crcs = Arrays.copyOf(crcs, count * 2);
+        }
+        byte[] name = resourceVersion.getResourceName().getBytes(StandardCharsets.UTF_8);
+        names[count] = name;
+        versionEntryIds[count] = entryId;
+        sizes[count] = resourceVersion.getFileSize();
+        // a class folder CRC-32 is not computed here, but when a duplicate needs it
+        crcs[count] = resourceVersion.getKnownCrc();
+        count++;
+        bufferBytes += RECORD_OVERHEAD_BYTES + name.length;
+
+        if (bufferBytes >= maxBufferBytes) {
+            try {
+                spill();
+            } catch (IOException exc) {
+                spillFailure = exc;
+            }
+        }
+    }
+
+    /**
+     *
+     * Merges the visited resource versions and passes the resources with more than one version to a visitor. Can be
+     * called several times, for instance to count the duplicates first and then to list them, but no versions can be
+     * visited afterwards.
+     *
+     * @param visitor - receives the resources with duplicates, in resource name order
+     * @throws IOException if the run files cannot be written or read
+     */
+    public void findDuplicates(DuplicateVisitor visitor) throws IOException {
+        if (spillFailure != null) {
+            throw spillFailure;
+        }
+        if (!merging) {
+            merging = true;
+            reduceRuns();
+        }
+
+        List<RecordCursor> cursors = new ArrayList<>();
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                cursors.add(new RunReader(runs.get(i), i));
+            }
+            cursors.add(new BufferCursor(runs.size()));
+            DuplicatesGrouper grouper = new DuplicatesGrouper(visitor);
+            merge(cursors, grouper);
+            grouper.flush();
+        } finally {
+            closeCursors(cursors);
+        }
+    }
+
+    /**
+     *
+     * Merges consecutive runs until they can all be merged at once, keeping them in the order they were written.
+     *
+     */
+    private void reduceRuns() throws IOException {
+        while (runs.size() >= MAX_MERGED_RUNS) {
+            List<Run> merged = new ArrayList<>(runs.subList(0, MAX_MERGED_RUNS));
+            Run mergedRun = newRun();
+            List<RecordCursor> cursors = new ArrayList<>();
+            try (RunWriter writer = new RunWriter(mergedRun)) {
+                for (int i = 0; i < merged.size(); i++) {
+                    cursors.add(new RunReader(merged.get(i), i));
+                }
+                merge(cursors, writer);
+            } finally {
+                closeCursors(cursors);
+            }
+            runs.removeAll(merged);
+            runs.remove(mergedRun);
+            runs.add(0, mergedRun);
+            for (Run run : merged) {
+                Files.deleteIfExists(run.file);
+            }
+        }
+    }
+
+    private static void merge(List<RecordCursor> cursors, RecordSink sink) throws IOException {
+        PriorityQueue<RecordCursor> queue = new PriorityQueue<>(cursors.size(), MERGE_ORDER);
+        for (RecordCursor cursor : cursors) {
+            if (cursor.next()) {
+                queue.add(cursor);
+            }
+        }
+        while (!queue.isEmpty()) {
+            RecordCursor cursor = queue.poll();
+            sink.accept(cursor);
+            if (cursor.next()) {
+                queue.add(cursor);
+            }
+        }
+    }
+
+    /**
+     *
+     * Sorts the buffered records and writes them to a new run file.
+     *
+     */
+    private void spill() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        Run run = newRun();
+        try (RunWriter writer = new RunWriter(run)) {
+            BufferCursor cursor = new BufferCursor(0);
+            while (cursor.next()) {
+                writer.accept(cursor);
+            }
+        }
+        spilledRecords += count;
+        spilledRuns++;
+        Arrays.fill(names, 0, count, null);
+        count = 0;
+        bufferBytes = 0;
+        sortedRecords = null;
+    }
+
+    private Run newRun() throws IOException {
+        Files.createDirectories(spillDir);
+        Run run = new Run(Files.createTempFile(spillDir, "jhades-run-", ".tmp"));
+        // registered before it's written, so that close deletes it even if the write fails
+        runs.add(run);
+        return run;
+    }
+
+    /**
+     * @return the number of resource versions written to run files
+     */
+    public long getSpilledRecords() {
+        return spilledRecords;
+    }
+
+    /**
+     * @return the number of run files written by the spills, not counting the runs written by merging other runs
+     */
+    public int getSpilledRuns() {
+        return spilledRuns;
+    }
+
+    /**
+     *
+     * Deletes the run files.
+     *
+     */
+    @Override
+    public void close() throws IOException {
+        for (Run run : runs) {
+            Files.deleteIfExists(run.file);
+        }
+        runs.clear();
+    }
+
+    private static void closeCursors(List<RecordCursor> cursors) throws IOException {
+        for (RecordCursor cursor : cursors) {
+            cursor.close();
+        }
+    }
+
+    private static int compareNames(byte[] name1, int length1, byte[] name2, int length2) {
+        int length = Math.min(length1, length2);
+        for (int i = 0; i < length; i++) {
+            int byByte = (name1[i] & 0xFF) - (name2[i] & 0xFF);
+            if (byByte != 0) {
+                return byByte;
+            }
+        }
+        return length1 - length2;
+    }
+
+    /**
+     *
+     * A run file and its number of records.
+     *
+     */
+    private static final class Run {
+
+        private final Path file;
+        private long records;
+
+        Run(Path file) {
+            this.file = file;
+        }
+    }
+
+    /**
+     *
+     * The current record of a sorted sequence of records, the run index breaks the ties between sequences.
+     *
+     */
+    private abstract static class RecordCursor implements Closeable {
+
+        protected final int runIndex;
+        protected byte[] name = new byte[256];
+        protected int nameLength;
+        protected int entryId;
+        protected long size;
+        protected long crc;
+
+        RecordCursor(int runIndex) {
+            this.runIndex = runIndex;
+        }
+
+        abstract boolean next() throws IOException;
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private interface RecordSink {
+
+        void accept(RecordCursor record) throws IOException;
+    }
+
+    /**
+     *
+     * Iterates over the buffered records in resource name order, and in buffer order for the same name.
+     *
+     */
+    private final class BufferCursor extends RecordCursor {
+
+        private int position;
+
+        BufferCursor(int runIndex) {
+            super(runIndex);
+            if (sortedRecords == null) {
+                sortedRecords = new Integer[count];
+                for (int i = 0; i < count; i++) {
+                    sortedRecords[i] = i;
+                }
+                // stable, so the records of the same name keep their order
+                Arrays.sort(sortedRecords, new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer record1, Integer record2) {
+                        return compareNames(names[record1], names[record1].length, names[record2], names[record2].length);
+                    }
+                });
+            }
+        }
+
+        @Override
+        boolean next() {
+            if (position == sortedRecords.length) {
+                return false;
+            }
+            int record = sortedRecords[position++];
+            name = names[record];
+            nameLength = name.length;
+            entryId = versionEntryIds[record];
+            size = sizes[record];
+            crc = crcs[record];
+            return true;
+        }
+    }
+
+    /**
+     *
+     * Writes the records of a run: the resource name prefix-coded against the previous one, then the entry id, the
+     * size and the CRC-32 plus one, all as variable length numbers.
+     *
+     */
+    private static final class RunWriter implements RecordSink, Closeable {
+
+        private final Run run;
+        private final OutputStream out;
+        private byte[] previousName = new byte[256];
+        private int previousNameLength;
+
+        RunWriter(Run run) throws IOException {
+            this.run = run;
+            this.out = new BufferedOutputStream(Files.newOutputStream(run.file), RUN_BUFFER_SIZE);
+        }
+
+        @Override
+        public void accept(RecordCursor record) throws IOException {
+            int shared = 0;
+            int maxShared = Math.min(previousNameLength, record.nameLength);
+            while (shared < maxShared && previousName[shared] == record.name[shared]) {
+                shared++;
+            }
+            writeVarLong(out, shared);
+            writeVarLong(out, record.nameLength - shared);
+            out.write(record.name, shared, record.nameLength - shared);
+            writeVarLong(out, record.entryId);
+            writeVarLong(out, record.size);
+            writeVarLong(out, record.crc + 1);
+
+            if (previousName.length < record.nameLength) {
+                previousName = new byte[record.nameLength * 2];
+            }
+            System.arraycopy(record.name, 0, previousName, 0, record.nameLength);
+            previousNameLength = record.nameLength;
+            run.records++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static final class RunReader extends RecordCursor {
+
+        private final Run run;
+        private final InputStream in;
+        private long remaining;
+
+        RunReader(Run run, int runIndex) throws IOException {
+            super(runIndex);
+            this.run = run;
+            this.in = new BufferedInputStream(Files.newInputStream(run.file), RUN_BUFFER_SIZE);
+            this.remaining = run.records;
+        }
+
+        @Override
+        boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            int shared = (int) readVarLong(in);
+            int suffixLength = (int) readVarLong(in);
+            if (shared < 0 || shared > nameLength || suffixLength < 0) {
+                throw new IOException("Corrupted run file " + run.file);
+            }
+            if (name.length < shared + suffixLength) {
+                name = Arrays.copyOf(name, (shared + suffixLength) * 2);
+            }
+            int read = 0;
+            while (read < suffixLength) {
+                int n = in.read(name, shared + read, suffixLength - read);
+                if (n < 0) {
+                    throw new EOFException("Unexpected end of run file " + run.file);
+                }
+                read += n;
+            }
+            nameLength = shared + suffixLength;
+            entryId = (int) readVarLong(in);
+            size = readVarLong(in);
+            crc = readVarLong(in) - 1;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     *
+     * Groups the merged records per resource name, and passes the names with more than one record to the visitor.
+     *
+     */
+    private final class DuplicatesGrouper implements RecordSink {
+
+        private final DuplicateVisitor visitor;
+        private byte[] groupName = new byte[256];
+        private int groupNameLength;
+        private int[] groupEntryIds = new int[16];
+        private long[] groupSizes = new long[16];
+        private long[] groupCrcs = new long[16];
+        private int groupCount;
+
+        DuplicatesGrouper(DuplicateVisitor visitor) {
+            this.visitor = visitor;
+        }
+
+        @Override
+        public void accept(RecordCursor record) {
+            if (groupCount == 0 || compareNames(groupName, groupNameLength, record.name, record.nameLength) != 0) {
+                flush();
+                if (groupName.length < record.nameLength) {
+                    groupName = new byte[record.nameLength * 2];
+                }
+                System.arraycopy(record.name, 0, groupName, 0, record.nameLength);
+                groupNameLength = record.nameLength;
+            }
+            if (groupCount == groupEntryIds.length) {
+                groupEntryIds = Arrays.copyOf(groupEntryIds, groupCount * 2);
+                groupSizes = Arrays.copyOf(groupSizes, groupCount * 2);
+                groupCrcs = Arrays.copyOf(groupCrcs, groupCount * 2);
+            }
+            groupEntryIds[groupCount] = record.entryId;
+            groupSizes[groupCount] = record.size;
+            groupCrcs[groupCount] = record.crc;
+            groupCount++;
+        }
+
+        void flush() {
+            if (groupCount > 1) {
+                String resourceName = new String(groupName, 0, groupNameLength, StandardCharsets.UTF_8);
+                ClasspathResource resource = null;
+                for (int i = 0; i < groupCount; i++) {
+                    ClasspathResourceVersion version = new ClasspathResourceVersion(entries.get(groupEntryIds[i]),
+                            resourceName, groupSizes[i], groupCrcs[i]);
+                    if (resource == null) {
+                        resource = new ClasspathResource(resourceName, version);
+                    } else {
+                        resource.getResourceFileVersions().add(version);
+                    }
+                }
+                visitor.visitDuplicate(resource);
+            }
+            groupCount = 0;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.jhades.reports;
+
+import java.io.PrintStream;
+import java.util.List;
+import org.jhades.model.ClasspathDiff;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.JarPair;
+
+/**
+ *
+ * Report of the differences between two classpaths: jars, changed resources, duplicates and overlapping jars.
+ *
+ * The added and removed resources can be many, by default only their number is printed.
+ *
+ */
+public class ClasspathDiffReport {
+
+    private final ClasspathDiff diff;
+    private final UrlFormatter urlFormatter;
+    private final boolean detail;
+
+    public ClasspathDiffReport(ClasspathDiff diff) {
+        this(diff, new DefaultUrlFormatterImpl(), false);
+    }
+
+    /**
+     *
+     * @param diff - the differences between the classpaths
+     * @param urlFormatter - formats the urls of the entries
+     * @param detail - true to also list the added and removed resources
+     */
+    public ClasspathDiffReport(ClasspathDiff diff, UrlFormatter urlFormatter, boolean detail) {
+        this.diff = diff;
+        this.urlFormatter = urlFormatter;
+        this.detail = detail;
+    }
+
+    public void print() {
+        print(System.out);
+    }
+
+    /**
+     *
+     * Prints the report to the given print stream.
+     *
+     */
+    public void print(PrintStream out) {
+        out.println("\n>> jHades classpath diff: \n");
+
+        if (diff.isEmpty()) {
+            out.println("No differences found.\n");
+            return;
+        }
+
+        out.println("Entries - added: " + diff.getAddedEntries().size() + ", removed: " + diff.getRemovedEntries().size()
+                + ", changed: " + diff.getChangedEntries().size());
+        out.println("Resources - added: " + diff.getAddedResources().size() + ", removed: " + diff.getRemovedResources().size()
+                + ", changed: " + diff.getChangedResources().size());
+        out.println("Duplicates - new: " + diff.getNewDuplicates().size() + ", resolved: " + diff.getResolvedDuplicates().size());
+        out.println("Overlapping jars - new: " + diff.getNewOverlaps().size() + ", resolved: " + diff.getResolvedOverlaps().size());
+
+        printEntries(out, "Added entries", diff.getAddedEntries());
+        printEntries(out, "Removed entries", diff.getRemovedEntries());
+        if (!diff.getChangedEntries().isEmpty()) {
+            out.println("\n>>> Changed entries:\n");
+            for (ClasspathDiff.EntryChange change : diff.getChangedEntries()) {
+                out.println("    " + urlFormatter.formatUrl(change.getNewEntry().getUrl()));
+            }
+        }
+
+        if (!diff.getChangedResources().isEmpty()) {
+            out.println("\n>>> Changed resources:\n");
+            for (ClasspathDiff.ResourceChange change : diff.getChangedResources()) {
+                out.println("    " + change.getName() + " - " + formatVersion(change.getOldResource()) + " -> "
+                        + formatVersion(change.getNewResource()));
+            }
+        }
+
+        printDuplicates(out, "New duplicates", diff.getNewDuplicates());
+        printDuplicates(out, "Resolved duplicates", diff.getResolvedDuplicates());
+        printOverlaps(out, "New overlapping jars", diff.getNewOverlaps());
+        printOverlaps(out, "Resolved overlapping jars", diff.getResolvedOverlaps());
+
+        if (detail) {
+            printResources(out, "Added resources", diff.getAddedResources());
+            printResources(out, "Removed resources", diff.getRemovedResources());
+        }
+        out.println();
+    }
+
+    private String formatVersion(ClasspathResource resource) {
+        ClasspathResourceVersion version = resource.getResourceFileVersions().get(0);
+        String formatted = urlFormatter.formatUrl(version.getClasspathEntry().getUrl()) + " size = " + version.getFileSize();
+        if (version.getCrc() != -1) {
+            formatted += " crc = " + Long.toHexString(version.getCrc());
+        }
+        return formatted;
+    }
+
+    private void printEntries(PrintStream out, String title, List<ClasspathEntry> entries) {
+        if (!entries.isEmpty()) {
+            out.println("\n>>> " + title + ":\n");
+            for (ClasspathEntry entry : entries) {
+                out.println("    " + urlFormatter.formatUrl(entry.getUrl()));
+            }
+        }
+    }
+
+    private static void printDuplicates(PrintStream out, String title, List<ClasspathResource> resources) {
+        if (!resources.isEmpty()) {
+            out.println("\n>>> " + title + ":\n");
+            for (ClasspathResource resource : resources) {
+                out.println("    " + resource.getName() + " - " + resource.getNumberOfVersions() + " versions");
+            }
+        }
+    }
+
+    private void printOverlaps(PrintStream out, String title, List<JarPair> overlaps) {
+        if (!overlaps.isEmpty()) {
+            out.println("\n>>> " + title + ":\n");
+            for (JarPair jarPair : overlaps) {
+                out.println("    " + urlFormatter.formatUrl(jarPair.getJar1().getUrl()) + " overlaps with "
+                        + urlFormatter.formatUrl(jarPair.getJar2().getUrl()) + " - total overlapping classes: "
+                        + jarPair.getDupClassesTotal());
+            }
+        }
+    }
+
+    private static void printResources(PrintStream out, String title, List<ClasspathResource> resources) {
+        if (!resources.isEmpty()) {
+            out.println("\n>>> " + title + ":\n");
+            for (ClasspathResource resource : resources) {
+                out.println("    " + resource.getName());
+            }
+        }
+    }
+}
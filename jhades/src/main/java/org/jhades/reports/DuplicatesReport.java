@@ -1,5 +1,6 @@
 package org.jhades.reports;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
 import org.jhades.model.ClasspathResource;
@@ -41,25 +42,73 @@ public class DuplicatesReport {
         this.urlFormatter = urlFormatter;
     }
 
+    /**
+     *
+     * Prints first the resources with conflicting versions, then the resources that are only identical copies of the
+     * same file - the versions are compared by CRC-32 and size, see ClasspathResource.hasConflictingVersions.
+     *
+     */
     public void print() {
-        System.out.println("\n>> jHades multipleClassVersionsReport >> Duplicate classpath resources report: \n");
+        print(System.out);
+    }
+
+    /**
+     *
+     * Prints the report to the given print stream.
+     *
+     */
+    public void print(PrintStream out) {
+        out.println("\n>> jHades multipleClassVersionsReport >> Duplicate classpath resources report: \n");
         ClasspathResources.sortByNumberOfVersionsDesc(resourcesWithDuplicates);
 
+        List<ClasspathResource> conflictingVersions = new ArrayList<>();
+        List<ClasspathResource> identicalCopies = new ArrayList<>();
         for (ClasspathResource resource : resourcesWithDuplicates) {
             if (!resourcesToExclude.contains(resource.getName())) {
-                System.out.println(resource.getName() + " has " + resource.getResourceFileVersions().size() + " versions on these classpath locations:\n");
-                for (ClasspathResourceVersion resourceFileVersion : resource.getResourceFileVersions()) {
-                    String classLoaderName = resourceFileVersion.getClasspathEntry().getClassLoaderName();
-                    System.out.println("    " + (classLoaderName != null ? classLoaderName : "") + " - "
-                            + urlFormatter.formatUrl(resourceFileVersion.getClasspathEntry().getUrl())
-                            + " - class file size = " + resourceFileVersion.getFileSize());
+                if (resource.hasConflictingVersions()) {
+                    conflictingVersions.add(resource);
+                } else {
+                    identicalCopies.add(resource);
                 }
-                System.out.println();
             }
         }
 
+        if (!conflictingVersions.isEmpty()) {
+            out.println(">> Conflicting versions - " + conflictingVersions.size() + " resources have versions with different contents:\n");
+            printResources(conflictingVersions, out);
+        }
+        if (!identicalCopies.isEmpty()) {
+            out.println(">> Identical copies - " + identicalCopies.size() + " resources have several copies of the same file:\n");
+            printResources(identicalCopies, out);
+        }
+
         if (resourcesWithDuplicates.isEmpty()) {
-            System.out.println("No duplicates where found.\n");
+            out.println("No duplicates where found.\n");
+        }
+    }
+
+    private void printResources(List<ClasspathResource> resources, PrintStream out) {
+        for (ClasspathResource resource : resources) {
+            printResource(resource, out);
+        }
+    }
+
+    /**
+     *
+     * Prints one resource and the locations of its versions, for duplicates that are reported as they are found
+     * instead of being collected first.
+     *
+     */
+    public void printResource(ClasspathResource resource, PrintStream out) {
+        out.println(resource.getName() + " has " + resource.getResourceFileVersions().size() + " versions on these classpath locations:\n");
+        for (ClasspathResourceVersion resourceFileVersion : resource.getResourceFileVersions()) {
+            String classLoaderName = resourceFileVersion.getClasspathEntry().getClassLoaderName();
+            long crc = resourceFileVersion.getCrc();
+            out.println("    " + (classLoaderName != null ? classLoaderName : "") + " - "
+                    + urlFormatter.formatUrl(resourceFileVersion.getClasspathEntry().getUrl())
+                    + " - class file size = " + resourceFileVersion.getFileSize()
+                    + (crc != -1 ? " - crc = " + Long.toHexString(crc) : ""));
         }
+        out.println();
     }
 }
@@ -0,0 +1,66 @@
+package org.jhades.reports;
+
+import java.io.PrintStream;
+import java.util.List;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.LoadedClass;
+import org.jhades.model.LoadedClassConflict;
+
+/**
+ *
+ * Report of the loaded classes that have conflicting versions on the classpath - unlike the duplicates report, only
+ * the classes actually loaded by the JVM are reported, with the version each one was defined from.
+ *
+ */
+public class LoadedClassConflictsReport {
+
+    private final int loadedClassCount;
+    private final List<LoadedClassConflict> conflicts;
+    private final UrlFormatter urlFormatter;
+
+    /**
+     *
+     * @param loadedClassCount - the number of loaded classes that were checked
+     * @param conflicts - the loaded classes with conflicting versions
+     */
+    public LoadedClassConflictsReport(int loadedClassCount, List<LoadedClassConflict> conflicts) {
+        this(loadedClassCount, conflicts, new DefaultUrlFormatterImpl());
+    }
+
+    public LoadedClassConflictsReport(int loadedClassCount, List<LoadedClassConflict> conflicts, UrlFormatter urlFormatter) {
+        this.loadedClassCount = loadedClassCount;
+        this.conflicts = conflicts;
+        this.urlFormatter = urlFormatter;
+    }
+
+    public void print() {
+        print(System.out);
+    }
+
+    /**
+     *
+     * Prints the report to the given print stream, the version each class was defined from is marked with a *.
+     *
+     */
+    public void print(PrintStream out) {
+        out.println("\n>> jHades loaded classes report >> Loaded classes with conflicting versions: \n");
+        out.println(loadedClassCount + " loaded classes checked, " + conflicts.size() + " have versions with different contents.\n");
+
+        for (LoadedClassConflict conflict : conflicts) {
+            LoadedClass loadedClass = conflict.getLoadedClass();
+            String definedBy = loadedClass.getClassLoader() != null ? loadedClass.getClassLoader().getClass().getName() : "the bootstrap class loader";
+            String location = loadedClass.getLocation() != null ? urlFormatter.formatUrl(loadedClass.getLocation()) : "an unknown location";
+            out.println(loadedClass.getClassName() + " was defined by " + definedBy + " from " + location + "\n");
+
+            ClasspathResourceVersion loadedVersion = conflict.getLoadedVersion();
+            for (ClasspathResourceVersion version : conflict.getResource().getResourceFileVersions()) {
+                String classLoaderName = version.getClasspathEntry().getClassLoaderName();
+                boolean loaded = loadedVersion != null && version.getClasspathEntry().equals(loadedVersion.getClasspathEntry());
+                out.println("  " + (loaded ? "* " : "  ") + (classLoaderName != null ? classLoaderName : "") + " - "
+                        + urlFormatter.formatUrl(version.getClasspathEntry().getUrl())
+                        + " - class file size = " + version.getFileSize());
+            }
+            out.println();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.jhades.reports;
+
+import java.io.PrintStream;
+import java.util.List;
+import org.jhades.model.EntryScanStats;
+import org.jhades.model.ScanMetrics;
+import org.jhades.utils.ClassFiles;
+
+/**
+ *
+ * Report of the scan metrics - the aggregate counters, the histogram of the entry scan times and the slowest entries.
+ *
+ */
+public class ScanMetricsReport {
+
+    private static final int DEFAULT_SLOWEST_ENTRIES = 10;
+    private final ScanMetrics scanMetrics;
+    private final UrlFormatter urlFormatter;
+    private final int slowestEntries;
+
+    public ScanMetricsReport(ScanMetrics scanMetrics) {
+        this(scanMetrics, new DefaultUrlFormatterImpl(), DEFAULT_SLOWEST_ENTRIES);
+    }
+
+    /**
+     *
+     * @param scanMetrics - the metrics of the scan
+     * @param urlFormatter - formats the urls of the slowest entries
+     * @param slowestEntries - the number of slowest entries to print
+     */
+    public ScanMetricsReport(ScanMetrics scanMetrics, UrlFormatter urlFormatter, int slowestEntries) {
+        this.scanMetrics = scanMetrics;
+        this.urlFormatter = urlFormatter;
+        this.slowestEntries = slowestEntries;
+    }
+
+    public void print() {
+        print(System.out);
+    }
+
+    /**
+     *
+     * Prints the report to the given print stream.
+     *
+     */
+    public void print(PrintStream out) {
+        out.println("\n>> jHades scan metrics: \n");
+
+        if (scanMetrics == null || scanMetrics.getEntryCount() == 0) {
+            out.println("No classpath entries were scanned.\n");
+            return;
+        }
+
+        out.println("Entries scanned: " + scanMetrics.getEntryCount() + " - resources: " + scanMetrics.getResourceCount()
+                + " - duplicate resource versions: " + scanMetrics.getDuplicateCount()
+                + " - bytes read: " + formatBytes(scanMetrics.getBytesRead()));
+        out.println("Elapsed time: " + formatNanos(scanMetrics.getElapsedNanos())
+                + " - total entry scan time: " + formatNanos(scanMetrics.getTotalEntryTimeNanos())
+                + " - scan cache hits: " + scanMetrics.getCacheHits() + ", misses: " + scanMetrics.getCacheMisses());
+
+        ScanMetrics.LatencyHistogram histogram = scanMetrics.getLatencyHistogram();
+        out.println("\nEntry scan times - p50 < " + formatBound(histogram.getPercentileUpperBoundMillis(50))
+                + ", p90 < " + formatBound(histogram.getPercentileUpperBoundMillis(90))
+                + ", p99 < " + formatBound(histogram.getPercentileUpperBoundMillis(99)) + ":\n");
+        long lowerBound = 0;
+        for (int bucket = 0; bucket < histogram.getBucketCount(); bucket++) {
+            long upperBound = histogram.getBucketUpperBoundMillis(bucket);
+            if (histogram.getCount(bucket) > 0) {
+                out.println("    " + lowerBound + " ms to " + formatBound(upperBound) + ": " + histogram.getCount(bucket));
+            }
+            lowerBound = upperBound;
+        }
+
+        out.println("\nSlowest entries:\n");
+        for (EntryScanStats stats : scanMetrics.getSlowestEntries(slowestEntries)) {
+            out.println("    " + formatNanos(stats.getWallTimeNanos()) + " - " + urlFormatter.formatUrl(stats.getClasspathEntry().getUrl())
+                    + " - " + stats.getResourceCount() + " resources, " + stats.getDuplicateCount() + " duplicates, "
+                    + formatBytes(stats.getBytesRead()) + " read, cache " + stats.getCacheStatus());
+        }
+
+        if (ClassFiles.isScanClassVersions()) {
+            int targetMajorVersion = ClassFiles.getTargetMajorVersion();
+            List<EntryScanStats> newerEntries = scanMetrics.getEntriesNewerThan(targetMajorVersion);
+            out.println("\nEntries compiled for a newer JVM than " + ClassFiles.getJavaVersion(targetMajorVersion)
+                    + " (bytecode " + targetMajorVersion + "): " + (newerEntries.isEmpty() ? "none" : "") + "\n");
+            for (EntryScanStats stats : newerEntries) {
+                out.println("    " + ClassFiles.getJavaVersion(stats.getMaxClassMajorVersion()) + " (bytecode "
+                        + stats.getMaxClassMajorVersion() + ") - " + urlFormatter.formatUrl(stats.getClasspathEntry().getUrl()));
+            }
+        }
+        out.println();
+    }
+
+    private static String formatBound(long millis) {
+        return millis == Long.MAX_VALUE ? "unbounded" : millis + " ms";
+    }
+
+    private static String formatNanos(long nanos) {
+        return String.format("%.1f ms", nanos / 1000000.0);
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " bytes";
+        } else if (bytes < 1024 * 1024) {
+            return String.format("%.1f Kb", bytes / 1024.0);
+        }
+        return String.format("%.1f Mb", bytes / (1024.0 * 1024));
+    }
+}
@@ -0,0 +1,262 @@
+package org.jhades.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import static java.nio.file.FileVisitResult.CONTINUE;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathIndex;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.utils.StdOutLogger;
+
+/**
+ *
+ * Keeps a classpath index up to date with the changes made to its class folders, such as the WEB-INF/classes folder of
+ * an exploded WAR after a hot redeploy.
+ *
+ * The class folders are registered with a WatchService, and a daemon thread applies the file creation, modification
+ * and deletion events to an in-memory copy of the contents of each folder. The class folders are never walked again,
+ * except after an event overflow.
+ *
+ * The index itself is immutable: when it's queried after some changes, a new index is derived from the previous one
+ * with the new contents of the changed folders - the jars are not scanned again - and the duplicates and overlaps are
+ * computed for the new index.
+ *
+ * Only the changes made after the watcher is started are seen, so it should be started right after the index is built.
+ *
+ */
+public class ClassFolderWatcher implements Closeable {
+
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private final WatchService watchService;
+    private final Map<WatchKey, WatchedDirectory> watchedDirectories = new HashMap<>();
+    private final Map<ClasspathEntry, WatchedFolder> watchedFolders = new HashMap<>();
+    private final Set<ClasspathEntry> changedFolders = new HashSet<>();
+    private final Thread watcherThread;
+    private ClasspathIndex classpathIndex;
+
+    /**
+     *
+     * The contents of a class folder, by resource name.
+     *
+     */
+    private static final class WatchedFolder {
+
+        private final ClasspathEntry classpathEntry;
+        private final Path root;
+        private final TreeMap<String, ClasspathResourceVersion> resourceVersions = new TreeMap<>();
+
+        WatchedFolder(ClasspathEntry classpathEntry, Path root) {
+            this.classpathEntry = classpathEntry;
+            this.root = root;
+        }
+
+        String resourceName(Path file) {
+            return "/" + root.relativize(file).toString().replace(root.getFileSystem().getSeparator(), "/");
+        }
+    }
+
+    private static final class WatchedDirectory {
+
+        private final WatchedFolder folder;
+        private final Path directory;
+
+        WatchedDirectory(WatchedFolder folder, Path directory) {
+            this.folder = folder;
+            this.directory = directory;
+        }
+    }
+
+    private ClassFolderWatcher(ClasspathIndex classpathIndex) throws IOException {
+        this.classpathIndex = classpathIndex;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.watcherThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processEvents();
+            }
+        }, "jhades-class-folder-watcher");
+        watcherThread.setDaemon(true);
+    }
+
+    /**
+     *
+     * Starts watching the class folders of an index - jars and class folders nested in zips are not watched.
+     *
+     * @param classpathIndex - the index to keep up to date
+     * @return - the watcher, that should be closed when no longer needed
+     * @throws IOException if the watch service cannot be created
+     */
+    public static ClassFolderWatcher start(ClasspathIndex classpathIndex) throws IOException {
+        ClassFolderWatcher watcher = new ClassFolderWatcher(classpathIndex);
+        synchronized (watcher) {
+            for (ClasspathEntry classpathEntry : classpathIndex.getClasspathEntries()) {
+                if (classpathEntry.isClassFolder() && !classpathEntry.isNested()) {
+                    Path root = toPath(classpathEntry);
+                    if (root != null && Files.isDirectory(root)) {
+                        WatchedFolder folder = new WatchedFolder(classpathEntry, root);
+                        watcher.watchedFolders.put(classpathEntry, folder);
+                        watcher.registerTree(folder, root);
+                    }
+                }
+            }
+        }
+        watcher.watcherThread.start();
+        logger.debug("Watching " + watcher.watchedFolders.size() + " class folders for changes");
+        return watcher;
+    }
+
+    private static Path toPath(ClasspathEntry classpathEntry) {
+        try {
+            return Paths.get(new URI(classpathEntry.getUrl()));
+        } catch (Exception exc) {
+            logger.debug("Class folder not watched: " + classpathEntry.getUrl() + " - reason:" + exc.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     *
+     * Returns the index with all the changes received so far, deriving a new index if there were changes since the
+     * last call.
+     *
+     * @return the up to date classpath index
+     */
+    public synchronized ClasspathIndex getClasspathIndex() {
+        if (!changedFolders.isEmpty()) {
+            Map<ClasspathEntry, List<ClasspathResourceVersion>> replacedVersions = new HashMap<>();
+            for (ClasspathEntry changedFolder : changedFolders) {
+                replacedVersions.put(changedFolder, new ArrayList<>(watchedFolders.get(changedFolder).resourceVersions.values()));
+            }
+            changedFolders.clear();
+            long start = System.nanoTime();
+            classpathIndex = classpathIndex.withEntryVersions(replacedVersions);
+            logger.debug("Classpath index updated for " + replacedVersions.size() + " changed class folders in "
+                    + (System.nanoTime() - start) / 1000000 + " ms");
+        }
+        return classpathIndex;
+    }
+
+    /**
+     *
+     * Registers a directory and all its sub-directories, and adds the files found in them to the folder contents.
+     *
+     */
+    private void registerTree(final WatchedFolder folder, Path start) {
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attrs) throws IOException {
+                    WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                    watchedDirectories.put(key, new WatchedDirectory(folder, directory));
+                    return CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    String resourceName = folder.resourceName(file);
+                    folder.resourceVersions.put(resourceName, new ClasspathResourceVersion(folder.classpathEntry, resourceName, attrs.size()));
+                    return CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    // deleted while walking, the deletion event follows
+                    return CONTINUE;
+                }
+            });
+        } catch (IOException exc) {
+            logger.warn("Could not watch " + start + " - reason:" + exc.getMessage());
+        }
+    }
+
+    private void processEvents() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                synchronized (this) {
+                    WatchedDirectory watched = watchedDirectories.get(key);
+                    if (watched != null) {
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            applyEvent(watched, event);
+                        }
+                        changedFolders.add(watched.folder.classpathEntry);
+                    }
+                    if (!key.reset()) {
+                        watchedDirectories.remove(key);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException exc) {
+            logger.debug("Class folder watcher stopped");
+        }
+    }
+
+    private void applyEvent(WatchedDirectory watched, WatchEvent<?> event) {
+        WatchedFolder folder = watched.folder;
+        if (event.kind() == OVERFLOW) {
+            // some events were lost, start over for the whole folder
+            folder.resourceVersions.clear();
+            registerTree(folder, folder.root);
+            return;
+        }
+        Path file = watched.directory.resolve((Path) event.context());
+        String resourceName = folder.resourceName(file);
+
+        if (event.kind() == ENTRY_DELETE) {
+            // the deleted file may have been a directory, with all its contents
+            folder.resourceVersions.remove(resourceName);
+            Iterator<String> names = folder.resourceVersions.tailMap(resourceName + "/").keySet().iterator();
+            while (names.hasNext() && names.next().startsWith(resourceName + "/")) {
+                names.remove();
+            }
+        } else if (Files.isDirectory(file)) {
+            if (event.kind() == ENTRY_CREATE) {
+                registerTree(folder, file);
+            }
+        } else {
+            try {
+                folder.resourceVersions.put(resourceName, new ClasspathResourceVersion(folder.classpathEntry, resourceName, Files.size(file)));
+            } catch (NoSuchFileException exc) {
+                folder.resourceVersions.remove(resourceName);
+            } catch (IOException exc) {
+                logger.debug("Could not read " + file + " - reason:" + exc.getMessage());
+            }
+        }
+    }
+
+    /**
+     *
+     * Stops watching the class folders, the last index remains valid.
+     *
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        watcherThread.interrupt();
+    }
+}
@@ -6,20 +6,22 @@ import org.jhades.model.ClasspathEntry;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Collection;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Pattern;
-import org.jhades.model.ClasspathEntries;
-import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.ClasspathIndex;
 import org.jhades.model.ClasspathResources;
+import org.jhades.model.ClasspathSnapshot;
 import org.jhades.model.ClazzLoader;
 import org.jhades.model.ClazzLoaders;
 import org.jhades.model.JarPair;
+import org.jhades.model.ResolvedResource;
+import org.jhades.model.ScanMetrics;
 import org.jhades.utils.StdOutLogger;
 
 /**
@@ -43,6 +45,15 @@ import org.jhades.utils.StdOutLogger;
  *
  * The classpath folders and jars are scanned using JDK 7 functionality provided by the Java NIO framework.
  *
+ * The classpath is scanned only once, the first time it's queried: all queries are then answered from an in-memory
+ * classpath index, until the index is refreshed.
+ *
+ * In live mode - enabled with setLiveMode or the system property jhades.live.mode=true - the class folders are watched
+ * for changes, and the index is updated with the changes of the class folders without scanning the classpath again.
+ *
+ * The classpath index can be saved to a snapshot file with writeSnapshot, and a scanner can answer all its queries from
+ * a snapshot taken elsewhere with loadSnapshot, see ClasspathSnapshot.
+ *
  * jHades only depends on JDK 7 classes, in order to prevent introducing library dependencies (that could themselves
  * cause classpath problems).
  *
@@ -54,22 +65,196 @@ import org.jhades.utils.StdOutLogger;
 public class ClasspathScanner {
 
     public static final String BOOTSTRAP_CLASS_LOADER = "Bootstrap class loader";
+    public static final String LIVE_MODE_PROPERTY = "jhades.live.mode";
     private StdOutLogger logger = StdOutLogger.getLogger();
+    private ForkJoinPool scanPool;
+    private volatile ClasspathIndex classpathIndex;
+    private volatile ScanMetrics scanMetrics;
+    private boolean liveMode = Boolean.getBoolean(LIVE_MODE_PROPERTY);
+    private volatile ClassFolderWatcher classFolderWatcher;
+    // the class folders of a snapshot are not watched, even in live mode
+    private boolean snapshotLoaded;
+
+    /**
+     *
+     * Configures the pool used to scan the classpath entries concurrently.
+     *
+     * @param scanPool - the pool to scan classpath entries with, or null to scan them sequentially (the default)
+     */
+    public void setScanPool(ForkJoinPool scanPool) {
+        this.scanPool = scanPool;
+    }
+
+    /**
+     *
+     * Enables or disables the live mode: the class folders of the classpath are watched, and the changes made to them
+     * are applied to the classpath index, so that the classpath doesn't need to be refreshed after a hot redeploy.
+     *
+     * @param liveMode - true to watch the class folders
+     */
+    public synchronized void setLiveMode(boolean liveMode) {
+        this.liveMode = liveMode;
+        if (!liveMode) {
+            stopWatchingClassFolders();
+        } else if (classpathIndex != null && classFolderWatcher == null && !snapshotLoaded) {
+            startWatchingClassFolders(classpathIndex);
+        }
+    }
+
+    /**
+     *
+     * @return true if the class folders are watched, or will be once the classpath is scanned or refreshed
+     */
+    public synchronized boolean isLiveMode() {
+        return liveMode;
+    }
+
+    /**
+     *
+     * Returns the classpath index, scanning the classpath if this is the first query. In live mode, the index includes
+     * the changes made to the class folders so far.
+     *
+     * @return the index of the whole classpath
+     */
+    public ClasspathIndex getClasspathIndex() {
+        ClasspathIndex index = classpathIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = classpathIndex;
+                if (index == null) {
+                    index = buildClasspathIndex();
+                    classpathIndex = index;
+                    if (liveMode) {
+                        startWatchingClassFolders(index);
+                    }
+                }
+            }
+        }
+        ClassFolderWatcher watcher = classFolderWatcher;
+        return watcher != null ? watcher.getClasspathIndex() : index;
+    }
+
+    /**
+     *
+     * Scans the classpath again, all subsequent queries will use the new scan results.
+     *
+     * @return the new classpath index
+     */
+    public synchronized ClasspathIndex refresh() {
+        stopWatchingClassFolders();
+        ClasspathIndex index = buildClasspathIndex();
+        classpathIndex = index;
+        snapshotLoaded = false;
+        if (liveMode) {
+            startWatchingClassFolders(index);
+        }
+        return index;
+    }
+
+    /**
+     *
+     * Saves the classpath index to a snapshot file, scanning the classpath if this is the first query.
+     *
+     * @param file - the snapshot file, replaced if it already exists
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        long start = System.nanoTime();
+        ClasspathSnapshot.write(getClasspathIndex(), file);
+        logger.debug("Classpath snapshot written to " + file + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     *
+     * Replaces the classpath index with the index saved in a snapshot file: all subsequent queries are answered from the
+     * snapshot, until the classpath is refreshed. The class folders of a snapshot are not watched: in live mode, they
+     * are watched again once the classpath is refreshed. The scan metrics of the snapshot are empty, except for the
+     * duplicates.
+     *
+     * @param file - the snapshot file
+     * @return the classpath index of the snapshot
+     * @throws IOException if the snapshot cannot be read
+     */
+    public synchronized ClasspathIndex loadSnapshot(Path file) throws IOException {
+        long start = System.nanoTime();
+        ClasspathIndex index = ClasspathSnapshot.read(file);
+        logger.debug("Classpath snapshot loaded from " + file + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+        stopWatchingClassFolders();
+        snapshotLoaded = true;
+        ScanMetrics metrics = new ScanMetrics();
+        metrics.recordDuplicates(index.findResourcesWithDuplicates(false));
+        scanMetrics = metrics;
+        classpathIndex = index;
+        return index;
+    }
+
+    private void startWatchingClassFolders(ClasspathIndex index) {
+        try {
+            classFolderWatcher = ClassFolderWatcher.start(index);
+        } catch (IOException exc) {
+            logger.warn("Live mode disabled, the class folders cannot be watched: " + exc.getMessage());
+        }
+    }
+
+    private void stopWatchingClassFolders() {
+        ClassFolderWatcher watcher = classFolderWatcher;
+        if (watcher != null) {
+            classFolderWatcher = null;
+            try {
+                watcher.close();
+            } catch (IOException exc) {
+                logger.debug("Could not stop watching the class folders: " + exc.getMessage());
+            }
+        }
+    }
+
+    private ClasspathIndex buildClasspathIndex() {
+        List<ClazzLoader> classLoaders = findAllClassLoaders(getClass().getClassLoader());
+        ScanMetrics metrics = new ScanMetrics();
+        ClasspathIndex index = ClasspathIndex.build(classLoaders, logger, metrics, scanPool);
+        metrics.recordDuplicates(index.findResourcesWithDuplicates(false));
+        scanMetrics = metrics;
+        checkJavaClassPath(index.getClasspathEntries());
+        return index;
+    }
+
+    /**
+     *
+     * Returns the metrics of the scan that built the current classpath index, scanning the classpath if this is the
+     * first query.
+     *
+     * @return the per entry statistics and aggregate counters of the classpath scan
+     */
+    public ScanMetrics getScanMetrics() {
+        getClasspathIndex();
+        return scanMetrics;
+    }
 
     /**
      *
      * finds all the entries on the classpath; this includes jars and class folders on all class loaders, all the way
      * down and including the JVM bootstrap class loader.
      *
+     * Only the class loaders are walked, the entries are not scanned: the classpath index is used only if it's already
+     * built, such as after a resource query or when a snapshot was loaded.
+     *
      * @return a list of classpath entries, or an empty list if none where found.
      */
     public List<ClasspathEntry> findAllClasspathEntries() {
-        // try to extract all classpath entries from the class loaders
-        List<ClazzLoader> classLoaders = findAllClassLoaders(getClass().getClassLoader());
-
-        List<ClasspathEntry> allClasspathEntries = ClazzLoaders.findAllClasspathEntries(classLoaders);
+        if (classpathIndex != null) {
+            return new ArrayList<>(getClasspathIndex().getClasspathEntries());
+        }
+        List<ClasspathEntry> classpathEntries = ClazzLoaders.findAllClasspathEntries(findAllClassLoaders(getClass().getClassLoader()));
+        checkJavaClassPath(classpathEntries);
+        return classpathEntries;
+    }
 
-        // scan the class path variable for missing entries, just in case
+    /**
+     *
+     * scan the class path variable for entries missing on the class loaders, just in case
+     *
+     */
+    private void checkJavaClassPath(List<ClasspathEntry> allClasspathEntries) {
         String classpath = System.getProperty("java.class.path");
         String separator = System.getProperty("path.separator");
 
@@ -93,8 +278,6 @@ public class ClasspathScanner {
         } else {
             logger.warn("could not parse classpath.");
         }
-
-        return allClasspathEntries;
     }
 
     /**
@@ -104,8 +287,7 @@ public class ClasspathScanner {
      * @return - the full list of resources on the classpath, including all its known versions.
      */
     public List<ClasspathResource> findAllClasspathResources() {
-        List<ClasspathEntry> classpathEntries = findAllClasspathEntries();
-        return ClasspathEntries.findClasspathResourcesInEntries(classpathEntries, logger, null);
+        return new ArrayList<>(getClasspathIndex().getResources());
     }
 
     /**
@@ -113,9 +295,14 @@ public class ClasspathScanner {
      *
      * All classloaders names will be returned, with an indication if they are supported by jHades or not.
      *
+     * Like findAllClasspathEntries, the classpath is not scanned unless the classpath index is already built.
+     *
      * @return
      */
     public List<ClazzLoader> findAllClassLoaders() {
+        if (classpathIndex != null) {
+            return new ArrayList<>(getClasspathIndex().getClassLoaders());
+        }
         return findAllClassLoaders(getClass().getClassLoader());
     }
 
@@ -155,6 +342,19 @@ public class ClasspathScanner {
         return cl.getResource(resourceUrl);
     }
 
+    /**
+     *
+     * Finds all the versions and the loaded version of many resources at once. Unlike findAllResourceVersions and
+     * findCurrentResourceVersion, the class loaders are not called for each name, the names are looked up in the
+     * classpath index - see ClasspathIndex.resolveResources.
+     *
+     * @param resourceNames - the resource names, such as /org/jhades/JHades.class
+     * @return - the resolution of each name, in the same order as the names
+     */
+    public List<ResolvedResource> resolveResources(Collection<String> resourceNames) {
+        return getClasspathIndex().resolveResources(resourceNames);
+    }
+
     /**
      *
      * Search for a given class on the classpath, returns the list of all class versions.
@@ -163,18 +363,7 @@ public class ClasspathScanner {
      * @return - the classpath resource containing all the class versions, or null if not found
      */
     public ClasspathResource findClass(Class clazz) {
-        String classResourceName = clazz.getName().replace(".", "/") + ".class";
-        List<ClasspathResource> allResources = findAllClasspathResources();
-        ClasspathResource foundResource = null;
-
-        for (ClasspathResource resource : allResources) {
-            if (resource != null && resource.getName() != null
-                    && resource.getName().endsWith(classResourceName)) {
-                foundResource = resource;
-                break;
-            }
-        }
-        return foundResource;
+        return getClasspathIndex().findClass(clazz.getName());
     }
 
     /**
@@ -182,20 +371,10 @@ public class ClasspathScanner {
      * finds a resource on the classpath using a regular expression.
      *
      * @param search - search regular expression
-     * @return - the list of classpath resources that match the regular expression
+     * @return - the list of classpath resources that match the regular expression, in path order
      */
     public List<ClasspathResource> findByRegex(String search) {
-        List<ClasspathResource> allResources = findAllClasspathResources();
-        List<ClasspathResource> matches = new ArrayList<>();
-        Pattern pattern = Pattern.compile(search);
-
-        for (ClasspathResource resource : allResources) {
-            if (resource != null && resource.getName() != null
-                    && pattern.matcher(resource.getName()).find()) {
-                matches.add(resource);
-            }
-        }
-        return matches;
+        return getClasspathIndex().findByRegex(Pattern.compile(search), scanPool);
     }
 
     /**
@@ -205,13 +384,11 @@ public class ClasspathScanner {
      * A duplicate classpath resource can be for example a configuration file such as log4.xml, that exists by accident
      * multiple times on the classpath.
      *
-     * @param excludeSameSizeDups - excludes from the reports files for which all classpath versions have the same size
+     * @param excludeSameSizeDups - excludes from the reports files for which all classpath versions are identical copies (same size and CRC-32)
      * @return classpath resources that have multiple versions on the classpath
      */
     public List<ClasspathResource> findAllResourcesWithDuplicates(boolean excludeSameSizeDups) {
-        List<ClasspathResource> resourceFiles = findAllClasspathResources();
-
-        return ClasspathResources.findResourcesWithDuplicates(resourceFiles, excludeSameSizeDups);
+        return new ArrayList<>(getClasspathIndex().findResourcesWithDuplicates(excludeSameSizeDups));
     }
 
     /**
@@ -243,12 +420,11 @@ public class ClasspathScanner {
      * Finds all class files that have more than one version on the classpath
      *
      * @param classpathResources - the list of classpath resources
-     * @param excludeSameSizeDups - true if only duplicates of different class sizes are considered
+     * @param excludeSameSizeDups - true if only duplicates with different contents are considered
      * @return - the list of class files that have multiple versions
      */
     public List<ClasspathResource> findClassFileDuplicates(List<ClasspathResource> classpathResources, boolean excludeSameSizeDups) {
-        List<ClasspathResource> classFilesWithDuplicates = ClasspathResources.findResourcesWithDuplicates(classpathResources, excludeSameSizeDups);
-        return ClasspathResources.filterClassFilesOnly(classFilesWithDuplicates);
+        return ClasspathResources.findClassFileDuplicates(classpathResources, excludeSameSizeDups);
     }
 
     /**
@@ -259,7 +435,7 @@ public class ClasspathScanner {
      *
      */
     public List<JarPair> findOverlappingJars() {
-        return findOverlappingJars(findAllClasspathResources(), false);
+        return findOverlappingJars(false);
     }
 
     /**
@@ -268,51 +444,36 @@ public class ClasspathScanner {
      *
      */
     public List<JarPair> findOverlappingJars(boolean excludeSameSizeDups) {
-        return findOverlappingJars(findAllClasspathResources(), excludeSameSizeDups);
+        return new ArrayList<>(getClasspathIndex().findOverlappingJars(excludeSameSizeDups));
     }
 
     /**
      *
-     * @return - a list of jar pairs that have overlapping class files - only a limited list of classpath resources is
-     * considered.
+     * @return - the jar pairs that have overlapping class files where both jars belong to the same class loader, per
+     * class loader - scans the whole classpath
      *
      */
-    public List<JarPair> findOverlappingJars(List<ClasspathResource> classpathResources, boolean excludeSameSizeDups) {
-        List<ClasspathResource> classFilesWithDuplicates = findClassFileDuplicates(classpathResources, excludeSameSizeDups);
-
-        //jar overlap report
-        Map<JarPair, JarPair> overlapPairs = new HashMap<>();
-        for (ClasspathResource classFile : classFilesWithDuplicates) {
-            List<ClasspathResourceVersion> versions = classFile.getResourceFileVersions();
-            findOverlappingJarsPairs(versions, overlapPairs, 0);
-        }
-
-        List<JarPair> overlapReportLines = new ArrayList<>(overlapPairs.keySet());
-
-        Comparator<JarPair> comparator = new Comparator<JarPair>() {
-            @Override
-            public int compare(JarPair line1, JarPair line2) {
-                return -1 * line1.getDupClassesTotal().compareTo(line2.getDupClassesTotal());
-            }
-        };
-
-        Collections.sort(overlapReportLines, comparator);
+    public Map<ClazzLoader, List<JarPair>> findOverlappingJarsByClassLoader(boolean excludeSameSizeDups) {
+        return getClasspathIndex().countJarOverlaps(excludeSameSizeDups).getOverlappingJarsByClassLoader();
+    }
 
-        return overlapReportLines;
+    /**
+     *
+     * @return - the jar pairs that have overlapping class files where the jars belong to different class loaders -
+     * scans the whole classpath
+     *
+     */
+    public List<JarPair> findCrossClassLoaderOverlappingJars(boolean excludeSameSizeDups) {
+        return new ArrayList<>(getClasspathIndex().countJarOverlaps(excludeSameSizeDups).getCrossClassLoaderOverlaps());
     }
 
-    private void findOverlappingJarsPairs(List<ClasspathResourceVersion> versions, Map<JarPair, JarPair> overlapPairs, int anchorIndex) {
-        ClasspathResourceVersion anchor = versions.get(anchorIndex);
-        for (int i = anchorIndex + 1; i < versions.size(); i++) {
-            JarPair overlapPair = new JarPair(
-                    anchor.getClasspathEntry(), versions.get(i).getClasspathEntry());
-            if (!overlapPairs.containsKey(overlapPair)) {
-                overlapPairs.put(overlapPair, overlapPair);
-            }
-            overlapPairs.get(overlapPair).incrementDupClassesTotal();
-        }
-        if (anchorIndex + 1 < versions.size()) {
-            findOverlappingJarsPairs(versions, overlapPairs, anchorIndex + 1);
-        }
+    /**
+     *
+     * @return - a list of jar pairs that have overlapping class files - only a limited list of classpath resources is
+     * considered.
+     *
+     */
+    public List<JarPair> findOverlappingJars(List<ClasspathResource> classpathResources, boolean excludeSameSizeDups) {
+        return ClasspathResources.findOverlappingJars(classpathResources, excludeSameSizeDups);
     }
 }
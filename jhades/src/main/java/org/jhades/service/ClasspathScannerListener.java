@@ -6,6 +6,9 @@ import org.jhades.model.ClasspathEntry;
  *
  * Listener for the classpath scanning process.
  *
+ * When the classpath is scanned in parallel, the callbacks are invoked concurrently from the scanning threads, so
+ * implementations must be thread-safe.
+ *
  */
 public interface ClasspathScannerListener {
 
@@ -0,0 +1,44 @@
+package org.jhades.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jhades.model.ClasspathEntry;
+
+/**
+ *
+ * Forwards the scan events to several listeners, in the given order - for example a progress listener and ScanMetrics.
+ *
+ * The listener is as thread-safe as the listeners it forwards to.
+ *
+ */
+public class CompositeClasspathScannerListener implements ClasspathScannerListener {
+
+    private final List<ClasspathScannerListener> listeners = new ArrayList<>();
+
+    /**
+     *
+     * @param listeners - the listeners to forward the events to, null listeners are ignored
+     */
+    public CompositeClasspathScannerListener(ClasspathScannerListener... listeners) {
+        for (ClasspathScannerListener listener : Arrays.asList(listeners)) {
+            if (listener != null) {
+                this.listeners.add(listener);
+            }
+        }
+    }
+
+    @Override
+    public void onEntryScanStart(ClasspathEntry classpathEntry) {
+        for (ClasspathScannerListener listener : listeners) {
+            listener.onEntryScanStart(classpathEntry);
+        }
+    }
+
+    @Override
+    public void onEntryScanEnd(ClasspathEntry classpathEntry) {
+        for (ClasspathScannerListener listener : listeners) {
+            listener.onEntryScanEnd(classpathEntry);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.jhades.service;
+
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+
+/**
+ *
+ * Listener notified of the duplicate resources while the classpath is being scanned, see
+ * ClasspathEntries.findDuplicateResourcesInEntries.
+ *
+ * The callbacks are always invoked from the thread that requested the scan, in classpath order.
+ *
+ */
+public interface DuplicateResourceListener {
+
+    /**
+     *
+     * Called each time a version is found for a resource that already had one: the first time a resource is reported it
+     * has two versions, and it's reported again for each further version.
+     *
+     * @param resource - the duplicate resource, including the new version
+     * @param newVersion - the version that was just found
+     */
+    void onDuplicateResourceVersion(ClasspathResource resource, ClasspathResourceVersion newVersion);
+}
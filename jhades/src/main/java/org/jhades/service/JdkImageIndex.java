@@ -0,0 +1,240 @@
+package org.jhades.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.utils.ClassFiles;
+import org.jhades.utils.StdOutLogger;
+
+/**
+ *
+ * Index of the resources of the JDK image of Java 9 and later JVMs, the modules of the jrt:/ file system. The modules
+ * are the bootstrap layer of the classpath, such as jrt:/java.base, there are no jars for it anymore.
+ *
+ * The image of a JDK installation never changes, so the index is built only once per JVM, walking the modules in
+ * parallel, and kept in memory keyed by java.home and the runtime version. If the scan cache is enabled, the resources
+ * of each module are stored in it with the same key, so that the next JVMs don't walk the image again.
+ *
+ */
+public final class JdkImageIndex {
+
+    public static final String JRT_URL_PREFIX = "jrt:/";
+    private static final String MODULES_DIR = "/modules";
+    // each module has one, they are not classpath resources
+    private static final String MODULE_INFO = "/module-info.class";
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private static JdkImageIndex instance;
+    private final String imageVersion;
+    private final Map<String, ModuleContents> modules;
+
+    private JdkImageIndex(String imageVersion, Map<String, ModuleContents> modules) {
+        this.imageVersion = imageVersion;
+        this.modules = modules;
+    }
+
+    /**
+     *
+     * The resources of a module, independent from the classpath entries of the module.
+     *
+     */
+    private static final class ModuleContents {
+
+        private final List<ClasspathResourceVersion> resourceVersions;
+        private final boolean walked;
+        private final AtomicInteger visits = new AtomicInteger();
+
+        ModuleContents(List<ClasspathResourceVersion> resourceVersions, boolean walked) {
+            this.resourceVersions = resourceVersions;
+            this.walked = walked;
+        }
+    }
+
+    /**
+     *
+     * @param url - the url of a classpath entry
+     * @return true if the entry is a module of the JDK image, such as jrt:/java.base
+     */
+    public static boolean isModuleUrl(String url) {
+        return url != null && url.startsWith(JRT_URL_PREFIX);
+    }
+
+    /**
+     *
+     * @return the urls of the modules of the JDK image in name order, or an empty list if the JVM has no module image,
+     * such as Java 8 and earlier JVMs
+     */
+    public static List<String> findModuleUrls() {
+        List<String> moduleUrls = new ArrayList<>();
+        Path modulesDir = findModulesDir();
+        if (modulesDir == null) {
+            return moduleUrls;
+        }
+        try (DirectoryStream<Path> moduleDirs = Files.newDirectoryStream(modulesDir)) {
+            for (Path moduleDir : moduleDirs) {
+                moduleUrls.add(JRT_URL_PREFIX + moduleDir.getFileName());
+            }
+        } catch (IOException exc) {
+            logger.warn("Could not list the modules of the JDK image - reason:" + exc.getMessage());
+        }
+        Collections.sort(moduleUrls);
+        return moduleUrls;
+    }
+
+    /**
+     *
+     * @param moduleUrl - the url of a module, such as jrt:/java.base
+     * @return the directory of the module in the jrt:/ file system
+     * @throws IOException if the JVM has no module image
+     */
+    public static Path findModuleDir(String moduleUrl) throws IOException {
+        Path modulesDir = findModulesDir();
+        if (modulesDir == null) {
+            throw new IOException("No JDK module image in " + System.getProperty("java.home"));
+        }
+        return modulesDir.resolve(moduleUrl.substring(JRT_URL_PREFIX.length()));
+    }
+
+    private static Path findModulesDir() {
+        try {
+            return FileSystems.getFileSystem(URI.create(JRT_URL_PREFIX)).getPath(MODULES_DIR);
+        } catch (FileSystemNotFoundException | ProviderNotFoundException | IllegalArgumentException exc) {
+            return null;
+        }
+    }
+
+    /**
+     *
+     * Returns the index of the JDK image, building it the first time.
+     *
+     * @return the index of the image of the running JVM
+     * @throws IOException if the JVM has no module image, or if the image cannot be read
+     */
+    public static synchronized JdkImageIndex getInstance() throws IOException {
+        String imageVersion = System.getProperty("java.home") + ":" + System.getProperty("java.runtime.version")
+                + (ClassFiles.isScanClassVersions() ? ":class-versions" : "");
+        if (instance == null || !instance.imageVersion.equals(imageVersion)) {
+            instance = build(imageVersion);
+        }
+        return instance;
+    }
+
+    private static JdkImageIndex build(final String imageVersion) throws IOException {
+        List<String> moduleUrls = findModuleUrls();
+        if (moduleUrls.isEmpty()) {
+            throw new IOException("No JDK module image in " + System.getProperty("java.home"));
+        }
+        logger.debug("Indexing the JDK image " + imageVersion);
+        // the scan cache does not keep the bytecode versions
+        final ScanCache scanCache = ClassFiles.isScanClassVersions() ? null : ScanCache.getInstance();
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), moduleUrls.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Map<String, Future<ModuleContents>> futures = new LinkedHashMap<>();
+            for (final String moduleUrl : moduleUrls) {
+                futures.put(moduleUrl, executor.submit(new Callable<ModuleContents>() {
+                    @Override
+                    public ModuleContents call() throws IOException {
+                        return loadModule(moduleUrl, imageVersion, scanCache);
+                    }
+                }));
+            }
+            Map<String, ModuleContents> modules = new HashMap<>();
+            for (Map.Entry<String, Future<ModuleContents>> future : futures.entrySet()) {
+                modules.put(future.getKey(), future.getValue().get());
+            }
+            return new JdkImageIndex(imageVersion, modules);
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while indexing the JDK image");
+        } catch (ExecutionException exc) {
+            Throwable cause = exc.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ModuleContents loadModule(String moduleUrl, String imageVersion, ScanCache scanCache) throws IOException {
+        if (scanCache != null) {
+            List<ClasspathResourceVersion> cachedVersions = scanCache.load(moduleUrl, imageVersion, null);
+            if (cachedVersions != null) {
+                return new ModuleContents(cachedVersions, false);
+            }
+        }
+        List<ClasspathResourceVersion> resourceVersions = walkModule(findModuleDir(moduleUrl));
+        if (scanCache != null) {
+            scanCache.store(moduleUrl, imageVersion, resourceVersions);
+        }
+        return new ModuleContents(resourceVersions, true);
+    }
+
+    private static List<ClasspathResourceVersion> walkModule(final Path moduleDir) throws IOException {
+        final List<ClasspathResourceVersion> resourceVersions = new ArrayList<>();
+        final boolean scanClassVersions = ClassFiles.isScanClassVersions();
+        Files.walkFileTree(moduleDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String resourceName = "/" + moduleDir.relativize(file).toString();
+                if (!MODULE_INFO.equals(resourceName)) {
+                    int classMajorVersion = scanClassVersions && ClassFiles.isClassFile(resourceName)
+                            ? ClassFiles.readMajorVersion(file) : -1;
+                    resourceVersions.add(new ClasspathResourceVersion(null, resourceName, attrs.size(), -1, classMajorVersion));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return resourceVersions;
+    }
+
+    /**
+     *
+     * Passes the resources of a module to a visitor.
+     *
+     * @param classpathEntry - the classpath entry of the module, used to build the resource versions
+     * @param visitor - the visitor of the resource versions
+     * @return true if the module was found in the index or in the scan cache, false the first time a module that had to
+     * be walked is visited
+     * @throws IOException if the module is not part of the JDK image
+     */
+    public boolean visitModule(ClasspathEntry classpathEntry, ClasspathEntry.ResourceVersionVisitor visitor) throws IOException {
+        ModuleContents contents = modules.get(classpathEntry.getUrl());
+        if (contents == null) {
+            throw new IOException("Module not found in the JDK image: " + classpathEntry.getUrl());
+        }
+        for (ClasspathResourceVersion resourceVersion : contents.resourceVersions) {
+            visitor.visitResourceVersion(new ClasspathResourceVersion(classpathEntry, resourceVersion.getResourceName(),
+                    resourceVersion.getFileSize(), -1, resourceVersion.getClassMajorVersion()));
+        }
+        return contents.visits.getAndIncrement() > 0 || !contents.walked;
+    }
+
+    /**
+     * @return the number of modules of the image
+     */
+    public int getModuleCount() {
+        return modules.size();
+    }
+}
@@ -0,0 +1,218 @@
+package org.jhades.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.utils.ClassFiles;
+import org.jhades.utils.StdOutLogger;
+import org.jhades.utils.ZipCentralDirectory;
+
+/**
+ *
+ * In-memory cache of the contents of jars nested in WARs, shared by the WARs of a scan.
+ *
+ * The jars are content-addressed: a nested jar is identified by the CRC-32 and size of its bytes, that are read from
+ * the central directory of the WAR, so a jar that was already listed in another WAR is neither read nor inflated again,
+ * whatever its name or location. When scanning many WARs that share the same third-party jars, the cost grows with the
+ * number of distinct jars and not with the number of WARs times the number of jars.
+ *
+ * The cache is owned by the scan that creates it, and passed to the WAR classpath entries that use it, see
+ * ClasspathEntries.findWarClasspathEntries: the cached contents are released with the cache. When several threads need
+ * the same jar at the same time, only one of them lists it and the others wait for its contents.
+ *
+ */
+public final class NestedJarCache {
+
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private final ConcurrentMap<String, CachedJar> jars = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     *
+     * A distinct nested jar: its contents and the number of times it was found.
+     *
+     */
+    public static final class CachedJar {
+
+        private final String name;
+        private final long crc;
+        private final long size;
+        private final AtomicInteger uses = new AtomicInteger();
+        private final FutureTask<JarContents> contents;
+
+        CachedJar(String name, long crc, long size, FutureTask<JarContents> contents) {
+            this.name = name;
+            this.crc = crc;
+            this.size = size;
+            this.contents = contents;
+        }
+
+        /**
+         * @return the path of the jar inside the first zip where it was found, such as WEB-INF/lib/jhades.jar
+         */
+        public String getName() {
+            return name;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return the number of times the jar was scanned, including the first time
+         */
+        public int getUses() {
+            return uses.get();
+        }
+    }
+
+    /**
+     *
+     * The resources of a jar, independent from the classpath entries where the jar is found.
+     *
+     */
+    private static final class JarContents {
+
+        private String[] names = new String[256];
+        private long[] sizes = new long[256];
+        private long[] crcs = new long[256];
+        private short[] classMajorVersions = new short[256];
+        private int count;
+
+        void add(String name, long size, long crc, int classMajorVersion) {
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count * 2);
+                sizes = Arrays.copyOf(sizes, count * 2);
+                crcs = Arrays.copyOf(crcs, count * 2);
+                classMajorVersions = Arrays.copyOf(classMajorVersions, count * 2);
+            }
+            names[count] = name;
+            sizes[count] = size;
+            crcs[count] = crc;
+            classMajorVersions[count] = (short) classMajorVersion;
+            count++;
+        }
+    }
+
+    /**
+     *
+     * Passes the resources of a nested jar to a visitor, listing the jar only if it's not in the cache yet.
+     *
+     * @param zip - the zip file that contains the jar
+     * @param jarEntry - the jar, an entry of the zip file
+     * @param classpathEntry - the classpath entry of the jar, used to build the resource versions
+     * @param visitor - the visitor of the resource versions
+     * @return true if the jar was found in the cache
+     * @throws IOException if the jar cannot be read
+     */
+    public boolean visitJar(final ZipCentralDirectory zip, final ZipCentralDirectory.Entry jarEntry,
+            ClasspathEntry classpathEntry, ClasspathEntry.ResourceVersionVisitor visitor) throws IOException {
+
+        String key = Long.toHexString(jarEntry.getCrc()) + "-" + jarEntry.getSize();
+        FutureTask<JarContents> listing = new FutureTask<>(new Callable<JarContents>() {
+            @Override
+            public JarContents call() throws IOException {
+                return listJar(zip, jarEntry);
+            }
+        });
+        CachedJar cachedJar = new CachedJar(jarEntry.getName(), jarEntry.getCrc(), jarEntry.getSize(), listing);
+        CachedJar existing = jars.putIfAbsent(key, cachedJar);
+        boolean hit = existing != null;
+        if (hit) {
+            cachedJar = existing;
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            listing.run();
+        }
+        cachedJar.uses.incrementAndGet();
+
+        JarContents contents;
+        try {
+            contents = cachedJar.contents.get();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the contents of " + jarEntry.getName());
+        } catch (ExecutionException exc) {
+            // not cached, the next WAR with this jar tries again
+            jars.remove(key, cachedJar);
+            Throwable cause = exc.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        }
+
+        for (int i = 0; i < contents.count; i++) {
+            visitor.visitResourceVersion(new ClasspathResourceVersion(classpathEntry, contents.names[i], contents.sizes[i], contents.crcs[i],
+                    contents.classMajorVersions[i]));
+        }
+        return hit;
+    }
+
+    private static JarContents listJar(ZipCentralDirectory zip, final ZipCentralDirectory.Entry jarEntry) throws IOException {
+        final JarContents contents = new JarContents();
+        final ZipCentralDirectory jar = ZipCentralDirectory.wrap(zip.readEntry(jarEntry));
+        final boolean scanClassVersions = ClassFiles.isScanClassVersions();
+        jar.accept(new ZipCentralDirectory.EntryVisitor() {
+            @Override
+            public void visitEntry(ZipCentralDirectory.Entry entry) {
+                if (!entry.isDirectory()) {
+                    int classMajorVersion = -1;
+                    if (scanClassVersions && ClassFiles.isClassFile(entry.getName())) {
+                        try {
+                            classMajorVersion = ClassFiles.readMajorVersion(jar, entry);
+                        } catch (IOException exc) {
+                            logger.debug("Could not read the class file header of " + entry.getName() + " in " + jarEntry.getName() + " - reason:" + exc.getMessage());
+                        }
+                    }
+                    contents.add("/" + entry.getName(), entry.getSize(), entry.getCrc(), classMajorVersion);
+                }
+            }
+        });
+        return contents;
+    }
+
+    /**
+     * @return the number of nested jars that were found in the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of nested jars that had to be listed, one per distinct jar
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the distinct jars of the cache, the most used first
+     */
+    public List<CachedJar> getCachedJars() {
+        List<CachedJar> cachedJars = new ArrayList<>(jars.values());
+        Collections.sort(cachedJars, new Comparator<CachedJar>() {
+            @Override
+            public int compare(CachedJar jar1, CachedJar jar2) {
+                return Integer.compare(jar2.getUses(), jar1.getUses());
+            }
+        });
+        return cachedJars;
+    }
+}
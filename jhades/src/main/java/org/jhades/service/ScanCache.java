@@ -0,0 +1,499 @@
+package org.jhades.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.utils.StdOutLogger;
+import static org.jhades.utils.VarInts.readVarLong;
+import static org.jhades.utils.VarInts.writeVarLong;
+
+/**
+ *
+ * Persistent on-disk cache of jar scan results.
+ *
+ * The resource list of each scanned jar is stored in a compact binary file, keyed by the jar canonical path, length,
+ * last modified time and optionally a hash of its content. On a cache hit the jar is not opened at all.
+ *
+ * The cache is disabled by default, and can be enabled via the following system properties (or the servlet listener
+ * context parameters with the same name):
+ *
+ * jhades.cache.dir - the cache directory
+ *
+ * jhades.cache.max.size.mb - the maximum size of the cache, the least recently used entries are evicted first
+ *
+ * jhades.cache.content.hash - true to also verify the jar content hash, at the cost of reading each jar fully
+ *
+ * The cache directory can be shared by several JVMs on the same host: cache files are written to a temporary file and
+ * atomically renamed, and eviction is guarded by a file lock.
+ *
+ */
+public final class ScanCache {
+
+    public static final String CACHE_DIR_PROPERTY = "jhades.cache.dir";
+    public static final String CACHE_MAX_SIZE_PROPERTY = "jhades.cache.max.size.mb";
+    public static final String CACHE_CONTENT_HASH_PROPERTY = "jhades.cache.content.hash";
+    private static final long DEFAULT_MAX_SIZE_MB = 256;
+    private static final int MAGIC = 0x4a484331;
+    private static final int FORMAT_VERSION = 1;
+    private static final String CACHE_FILE_SUFFIX = ".jhc";
+    private static final String TMP_FILE_SUFFIX = ".tmp";
+    private static final String LOCK_FILE = ".lock";
+    private static final long STALE_TMP_FILE_MILLIS = 60 * 60 * 1000;
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private static ScanCache instance;
+    private static boolean initialized = false;
+    private final Path cacheDir;
+    private final long maxSize;
+    private final boolean contentHash;
+    private long approximateSize = -1;
+
+    private ScanCache(Path cacheDir, long maxSize, boolean contentHash) {
+        this.cacheDir = cacheDir;
+        this.maxSize = maxSize;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     *
+     * @return the configured scan cache, or null if the cache is disabled
+     */
+    public static synchronized ScanCache getInstance() {
+        if (!initialized) {
+            String cacheDir = System.getProperty(CACHE_DIR_PROPERTY);
+            if (cacheDir != null && !cacheDir.isEmpty()) {
+                configure(cacheDir, System.getProperty(CACHE_MAX_SIZE_PROPERTY), System.getProperty(CACHE_CONTENT_HASH_PROPERTY));
+            }
+            initialized = true;
+        }
+        return instance;
+    }
+
+    /**
+     *
+     * Enables the scan cache.
+     *
+     * @param cacheDir - the cache directory, created if it does not exist
+     * @param maxSizeMb - the maximum cache size in megabytes, or null for the default
+     * @param contentHash - "true" to key the cache entries also by the jar content hash
+     */
+    public static synchronized void configure(String cacheDir, String maxSizeMb, String contentHash) {
+        long maxSize = (maxSizeMb != null ? Long.parseLong(maxSizeMb.trim()) : DEFAULT_MAX_SIZE_MB) * 1024 * 1024;
+        Path dir = Paths.get(cacheDir);
+        try {
+            Files.createDirectories(dir);
+            instance = new ScanCache(dir, maxSize, "true".equals(contentHash));
+            logger.debug("Scan cache enabled on " + dir);
+        } catch (IOException ex) {
+            logger.warn("Could not create scan cache directory " + cacheDir + " - " + ex.getMessage());
+            instance = null;
+        }
+        initialized = true;
+    }
+
+    /**
+     *
+     * Disables the scan cache.
+     *
+     */
+    public static synchronized void disable() {
+        instance = null;
+        initialized = true;
+    }
+
+    public Path getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     *
+     * Computes the cache key of a jar, which reads the whole jar if the content hash is on. Compute it once before
+     * scanning the jar, and use it both to load and to store the scan result: a jar replaced during the scan is then
+     * stored under the key of the previous jar, which no longer matches.
+     *
+     * @param jar - the jar file
+     * @return the key of the jar in its current state, or null if the jar could not be read
+     */
+    public JarKey getJarKey(Path jar) {
+        try {
+            return new JarKey(jar);
+        } catch (NoSuchFileException ex) {
+            return null;
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Could not read scan cache key for " + jar + " - " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     *
+     * Loads the cached resource list of a jar.
+     *
+     * @param jar - the jar file
+     * @param classpathEntry - the classpath entry of the jar, used to build the resource versions
+     * @return the cached resource versions, or null if the jar is not cached or changed since it was cached
+     */
+    public List<ClasspathResourceVersion> load(Path jar, ClasspathEntry classpathEntry) {
+        JarKey key = getJarKey(jar);
+        return key != null ? load(key, classpathEntry) : null;
+    }
+
+    /**
+     *
+     * Loads the cached resource list of an entry that never changes for a given version, such as a module of the JDK
+     * image - the entry is not checked on the file system.
+     *
+     * @param name - the name of the entry, such as its url
+     * @param version - the version of the entry contents
+     * @param classpathEntry - the classpath entry used to build the resource versions
+     * @return the cached resource versions, or null if the entry is not cached for this version
+     */
+    public List<ClasspathResourceVersion> load(String name, String version, ClasspathEntry classpathEntry) {
+        return load(new JarKey(name, version), classpathEntry);
+    }
+
+    /**
+     *
+     * @param key - the key of the jar, see getJarKey
+     * @param classpathEntry - the classpath entry of the jar, used to build the resource versions
+     * @return the cached resource versions, or null if the jar is not cached or changed since it was cached
+     */
+    public List<ClasspathResourceVersion> load(JarKey key, ClasspathEntry classpathEntry) {
+        Path cacheFile = null;
+        try {
+            cacheFile = key.getCacheFile();
+            if (!Files.exists(cacheFile)) {
+                return null;
+            }
+            List<ClasspathResourceVersion> versions = null;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile), 64 * 1024))) {
+                if (in.readInt() == MAGIC && in.readInt() == FORMAT_VERSION && key.matches(in)) {
+                    versions = readResourceVersions(in, classpathEntry);
+                }
+            }
+            if (versions != null) {
+                // the modification time of the cache files is used for the least recently used eviction
+                Files.setLastModifiedTime(cacheFile, FileTime.fromMillis(System.currentTimeMillis()));
+                logger.debug("Scan cache hit: " + key.canonicalPath);
+            }
+            return versions;
+        } catch (NoSuchFileException ex) {
+            // evicted meanwhile by another JVM
+            return null;
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Could not read scan cache file " + cacheFile + " - " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     *
+     * Stores the resource list of a jar in the cache.
+     *
+     * @param jar - the jar file
+     * @param resourceVersions - the resources found on the jar
+     */
+    public void store(Path jar, List<ClasspathResourceVersion> resourceVersions) {
+        JarKey key = getJarKey(jar);
+        if (key != null) {
+            store(key, resourceVersions);
+        }
+    }
+
+    /**
+     *
+     * Stores the resource list of an entry that never changes for a given version, see load(String, String,
+     * ClasspathEntry).
+     *
+     * @param name - the name of the entry, such as its url
+     * @param version - the version of the entry contents
+     * @param resourceVersions - the resources found on the entry
+     */
+    public void store(String name, String version, List<ClasspathResourceVersion> resourceVersions) {
+        store(new JarKey(name, version), resourceVersions);
+    }
+
+    /**
+     *
+     * @param key - the key of the jar computed before it was scanned, see getJarKey
+     * @param resourceVersions - the resources found on the jar
+     */
+    public void store(JarKey key, List<ClasspathResourceVersion> resourceVersions) {
+        Path tmpFile = null;
+        try {
+            tmpFile = Files.createTempFile(cacheDir, "jhades", TMP_FILE_SUFFIX);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                key.write(out);
+                writeResourceVersions(out, resourceVersions);
+            }
+            long fileSize = Files.size(tmpFile);
+            moveAtomically(tmpFile, key.getCacheFile());
+            tmpFile = null;
+            onCacheFileWritten(fileSize);
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Could not write scan cache file for " + key.canonicalPath + " - " + ex.getMessage());
+        } finally {
+            if (tmpFile != null) {
+                try {
+                    Files.deleteIfExists(tmpFile);
+                } catch (IOException ex) {
+                    logger.debug("Could not delete " + tmpFile);
+                }
+            }
+        }
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (UnsupportedOperationException | IOException ex) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     *
+     * Resource names are written as the length of the prefix shared with the previous name, followed by the remaining
+     * suffix - names inside a jar are mostly sorted by package, which makes them compress very well.
+     *
+     */
+    private static void writeResourceVersions(DataOutputStream out, List<ClasspathResourceVersion> resourceVersions) throws IOException {
+        writeVarLong(out, resourceVersions.size());
+        byte[] previousName = new byte[0];
+        for (ClasspathResourceVersion version : resourceVersions) {
+            byte[] name = version.getResourceName().getBytes(StandardCharsets.UTF_8);
+            int shared = 0;
+            int maxShared = Math.min(name.length, previousName.length);
+            while (shared < maxShared && name[shared] == previousName[shared]) {
+                shared++;
+            }
+            writeVarLong(out, shared);
+            writeVarLong(out, name.length - shared);
+            out.write(name, shared, name.length - shared);
+            writeVarLong(out, version.getFileSize());
+            writeVarLong(out, version.getCrc() + 1);
+            previousName = name;
+        }
+    }
+
+    private static List<ClasspathResourceVersion> readResourceVersions(DataInputStream in, ClasspathEntry classpathEntry) throws IOException {
+        int count = (int) readVarLong(in);
+        List<ClasspathResourceVersion> versions = new ArrayList<>(count);
+        byte[] name = new byte[256];
+        for (int i = 0; i < count; i++) {
+            int shared = (int) readVarLong(in);
+            int suffixLength = (int) readVarLong(in);
+            int length = shared + suffixLength;
+            if (length > name.length) {
+                name = Arrays.copyOf(name, Math.max(length, name.length * 2));
+            }
+            in.readFully(name, shared, suffixLength);
+            long size = readVarLong(in);
+            long crc = readVarLong(in) - 1;
+            versions.add(new ClasspathResourceVersion(classpathEntry, new String(name, 0, length, StandardCharsets.UTF_8), size, crc));
+        }
+        return versions;
+    }
+
+    private synchronized void onCacheFileWritten(long fileSize) throws IOException {
+        if (approximateSize < 0) {
+            approximateSize = computeCacheSize();
+        } else {
+            approximateSize += fileSize;
+        }
+        if (approximateSize > maxSize) {
+            evict();
+        }
+    }
+
+    private long computeCacheSize() throws IOException {
+        long size = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir, "*" + CACHE_FILE_SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    size += Files.size(file);
+                } catch (NoSuchFileException ex) {
+                    // evicted meanwhile by another JVM
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     *
+     * Deletes the least recently used cache files, until the cache is below 90% of its maximum size.
+     *
+     * Only one JVM evicts at a time, the others skip eviction if the lock is taken.
+     *
+     */
+    private void evict() throws IOException {
+        try (FileChannel lockChannel = FileChannel.open(cacheDir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = lockChannel.tryLock();
+            if (lock == null) {
+                return;
+            }
+            try {
+                List<CacheFile> cacheFiles = new ArrayList<>();
+                long now = System.currentTimeMillis();
+                long size = 0;
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir)) {
+                    for (Path file : files) {
+                        String fileName = file.getFileName().toString();
+                        try {
+                            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                            if (fileName.endsWith(CACHE_FILE_SUFFIX)) {
+                                cacheFiles.add(new CacheFile(file, attrs));
+                                size += attrs.size();
+                            } else if (fileName.endsWith(TMP_FILE_SUFFIX) && now - attrs.lastModifiedTime().toMillis() > STALE_TMP_FILE_MILLIS) {
+                                // left behind by a JVM that died while writing
+                                Files.deleteIfExists(file);
+                            }
+                        } catch (NoSuchFileException ex) {
+                            // deleted meanwhile by another JVM
+                        }
+                    }
+                }
+
+                Collections.sort(cacheFiles, new Comparator<CacheFile>() {
+                    @Override
+                    public int compare(CacheFile file1, CacheFile file2) {
+                        return file1.lastUsed.compareTo(file2.lastUsed);
+                    }
+                });
+
+                long targetSize = maxSize / 10 * 9;
+                for (CacheFile cacheFile : cacheFiles) {
+                    if (size <= targetSize) {
+                        break;
+                    }
+                    logger.debug("Evicting scan cache file " + cacheFile.path);
+                    Files.deleteIfExists(cacheFile.path);
+                    size -= cacheFile.size;
+                }
+                approximateSize = size;
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private static class CacheFile {
+
+        private final Path path;
+        private final long size;
+        private final FileTime lastUsed;
+
+        CacheFile(Path path, BasicFileAttributes attrs) {
+            this.path = path;
+            this.size = attrs.size();
+            this.lastUsed = attrs.lastModifiedTime();
+        }
+    }
+
+    /**
+     *
+     * The key of a cached jar: canonical path, length, last modified time and optionally the content hash.
+     *
+     * The key of an entry that doesn't change for a given version has no length nor modification time, the version is
+     * stored instead of the content hash.
+     *
+     */
+    public final class JarKey {
+
+        private final String canonicalPath;
+        private final long length;
+        private final long lastModified;
+        private final String hash;
+
+        JarKey(Path jar) throws IOException {
+            Path realPath = jar.toRealPath();
+            BasicFileAttributes attrs = Files.readAttributes(realPath, BasicFileAttributes.class);
+            this.canonicalPath = realPath.toString();
+            this.length = attrs.size();
+            this.lastModified = attrs.lastModifiedTime().toMillis();
+            this.hash = contentHash ? hashContent(realPath) : "";
+        }
+
+        JarKey(String name, String version) {
+            this.canonicalPath = name;
+            this.length = -1;
+            this.lastModified = -1;
+            this.hash = version;
+        }
+
+        Path getCacheFile() {
+            return cacheDir.resolve(toHex(sha1(canonicalPath.getBytes(StandardCharsets.UTF_8))) + CACHE_FILE_SUFFIX);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(canonicalPath);
+            out.writeLong(length);
+            out.writeLong(lastModified);
+            out.writeUTF(hash);
+        }
+
+        boolean matches(DataInputStream in) throws IOException {
+            return canonicalPath.equals(in.readUTF()) && length == in.readLong() && lastModified == in.readLong()
+                    && hash.equals(in.readUTF());
+        }
+    }
+
+    private static String hashContent(Path file) throws IOException {
+        MessageDigest digest = newSha1();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static byte[] sha1(byte[] bytes) {
+        return newSha1().digest(bytes);
+    }
+
+    private static MessageDigest newSha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-1 is not available on this JVM.", ex);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,122 @@
+package org.jhades.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ *
+ * Reads the header of class files: the magic number, the bytecode version and the constant pool count, the first 10
+ * bytes of the file. Reading the bytecode version of the classes of a jar is opt-in, see isScanClassVersions, because it
+ * reads the beginning of each class file instead of only the jar central directory.
+ *
+ */
+public final class ClassFiles {
+
+    public static final String SCAN_CLASS_VERSIONS_PROPERTY = "jhades.scan.class.versions";
+    public static final String TARGET_CLASS_VERSION_PROPERTY = "jhades.target.class.version";
+    /**
+     * the size of the class file header, up to and including the constant pool count
+     */
+    public static final int HEADER_SIZE = 10;
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int FIRST_MAJOR_VERSION = 45;
+
+    private ClassFiles() {
+        throw new UnsupportedOperationException("Utility classes cannot be instantiated.");
+    }
+
+    /**
+     * @return true if the scans read the bytecode version of the class files, false by default
+     */
+    public static boolean isScanClassVersions() {
+        return Boolean.getBoolean(SCAN_CLASS_VERSIONS_PROPERTY);
+    }
+
+    public static boolean isClassFile(String resourceName) {
+        return resourceName.endsWith(".class");
+    }
+
+    /**
+     *
+     * @param header - the first bytes of a class file, from the buffer position
+     * @return - the major version of the bytecode, such as 52 for Java 8, or -1 if the bytes are not a class file header
+     */
+    public static int readMajorVersion(ByteBuffer header) {
+        if (header.remaining() < HEADER_SIZE) {
+            return -1;
+        }
+        int position = header.position();
+        int magic = (header.get(position) & 0xFF) << 24 | (header.get(position + 1) & 0xFF) << 16
+                | (header.get(position + 2) & 0xFF) << 8 | (header.get(position + 3) & 0xFF);
+        if (magic != MAGIC) {
+            return -1;
+        }
+        // big endian, whatever the byte order of the buffer
+        return (header.get(position + 6) & 0xFF) << 8 | (header.get(position + 7) & 0xFF);
+    }
+
+    /**
+     *
+     * Reads the bytecode version of a class file of a zip, only the class file header is inflated.
+     *
+     * @param zip - the zip that contains the class file
+     * @param entry - the class file
+     * @return - the major version of the bytecode, or -1 if the entry is not a class file
+     * @throws IOException if the entry cannot be read
+     */
+    public static int readMajorVersion(ZipCentralDirectory zip, ZipCentralDirectory.Entry entry) throws IOException {
+        return readMajorVersion(zip.readEntryPrefix(entry, HEADER_SIZE));
+    }
+
+    /**
+     *
+     * @param classFile - a class file, on any file system
+     * @return - the major version of the bytecode, or -1 if the file is not a class file
+     * @throws IOException if the file cannot be read
+     */
+    public static int readMajorVersion(Path classFile) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        int length = 0;
+        try (InputStream in = Files.newInputStream(classFile)) {
+            int read;
+            while (length < header.length && (read = in.read(header, length, header.length - length)) != -1) {
+                length += read;
+            }
+        }
+        return readMajorVersion(ByteBuffer.wrap(header, 0, length));
+    }
+
+    /**
+     * @return the major version of the bytecode supported by the running JVM
+     */
+    public static int getRuntimeMajorVersion() {
+        String classVersion = System.getProperty("java.class.version", "0");
+        int dot = classVersion.indexOf('.');
+        return Integer.parseInt(dot >= 0 ? classVersion.substring(0, dot) : classVersion);
+    }
+
+    /**
+     * @return the major version of the bytecode supported by the JVM the classpath is checked for, by default the
+     * running JVM
+     */
+    public static int getTargetMajorVersion() {
+        return Integer.getInteger(TARGET_CLASS_VERSION_PROPERTY, getRuntimeMajorVersion());
+    }
+
+    /**
+     *
+     * @param majorVersion - a major version of the bytecode
+     * @return - the Java version that introduced it, such as Java 8 for 52
+     */
+    public static String getJavaVersion(int majorVersion) {
+        if (majorVersion < FIRST_MAJOR_VERSION) {
+            return "unknown Java version";
+        } else if (majorVersion < 49) {
+            return "Java 1." + (majorVersion - 44);
+        }
+        return "Java " + (majorVersion - 44);
+    }
+}
@@ -0,0 +1,278 @@
+package org.jhades.utils;
+
+import java.util.regex.Pattern;
+
+/**
+ *
+ * Extracts from a regular expression the literal text that any match must contain, so that searches can discard most
+ * candidates before running the full regular expression matcher.
+ *
+ * The analysis is conservative: whenever a construct is not understood, less literal text is extracted, never wrong
+ * literal text.
+ *
+ */
+public final class RegexLiterals {
+
+    private static final String META_CHARACTERS = ".[]{}()*+?^$|";
+    private static final String SIMPLE_ESCAPES = "dDsSwWbB";
+    private final String prefix;
+    private final String requiredLiteral;
+
+    private RegexLiterals(String prefix, String requiredLiteral) {
+        this.prefix = prefix;
+        this.requiredLiteral = requiredLiteral;
+    }
+
+    /**
+     * @return the literal text every match starts with, if the expression is anchored with ^ - or null if not known
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return the longest literal text every match contains - or null if not known
+     */
+    public String getRequiredLiteral() {
+        return requiredLiteral;
+    }
+
+    /**
+     *
+     * Analyses a compiled pattern, patterns with flags other than Pattern.LITERAL are not analysed.
+     *
+     */
+    public static RegexLiterals analyze(Pattern pattern) {
+        if (pattern.flags() == Pattern.LITERAL) {
+            return new RegexLiterals(null, pattern.pattern());
+        } else if (pattern.flags() != 0) {
+            return new RegexLiterals(null, null);
+        }
+        return analyze(pattern.pattern());
+    }
+
+    public static RegexLiterals analyze(String regex) {
+        Parser parser = new Parser(regex);
+        if (!parser.parse()) {
+            return new RegexLiterals(null, null);
+        }
+        return new RegexLiterals(parser.prefix, parser.longestLiteral);
+    }
+
+    private static final class Parser {
+
+        private final String regex;
+        private final StringBuilder run = new StringBuilder();
+        private int position;
+        private boolean runIsPrefix;
+        private String prefix;
+        private String longestLiteral;
+
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        /**
+         *
+         * @return false if the expression has alternatives at the top level, in which case no literal is required
+         */
+        private boolean parse() {
+            runIsPrefix = regex.startsWith("^");
+            position = runIsPrefix ? 1 : 0;
+
+            while (position < regex.length()) {
+                char c = regex.charAt(position);
+
+                if (c == '|') {
+                    return false;
+                } else if (c == '\\') {
+                    if (!parseEscape()) {
+                        return stopAnalysis();
+                    }
+                } else if (c == '(') {
+                    if (regex.startsWith("(?", position)) {
+                        // inline flags, look-arounds, named groups... stop the analysis here
+                        return stopAnalysis();
+                    }
+                    endRun();
+                    position = skipQuantifier(skipGroup(position));
+                } else if (c == '[') {
+                    endRun();
+                    position = skipQuantifier(skipCharacterClass(position));
+                } else if (META_CHARACTERS.indexOf(c) >= 0) {
+                    endRun();
+                    position = skipQuantifier(position + 1);
+                } else {
+                    position++;
+                    appendLiteral(c);
+                }
+            }
+            endRun();
+            return true;
+        }
+
+        /**
+         *
+         * Stops the analysis at a construct that is not understood: the literals found so far are only required if the
+         * rest of the expression has no alternatives at the top level.
+         *
+         */
+        private boolean stopAnalysis() {
+            int i = position;
+            while (i < regex.length()) {
+                char c = regex.charAt(i);
+                if (c == '|') {
+                    return false;
+                } else if (c == '\\') {
+                    if (regex.startsWith("Q", i + 1)) {
+                        int end = regex.indexOf("\\E", i + 2);
+                        i = end < 0 ? regex.length() : end + 2;
+                    } else {
+                        i += 2;
+                    }
+                } else if (c == '(') {
+                    i = skipGroup(i);
+                } else if (c == '[') {
+                    i = skipCharacterClass(i);
+                } else {
+                    i++;
+                }
+            }
+            endRun();
+            return true;
+        }
+
+        /**
+         * @return false if the escape is not understood, and the analysis must stop
+         */
+        private boolean parseEscape() {
+            if (position + 1 >= regex.length()) {
+                return false;
+            }
+            char escaped = regex.charAt(position + 1);
+            if (escaped == 'Q') {
+                int end = regex.indexOf("\\E", position + 2);
+                String quoted = end < 0 ? regex.substring(position + 2) : regex.substring(position + 2, end);
+                position = end < 0 ? regex.length() : end + 2;
+                if (!quoted.isEmpty()) {
+                    run.append(quoted, 0, quoted.length() - 1);
+                    appendLiteral(quoted.charAt(quoted.length() - 1));
+                }
+                return true;
+            } else if (!Character.isLetterOrDigit(escaped)) {
+                // escaped meta character
+                position += 2;
+                appendLiteral(escaped);
+                return true;
+            } else if (SIMPLE_ESCAPES.indexOf(escaped) >= 0) {
+                endRun();
+                position = skipQuantifier(position + 2);
+                return true;
+            }
+            // back references, unicode escapes, properties, etc.
+            return false;
+        }
+
+        /**
+         *
+         * Appends a literal character to the current run. A character followed by *, ? or {n,m} may not be present, so it's
+         * removed from the run. A character followed by + is present at least once, but what follows is no longer adjacent.
+         *
+         */
+        private void appendLiteral(char literal) {
+            run.append(literal);
+            if (position < regex.length() && isQuantifier(regex.charAt(position))) {
+                if (regex.charAt(position) != '+') {
+                    run.setLength(run.length() - 1);
+                }
+                endRun();
+                position = skipQuantifier(position);
+            }
+        }
+
+        private void endRun() {
+            if (run.length() > 0) {
+                String literal = run.toString();
+                if (runIsPrefix) {
+                    prefix = literal;
+                }
+                if (longestLiteral == null || literal.length() > longestLiteral.length()) {
+                    longestLiteral = literal;
+                }
+                run.setLength(0);
+            }
+            runIsPrefix = false;
+        }
+
+        private static boolean isQuantifier(char c) {
+            return c == '*' || c == '+' || c == '?' || c == '{';
+        }
+
+        private int skipQuantifier(int from) {
+            int i = from;
+            while (i < regex.length()) {
+                char c = regex.charAt(i);
+                if (c == '{') {
+                    int end = regex.indexOf('}', i);
+                    i = end < 0 ? regex.length() : end + 1;
+                } else if (c == '*' || c == '+' || c == '?') {
+                    i++;
+                } else {
+                    break;
+                }
+            }
+            return i;
+        }
+
+        private int skipGroup(int from) {
+            int depth = 0;
+            int i = from;
+            while (i < regex.length()) {
+                char c = regex.charAt(i);
+                if (c == '\\') {
+                    i += 2;
+                    continue;
+                } else if (c == '[') {
+                    i = skipCharacterClass(i);
+                    continue;
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                    if (depth == 0) {
+                        return i + 1;
+                    }
+                }
+                i++;
+            }
+            return regex.length();
+        }
+
+        private int skipCharacterClass(int from) {
+            int depth = 0;
+            int i = from;
+            while (i < regex.length()) {
+                char c = regex.charAt(i);
+                if (c == '\\') {
+                    i += 2;
+                    continue;
+                } else if (c == '[') {
+                    depth++;
+                    // a ] right after the opening bracket (or after [^) is a literal
+                    if (regex.startsWith("^]", i + 1)) {
+                        i += 2;
+                    } else if (regex.startsWith("]", i + 1)) {
+                        i++;
+                    }
+                } else if (c == ']') {
+                    depth--;
+                    if (depth == 0) {
+                        return i + 1;
+                    }
+                }
+                i++;
+            }
+            return regex.length();
+        }
+    }
+}
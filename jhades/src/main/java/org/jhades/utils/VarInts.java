@@ -0,0 +1,79 @@
+package org.jhades.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * Variable length encoding of non-negative numbers, used by the jHades binary file formats: 7 bits per byte, least
+ * significant bits first, with the high bit set on all bytes but the last. Small numbers such as sizes and counts take
+ * one or two bytes instead of eight.
+ *
+ */
+public final class VarInts {
+
+    private VarInts() {
+        throw new UnsupportedOperationException("Utility classes cannot be instantiated.");
+    }
+
+    public static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    public static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.read();
+            if (b < 0) {
+                throw new EOFException("Unexpected end of file while reading a number.");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     *
+     * Reads a number from a buffer, such as a memory-mapped file, starting at the buffer position.
+     *
+     */
+    public static long readVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        try {
+            do {
+                b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+        } catch (BufferUnderflowException exc) {
+            throw new EOFException("Unexpected end of file while reading a number.");
+        }
+        return value;
+    }
+
+    /**
+     *
+     * Reads a number that must fit in an int, such as a count or a length.
+     *
+     */
+    public static int readVarInt(ByteBuffer buffer) throws IOException {
+        long value = readVarLong(buffer);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Invalid count or length: " + value);
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,674 @@
+package org.jhades.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ *
+ * Lightweight reader for the central directory of a zip file (jar, war, ear).
+ *
+ * Only the end of central directory record and the central directory itself are read, the central directory is memory
+ * mapped (small zips are read in one go with the end record) and the entry names, sizes and CRCs are decoded straight
+ * from the buffer - no entry is ever inflated.
+ * Zip64 archives and archives with a prefix (such as self-executable jars) are supported.
+ *
+ * Zips nested in other zips, such as the jars of a WAR, can be read from memory: the nested zip entry is read with
+ * readEntry - stored entries are not even copied - and its central directory is then read with wrap.
+ *
+ * This is much cheaper than opening the jar via the NIO zip file system, which builds a complete file system model of
+ * the jar only to read names and sizes.
+ *
+ */
+public final class ZipCentralDirectory implements Closeable {
+
+    private static final int END_OF_CENTRAL_DIR_SIG = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIR_SIG = 0x06064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIR_LOCATOR_SIG = 0x07064b50;
+    private static final int CENTRAL_DIR_HEADER_SIG = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIR_SIZE = 22;
+    private static final int ZIP64_END_OF_CENTRAL_DIR_LOCATOR_SIZE = 20;
+    private static final int ZIP64_END_OF_CENTRAL_DIR_SIZE = 56;
+    private static final int CENTRAL_DIR_HEADER_SIZE = 46;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int ZIP64_EXTRA_FIELD_ID = 0x0001;
+    private static final long ZIP64_MAGIC_VALUE = 0xFFFFFFFFL;
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    public static final int STORED = 0;
+    public static final int DEFLATED = 8;
+    // compressed bytes read at a time when only the beginning of an entry is inflated
+    private static final int PREFIX_CHUNK_SIZE = 256;
+    // room for the name and extra field of a local header, so that it's usually read together with the entry data
+    private static final int LOCAL_NAME_AND_EXTRA_SIZE = 256;
+    private final ZipSource source;
+    private final ByteBuffer centralDirectory;
+    private final long baseOffset;
+    private final long entryCount;
+    private byte[] nameBuffer = new byte[256];
+    private long zipSize = -1;
+
+    private ZipCentralDirectory(ZipSource source, ByteBuffer centralDirectory, long baseOffset, long entryCount) {
+        this.source = source;
+        this.centralDirectory = centralDirectory;
+        this.baseOffset = baseOffset;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     *
+     * The bytes of a zip, either a file or a buffer in memory.
+     *
+     */
+    private abstract static class ZipSource implements Closeable {
+
+        abstract long size() throws IOException;
+
+        /**
+         * @return a little endian buffer with a copy of the given bytes
+         */
+        abstract ByteBuffer read(long position, int size) throws IOException;
+
+        /**
+         * @return a little endian buffer with the given bytes, mapped or sliced if possible instead of copied
+         */
+        abstract ByteBuffer slice(long position, long size) throws IOException;
+
+        /**
+         * @return the number of bytes read or mapped from the storage so far, zero for zips already in memory
+         */
+        long getBytesRead() {
+            return 0;
+        }
+    }
+
+    private static final class FileSource extends ZipSource {
+
+        private final FileChannel channel;
+        private long bytesRead;
+
+        FileSource(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        ByteBuffer read(long position, int size) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of zip file.");
+                }
+            }
+            buffer.flip();
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            bytesRead += size;
+            return buffer;
+        }
+
+        @Override
+        ByteBuffer slice(long position, long size) throws IOException {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            bytesRead += size;
+            return buffer;
+        }
+
+        @Override
+        long getBytesRead() {
+            return bytesRead;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static final class BufferSource extends ZipSource {
+
+        private final ByteBuffer zip;
+
+        BufferSource(ByteBuffer zip) {
+            this.zip = zip.slice();
+        }
+
+        @Override
+        long size() {
+            return zip.limit();
+        }
+
+        @Override
+        ByteBuffer read(long position, int size) throws IOException {
+            ByteBuffer copy = ByteBuffer.allocate(size);
+            copy.put(slice(position, size));
+            copy.flip();
+            copy.order(ByteOrder.LITTLE_ENDIAN);
+            return copy;
+        }
+
+        @Override
+        ByteBuffer slice(long position, long size) throws IOException {
+            if (position < 0 || position + size > zip.limit()) {
+                throw new IOException("Unexpected end of zip data.");
+            }
+            ByteBuffer slice = zip.duplicate();
+            slice.position((int) position);
+            slice.limit((int) (position + size));
+            slice = slice.slice();
+            slice.order(ByteOrder.LITTLE_ENDIAN);
+            return slice;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     *
+     * Visitor for the entries of a zip central directory.
+     *
+     */
+    public interface EntryVisitor {
+
+        /**
+         *
+         * Called once per central directory entry, in central directory order.
+         *
+         * The entry instance is reused between calls and is only valid for the duration of the call.
+         *
+         */
+        void visitEntry(Entry entry) throws IOException;
+    }
+
+    /**
+     *
+     * A central directory entry - the instance is reused while visiting the directory.
+     *
+     */
+    public static final class Entry {
+
+        private String name;
+        private int method;
+        private long crc;
+        private long compressedSize;
+        private long size;
+        private long localHeaderOffset;
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        /**
+         * @return the compression method, 0 for stored and 8 for deflated entries
+         */
+        public int getMethod() {
+            return method;
+        }
+
+        /**
+         * @return the CRC-32 of the uncompressed entry data
+         */
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        /**
+         * @return the uncompressed size of the entry
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return the position of the entry local header in the zip file
+         */
+        public long getLocalHeaderOffset() {
+            return localHeaderOffset;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{name=" + name + ", size=" + size + ", crc=" + crc + "}";
+        }
+    }
+
+    /**
+     *
+     * Opens a zip file and maps its central directory.
+     *
+     * @param zipFile - the zip file to read
+     * @return - the central directory of the zip file, that should be closed after use
+     * @throws IOException if the file cannot be read or is not a zip file
+     */
+    public static ZipCentralDirectory open(Path zipFile) throws IOException {
+        FileSource source = new FileSource(FileChannel.open(zipFile, StandardOpenOption.READ));
+        try {
+            return open(source);
+        } catch (IOException | RuntimeException ex) {
+            source.close();
+            throw ex;
+        }
+    }
+
+    /**
+     *
+     * Reads the central directory of a zip that is already in memory, such as a jar read from a WAR with readEntry.
+     *
+     * @param zip - the zip bytes, from the buffer position to its limit
+     * @return - the central directory of the zip
+     * @throws IOException if the bytes are not a zip
+     */
+    public static ZipCentralDirectory wrap(ByteBuffer zip) throws IOException {
+        return open(new BufferSource(zip));
+    }
+
+    private static ZipCentralDirectory open(ZipSource source) throws IOException {
+        long fileSize = source.size();
+        if (fileSize < END_OF_CENTRAL_DIR_SIZE) {
+            throw new IOException("Not a zip file, size is only " + fileSize + " bytes.");
+        }
+
+        // the end of central directory record is at the end of the file, followed by a comment of up to 64k
+        int tailSize = (int) Math.min(fileSize, END_OF_CENTRAL_DIR_SIZE + MAX_COMMENT_SIZE);
+        long tailPosition = fileSize - tailSize;
+        ByteBuffer tail = source.read(tailPosition, tailSize);
+
+        int endRecord = findEndOfCentralDirectory(tail);
+        if (endRecord < 0) {
+            throw new IOException("Not a zip file, end of central directory record not found.");
+        }
+
+        long entryCount = tail.getShort(endRecord + 10) & 0xFFFF;
+        long centralDirSize = tail.getInt(endRecord + 12) & ZIP64_MAGIC_VALUE;
+        long centralDirOffset = tail.getInt(endRecord + 16) & ZIP64_MAGIC_VALUE;
+        long centralDirEnd = tailPosition + endRecord;
+
+        int locator = endRecord - ZIP64_END_OF_CENTRAL_DIR_LOCATOR_SIZE;
+        if (locator >= 0 && tail.getInt(locator) == ZIP64_END_OF_CENTRAL_DIR_LOCATOR_SIG) {
+            long zip64EndRecordPosition = findZip64EndRecord(source, tail.getLong(locator + 8),
+                    tailPosition + locator - ZIP64_END_OF_CENTRAL_DIR_SIZE);
+            ByteBuffer zip64EndRecord = source.read(zip64EndRecordPosition, ZIP64_END_OF_CENTRAL_DIR_SIZE);
+            entryCount = zip64EndRecord.getLong(32);
+            centralDirSize = zip64EndRecord.getLong(40);
+            centralDirOffset = zip64EndRecord.getLong(48);
+            centralDirEnd = zip64EndRecordPosition;
+        }
+
+        if (centralDirSize > Integer.MAX_VALUE || centralDirSize > centralDirEnd) {
+            throw new IOException("Invalid zip central directory size: " + centralDirSize);
+        }
+
+        // the archive may be prefixed with other content, in which case all offsets are shifted
+        long centralDirPosition = centralDirEnd - centralDirSize;
+        long baseOffset = centralDirPosition - centralDirOffset;
+
+        ByteBuffer centralDirectory;
+        if (centralDirPosition >= tailPosition) {
+            // small zips: the central directory was already read with the tail, no need to map it
+            ByteBuffer inTail = tail.duplicate();
+            inTail.position((int) (centralDirPosition - tailPosition));
+            inTail.limit((int) (centralDirPosition - tailPosition + centralDirSize));
+            centralDirectory = inTail.slice().order(ByteOrder.LITTLE_ENDIAN);
+        } else {
+            centralDirectory = source.slice(centralDirPosition, centralDirSize);
+        }
+
+        return new ZipCentralDirectory(source, centralDirectory, baseOffset, entryCount);
+    }
+
+    private static long findZip64EndRecord(ZipSource source, long recordedPosition, long expectedPosition) throws IOException {
+        // the recorded position does not account for prefixed archives, fallback to the position implied by the locator
+        long[] candidates = {recordedPosition, expectedPosition};
+        for (long position : candidates) {
+            if (position >= 0 && position + ZIP64_END_OF_CENTRAL_DIR_SIZE <= source.size()
+                    && source.read(position, 4).getInt(0) == ZIP64_END_OF_CENTRAL_DIR_SIG) {
+                return position;
+            }
+        }
+        throw new IOException("Zip64 end of central directory record not found.");
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer tail) {
+        for (int i = tail.limit() - END_OF_CENTRAL_DIR_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_OF_CENTRAL_DIR_SIG) {
+                int commentLength = tail.getShort(i + 20) & 0xFFFF;
+                if (i + END_OF_CENTRAL_DIR_SIZE + commentLength <= tail.limit()) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return - the number of entries declared by the end of central directory record
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     *
+     * Mapped regions are counted as read in full, even if the pages are only loaded when accessed.
+     *
+     * @return - the number of bytes read from the zip file so far, zero for a zip wrapped from memory
+     */
+    public long getBytesRead() {
+        return source.getBytesRead();
+    }
+
+    /**
+     * @return - the size in bytes of the central directory
+     */
+    public int getCentralDirectorySize() {
+        return centralDirectory.limit();
+    }
+
+    /**
+     *
+     * Visits all the entries of the central directory, including directory entries.
+     *
+     * @param visitor - called once per entry
+     * @throws IOException if the central directory is corrupted, or if thrown by the visitor
+     */
+    public void accept(EntryVisitor visitor) throws IOException {
+        Entry entry = new Entry();
+        int position = 0;
+        while (position + CENTRAL_DIR_HEADER_SIZE <= centralDirectory.limit()) {
+            position = readHeader(position, entry, null);
+            visitor.visitEntry(entry);
+        }
+    }
+
+    /**
+     *
+     * Finds an entry by name, the names of the other entries are compared without being decoded.
+     *
+     * @param name - the entry name, such as WEB-INF/lib/jhades.jar
+     * @return - the entry, or null if the zip has no entry with that name
+     * @throws IOException if the central directory is corrupted
+     */
+    public Entry findEntry(String name) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        Entry entry = new Entry();
+        int position = 0;
+        while (position + CENTRAL_DIR_HEADER_SIZE <= centralDirectory.limit()) {
+            position = readHeader(position, entry, nameBytes);
+            if (entry.name != null) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     *
+     * Reads the central directory header at the given position into the entry.
+     *
+     * @param expectedName - if not null, the entry name is only decoded if it has these bytes, otherwise it's set to null
+     * @return - the position of the next header
+     */
+    private int readHeader(int position, Entry entry, byte[] expectedName) throws IOException {
+        ByteBuffer cd = centralDirectory;
+        int end = cd.limit();
+        if (cd.getInt(position) != CENTRAL_DIR_HEADER_SIG) {
+            throw new IOException("Invalid zip central directory header at offset " + position);
+        }
+        int nameLength = cd.getShort(position + 28) & 0xFFFF;
+        int extraLength = cd.getShort(position + 30) & 0xFFFF;
+        int commentLength = cd.getShort(position + 32) & 0xFFFF;
+
+        entry.method = cd.getShort(position + 10) & 0xFFFF;
+        entry.crc = cd.getInt(position + 16) & ZIP64_MAGIC_VALUE;
+        entry.compressedSize = cd.getInt(position + 20) & ZIP64_MAGIC_VALUE;
+        entry.size = cd.getInt(position + 24) & ZIP64_MAGIC_VALUE;
+        entry.localHeaderOffset = cd.getInt(position + 42) & ZIP64_MAGIC_VALUE;
+
+        int namePosition = position + CENTRAL_DIR_HEADER_SIZE;
+        if (namePosition + nameLength + extraLength > end) {
+            throw new IOException("Truncated zip central directory entry at offset " + position);
+        }
+        if (expectedName == null || nameEquals(cd, namePosition, nameLength, expectedName)) {
+            entry.name = decodeName(cd, namePosition, nameLength);
+        } else {
+            entry.name = null;
+        }
+
+        if (entry.size == ZIP64_MAGIC_VALUE || entry.compressedSize == ZIP64_MAGIC_VALUE
+                || entry.localHeaderOffset == ZIP64_MAGIC_VALUE) {
+            readZip64ExtraField(cd, namePosition + nameLength, extraLength, entry);
+        }
+        entry.localHeaderOffset += baseOffset;
+
+        return namePosition + nameLength + extraLength + commentLength;
+    }
+
+    private static boolean nameEquals(ByteBuffer cd, int position, int length, byte[] name) {
+        if (length != name.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (cd.get(position + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     *
+     * Reads the contents of an entry: stored entries are sliced out of the zip without copying, deflated entries are
+     * inflated in memory.
+     *
+     * @param entry - an entry of this zip, as received by a visitor or returned by findEntry
+     * @return - a buffer with the uncompressed entry contents
+     * @throws IOException if the entry cannot be read, uses an unsupported compression method or is bigger than 2Gb
+     */
+    public ByteBuffer readEntry(Entry entry) throws IOException {
+        if (entry.size > Integer.MAX_VALUE || entry.compressedSize > Integer.MAX_VALUE) {
+            throw new IOException("Zip entry too big to be read in memory: " + entry.getName());
+        }
+        ByteBuffer localHeader = source.read(entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+        if (localHeader.getInt(0) != LOCAL_HEADER_SIG) {
+            throw new IOException("Invalid zip local header for entry " + entry.getName());
+        }
+        long dataPosition = entry.localHeaderOffset + LOCAL_HEADER_SIZE
+                + (localHeader.getShort(26) & 0xFFFF) + (localHeader.getShort(28) & 0xFFFF);
+        ByteBuffer data = source.slice(dataPosition, entry.compressedSize);
+
+        if (entry.method == STORED) {
+            return data;
+        } else if (entry.method == DEFLATED) {
+            return inflate(data, (int) entry.size, entry.getName());
+        }
+        throw new IOException("Unsupported compression method " + entry.method + " for entry " + entry.getName());
+    }
+
+    /**
+     *
+     * Reads the first bytes of an entry, such as the header of a class file: a deflated entry is only inflated as far as
+     * needed, and the local header is read together with the first compressed bytes.
+     *
+     * @param entry - an entry of this zip, as received by a visitor or returned by findEntry
+     * @param length - the number of bytes to read
+     * @return - a buffer with the first bytes of the uncompressed entry contents, fewer than length if the entry is
+     * shorter
+     * @throws IOException if the entry cannot be read or uses an unsupported compression method
+     */
+    public ByteBuffer readEntryPrefix(Entry entry, int length) throws IOException {
+        if (entry.method != STORED && entry.method != DEFLATED) {
+            throw new IOException("Unsupported compression method " + entry.method + " for entry " + entry.getName());
+        }
+        int prefixSize = (int) Math.min(length, entry.size);
+        if (zipSize < 0) {
+            zipSize = source.size();
+        }
+        long firstChunk = Math.min(entry.compressedSize, entry.method == STORED ? prefixSize : PREFIX_CHUNK_SIZE);
+        ByteBuffer chunk = source.read(entry.localHeaderOffset, (int) Math.min(zipSize - entry.localHeaderOffset,
+                LOCAL_HEADER_SIZE + LOCAL_NAME_AND_EXTRA_SIZE + firstChunk));
+        if (chunk.limit() < LOCAL_HEADER_SIZE || chunk.getInt(0) != LOCAL_HEADER_SIG) {
+            throw new IOException("Invalid zip local header for entry " + entry.getName());
+        }
+        int dataOffset = LOCAL_HEADER_SIZE + (chunk.getShort(26) & 0xFFFF) + (chunk.getShort(28) & 0xFFFF);
+        long dataPosition = entry.localHeaderOffset + dataOffset;
+
+        // the part of the entry data that was read with the local header, if any
+        ByteBuffer input = ByteBuffer.allocate(0);
+        if (dataOffset < chunk.limit()) {
+            chunk.position(dataOffset);
+            chunk.limit((int) Math.min(chunk.limit(), dataOffset + entry.compressedSize));
+            input = chunk;
+        }
+
+        byte[] prefix = new byte[prefixSize];
+        if (entry.method == STORED) {
+            if (input.remaining() < prefixSize) {
+                input = source.read(dataPosition, prefixSize);
+            }
+            input.get(prefix);
+            return ByteBuffer.wrap(prefix).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        Inflater inflater = new Inflater(true);
+        long consumed = 0;
+        int inflated = 0;
+        int chunkSize = PREFIX_CHUNK_SIZE;
+        boolean padded = false;
+        try {
+            while (inflated < prefixSize && !inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (!input.hasRemaining()) {
+                        if (consumed < entry.compressedSize) {
+                            input = source.read(dataPosition + consumed, (int) Math.min(entry.compressedSize - consumed, chunkSize));
+                            chunkSize *= 2;
+                        } else if (!padded) {
+                            // the inflater needs an extra byte of input at the end of raw deflate data
+                            input = ByteBuffer.allocate(1);
+                            padded = true;
+                        } else {
+                            break;
+                        }
+                    }
+                    int count = input.remaining();
+                    inflater.setInput(input.array(), input.arrayOffset() + input.position(), count);
+                    input.position(input.limit());
+                    if (!padded) {
+                        consumed += count;
+                    }
+                }
+                int count = inflater.inflate(prefix, inflated, prefixSize - inflated);
+                if (count == 0 && inflater.needsDictionary()) {
+                    break;
+                }
+                inflated += count;
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Invalid deflated data for entry " + entry.getName(), ex);
+        } finally {
+            inflater.end();
+        }
+        if (inflated != prefixSize) {
+            throw new IOException("Truncated deflated data for entry " + entry.getName());
+        }
+        return ByteBuffer.wrap(prefix).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer inflate(ByteBuffer data, int size, String name) throws IOException {
+        // the inflater needs an extra byte of input for raw deflate data
+        byte[] input = new byte[data.remaining() + 1];
+        data.get(input, 0, input.length - 1);
+        byte[] output = new byte[size];
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input);
+            int inflated = 0;
+            while (!inflater.finished() && inflated < size) {
+                int count = inflater.inflate(output, inflated, size - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != size) {
+                throw new IOException("Truncated deflated data for entry " + name);
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Invalid deflated data for entry " + name, ex);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(output).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private String decodeName(ByteBuffer cd, int position, int length) {
+        if (nameBuffer.length < length) {
+            nameBuffer = new byte[Math.max(length, nameBuffer.length * 2)];
+        }
+        byte[] bytes = nameBuffer;
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            byte b = cd.get(position + i);
+            bytes[i] = b;
+            ascii &= b >= 0;
+        }
+        // most names are ascii, which is valid in all zip name encodings and cheap to decode
+        if (ascii) {
+            return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+        }
+        // names not flagged as utf-8 are still utf-8 in practice, this is also the default of java.util.zip
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static void readZip64ExtraField(ByteBuffer cd, int position, int length, Entry entry) {
+        int end = position + length;
+        while (position + 4 <= end) {
+            int headerId = cd.getShort(position) & 0xFFFF;
+            int dataSize = cd.getShort(position + 2) & 0xFFFF;
+            int data = position + 4;
+            if (headerId == ZIP64_EXTRA_FIELD_ID) {
+                int dataEnd = Math.min(data + dataSize, end);
+                // fields are only present for the values that overflowed, always in this order
+                if (entry.size == ZIP64_MAGIC_VALUE && data + 8 <= dataEnd) {
+                    entry.size = cd.getLong(data);
+                    data += 8;
+                }
+                if (entry.compressedSize == ZIP64_MAGIC_VALUE && data + 8 <= dataEnd) {
+                    entry.compressedSize = cd.getLong(data);
+                    data += 8;
+                }
+                if (entry.localHeaderOffset == ZIP64_MAGIC_VALUE && data + 8 <= dataEnd) {
+                    entry.localHeaderOffset = cd.getLong(data);
+                }
+                return;
+            }
+            position = data + dataSize;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
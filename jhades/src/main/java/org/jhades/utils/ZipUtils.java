@@ -69,7 +69,8 @@ public final class ZipUtils {
                     final Path destFile = Paths.get(destDir.toString(),
                             file.toString());
                     logger.debug("Extracting file " + file + " to " + destFile + "\n");
-                    Files.copy(file, destFile, StandardCopyOption.REPLACE_EXISTING);
+                    // keep the modification time of the zip entries, so that the scan cache recognizes unchanged jars
+                    Files.copy(file, destFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
                     return FileVisitResult.CONTINUE;
                 }
 
@@ -0,0 +1,111 @@
+package org.jhades;
+
+import static org.jhades.TestUtils.*;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.EntryScanStats;
+import org.jhades.model.ScanMetrics;
+import org.jhades.utils.ClassFiles;
+import org.jhades.utils.StdOutLogger;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class ClassFilesTest {
+
+    private static final int NEWER_MAJOR_VERSION = 99;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @After
+    public void clearProperty() {
+        System.clearProperty(ClassFiles.SCAN_CLASS_VERSIONS_PROPERTY);
+    }
+
+    @Test
+    public void testClassVersionsReadDuringScan() throws IOException {
+        System.setProperty(ClassFiles.SCAN_CLASS_VERSIONS_PROPERTY, "true");
+        byte[] classFile = readClassFile(ClassFilesTest.class);
+        int majorVersion = (classFile[6] & 0xFF) << 8 | (classFile[7] & 0xFF);
+
+        byte[] jarBytes = jarWithClassFiles(classFile);
+        File jar = tmp.newFile("lib.jar");
+        Files.write(jar.toPath(), jarBytes);
+        File war = writeZip(tmp.newFile("app.war"), "WEB-INF/lib/lib.jar", jarBytes);
+
+        ClasspathEntry jarEntry = new ClasspathEntry(null, jar.toURI().toString());
+        ClasspathEntry nestedEntry = new ClasspathEntry(null, "jar:" + war.toURI() + "!/WEB-INF/lib/lib.jar");
+        final Map<String, ClasspathResourceVersion> versions = new HashMap<>();
+        ScanMetrics metrics = new ScanMetrics();
+        ClasspathEntries.visitResourceVersionsInEntries(Arrays.asList(jarEntry, nestedEntry), StdOutLogger.getLogger(),
+                metrics, new ClasspathEntry.ResourceVersionVisitor() {
+            @Override
+            public synchronized void visitResourceVersion(ClasspathResourceVersion resourceVersion) {
+                versions.put(resourceVersion.getClasspathEntry().getUrl() + resourceVersion.getResourceName(), resourceVersion);
+            }
+        }, null);
+
+        for (ClasspathEntry entry : Arrays.asList(jarEntry, nestedEntry)) {
+            ClasspathResourceVersion deflated = versions.get(entry.getUrl() + "/org/jhades/ClassFilesTest.class");
+            assertEquals("deflated class version.", majorVersion, deflated.getClassMajorVersion());
+            assertEquals("package.", "org.jhades", deflated.getPackageName());
+            ClasspathResourceVersion stored = versions.get(entry.getUrl() + "/org/jhades/newer/Newer.class");
+            assertEquals("stored class version.", NEWER_MAJOR_VERSION, stored.getClassMajorVersion());
+            assertEquals("package.", "org.jhades.newer", stored.getPackageName());
+            assertEquals("not a class file.", -1, versions.get(entry.getUrl() + "/readme.txt").getClassMajorVersion());
+            assertEquals("not a valid class file.", -1, versions.get(entry.getUrl() + "/Broken.class").getClassMajorVersion());
+            assertEquals("root package.", "", versions.get(entry.getUrl() + "/Broken.class").getPackageName());
+            assertEquals("newest class of the entry.", NEWER_MAJOR_VERSION, entry.getLastScanStats().getMaxClassMajorVersion());
+        }
+
+        List<EntryScanStats> newerEntries = metrics.getEntriesNewerThan(NEWER_MAJOR_VERSION - 1);
+        assertEquals("entries with newer classes.", 2, newerEntries.size());
+        assertTrue("no entry has newer classes.", metrics.getEntriesNewerThan(NEWER_MAJOR_VERSION).isEmpty());
+    }
+
+    @Test
+    public void testClassVersionsNotReadByDefault() throws IOException, URISyntaxException {
+        File jar = tmp.newFile("lib.jar");
+        Files.write(jar.toPath(), jarWithClassFiles(readClassFile(ClassFilesTest.class)));
+        ClasspathEntry entry = new ClasspathEntry(null, jar.toURI().toString());
+        for (ClasspathResourceVersion version : entry.getResourceVersions()) {
+            assertEquals("version read.", -1, version.getClassMajorVersion());
+        }
+        assertEquals("version read.", -1, entry.getLastScanStats().getMaxClassMajorVersion());
+    }
+
+    @Test
+    public void testJavaVersions() {
+        assertEquals("Java 8", ClassFiles.getJavaVersion(52));
+        assertEquals("Java 1.4", ClassFiles.getJavaVersion(48));
+        assertEquals("Java 17", ClassFiles.getJavaVersion(61));
+    }
+
+    /**
+     *
+     * Returns a jar with a deflated class file, a stored class file compiled for a newer JVM, a resource that is not a
+     * class and a class file that is too short.
+     *
+     */
+    private static byte[] jarWithClassFiles(byte[] classFile) throws IOException {
+        byte[] newerClassFile = classFile.clone();
+        newerClassFile[6] = 0;
+        newerClassFile[7] = NEWER_MAJOR_VERSION;
+        return zip("org/jhades/ClassFilesTest.class", classFile,
+                storedEntry("org/jhades/newer/Newer.class", newerClassFile), newerClassFile,
+                "readme.txt", Arrays.copyOf(classFile, 64),
+                "Broken.class", Arrays.copyOf(classFile, 6));
+    }
+}
@@ -0,0 +1,139 @@
+package org.jhades;
+
+import static org.jhades.TestUtils.*;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathIndex;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.ClazzLoader;
+import org.jhades.model.UrlClazzLoader;
+import org.jhades.service.ClassFolderWatcher;
+import org.jhades.utils.StdOutLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class ClassFolderWatcherTest {
+
+    private static final long TIMEOUT_MILLIS = 30000;
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testClassFolderChangesAppliedToIndex() throws IOException, InterruptedException {
+        File classes = tmp.newFolder("classes");
+        Path classFile = classes.toPath().resolve("org/jhades/A.class");
+        Files.createDirectories(classFile.getParent());
+        Files.write(classFile, "A".getBytes("UTF-8"));
+
+        File jar = writeZip(tmp.newFile("lib.jar"), "org/jhades/B.class", "B from jar");
+
+        ClazzLoader classLoader = new UrlClazzLoader("test", null, new URL[]{classes.toURI().toURL(), jar.toURI().toURL()});
+        ClasspathIndex index = ClasspathIndex.build(Collections.singletonList(classLoader), StdOutLogger.getLogger(), null, null);
+        assertTrue("no duplicates yet.", index.findResourcesWithDuplicates(false).isEmpty());
+
+        try (ClassFolderWatcher watcher = ClassFolderWatcher.start(index)) {
+            assertSame("unchanged index must be kept.", index, watcher.getClasspathIndex());
+
+            // a new package, with a class that shadows the class of the jar
+            Files.write(classes.toPath().resolve("org/jhades/B.class"), "B from folder".getBytes("UTF-8"));
+            Files.createDirectories(classes.toPath().resolve("org/jhades/sub"));
+            Files.write(classes.toPath().resolve("org/jhades/sub/C.class"), "C".getBytes("UTF-8"));
+            waitForResource(watcher, "/org/jhades/sub/C.class", true);
+            ClasspathIndex updated = waitForVersions(watcher, "/org/jhades/B.class", 2);
+
+            assertEquals("shadowed class must be a duplicate.", 1, updated.findResourcesWithDuplicates(false).size());
+            assertEquals("overlap with the jar must be counted.", 1, updated.findOverlappingJars(false).size());
+            assertEquals("folder version must come first.", classes.toURI().toString(),
+                    updated.findResource("/org/jhades/B.class").getResourceFileVersions().get(0).getClasspathEntry().getUrl());
+            assertEquals("previous index must not change.", 1, index.findResource("/org/jhades/B.class").getNumberOfVersions());
+
+            Files.delete(classFile);
+            updated = waitForResource(watcher, "/org/jhades/A.class", false);
+            assertNotNull("other resources must be kept.", updated.findResource("/org/jhades/sub/C.class"));
+        }
+    }
+
+    @Test
+    public void testEntryVersionsReplacedIncrementally() throws IOException {
+        File classes = tmp.newFolder("classes");
+        writeFile(classes, "org/jhades/B.class", "B");
+        File jar1 = writeZip(tmp.newFile("lib1.jar"), "org/jhades/A.class", "A", "org/jhades/B.class", "B1",
+                "org/jhades/G.class", "G");
+        File jar2 = writeZip(tmp.newFile("lib2.jar"), "org/jhades/A.class", "A2", "org/jhades/G.class", "G");
+        ClazzLoader classLoader = new UrlClazzLoader("test", null,
+                new URL[]{classes.toURI().toURL(), jar1.toURI().toURL(), jar2.toURI().toURL()});
+        ClasspathIndex index = ClasspathIndex.build(Collections.singletonList(classLoader), StdOutLogger.getLogger(), null, null);
+        assertEquals(Arrays.asList("/org/jhades/B.class", "/org/jhades/A.class", "/org/jhades/G.class"),
+                names(index.findResourcesWithDuplicates(false)));
+
+        // B is removed from the folder, D, A and E are added
+        ClasspathEntry folder = index.getClasspathEntries().get(0);
+        List<ClasspathResourceVersion> folderVersions = Arrays.asList(
+                new ClasspathResourceVersion(folder, "/org/jhades/D.class", 1),
+                new ClasspathResourceVersion(folder, "/org/jhades/A.class", 2),
+                new ClasspathResourceVersion(folder, "/org/jhades/E.class", 1));
+        ClasspathIndex updated = index.withEntryVersions(Collections.singletonMap(folder, folderVersions));
+
+        assertEquals(Arrays.asList("/org/jhades/A.class", "/org/jhades/G.class"), names(updated.findResourcesWithDuplicates(false)));
+        assertSame("the duplicates of the other entries must be kept.", index.findResourcesWithDuplicates(false).get(2), updated.findResourcesWithDuplicates(false).get(1));
+        assertEquals("identical copies are not conflicts.", Arrays.asList("/org/jhades/A.class"),
+                names(updated.findResourcesWithDuplicates(true)));
+        assertEquals(3, updated.findResource("/org/jhades/A.class").getNumberOfVersions());
+        assertSame(folder, updated.findResource("/org/jhades/A.class").getResourceFileVersions().get(0).getClasspathEntry());
+        assertEquals(1, updated.findResource("/org/jhades/B.class").getNumberOfVersions());
+        assertNotNull(updated.findResource("/org/jhades/E.class"));
+        assertEquals(Arrays.asList("/org/jhades/B.class", "/org/jhades/A.class", "/org/jhades/G.class", "/org/jhades/D.class",
+                "/org/jhades/E.class"), names(updated.getResources()));
+        assertEquals("previous index must not change.", 3, index.findResourcesWithDuplicates(false).size());
+    }
+
+    private static void writeFile(File folder, String name, String contents) throws IOException {
+        Path file = folder.toPath().resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, contents.getBytes("UTF-8"));
+    }
+
+    private static List<String> names(List<ClasspathResource> resources) {
+        List<String> names = new ArrayList<>();
+        for (ClasspathResource resource : resources) {
+            names.add(resource.getName());
+        }
+        return names;
+    }
+
+    private static ClasspathIndex waitForResource(ClassFolderWatcher watcher, String resourceName, boolean present) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            ClasspathIndex index = watcher.getClasspathIndex();
+            if ((index.findResource(resourceName) != null) == present) {
+                return index;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("change not applied to the index: " + resourceName);
+    }
+
+    private static ClasspathIndex waitForVersions(ClassFolderWatcher watcher, String resourceName, int versions) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            ClasspathIndex index = watcher.getClasspathIndex();
+            ClasspathResource resource = index.findResource(resourceName);
+            if (resource != null && resource.getNumberOfVersions() == versions) {
+                return index;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("versions not applied to the index: " + resourceName);
+    }
+}
@@ -0,0 +1,153 @@
+package org.jhades;
+
+import static org.jhades.TestUtils.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.jhades.model.ClasspathDiff;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathIndex;
+import org.jhades.model.ClasspathResource;
+import org.jhades.utils.StdOutLogger;
+import org.jhades.utils.ZipUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class ClasspathDiffTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testDiffOfTwoReleases() throws IOException {
+        File oldRelease = tmp.newFolder("old");
+        File newRelease = tmp.newFolder("new");
+
+        // unchanged, and found in a different folder in each release
+        writeZip(new File(oldRelease, "common.jar"), "org/common/A.class", "A");
+        writeZip(new File(newRelease, "common.jar"), "org/common/A.class", "A");
+        // one class changed, one removed, one added
+        writeZip(new File(oldRelease, "app.jar"), "org/app/B.class", "B", "org/app/C.class", "C", "org/app/Old.class", "Old");
+        writeZip(new File(newRelease, "app.jar"), "org/app/B.class", "B", "org/app/C.class", "C changed", "org/app/New.class", "New");
+        // a jar replaced by a new version, that now overlaps with the app
+        writeZip(new File(oldRelease, "lib-1.0.jar"), "org/lib/D.class", "D");
+        writeZip(new File(newRelease, "lib-2.0.jar"), "org/lib/D.class", "D", "org/app/B.class", "B");
+
+        ClasspathIndex oldIndex = buildIndex(oldRelease, "common.jar", "app.jar", "lib-1.0.jar");
+        ClasspathIndex newIndex = buildIndex(newRelease, "common.jar", "app.jar", "lib-2.0.jar");
+        ClasspathDiff diff = ClasspathDiff.compute(oldIndex, newIndex, false);
+
+        assertEquals(1, diff.getAddedEntries().size());
+        assertTrue(diff.getAddedEntries().get(0).getUrl().endsWith("lib-2.0.jar"));
+        assertEquals(1, diff.getRemovedEntries().size());
+        assertTrue(diff.getRemovedEntries().get(0).getUrl().endsWith("lib-1.0.jar"));
+        assertEquals("only the changed jar must be reported.", 1, diff.getChangedEntries().size());
+        assertTrue(diff.getChangedEntries().get(0).getNewEntry().getUrl().endsWith("app.jar"));
+
+        assertEquals(1, diff.getAddedResources().size());
+        assertEquals("/org/app/New.class", diff.getAddedResources().get(0).getName());
+        assertEquals(1, diff.getRemovedResources().size());
+        assertEquals("/org/app/Old.class", diff.getRemovedResources().get(0).getName());
+        assertEquals(1, diff.getChangedResources().size());
+        assertEquals("/org/app/C.class", diff.getChangedResources().get(0).getName());
+
+        assertEquals(1, diff.getNewDuplicates().size());
+        assertEquals("/org/app/B.class", diff.getNewDuplicates().get(0).getName());
+        assertTrue(diff.getResolvedDuplicates().isEmpty());
+        assertEquals(1, diff.getNewOverlaps().size());
+        assertTrue(diff.getResolvedOverlaps().isEmpty());
+
+        ClasspathDiff reverse = ClasspathDiff.compute(newIndex, oldIndex, false);
+        assertEquals(1, reverse.getResolvedOverlaps().size());
+        assertEquals(1, reverse.getResolvedDuplicates().size());
+        assertTrue("an index must not differ from itself.", ClasspathDiff.compute(oldIndex, oldIndex, false).isEmpty());
+    }
+
+    @Test
+    public void testResourcesMergedInNameOrder() throws IOException {
+        File oldRelease = tmp.newFolder("old");
+        File newRelease = tmp.newFolder("new");
+        writeZip(new File(oldRelease, "lib.jar"), "z/Z.class", "Z", "b/B.class", "B", "a/A.class", "A");
+        writeZip(new File(newRelease, "lib.jar"), "c/C.class", "C", "a/A.class", "A", "y/Y.class", "Y");
+
+        ClasspathDiff diff = ClasspathDiff.compute(buildIndex(oldRelease, "lib.jar"), buildIndex(newRelease, "lib.jar"), false);
+        assertEquals("/c/C.class", diff.getAddedResources().get(0).getName());
+        assertEquals("/y/Y.class", diff.getAddedResources().get(1).getName());
+        List<String> removed = new ArrayList<>();
+        for (ClasspathResource resource : diff.getRemovedResources()) {
+            removed.add(resource.getName());
+        }
+        assertEquals("[/b/B.class, /z/Z.class]", removed.toString());
+        assertTrue(diff.getChangedResources().isEmpty());
+    }
+
+    @Test
+    public void testWarClassFoldersMatched() throws IOException {
+        File war = writeZip(tmp.newFile("app.war"), "WEB-INF/classes/org/app/A.class", "A", "WEB-INF/lib/lib.jar",
+                zip("org/lib/B.class", "B"));
+        ClasspathIndex warIndex = ClasspathIndex.buildFromEntries(ClasspathEntries.findWarClasspathEntries(war.toPath()),
+                StdOutLogger.getLogger(), null, null);
+
+        // the same WAR extracted to a temporary directory, as the standalone report does
+        File extracted = tmp.newFolder("tmp");
+        ZipUtils.unzip(war.getPath(), extracted.getPath(), null);
+        File classes = new File(extracted, "WEB-INF/classes");
+        List<ClasspathEntry> extractedEntries = new ArrayList<>();
+        extractedEntries.add(new ClasspathEntry(null, classes.toURI().toString()));
+        extractedEntries.add(new ClasspathEntry(null, new File(extracted, "WEB-INF/lib/lib.jar").toURI().toString()));
+        ClasspathIndex extractedIndex = ClasspathIndex.buildFromEntries(extractedEntries, StdOutLogger.getLogger(), null, null);
+
+        ClasspathDiff diff = ClasspathDiff.compute(warIndex, extractedIndex, false);
+        assertTrue("the class folder must be matched: " + diff.getAddedEntries(), diff.isEmpty());
+
+        // same size, only the CRC-32 tells the class apart
+        Files.write(new File(classes, "org/app/A.class").toPath(), "Z".getBytes("UTF-8"));
+        extractedIndex = ClasspathIndex.buildFromEntries(extractedEntries, StdOutLogger.getLogger(), null, null);
+        diff = ClasspathDiff.compute(warIndex, extractedIndex, false);
+        assertTrue(diff.getAddedEntries().isEmpty());
+        assertTrue(diff.getRemovedEntries().isEmpty());
+        assertEquals(1, diff.getChangedEntries().size());
+        assertEquals(classes.toURI().toString(), diff.getChangedEntries().get(0).getNewEntry().getUrl());
+        assertEquals(1, diff.getChangedResources().size());
+        assertEquals("/org/app/A.class", diff.getChangedResources().get(0).getName());
+    }
+
+    @Test
+    public void testJarsWithTheSameFileNameTellApart() throws IOException {
+        File oldRelease = tmp.newFolder("old");
+        File newRelease = tmp.newFolder("new");
+        for (File release : new File[]{oldRelease, newRelease}) {
+            assertTrue(new File(release, "a").mkdir() && new File(release, "b").mkdir());
+            writeZip(new File(release, "a/lib.jar"), "org/a/A.class", "A");
+        }
+        writeZip(new File(oldRelease, "b/lib.jar"), "org/b/B.class", "B");
+        writeZip(new File(newRelease, "b/lib.jar"), "org/b/B.class", "B changed");
+
+        ClasspathIndex oldIndex = buildIndex(oldRelease, "a/lib.jar", "b/lib.jar");
+        ClasspathDiff diff = ClasspathDiff.compute(oldIndex, buildIndex(newRelease, "a/lib.jar", "b/lib.jar"), false);
+        assertTrue(diff.getAddedEntries().isEmpty());
+        assertTrue(diff.getRemovedEntries().isEmpty());
+        assertEquals(1, diff.getChangedEntries().size());
+        assertTrue(diff.getChangedEntries().get(0).getOldEntry().getUrl().endsWith("/b/lib.jar"));
+
+        // one of the jars is gone, the other one is still matched
+        diff = ClasspathDiff.compute(oldIndex, buildIndex(newRelease, "a/lib.jar"), false);
+        assertTrue(diff.getAddedEntries().isEmpty());
+        assertTrue(diff.getChangedEntries().isEmpty());
+        assertEquals(1, diff.getRemovedEntries().size());
+        assertTrue(diff.getRemovedEntries().get(0).getUrl().endsWith("/b/lib.jar"));
+    }
+
+    private static ClasspathIndex buildIndex(File folder, String... jars) {
+        List<ClasspathEntry> classpathEntries = new ArrayList<>();
+        for (String jar : jars) {
+            classpathEntries.add(new ClasspathEntry(null, new File(folder, jar).toURI().toString()));
+        }
+        return ClasspathIndex.buildFromEntries(classpathEntries, StdOutLogger.getLogger(), null, null);
+    }
+}
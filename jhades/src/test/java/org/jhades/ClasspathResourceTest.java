@@ -0,0 +1,49 @@
+package org.jhades;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class ClasspathResourceTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testDuplicatesClassifiedByCrc() {
+        ClasspathEntry jar1 = new ClasspathEntry(null, "file:/lib/a.jar");
+        ClasspathEntry jar2 = new ClasspathEntry(null, "file:/lib/b.jar");
+
+        ClasspathResource copies = new ClasspathResource("/A.class", new ClasspathResourceVersion(jar1, "/A.class", 100, 7));
+        copies.getResourceFileVersions().add(new ClasspathResourceVersion(jar2, "/A.class", 100, 7));
+        assertTrue("same size and crc must be an identical copy.", copies.hasOnlyIdenticalCopies());
+        assertFalse("identical copies must be excluded.", copies.hasDuplicates(true));
+
+        ClasspathResource conflict = new ClasspathResource("/B.class", new ClasspathResourceVersion(jar1, "/B.class", 100, 7));
+        conflict.getResourceFileVersions().add(new ClasspathResourceVersion(jar2, "/B.class", 100, 8));
+        assertTrue("same size with different crc must be a conflict.", conflict.hasConflictingVersions());
+        assertTrue("conflicts must not be excluded.", conflict.hasDuplicates(true));
+    }
+
+    @Test
+    public void testClassFolderCrcComputedOnDemand() throws IOException {
+        File folder = tmp.newFolder("classes");
+        Files.write(new File(folder, "A.class").toPath(), "content".getBytes("UTF-8"));
+        ClasspathEntry classFolder = new ClasspathEntry(null, folder.toURI().toString());
+        ClasspathEntry jar = new ClasspathEntry(null, "file:/lib/a.jar");
+
+        // CRC-32 of "content"
+        ClasspathResource resource = new ClasspathResource("/A.class", new ClasspathResourceVersion(classFolder, "/A.class", 7));
+        resource.getResourceFileVersions().add(new ClasspathResourceVersion(jar, "/A.class", 7, 0xfec530a9L));
+
+        assertEquals("class folder crc not computed.", 0xfec530a9L, resource.getResourceFileVersions().get(0).getCrc());
+        assertTrue("class folder copy must be identical to the jar copy.", resource.hasOnlyIdenticalCopies());
+    }
+}
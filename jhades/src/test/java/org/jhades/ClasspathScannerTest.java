@@ -1,18 +1,41 @@
 package org.jhades;
 
 import static org.jhades.TestUtils.*;
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.jhades.model.ClasspathEntry;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import static org.junit.Assert.*;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathIndex;
 import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
 import org.jhades.model.ClazzLoader;
 import org.jhades.model.UrlClazzLoader;
 import org.jhades.service.ClasspathScanner;
+import org.jhades.service.ClasspathScannerListener;
+import org.jhades.service.DuplicateResourceListener;
+import org.jhades.utils.StdOutLogger;
 
 public class ClasspathScannerTest {
 
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
     private ClasspathScanner scanner = new ClasspathScanner();
 
     @Test
@@ -35,6 +58,15 @@ public class ClasspathScannerTest {
         assertTrue("list of classpath entries cannot be empty.", classpathEntries.size() > 0);
     }
 
+    @Test
+    public void testClassLoaderQueriesDoNotScan() {
+        ClasspathScanner fresh = new ClasspathScanner();
+        assertFalse("no class loaders found.", fresh.findAllClassLoaders().isEmpty());
+        for (ClasspathEntry entry : fresh.findAllClasspathEntries()) {
+            assertNull("the classpath was scanned: " + entry.getUrl(), entry.getLastScanStats());
+        }
+    }
+
     @Test
     public void testFindAllResourceVersions() {
         String resourceName = "java/lang/String.class";
@@ -82,4 +114,178 @@ public class ClasspathScannerTest {
         assertNotNull("dups cannot be null.", dups);
         assertTrue("dups cannot be empty.", dups.size() > 0);
     }
+
+    @Test
+    public void testParallelScanKeepsClasspathOrder() {
+        List<ClasspathEntry> classpathEntries = scanner.findAllClasspathEntries();
+        StdOutLogger logger = StdOutLogger.getLogger();
+
+        List<ClasspathResource> sequential = ClasspathEntries.findClasspathResourcesInEntries(classpathEntries, logger, null);
+        ForkJoinPool scanPool = new ForkJoinPool(4);
+        List<ClasspathResource> parallel;
+        try {
+            parallel = ClasspathEntries.findClasspathResourcesInEntries(classpathEntries, logger, null, scanPool);
+        } finally {
+            scanPool.shutdown();
+        }
+
+        assertEquals("parallel scan must find the same resources.", sequential.size(), parallel.size());
+
+        Map<String, List<ClasspathResourceVersion>> sequentialVersions = new HashMap<>();
+        for (ClasspathResource resource : sequential) {
+            sequentialVersions.put(resource.getName(), resource.getResourceFileVersions());
+        }
+        for (ClasspathResource resource : parallel) {
+            assertEquals("versions of " + resource.getName() + " must be in classpath order.",
+                    sequentialVersions.get(resource.getName()), resource.getResourceFileVersions());
+        }
+    }
+
+    @Test
+    public void testStreamingDuplicatesMatchFullScan() {
+        // fresh entries, so that the streaming scan does not reuse already loaded resource versions
+        List<ClasspathEntry> classpathEntries = new ArrayList<>();
+        for (ClasspathEntry entry : scanner.findAllClasspathEntries()) {
+            classpathEntries.add(new ClasspathEntry(entry.getClassLoader(), entry.getUrl()));
+        }
+        StdOutLogger logger = StdOutLogger.getLogger();
+
+        final Map<String, Integer> reportedVersions = new HashMap<>();
+        List<ClasspathResource> duplicates = ClasspathEntries.findDuplicateResourcesInEntries(classpathEntries, logger, null,
+                new DuplicateResourceListener() {
+                    @Override
+                    public void onDuplicateResourceVersion(ClasspathResource resource, ClasspathResourceVersion newVersion) {
+                        reportedVersions.put(resource.getName(), resource.getNumberOfVersions());
+                    }
+                }, null);
+
+        Map<String, Integer> expectedVersions = new HashMap<>();
+        for (ClasspathResource resource : scanner.findAllResourcesWithDuplicates(false)) {
+            expectedVersions.put(resource.getName(), resource.getNumberOfVersions());
+        }
+
+        Map<String, Integer> actualVersions = new HashMap<>();
+        for (ClasspathResource resource : duplicates) {
+            actualVersions.put(resource.getName(), resource.getNumberOfVersions());
+        }
+        assertEquals("streaming scan must find the same duplicates.", expectedVersions, actualVersions);
+        assertEquals("each duplicate version must be reported.", expectedVersions, reportedVersions);
+
+        ForkJoinPool scanPool = new ForkJoinPool(4);
+        try {
+            List<ClasspathResource> pooled = ClasspathEntries.findDuplicateResourcesInEntries(classpathEntries, logger, null, null, scanPool);
+            assertEquals("duplicates must be found in the same order when scanning ahead.", duplicates, pooled);
+        } finally {
+            scanPool.shutdown();
+        }
+    }
+
+    @Test
+    public void testInterruptedScanNotCached() {
+        ClasspathScanner fresh = new ClasspathScanner();
+        Thread.currentThread().interrupt();
+        try {
+            fresh.getClasspathIndex();
+            fail("an interrupted scan must not return a partial index.");
+        } catch (CancellationException exc) {
+            assertTrue("the interrupt status must be kept.", Thread.interrupted());
+        }
+
+        ClasspathIndex index = fresh.getClasspathIndex();
+        assertNotNull("the classpath must be scanned again.", index.findClass("java.lang.String"));
+        assertEquals(scanner.getClasspathIndex().getResources().size(), index.getResources().size());
+    }
+
+    @Test
+    public void testInterruptedParallelScanStops() throws Exception {
+        final List<ClasspathEntry> classpathEntries = scanner.findAllClasspathEntries();
+        final AtomicInteger startedEntries = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final ClasspathScannerListener slowListener = new ClasspathScannerListener() {
+            @Override
+            public void onEntryScanStart(ClasspathEntry entry) {
+                startedEntries.incrementAndGet();
+                started.countDown();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void onEntryScanEnd(ClasspathEntry entry) {
+            }
+        };
+        final ForkJoinPool scanPool = new ForkJoinPool(2);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicBoolean interruptKept = new AtomicBoolean();
+        try {
+            Thread caller = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        ClasspathEntries.findClasspathResourcesInEntries(classpathEntries, StdOutLogger.getLogger(), slowListener,
+                                scanPool);
+                    } catch (Throwable exc) {
+                        failure.set(exc);
+                        interruptKept.set(Thread.currentThread().isInterrupted());
+                    }
+                }
+            });
+            caller.start();
+            assertTrue("the scan did not start.", started.await(10, TimeUnit.SECONDS));
+            caller.interrupt();
+            caller.join(10000);
+
+            assertTrue("the scan must be cancelled: " + failure.get(), failure.get() instanceof CancellationException);
+            assertTrue("the interrupt status must be kept.", interruptKept.get());
+            scanPool.awaitQuiescence(10, TimeUnit.SECONDS);
+            assertTrue("the pool must stop scanning.", startedEntries.get() < classpathEntries.size());
+            assertFalse("the pool workers must not be left interrupted.", scanPool.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return Thread.currentThread().isInterrupted();
+                }
+            }).get());
+        } finally {
+            scanPool.shutdown();
+        }
+    }
+
+    @Test
+    public void testStreamingDuplicatesKeepFirstVersion() throws IOException {
+        File jar1 = writeZip(tmp.newFile("lib1.jar"), "org/jhades/A.class", "A1", "org/jhades/B.class", "B");
+        File jar2 = writeZip(tmp.newFile("lib2.jar"), "org/jhades/C.class", "C", "org/jhades/A.class", "A2 - longer");
+        File jar3 = writeZip(tmp.newFile("lib3.jar"), "org/jhades/A.class", "A1");
+        List<ClasspathEntry> classpathEntries = new ArrayList<>();
+        for (File jar : new File[]{jar1, jar2, jar3}) {
+            classpathEntries.add(new ClasspathEntry(null, jar.toURI().toString()));
+        }
+
+        List<ClasspathResource> duplicates = ClasspathEntries.findDuplicateResourcesInEntries(classpathEntries,
+                StdOutLogger.getLogger(), null, null, null);
+
+        assertEquals(1, duplicates.size());
+        List<ClasspathResourceVersion> versions = duplicates.get(0).getResourceFileVersions();
+        assertEquals(3, versions.size());
+        ClasspathResourceVersion first = versions.get(0);
+        assertEquals("/org/jhades/A.class", first.getResourceName());
+        assertSame(classpathEntries.get(0), first.getClasspathEntry());
+        assertEquals(2, first.getFileSize());
+        assertNotEquals(-1, first.getCrc());
+        assertEquals("the first version must keep its CRC-32.", versions.get(2).getCrc(), first.getCrc());
+        assertFalse(first.isIdenticalTo(versions.get(1)));
+    }
+
+    @Test
+    public void testClasspathIndexLookups() {
+        ClasspathIndex index = scanner.getClasspathIndex();
+
+        assertSame("the classpath must only be scanned once.", index, scanner.getClasspathIndex());
+        assertNotNull("class lookup failed.", index.findClass("java.lang.String"));
+        assertEquals("resource lookup must accept names without leading slash.", index.findResource("/java/lang/String.class"),
+                index.findResource("java/lang/String.class"));
+        assertNotSame("refresh must rescan the classpath.", index, scanner.refresh());
+    }
 }
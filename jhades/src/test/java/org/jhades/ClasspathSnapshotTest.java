@@ -0,0 +1,133 @@
+package org.jhades;
+
+import static org.jhades.TestUtils.*;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.jhades.model.ClasspathIndex;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.ClasspathSnapshot;
+import org.jhades.model.ClazzLoader;
+import org.jhades.model.UrlClazzLoader;
+import org.jhades.service.ClasspathScanner;
+import org.jhades.utils.StdOutLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class ClasspathSnapshotTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+        File classes = tmp.newFolder("classes");
+        Path classFile = classes.toPath().resolve("org/jhades/A.class");
+        Files.createDirectories(classFile.getParent());
+        Files.write(classFile, "A from folder".getBytes("UTF-8"));
+
+        File jar1 = tmp.newFile("lib1.jar");
+        writeZip(jar1, namesAsContents("org/jhades/A.class", "org/jhades/B.class", "org/jhades/\u00e9t\u00e9.properties"));
+        File jar2 = tmp.newFile("lib2.jar");
+        writeZip(jar2, namesAsContents("org/jhades/B.class", "org/other/C.class"));
+
+        ClazzLoader child = new UrlClazzLoader("child", "child loader", new URL[]{classes.toURI().toURL(), jar1.toURI().toURL()});
+        ClazzLoader parent = new UrlClazzLoader("parent", null, new URL[]{jar2.toURI().toURL()});
+        ClasspathIndex index = ClasspathIndex.build(Arrays.asList(child, parent), StdOutLogger.getLogger(), null, null);
+
+        Path snapshotFile = tmp.getRoot().toPath().resolve("classpath.jhs");
+        ClasspathSnapshot.write(index, snapshotFile);
+        assertTrue("snapshot not recognized.", ClasspathSnapshot.isSnapshot(snapshotFile));
+        assertFalse("a jar is not a snapshot.", ClasspathSnapshot.isSnapshot(jar1.toPath()));
+
+        ClasspathIndex loaded = ClasspathSnapshot.read(snapshotFile);
+
+        assertEquals(2, loaded.getClassLoaders().size());
+        assertEquals("child", loaded.getClassLoaders().get(0).getName());
+        assertEquals("child loader", loaded.getClassLoaders().get(0).getDetails());
+        assertNull(loaded.getClassLoaders().get(1).getDetails());
+        assertEquals(2, loaded.getClassLoaders().get(0).getClasspathEntries().size());
+        assertEquals(index.getClasspathEntries(), loaded.getClasspathEntries());
+        assertEquals("parent", loaded.getClasspathEntries().get(2).getClassLoaderName());
+
+        assertEquals(index.getResources().size(), loaded.getResources().size());
+        for (ClasspathResource resource : index.getResources()) {
+            ClasspathResource loadedResource = loaded.findResource(resource.getName());
+            assertNotNull("resource missing from the snapshot: " + resource.getName(), loadedResource);
+            List<ClasspathResourceVersion> versions = resource.getResourceFileVersions();
+            List<ClasspathResourceVersion> loadedVersions = loadedResource.getResourceFileVersions();
+            assertEquals("versions must be kept in classpath order.", versions, loadedVersions);
+            for (int i = 0; i < versions.size(); i++) {
+                assertEquals(versions.get(i).getFileSize(), loadedVersions.get(i).getFileSize());
+                assertEquals(versions.get(i).getCrc(), loadedVersions.get(i).getCrc());
+            }
+        }
+
+        // the snapshot must not need the original files
+        Files.delete(classFile);
+        assertTrue("class folder CRC must be computed when writing.",
+                loaded.findResource("/org/jhades/A.class").getResourceFileVersions().get(0).getCrc() != -1);
+
+        assertEquals(2, loaded.findResourcesWithDuplicates(false).size());
+        assertEquals(index.findOverlappingJars(false).size(), loaded.findOverlappingJars(false).size());
+        assertEquals(1, loaded.findByRegex(Pattern.compile("t\u00e9\\.properties$"), null).size());
+    }
+
+    @Test
+    public void testLoadSnapshotKeepsLiveMode() throws IOException {
+        File jar = tmp.newFile("lib.jar");
+        writeZip(jar, namesAsContents("org/jhades/A.class"));
+        ClazzLoader classLoader = new UrlClazzLoader("test", null, new URL[]{jar.toURI().toURL()});
+        ClasspathIndex index = ClasspathIndex.build(Arrays.asList(classLoader), StdOutLogger.getLogger(), null, null);
+        Path snapshotFile = tmp.getRoot().toPath().resolve("classpath.jhs");
+        ClasspathSnapshot.write(index, snapshotFile);
+
+        ClasspathScanner scanner = new ClasspathScanner();
+        scanner.setLiveMode(true);
+        try {
+            ClasspathIndex loaded = scanner.loadSnapshot(snapshotFile);
+            assertTrue("loading a snapshot must not disable the live mode.", scanner.isLiveMode());
+            assertSame("the class folders of a snapshot must not be watched.", loaded, scanner.getClasspathIndex());
+
+            scanner.setLiveMode(true);
+            assertSame("the class folders of a snapshot must not be watched.", loaded, scanner.getClasspathIndex());
+            assertNotSame("refresh must rescan the classpath.", loaded, scanner.refresh());
+            assertTrue(scanner.isLiveMode());
+        } finally {
+            scanner.setLiveMode(false);
+        }
+    }
+
+    @Test
+    public void testInvalidSnapshotRejected() throws IOException {
+        File notSnapshot = tmp.newFile("lib.jar");
+        writeZip(notSnapshot, namesAsContents("org/jhades/A.class"));
+        try {
+            ClasspathSnapshot.read(notSnapshot.toPath());
+            fail("a jar must not be read as a snapshot.");
+        } catch (IOException exc) {
+            assertTrue(exc.getMessage().startsWith("Not a jHades classpath snapshot"));
+        }
+
+        ClazzLoader classLoader = new UrlClazzLoader("test", null, new URL[]{notSnapshot.toURI().toURL()});
+        ClasspathIndex index = ClasspathIndex.build(Arrays.asList(classLoader), StdOutLogger.getLogger(), null, null);
+        Path snapshotFile = tmp.getRoot().toPath().resolve("truncated.jhs");
+        ClasspathSnapshot.write(index, snapshotFile);
+        byte[] bytes = Files.readAllBytes(snapshotFile);
+        Files.write(snapshotFile, Arrays.copyOf(bytes, bytes.length - 3));
+        try {
+            ClasspathSnapshot.read(snapshotFile);
+            fail("a truncated snapshot must be rejected.");
+        } catch (IOException exc) {
+            assertTrue(exc.getMessage().startsWith("Corrupted classpath snapshot"));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.jhades;
+
+import static org.jhades.TestUtils.*;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.ArrayList;
+import java.util.List;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.ClazzLoader;
+import org.jhades.model.ClazzLoaderFactory;
+import org.jhades.model.FatJarClazzLoader;
+import org.jhades.model.UrlClazzLoader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class FatJarClazzLoaderTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     *
+     * The urls of the launcher class loader of Spring Boot 3.2 and later.
+     *
+     */
+    @Test
+    public void testNestedUrls() throws IOException, URISyntaxException {
+        File fatJar = writeFatJar();
+        String path = fatJar.getAbsolutePath().replace(" ", "%20");
+        URL[] urls = {
+            new URL(null, "nested:" + path + "/!BOOT-INF/classes/", new NestedHandler()),
+            new URL(null, "jar:nested:" + path + "/!BOOT-INF/lib/lib.jar!/", new NestedHandler())
+        };
+        assertFatJarEntries(fatJar, createClazzLoader(urls));
+    }
+
+    /**
+     *
+     * The urls of the launcher class loader of Spring Boot 2.
+     *
+     */
+    @Test
+    public void testNestedJarUrls() throws IOException, URISyntaxException {
+        File fatJar = writeFatJar();
+        URL[] urls = {
+            new URL("jar:" + fatJar.toURI() + "!/BOOT-INF/classes!/"),
+            new URL("jar:" + fatJar.toURI() + "!/BOOT-INF/lib/lib.jar!/")
+        };
+        assertFatJarEntries(fatJar, createClazzLoader(urls));
+    }
+
+    @Test
+    public void testUrlClassLoaderWithoutFatJarUrls() throws IOException {
+        ClazzLoader clazzLoader = createClazzLoader(new URL[]{tmp.newFile("plain.jar").toURI().toURL()});
+        assertTrue("not an Url class loader: " + clazzLoader, clazzLoader instanceof UrlClazzLoader);
+    }
+
+    private static ClazzLoader createClazzLoader(URL[] urls) throws IOException {
+        try (URLClassLoader classLoader = new URLClassLoader(urls, null)) {
+            return ClazzLoaderFactory.createClazzLoader(classLoader);
+        }
+    }
+
+    private static void assertFatJarEntries(File fatJar, ClazzLoader clazzLoader) throws IOException, URISyntaxException {
+        assertTrue("not a fat jar class loader: " + clazzLoader, clazzLoader instanceof FatJarClazzLoader);
+        List<ClasspathEntry> entries = clazzLoader.getClasspathEntries();
+        String fatJarUrl = "jar:" + fatJar.toURI();
+        assertEquals(fatJarUrl + "!/BOOT-INF/classes/", entries.get(0).getUrl());
+        assertEquals(fatJarUrl + "!/BOOT-INF/lib/lib.jar", entries.get(1).getUrl());
+
+        assertEquals("[/org/app/App.class]", resourceNames(entries.get(0)).toString());
+        assertEquals("[/org/lib/Lib.class]", resourceNames(entries.get(1)).toString());
+    }
+
+    private static List<String> resourceNames(ClasspathEntry entry) throws IOException, URISyntaxException {
+        List<String> names = new ArrayList<>();
+        for (ClasspathResourceVersion version : entry.getResourceVersions()) {
+            names.add(version.getResourceName());
+        }
+        return names;
+    }
+
+    private File writeFatJar() throws IOException {
+        return writeZip(new File(tmp.newFolder("with space"), "app.jar"), "BOOT-INF/classes/org/app/App.class", new byte[1],
+                "BOOT-INF/lib/lib.jar", zip("org/lib/Lib.class", new byte[1]));
+    }
+
+    private static class NestedHandler extends URLStreamHandler {
+
+        @Override
+        protected URLConnection openConnection(URL url) throws IOException {
+            throw new IOException("Not needed by the scan: " + url);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.jhades;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.service.ClasspathScanner;
+import org.jhades.service.ClasspathScannerListener;
+import org.jhades.utils.StdOutLogger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class JHadesServletListenerTest {
+
+    private final Map<String, String> initParameters = new HashMap<>();
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final ServletContextEvent event = new ServletContextEvent((ServletContext) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[]{ServletContext.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    switch (method.getName()) {
+                        case "getInitParameter":
+                            return initParameters.get((String) args[0]);
+                        case "getAttribute":
+                            return attributes.get((String) args[0]);
+                        case "setAttribute":
+                            attributes.put((String) args[0], args[1]);
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                }
+            }));
+
+    @Test
+    public void testAsyncReportsPublished() throws InterruptedException {
+        initParameters.put(JHadesServletListener.ASYNC_PARAM, "true");
+        JHadesServletListener listener = new JHadesServletListener() {
+            @Override
+            protected void runJHades(JHades console) {
+                console.printClassLoaderNames();
+            }
+        };
+        listener.contextInitialized(event);
+        try {
+            String report = awaitReport();
+            assertTrue("the reports must be published: " + report, report.contains(">> jHades printClassLoaders >>"));
+            assertFalse(report.contains("cancelled"));
+        } finally {
+            listener.contextDestroyed(event);
+        }
+    }
+
+    @Test
+    public void testBudgetCancelsScan() throws InterruptedException {
+        initParameters.put(JHadesServletListener.ASYNC_PARAM, "true");
+        initParameters.put(JHadesServletListener.ASYNC_BUDGET_PARAM, "1");
+        EndlessScanListener listener = new EndlessScanListener();
+        listener.contextInitialized(event);
+        try {
+            String report = awaitReport();
+            assertTrue(report, report.contains("the reports did not finish within the time budget of 1 seconds, they were cancelled."));
+            assertTrue("the scan must stop once cancelled.", listener.stopped.await(5, TimeUnit.SECONDS));
+            assertTrue("the interrupt must stop the scan.", listener.cancelled.get());
+        } finally {
+            listener.contextDestroyed(event);
+        }
+    }
+
+    @Test
+    public void testContextDestroyedStopsScan() throws InterruptedException {
+        initParameters.put(JHadesServletListener.ASYNC_PARAM, "true");
+        EndlessScanListener listener = new EndlessScanListener();
+        listener.contextInitialized(event);
+        assertTrue("the scan did not start.", listener.started.await(10, TimeUnit.SECONDS));
+
+        listener.contextDestroyed(event);
+        assertTrue("the scan must stop with the context.", listener.stopped.await(5, TimeUnit.SECONDS));
+        assertTrue("the interrupt must stop the scan.", listener.cancelled.get());
+        Thread.sleep(100);
+        assertNull("a cancelled scan must not be published.", attributes.get(JHadesServletListener.REPORT_ATTRIBUTE));
+    }
+
+    private String awaitReport() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (System.nanoTime() < deadline) {
+            Object report = attributes.get(JHadesServletListener.REPORT_ATTRIBUTE);
+            if (report != null) {
+                return (String) report;
+            }
+            Thread.sleep(20);
+        }
+        fail("the report was not published.");
+        return null;
+    }
+
+    /**
+     *
+     * Scans the classpath over and over, slowly, until the scan is interrupted.
+     *
+     */
+    private static class EndlessScanListener extends JHadesServletListener {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch stopped = new CountDownLatch(1);
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        @Override
+        protected void runJHades(JHades console) {
+            List<ClasspathEntry> classpathEntries = new ClasspathScanner().findAllClasspathEntries();
+            ClasspathScannerListener slowListener = new ClasspathScannerListener() {
+                @Override
+                public void onEntryScanStart(ClasspathEntry entry) {
+                    started.countDown();
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException exc) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                @Override
+                public void onEntryScanEnd(ClasspathEntry entry) {
+                }
+            };
+            ClasspathEntry.ResourceVersionVisitor visitor = new ClasspathEntry.ResourceVersionVisitor() {
+                @Override
+                public void visitResourceVersion(ClasspathResourceVersion resourceVersion) {
+                }
+            };
+            try {
+                while (true) {
+                    ClasspathEntries.visitResourceVersionsInEntries(classpathEntries, StdOutLogger.getLogger(), slowListener,
+                            visitor, null);
+                }
+            } catch (CancellationException exc) {
+                cancelled.set(Thread.currentThread().isInterrupted());
+                throw exc;
+            } finally {
+                stopped.countDown();
+            }
+        }
+    }
+}
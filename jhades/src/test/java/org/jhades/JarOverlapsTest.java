@@ -0,0 +1,50 @@
+package org.jhades;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.ClazzLoader;
+import org.jhades.model.JarOverlaps;
+import org.jhades.model.JarPair;
+import org.jhades.model.UrlClazzLoader;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class JarOverlapsTest {
+
+    @Test
+    public void testOverlapCountsAndClassLoaderSplit() {
+        ClazzLoader webapp = new UrlClazzLoader("WebappClassLoader", null, new URL[0]);
+        ClazzLoader system = new UrlClazzLoader("AppClassLoader", null, new URL[0]);
+        ClasspathEntry jar1 = new ClasspathEntry(webapp, "file:/lib/a.jar");
+        ClasspathEntry jar2 = new ClasspathEntry(webapp, "file:/lib/b.jar");
+        ClasspathEntry jar3 = new ClasspathEntry(system, "file:/lib/c.jar");
+
+        List<ClasspathResource> resources = new ArrayList<>();
+        resources.add(resource("/A.class", jar1, jar2));
+        resources.add(resource("/B.class", jar2, jar1));
+        resources.add(resource("/C.class", jar1, jar2, jar3));
+
+        JarOverlaps overlaps = JarOverlaps.count(resources);
+
+        List<JarPair> pairs = overlaps.getOverlappingJars();
+        assertEquals("one pair per overlapping jars.", 3, pairs.size());
+        assertEquals("pairs must be counted regardless of the jar order.", new JarPair(jar2, jar1), pairs.get(0));
+        assertEquals("overlap count not correct.", Long.valueOf(3), pairs.get(0).getDupClassesTotal());
+        assertEquals("jar pair hash code must be symmetric.", new JarPair(jar1, jar2).hashCode(), new JarPair(jar2, jar1).hashCode());
+
+        assertEquals("same class loader overlaps not split.", 1, overlaps.getOverlappingJarsByClassLoader().get(webapp).size());
+        assertEquals("cross class loader overlaps not split.", 2, overlaps.getCrossClassLoaderOverlaps().size());
+    }
+
+    private static ClasspathResource resource(String name, ClasspathEntry... entries) {
+        ClasspathResource resource = new ClasspathResource(name, new ClasspathResourceVersion(entries[0], name, 10));
+        for (int i = 1; i < entries.length; i++) {
+            resource.getResourceFileVersions().add(new ClasspathResourceVersion(entries[i], name, 10));
+        }
+        return resource;
+    }
+}
@@ -0,0 +1,87 @@
+package org.jhades;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.ClazzLoader;
+import org.jhades.model.ClazzLoaderFactory;
+import org.jhades.model.EntryScanStats;
+import org.jhades.service.JdkImageIndex;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class JdkImageIndexTest {
+
+    @Test
+    public void testBootstrapClassLoaderEntries() {
+        List<String> urls = new ArrayList<>();
+        for (ClasspathEntry entry : ClazzLoaderFactory.createBootstrapClassLoader().getClasspathEntries()) {
+            urls.add(entry.getUrl());
+        }
+        if (JdkImageIndex.findModuleUrls().isEmpty()) {
+            boolean hasRuntimeJar = false;
+            for (String url : urls) {
+                hasRuntimeJar |= url.endsWith("/rt.jar");
+            }
+            assertTrue("rt.jar is not on the bootstrap classpath: " + urls, hasRuntimeJar);
+        } else {
+            assertTrue("java.base is not on the bootstrap classpath: " + urls, urls.contains("jrt:/java.base"));
+            assertFalse("java.sql belongs to the platform class loader: " + urls, urls.contains("jrt:/java.sql"));
+        }
+    }
+
+    @Test
+    public void testApplicationClassLoaderEntries() {
+        ClazzLoader application = ClazzLoaderFactory.createClazzLoader(ClassLoader.getSystemClassLoader());
+        assertNotNull("the application class loader is not supported.", application);
+        List<String> urls = new ArrayList<>();
+        for (ClasspathEntry entry : application.getClasspathEntries()) {
+            urls.add(entry.getUrl());
+        }
+        String testClasses = getClass().getProtectionDomain().getCodeSource().getLocation().toString();
+        assertTrue(testClasses + " is not on the application classpath: " + urls, urls.contains(testClasses));
+        if (!JdkImageIndex.findModuleUrls().isEmpty()) {
+            ClazzLoader platform = ClazzLoaderFactory.createClazzLoader(ClassLoader.getSystemClassLoader().getParent());
+            List<String> platformUrls = new ArrayList<>();
+            for (ClasspathEntry entry : platform.getClasspathEntries()) {
+                platformUrls.add(entry.getUrl());
+            }
+            assertTrue("java.sql is not defined to the platform class loader: " + platformUrls, platformUrls.contains("jrt:/java.sql"));
+        }
+    }
+
+    @Test
+    public void testModuleScan() throws IOException, URISyntaxException {
+        assumeTrue("the JVM has no module image.", !JdkImageIndex.findModuleUrls().isEmpty());
+
+        ClazzLoader bootstrap = ClazzLoaderFactory.createBootstrapClassLoader();
+        ClasspathEntry javaBase = null;
+        for (ClasspathEntry entry : bootstrap.getClasspathEntries()) {
+            assertTrue("not a module: " + entry.getUrl(), entry.isModule());
+            if (entry.getUrl().equals("jrt:/java.base")) {
+                javaBase = entry;
+            }
+        }
+
+        ClasspathResourceVersion string = null;
+        for (ClasspathResourceVersion version : javaBase.getResourceVersions()) {
+            assertNotEquals("module-info is not a classpath resource.", "/module-info.class", version.getResourceName());
+            if (version.getResourceName().equals("/java/lang/String.class")) {
+                string = version;
+            }
+        }
+        assertNotNull("String not found in java.base.", string);
+        assertTrue("String size.", string.getFileSize() > 0);
+        assertNotEquals("String CRC-32.", -1, string.getCrc());
+        assertEquals("java.lang", string.getPackageName());
+
+        ClasspathEntry rescanned = new ClasspathEntry(bootstrap, "jrt:/java.base");
+        rescanned.getResourceVersions();
+        assertEquals("the module was walked again.", EntryScanStats.CacheStatus.HIT, rescanned.getLastScanStats().getCacheStatus());
+        assertEquals("module resources.", javaBase.getResourceVersions().size(), rescanned.getResourceVersions().size());
+    }
+}
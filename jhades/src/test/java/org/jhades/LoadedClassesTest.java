@@ -0,0 +1,94 @@
+package org.jhades;
+
+import static org.jhades.TestUtils.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import org.jhades.model.LoadedClass;
+import org.jhades.model.LoadedClassConflict;
+import org.jhades.model.LoadedClasses;
+import org.jhades.model.LoadedClassesIndex;
+import org.jhades.reports.LoadedClassConflictsReport;
+import org.jhades.utils.StdOutLogger;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class LoadedClassesTest {
+
+    private static final String CLASS_FILE = "org/junit/Assert.class";
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testLoadedClassConflict() throws Exception {
+        byte[] classFile = readClassFile(Assert.class);
+        File first = writeZip(tmp.newFile("first.jar"), CLASS_FILE, classFile);
+        // same class, different contents
+        byte[] modified = classFile.clone();
+        modified[modified.length - 1] ^= 1;
+        File second = writeZip(tmp.newFile("second.jar"), CLASS_FILE, modified);
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{first.toURI().toURL(), second.toURI().toURL()}, null)) {
+            Class<?> loaded = classLoader.loadClass("org.junit.Assert");
+            List<LoadedClass> loadedClasses = LoadedClasses.snapshot(new Class<?>[]{loaded, int.class, String[].class});
+            assertEquals("array and primitive classes are not snapshotted.", 1, loadedClasses.size());
+            assertEquals("/" + CLASS_FILE, loadedClasses.get(0).getResourceName());
+
+            LoadedClassesIndex index = LoadedClasses.buildIndex(loadedClasses, StdOutLogger.getLogger(), null, null);
+            List<LoadedClassConflict> conflicts = LoadedClasses.findConflicts(loadedClasses, index);
+
+            assertEquals(1, conflicts.size());
+            LoadedClassConflict conflict = conflicts.get(0);
+            assertEquals(2, conflict.getResource().getResourceFileVersions().size());
+            assertEquals("the class was defined from the first jar.", first.toURI().toString(),
+                    conflict.getLoadedVersion().getClasspathEntry().getUrl());
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new LoadedClassConflictsReport(loadedClasses.size(), conflicts).print(new PrintStream(out, true, "UTF-8"));
+            String report = out.toString("UTF-8");
+            assertTrue(report, report.contains("org.junit.Assert was defined by java.net.URLClassLoader"));
+            assertTrue(report, report.contains("* "));
+        }
+    }
+
+    @Test
+    public void testIdenticalCopiesAreNotConflicts() throws Exception {
+        byte[] classFile = readClassFile(Assert.class);
+        File first = writeZip(tmp.newFile("first.jar"), CLASS_FILE, classFile);
+        File second = writeZip(tmp.newFile("second.jar"), CLASS_FILE, classFile);
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{first.toURI().toURL(), second.toURI().toURL()}, null)) {
+            Class<?> loaded = classLoader.loadClass("org.junit.Assert");
+            List<LoadedClass> loadedClasses = LoadedClasses.snapshot(new Class<?>[]{loaded});
+            LoadedClassesIndex index = LoadedClasses.buildIndex(loadedClasses, StdOutLogger.getLogger(), null, null);
+            assertTrue("identical copies reported.", LoadedClasses.findConflicts(loadedClasses, index).isEmpty());
+        }
+    }
+
+    @Test
+    public void testSiblingClassLoadersAreNotConflicts() throws Exception {
+        byte[] classFile = readClassFile(Assert.class);
+        byte[] modified = classFile.clone();
+        modified[modified.length - 1] ^= 1;
+        File shared = tmp.newFolder("shared");
+        File app1 = writeZip(tmp.newFile("app1.jar"), CLASS_FILE, classFile);
+        File app2 = writeZip(tmp.newFile("app2.jar"), CLASS_FILE, modified);
+
+        // two web applications with their own copy of the class, and a common parent
+        try (URLClassLoader parent = new URLClassLoader(new URL[]{shared.toURI().toURL()}, null);
+                URLClassLoader webapp1 = new URLClassLoader(new URL[]{app1.toURI().toURL()}, parent);
+                URLClassLoader webapp2 = new URLClassLoader(new URL[]{app2.toURI().toURL()}, parent)) {
+            List<LoadedClass> loadedClasses = LoadedClasses.snapshot(new Class<?>[]{
+                webapp1.loadClass("org.junit.Assert"), webapp2.loadClass("org.junit.Assert")});
+            LoadedClassesIndex index = LoadedClasses.buildIndex(loadedClasses, StdOutLogger.getLogger(), null, null);
+            assertEquals("the parent class loader is not scanned.", 4, index.getClasspathIndex().getClassLoaders().size());
+            assertTrue("sibling copies reported.", LoadedClasses.findConflicts(loadedClasses, index).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.jhades;
+
+import static org.jhades.TestUtils.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.UrlClazzLoader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class ManifestClasspathTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testManifestCycleAndRelativePaths() throws IOException {
+        File lib = tmp.newFolder("lib");
+        File sub = new File(lib, "sub");
+        sub.mkdir();
+        File a = new File(lib, "a.jar");
+        writeJar(a, "b.jar sub/c.jar");
+        // refers back to a.jar
+        writeJar(new File(lib, "b.jar"), "a.jar");
+        writeJar(new File(sub, "c.jar"), "../a.jar  ../b.jar ../missing.jar");
+
+        UrlClazzLoader classLoader = new UrlClazzLoader("test", null, new URL[]{a.toURI().toURL()});
+
+        List<String> urls = new ArrayList<>();
+        for (ClasspathEntry entry : classLoader.getClasspathEntries()) {
+            urls.add(entry.getUrl());
+        }
+        String libUrl = lib.toURI().toString();
+        assertEquals("[" + libUrl + "a.jar, " + libUrl + "b.jar, " + libUrl + "sub/c.jar, " + libUrl + "missing.jar]", urls.toString());
+    }
+
+    @Test
+    public void testNestedJarManifest() throws IOException {
+        ByteArrayOutputStream appJar = new ByteArrayOutputStream();
+        writeZip(appJar, classpathManifest("lib.jar ../classes/"), "org/Test.class", new byte[1]);
+        File war = writeZip(tmp.newFile("app.war"), "WEB-INF/lib/app.jar", appJar.toByteArray());
+
+        String warUrl = "jar:" + war.toURI() + "!/";
+        List<ClasspathEntry> manifestEntries = new ClasspathEntry(null, warUrl + "WEB-INF/lib/app.jar").findManifestClasspathEntries();
+        assertEquals(2, manifestEntries.size());
+        assertEquals(warUrl + "WEB-INF/lib/lib.jar", manifestEntries.get(0).getUrl());
+        assertEquals(warUrl + "WEB-INF/classes/", manifestEntries.get(1).getUrl());
+    }
+
+    private static void writeJar(File jar, String manifestClasspath) throws IOException {
+        writeZip(new FileOutputStream(jar), classpathManifest(manifestClasspath), "org/Test.class", new byte[1]);
+    }
+}
@@ -0,0 +1,61 @@
+package org.jhades;
+
+import static org.jhades.TestUtils.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathIndex;
+import org.jhades.model.ClasspathResource;
+import org.jhades.service.NestedJarCache;
+import org.jhades.utils.StdOutLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class NestedJarCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testJarSharedBetweenWarsListedOnce() throws IOException {
+        byte[] commonJar = zip("org/common/A.class", "A", "org/common/B.class", "B");
+        File war1 = tmp.newFile("app1.war");
+        File war2 = tmp.newFile("app2.war");
+        writeZip(war1, "WEB-INF/lib/common-1.0.jar", commonJar, "WEB-INF/lib/app1.jar", zip("org/app1/C.class", "C"));
+        // same contents under another name, still the same jar
+        writeZip(war2, "WEB-INF/lib/common.jar", commonJar, "WEB-INF/lib/app2.jar", zip("org/app2/C.class", "C2"));
+
+        NestedJarCache jarCache = new NestedJarCache();
+        ClasspathIndex index1 = buildIndex(war1, jarCache);
+        ClasspathIndex index2 = buildIndex(war2, jarCache);
+
+        assertEquals(3, jarCache.getMisses());
+        assertEquals(1, jarCache.getHits());
+        assertEquals(2, jarCache.getCachedJars().get(0).getUses());
+        assertEquals("WEB-INF/lib/common-1.0.jar", jarCache.getCachedJars().get(0).getName());
+
+        ClasspathResource resource = index2.findResource("/org/common/B.class");
+        assertNotNull("a cached jar must be listed in each WAR.", resource);
+        assertTrue(resource.getResourceFileVersions().get(0).getClasspathEntry().getUrl().endsWith("!/WEB-INF/lib/common.jar"));
+        assertNotNull(index1.findResource("/org/common/B.class"));
+        assertNull(index2.findResource("/org/app1/C.class"));
+
+        // the cache belongs to its scan, the other scans do not use it
+        NestedJarCache otherCache = new NestedJarCache();
+        assertNotNull(buildIndex(war1, otherCache).findResource("/org/common/B.class"));
+        assertNotNull(buildIndex(war2, null).findResource("/org/common/B.class"));
+        assertEquals(2, otherCache.getMisses());
+        assertEquals(0, otherCache.getHits());
+        assertEquals(3, jarCache.getMisses());
+        assertEquals(1, jarCache.getHits());
+    }
+
+    private static ClasspathIndex buildIndex(File war, NestedJarCache jarCache) throws IOException {
+        List<ClasspathEntry> classpathEntries = ClasspathEntries.findWarClasspathEntries(war.toPath(), jarCache);
+        return ClasspathIndex.buildFromEntries(classpathEntries, StdOutLogger.getLogger(), null, null);
+    }
+}
@@ -0,0 +1,70 @@
+package org.jhades;
+
+import static org.jhades.TestUtils.*;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import org.jhades.model.ClasspathIndex;
+import org.jhades.model.ClazzLoader;
+import org.jhades.model.ResolvedResource;
+import org.jhades.model.UrlClazzLoader;
+import org.jhades.service.ClasspathScanner;
+import org.jhades.utils.StdOutLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class ResolveResourcesTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testParentFirstDelegation() throws IOException {
+        File childJar = writeZip(tmp.newFile("child.jar"), namesAsContents("org/Dup.class", "org/Child.class"));
+        File parentJar = writeZip(tmp.newFile("parent.jar"), namesAsContents("org/Dup.class"));
+        ClazzLoader child = new UrlClazzLoader("child", null, new URL[]{childJar.toURI().toURL()});
+        ClazzLoader parent = new UrlClazzLoader("parent", null, new URL[]{parentJar.toURI().toURL()});
+        ClasspathIndex index = ClasspathIndex.build(Arrays.asList(child, parent), StdOutLogger.getLogger(), null, null);
+
+        List<ResolvedResource> resolved = index.resolveResources(Arrays.asList("org/Dup.class", "/org/Child.class", "/org/Missing.class"));
+
+        assertEquals(3, resolved.size());
+        ResolvedResource dup = resolved.get(0);
+        assertEquals("org/Dup.class", dup.getResourceName());
+        assertEquals("the parent version must win.", parentJar.toURI().toString(), dup.getWinningVersion().getClasspathEntry().getUrl());
+        assertEquals(2, dup.getVersions().size());
+        assertEquals(childJar.toURI().toString(), dup.getVersions().get(1).getClasspathEntry().getUrl());
+        assertEquals(childJar.toURI().toString(), resolved.get(1).getWinningVersion().getClasspathEntry().getUrl());
+        assertFalse("found a missing resource.", resolved.get(2).isFound());
+        assertNull(resolved.get(2).getWinningVersion());
+    }
+
+    @Test
+    public void testSameWinnerAsTheClassLoader() {
+        List<String> names = Arrays.asList("java/lang/String.class", "org/junit/Test.class", "/org/jhades/JHades.class");
+        List<ResolvedResource> resolved = new ClasspathScanner().resolveResources(names);
+        for (ResolvedResource resolvedResource : resolved) {
+            String resourceName = resolvedResource.getResourceName().startsWith("/")
+                    ? resolvedResource.getResourceName().substring(1) : resolvedResource.getResourceName();
+            URL loaded = getClass().getClassLoader().getResource(resourceName);
+            assertNotNull(resourceName + " is not loaded.", loaded);
+            assertNotNull(resourceName + " has no winning version.", resolvedResource.getWinningVersion());
+            String entryUrl = resolvedResource.getWinningVersion().getClasspathEntry().getUrl();
+            assertEquals(loaded + " is not loaded from " + entryUrl, loaded.toString(), toResourceUrl(entryUrl, resourceName));
+        }
+    }
+
+    private static String toResourceUrl(String entryUrl, String resourceName) {
+        if (entryUrl.startsWith("jrt:/")) {
+            return entryUrl + "/" + resourceName;
+        }
+        if (entryUrl.endsWith("/")) {
+            return entryUrl + resourceName;
+        }
+        return "jar:" + entryUrl + "!/" + resourceName;
+    }
+}
@@ -0,0 +1,113 @@
+package org.jhades;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+import org.jhades.model.ClasspathIndex;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.ResourceNameTrie;
+import org.jhades.model.ResourceTable;
+import org.jhades.service.ClasspathScanner;
+import org.jhades.utils.RegexLiterals;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ResourceNameTrieTest {
+
+    @Test
+    public void testRegexLiterals() {
+        assertLiterals("^/java/lang/Str", "/java/lang/Str", "/java/lang/Str");
+        assertLiterals("java/lang/String.class", null, "java/lang/String");
+        assertLiterals("^/java/util/Has?hMap", "/java/util/Ha", "/java/util/Ha");
+        assertLiterals("^/org/\\Qa.b\\E[xy]+Impl", "/org/a.b", "/org/a.b");
+        assertLiterals("Foo|Bar", null, null);
+        assertLiterals("(Foo|Bar)Service", null, "Service");
+        assertLiterals("^.*Test\\.class$", null, "Test.class");
+        assertLiterals("ab+cd", null, "ab");
+        assertLiterals("/util/(?i)hashmap", null, "/util/");
+        assertLiterals("abc(?:x)|def", null, null);
+        assertLiterals("Foo\\n|Bar", null, null);
+        assertLiterals("abc\\x41|zzz", null, null);
+        assertLiterals("^/org\\p{L}|/com", null, null);
+        assertLiterals("abc\\x41(d|e)[|]\\Q|\\E", null, "abc");
+    }
+
+    @Test
+    public void testSearchMatchesLinearScan() {
+        ClasspathIndex index = new ClasspathScanner().getClasspathIndex();
+        List<ClasspathResource> resources = index.getResources();
+        ResourceNameTrie trie = ResourceNameTrie.build(index.getResourceTable());
+        assertEquals(resources.size(), trie.size());
+        ForkJoinPool searchPool = new ForkJoinPool(4);
+
+        String[] searches = {"java/lang/String.class", "^/java/util/concurrent/", "^/java/util/Ha", "Map\\$Entry",
+            "^/javax?/.*Lock", "(?i)hashmap", "Foo|String\\.class", "\\.properties$", "abc(?:x)|def", "Foo\\n|HashMap",
+            "abc\\x41|String", "^/org\\p{L}|/com", "^/javax(?:/xml)|^/java/util/Ha"};
+        try {
+            for (String search : searches) {
+                Pattern pattern = Pattern.compile(search);
+                List<ClasspathResource> expected = new ArrayList<>();
+                for (ClasspathResource resource : resources) {
+                    if (pattern.matcher(resource.getName()).find()) {
+                        expected.add(resource);
+                    }
+                }
+                // path order: /a/b comes before /a-c, folder by folder
+                Collections.sort(expected, new Comparator<ClasspathResource>() {
+                    @Override
+                    public int compare(ClasspathResource resource1, ClasspathResource resource2) {
+                        String[] segments1 = resource1.getName().split("/", -1);
+                        String[] segments2 = resource2.getName().split("/", -1);
+                        for (int i = 0; i < Math.min(segments1.length, segments2.length); i++) {
+                            int comparison = segments1[i].compareTo(segments2[i]);
+                            if (comparison != 0) {
+                                return comparison;
+                            }
+                        }
+                        return segments1.length - segments2.length;
+                    }
+                });
+                assertEquals("trie search differs from a linear scan for " + search, names(expected), names(trie.search(pattern, null)));
+                assertEquals("split search differs for " + search, names(expected), names(trie.search(pattern, searchPool)));
+            }
+        } finally {
+            searchPool.shutdown();
+        }
+    }
+
+    @Test
+    public void testNamesSharingPrefixes() {
+        String[] names = {"/a/b", "/a-c", "/a", "/a/b/", "/ab/c", "/\u00e9t\u00e9/x", "/a/c", "/META-INF/MANIFEST.MF"};
+        ResourceTable.Builder builder = new ResourceTable.Builder();
+        for (String name : names) {
+            builder.visitResourceVersion(new ClasspathResourceVersion(null, name, 1));
+        }
+        ResourceNameTrie trie = ResourceNameTrie.build(builder.build(false));
+
+        assertEquals(names.length, trie.size());
+        assertEquals(Arrays.asList("/META-INF/MANIFEST.MF", "/a", "/a/b", "/a/b/", "/a/c", "/a-c", "/ab/c", "/\u00e9t\u00e9/x"),
+                names(trie.search(Pattern.compile(""), null)));
+        assertEquals(Arrays.asList("/a/b", "/a/b/", "/a/c"), names(trie.search(Pattern.compile("^/a/"), null)));
+        assertEquals(Arrays.asList("/a/c", "/ab/c"), names(trie.search(Pattern.compile("/c$"), null)));
+        assertEquals(Arrays.asList("/\u00e9t\u00e9/x"), names(trie.search(Pattern.compile("^/\u00e9t"), null)));
+    }
+
+    private static void assertLiterals(String regex, String prefix, String requiredLiteral) {
+        RegexLiterals literals = RegexLiterals.analyze(regex);
+        assertEquals("wrong prefix for " + regex, prefix, literals.getPrefix());
+        assertEquals("wrong required literal for " + regex, requiredLiteral, literals.getRequiredLiteral());
+    }
+
+    private static List<String> names(List<ClasspathResource> resources) {
+        List<String> names = new ArrayList<>();
+        for (ClasspathResource resource : resources) {
+            names.add(resource.getName());
+        }
+        return names;
+    }
+}
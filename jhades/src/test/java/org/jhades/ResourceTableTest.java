@@ -0,0 +1,88 @@
+package org.jhades;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.ResourceTable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class ResourceTableTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testVersionsGroupedByNameInClasspathOrder() {
+        for (boolean offHeap : new boolean[]{false, true}) {
+            ClasspathEntry jar1 = new ClasspathEntry(null, "file:/lib/a.jar");
+            ClasspathEntry jar2 = new ClasspathEntry(null, "file:/lib/b.jar");
+
+            ResourceTable.Builder builder = new ResourceTable.Builder();
+            builder.visitResourceVersion(new ClasspathResourceVersion(jar1, "/org/jhades/JHades.class", 100, 1));
+            builder.visitResourceVersion(new ClasspathResourceVersion(jar1, "/META-INF/r\u00e9sum\u00e9.txt", 10));
+            builder.visitResourceVersion(new ClasspathResourceVersion(jar2, "/org/jhades/JHades.class", 120, 2));
+            ResourceTable table = builder.build(offHeap);
+
+            assertEquals("names must be interned once.", 2, table.getNameCount());
+            assertEquals("all versions must be kept.", 3, table.getVersionCount());
+            assertEquals("unknown name must not be found.", -1, table.findNameId("/org/jhades/Unknown.class"));
+
+            ClasspathResource resource = table.getResource(table.findNameId("/org/jhades/JHades.class"));
+            List<ClasspathResourceVersion> versions = resource.getResourceFileVersions();
+            assertEquals("versions must be in classpath order.", Arrays.asList(jar1, jar2),
+                    Arrays.asList(versions.get(0).getClasspathEntry(), versions.get(1).getClasspathEntry()));
+            assertEquals("size not kept.", 120, versions.get(1).getFileSize());
+            assertEquals("crc not kept.", 2, versions.get(1).getCrc());
+
+            int nameId = table.findNameId("/META-INF/r\u00e9sum\u00e9.txt");
+            assertEquals("non ascii names must be decoded.", "/META-INF/r\u00e9sum\u00e9.txt", table.getName(nameId));
+            assertEquals("unknown crc not kept.", -1, table.getResource(nameId).getResourceFileVersions().get(0).getCrc());
+        }
+    }
+
+    @Test
+    public void testComputedCrcKeptInTable() throws IOException {
+        File classes = tmp.newFolder("classes");
+        File resource = new File(classes, "app.properties");
+        Files.write(resource.toPath(), "a=1".getBytes("UTF-8"));
+        ClasspathEntry classFolder = new ClasspathEntry(null, classes.toURI().toString());
+
+        ResourceTable.Builder builder = new ResourceTable.Builder();
+        builder.visitResourceVersion(new ClasspathResourceVersion(classFolder, "/app.properties", 3));
+        ResourceTable table = builder.build(false);
+        ClasspathResourceVersion version = table.getResource(0).getResourceFileVersions().get(0);
+        long crc = version.getCrc();
+        assertNotEquals(-1, crc);
+
+        // a new view must not read the file again
+        assertTrue(resource.delete());
+        assertEquals("the computed crc must be kept in the table.", crc,
+                table.getResource(0).getResourceFileVersions().get(0).getCrc());
+        assertEquals("views must be equal to the scanned versions.",
+                new ClasspathResourceVersion(classFolder, "/app.properties", 3), version);
+    }
+
+    @Test
+    public void testUnreadableCrcNotReadAgain() throws IOException {
+        File classes = tmp.newFolder("classes");
+        ClasspathEntry classFolder = new ClasspathEntry(null, classes.toURI().toString());
+
+        ResourceTable.Builder builder = new ResourceTable.Builder();
+        builder.visitResourceVersion(new ClasspathResourceVersion(classFolder, "/app.properties", 3));
+        ResourceTable table = builder.build(false);
+        assertEquals("a missing file has no crc.", -1, table.getResource(0).getResourceFileVersions().get(0).getCrc());
+
+        // a new view must not try to read the file again
+        Files.write(new File(classes, "app.properties").toPath(), "a=1".getBytes("UTF-8"));
+        assertEquals("the failure must be kept in the table.", -1,
+                table.getResource(0).getResourceFileVersions().get(0).getCrc());
+    }
+}
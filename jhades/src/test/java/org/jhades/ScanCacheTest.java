@@ -0,0 +1,85 @@
+package org.jhades;
+
+import static org.jhades.TestUtils.*;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.service.ScanCache;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class ScanCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @After
+    public void disableCache() {
+        ScanCache.disable();
+    }
+
+    @Test
+    public void testCacheHitAndInvalidation() throws IOException, URISyntaxException {
+        File cacheDir = tmp.newFolder("cache");
+        ScanCache.configure(cacheDir.getPath(), null, null);
+        File jar = tmp.newFile("lib.jar");
+        writeZip(jar, namesAsContents("org/jhades/A.class", "org/jhades/B.class"));
+
+        List<ClasspathResourceVersion> scanned = new ClasspathEntry(null, jar.toURI().toString()).getResourceVersions();
+        assertEquals("jar not scanned.", 2, scanned.size());
+        assertEquals("scan result not cached.", 1, countFiles(cacheDir.toPath()));
+
+        ClasspathEntry entry = new ClasspathEntry(null, jar.toURI().toString());
+        List<ClasspathResourceVersion> cached = ScanCache.getInstance().load(jar.toPath(), entry);
+        assertEquals("cached resources differ from the scanned ones.", scanned, cached);
+        for (int i = 0; i < scanned.size(); i++) {
+            assertEquals(scanned.get(i).getFileSize(), cached.get(i).getFileSize());
+            assertEquals(scanned.get(i).getCrc(), cached.get(i).getCrc());
+        }
+
+        writeZip(jar, namesAsContents("org/jhades/C.class"));
+        Files.setLastModifiedTime(jar.toPath(), FileTime.fromMillis(jar.lastModified() + 5000));
+        assertNull("a changed jar must not be served from the cache.", ScanCache.getInstance().load(jar.toPath(), entry));
+    }
+
+    @Test
+    public void testJarReplacedDuringScanNotServed() throws IOException {
+        File cacheDir = tmp.newFolder("cache");
+        ScanCache.configure(cacheDir.getPath(), null, "true");
+        File jar = tmp.newFile("lib.jar");
+        writeZip(jar, namesAsContents("org/jhades/A.class"));
+        ClasspathEntry entry = new ClasspathEntry(null, jar.toURI().toString());
+
+        // the key is taken before the scan, the jar is replaced while it's scanned
+        ScanCache.JarKey key = ScanCache.getInstance().getJarKey(jar.toPath());
+        writeZip(jar, namesAsContents("org/jhades/B.class", "org/jhades/C.class"));
+        List<ClasspathResourceVersion> scanned = Arrays.asList(new ClasspathResourceVersion(entry, "/org/jhades/B.class", 19),
+                new ClasspathResourceVersion(entry, "/org/jhades/C.class", 19));
+        ScanCache.getInstance().store(key, scanned);
+
+        assertEquals(scanned, ScanCache.getInstance().load(key, entry));
+        assertNull("the listing of the replaced jar must not be served for the new one.",
+                ScanCache.getInstance().load(jar.toPath(), entry));
+    }
+
+    private static int countFiles(Path dir) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.jhc")) {
+            for (Path file : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
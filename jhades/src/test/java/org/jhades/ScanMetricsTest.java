@@ -0,0 +1,80 @@
+package org.jhades;
+
+import static org.jhades.TestUtils.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.EntryScanStats;
+import org.jhades.model.ScanMetrics;
+import org.jhades.utils.StdOutLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class ScanMetricsTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testEntryStatsAndTotals() throws IOException {
+        File jar1 = writeZip(tmp.newFile("jar1.jar"), namesAsContents("org/jhades/A.class", "org/jhades/B.class", "org/jhades/C.class"));
+        File jar2 = writeZip(tmp.newFile("jar2.jar"), namesAsContents("org/jhades/A.class", "org/other/D.class"));
+
+        List<ClasspathEntry> entries = new ArrayList<>();
+        entries.add(new ClasspathEntry(null, jar1.toURI().toString()));
+        entries.add(new ClasspathEntry(null, jar2.toURI().toString()));
+
+        ScanMetrics metrics = new ScanMetrics();
+        List<ClasspathResource> duplicates = ClasspathEntries.findDuplicateResourcesInEntries(entries,
+                StdOutLogger.getLogger(), metrics, null, null);
+        metrics.recordDuplicates(duplicates);
+
+        assertEquals("entries not counted.", 2, metrics.getEntryCount());
+        assertEquals("resources not counted.", 5, metrics.getResourceCount());
+        assertEquals("duplicates not counted.", 2, metrics.getDuplicateCount());
+        assertTrue("bytes read not counted.", metrics.getBytesRead() > 0);
+        assertEquals("no cache was used.", 0, metrics.getCacheHits() + metrics.getCacheMisses());
+        assertEquals("each entry is in the histogram.", 2, metrics.getLatencyHistogram().getTotalCount());
+
+        EntryScanStats jar1Stats = metrics.getEntryStats().get(0);
+        assertEquals("wrong entry.", entries.get(0), jar1Stats.getClasspathEntry());
+        assertEquals("jar1 resources.", 3, jar1Stats.getResourceCount());
+        assertEquals("jar1 duplicates.", 1, jar1Stats.getDuplicateCount());
+        assertTrue("jar1 bytes read.", jar1Stats.getBytesRead() > 0 && jar1Stats.getBytesRead() <= jar1.length());
+        assertEquals("jar1 cache status.", EntryScanStats.CacheStatus.NOT_CACHED, jar1Stats.getCacheStatus());
+        assertEquals("slowest entries limit.", 1, metrics.getSlowestEntries(1).size());
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        assertEquals("empty histogram.", 0, new ScanMetrics().getLatencyHistogram().getPercentileUpperBoundMillis(50));
+
+        ScanMetrics.LatencyHistogram histogram = new ScanMetrics.LatencyHistogram();
+        histogram.record(500000L);
+        histogram.record(1000000L);
+        histogram.record(3000000L);
+        histogram.record(3900000L);
+        histogram.record(100000000L);
+
+        assertEquals("below 1 ms.", 1, histogram.getCount(0));
+        assertEquals("1 ms.", 1, histogram.getCount(1));
+        assertEquals("3 ms.", 2, histogram.getCount(2));
+        assertEquals("100 ms.", 1, histogram.getCount(7));
+        assertEquals(1, histogram.getPercentileUpperBoundMillis(20));
+        assertEquals(2, histogram.getPercentileUpperBoundMillis(40));
+        assertEquals(4, histogram.getPercentileUpperBoundMillis(50));
+        assertEquals(4, histogram.getPercentileUpperBoundMillis(80));
+        assertEquals(128, histogram.getPercentileUpperBoundMillis(99));
+
+        // an hour is beyond the last bound
+        histogram.record(3600L * 1000000000L);
+        assertEquals(1, histogram.getCount(histogram.getBucketCount() - 1));
+        assertEquals(Long.MAX_VALUE, histogram.getPercentileUpperBoundMillis(100));
+    }
+}
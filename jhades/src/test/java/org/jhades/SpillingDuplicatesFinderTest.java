@@ -0,0 +1,95 @@
+package org.jhades;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.SpillingDuplicatesFinder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class SpillingDuplicatesFinderTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testDuplicatesFoundInMemory() throws IOException {
+        File spillDir = tmp.newFolder("spill");
+        try (SpillingDuplicatesFinder finder = new SpillingDuplicatesFinder(spillDir.toPath(), Long.MAX_VALUE)) {
+            visitVersions(finder, 3, 50);
+            List<ClasspathResource> duplicates = findDuplicates(finder);
+
+            assertEquals(0, finder.getSpilledRuns());
+            assertEquals(0, spillDir.list().length);
+            assertDuplicates(duplicates, 3, 50);
+        }
+    }
+
+    @Test
+    public void testDuplicatesMergedFromRunFiles() throws IOException {
+        File spillDir = tmp.newFolder("spill");
+        // a spill for each version, enough runs to need merging them before the final merge
+        SpillingDuplicatesFinder finder = new SpillingDuplicatesFinder(spillDir.toPath(), 1);
+        try {
+            visitVersions(finder, 4, 60);
+            assertEquals(244, finder.getSpilledRuns());
+            assertEquals(244, finder.getSpilledRecords());
+
+            assertDuplicates(findDuplicates(finder), 4, 60);
+            assertDuplicates(findDuplicates(finder), 4, 60);
+        } finally {
+            finder.close();
+        }
+        assertEquals("the run files must be deleted.", 0, spillDir.list().length);
+    }
+
+    /**
+     *
+     * Visits one version of each resource per jar, in jar order, plus one resource per jar that has no duplicates.
+     *
+     */
+    private static void visitVersions(SpillingDuplicatesFinder finder, int jars, int resources) {
+        for (int jar = 0; jar < jars; jar++) {
+            ClasspathEntry entry = new ClasspathEntry(null, "file:/lib/jar" + jar + ".jar");
+            // the names are visited in reverse order, so that sorting them matters
+            for (int resource = resources - 1; resource >= 0; resource--) {
+                finder.visitResourceVersion(new ClasspathResourceVersion(entry, "/org/Res" + resource + ".class", jar, resource));
+            }
+            finder.visitResourceVersion(new ClasspathResourceVersion(entry, "/org/Only" + jar + "\u00e9.class", 1, -1));
+        }
+    }
+
+    private static List<ClasspathResource> findDuplicates(SpillingDuplicatesFinder finder) throws IOException {
+        final List<ClasspathResource> duplicates = new ArrayList<>();
+        finder.findDuplicates(new SpillingDuplicatesFinder.DuplicateVisitor() {
+            @Override
+            public void visitDuplicate(ClasspathResource resource) {
+                duplicates.add(resource);
+            }
+        });
+        return duplicates;
+    }
+
+    private static void assertDuplicates(List<ClasspathResource> duplicates, int jars, int resources) {
+        assertEquals(resources, duplicates.size());
+        String previousName = "";
+        for (ClasspathResource duplicate : duplicates) {
+            assertTrue("the duplicates must be in name order.", duplicate.getName().compareTo(previousName) > 0);
+            previousName = duplicate.getName();
+            long crc = Long.parseLong(duplicate.getName().replaceAll("\\D", ""));
+            List<ClasspathResourceVersion> versions = duplicate.getResourceFileVersions();
+            assertEquals(jars, versions.size());
+            for (int jar = 0; jar < jars; jar++) {
+                assertTrue("the versions must be in classpath order.", versions.get(jar).getClasspathEntry().getUrl().endsWith("jar" + jar + ".jar"));
+                assertEquals(jar, versions.get(jar).getFileSize());
+                assertEquals(crc, versions.get(jar).getCrc());
+            }
+        }
+    }
+}
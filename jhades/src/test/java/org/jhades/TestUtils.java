@@ -1,6 +1,18 @@
 package org.jhades;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
  *
@@ -14,4 +26,105 @@ public class TestUtils {
             throw new AssertionError(error);
         }
     }
+
+    /**
+     *
+     * Writes a zip file, such as a jar or a war, see writeZip(OutputStream, Manifest, Object...).
+     *
+     * @return the written file
+     */
+    public static File writeZip(File file, Object... namesAndContents) throws IOException {
+        writeZip(new FileOutputStream(file), null, namesAndContents);
+        return file;
+    }
+
+    /**
+     *
+     * @return the bytes of a zip, such as a jar nested in a war, see writeZip(OutputStream, Manifest, Object...)
+     */
+    public static byte[] zip(Object... namesAndContents) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeZip(bytes, null, namesAndContents);
+        return bytes.toByteArray();
+    }
+
+    /**
+     *
+     * Writes the entries of a zip and closes the stream.
+     *
+     * @param out - the stream the zip is written to
+     * @param manifest - the manifest of a jar, or null
+     * @param namesAndContents - pairs of entry names and contents: a name is a String or a ZipEntry, such as a
+     * storedEntry, and a content is a String written in UTF-8, a byte array, or null for a folder entry
+     */
+    public static void writeZip(OutputStream out, Manifest manifest, Object... namesAndContents) throws IOException {
+        try (ZipOutputStream zip = manifest != null ? new JarOutputStream(out, manifest) : new ZipOutputStream(out)) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                Object name = namesAndContents[i];
+                zip.putNextEntry(name instanceof ZipEntry ? (ZipEntry) name : new ZipEntry((String) name));
+                Object content = namesAndContents[i + 1];
+                if (content instanceof String) {
+                    zip.write(((String) content).getBytes("UTF-8"));
+                } else if (content != null) {
+                    zip.write((byte[]) content);
+                }
+                zip.closeEntry();
+            }
+        }
+    }
+
+    /**
+     *
+     * @return the names and contents of resources whose content is their own name, for writeZip
+     */
+    public static Object[] namesAsContents(String... names) {
+        Object[] namesAndContents = new Object[names.length * 2];
+        for (int i = 0; i < names.length; i++) {
+            namesAndContents[2 * i] = names[i];
+            namesAndContents[2 * i + 1] = names[i];
+        }
+        return namesAndContents;
+    }
+
+    /**
+     *
+     * @return an entry written without compression, the size and CRC-32 of stored entries are needed upfront
+     */
+    public static ZipEntry storedEntry(String name, byte[] content) {
+        ZipEntry stored = new ZipEntry(name);
+        stored.setMethod(ZipEntry.STORED);
+        stored.setSize(content.length);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        stored.setCrc(crc.getValue());
+        return stored;
+    }
+
+    /**
+     *
+     * @return a jar manifest with the given Class-Path attribute
+     */
+    public static Manifest classpathManifest(String classpath) {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classpath);
+        return manifest;
+    }
+
+    /**
+     *
+     * @return the bytes of the class file of a class
+     */
+    public static byte[] readClassFile(Class<?> clazz) throws IOException {
+        String name = "/" + clazz.getName().replace('.', '/') + ".class";
+        ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+        try (InputStream in = clazz.getResourceAsStream(name)) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                classFile.write(buffer, 0, read);
+            }
+        }
+        return classFile.toByteArray();
+    }
 }
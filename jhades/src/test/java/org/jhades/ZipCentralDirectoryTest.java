@@ -0,0 +1,122 @@
+package org.jhades;
+
+import static org.jhades.TestUtils.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.utils.StdOutLogger;
+import org.jhades.utils.ZipCentralDirectory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class ZipCentralDirectoryTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testEntriesMatchZipFile() throws IOException {
+        File jar = tmp.newFile("test.jar");
+        writeResourcesZip(jar, 100, null);
+
+        List<String> expected = listWithZipFile(jar);
+        List<String> actual = listWithCentralDirectory(jar);
+
+        assertEquals("central directory listing must match java.util.zip", expected, actual);
+    }
+
+    @Test
+    public void testPrefixedArchive() throws IOException {
+        File jar = tmp.newFile("executable.jar");
+        writeResourcesZip(jar, 10, "#!/bin/sh\nexec java -jar \"$0\" \"$@\"\n");
+
+        assertEquals("prefixed archive listing must match java.util.zip", listWithZipFile(jar), listWithCentralDirectory(jar));
+    }
+
+    @Test
+    public void testZip64Archive() throws IOException {
+        File jar = tmp.newFile("zip64.jar");
+        // more than 65535 entries forces the zip64 end of central directory record
+        writeResourcesZip(jar, 70000, null);
+
+        try (ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(jar.toPath())) {
+            assertEquals("zip64 entry count not read.", 70001, centralDirectory.getEntryCount());
+        }
+        assertEquals("zip64 entries not listed.", 70001, listWithCentralDirectory(jar).size());
+    }
+
+    @Test
+    public void testWarScannedInMemory() throws IOException, URISyntaxException {
+        File jar = tmp.newFile("lib.jar");
+        writeResourcesZip(jar, 10, null);
+        byte[] jarBytes = Files.readAllBytes(jar.toPath());
+
+        File war = writeZip(tmp.newFile("app.war"), "WEB-INF/classes/org/jhades/App.class", "app",
+                "WEB-INF/lib/deflated.jar", jarBytes,
+                storedEntry("WEB-INF/lib/stored.jar", jarBytes), jarBytes);
+
+        List<ClasspathEntry> entries = ClasspathEntries.findWarClasspathEntries(war.toPath());
+        assertEquals("classes folder and jars not found.", 3, entries.size());
+        assertTrue("classes folder must come first.", entries.get(0).getUrl().endsWith("!/WEB-INF/classes/"));
+
+        List<ClasspathResource> duplicates = ClasspathEntries.findDuplicateResourcesInEntries(entries, StdOutLogger.getLogger(), null, null, null);
+        assertEquals("both nested jars must be listed.", 10, duplicates.size());
+
+        List<ClasspathResourceVersion> classes = entries.get(0).getResourceVersions();
+        assertEquals("classes folder not listed.", 1, classes.size());
+        assertEquals("classes resource name must be relative to the folder.", "/org/jhades/App.class", classes.get(0).getResourceName());
+    }
+
+    private static void writeResourcesZip(File file, int numberOfEntries, String prefix) throws IOException {
+        Object[] namesAndContents = new Object[2 * numberOfEntries + 2];
+        namesAndContents[0] = "org/jhades/";
+        for (int i = 0; i < numberOfEntries; i++) {
+            namesAndContents[2 * i + 2] = "org/jhades/Resource" + i + ".class";
+            namesAndContents[2 * i + 3] = "content" + new String(new char[i % 7]).replace('\0', 'x');
+        }
+        OutputStream out = new FileOutputStream(file);
+        if (prefix != null) {
+            out.write(prefix.getBytes("UTF-8"));
+        }
+        writeZip(out, null, namesAndContents);
+    }
+
+    private static List<String> listWithZipFile(File file) throws IOException {
+        List<String> entries = new ArrayList<>();
+        try (ZipFile zipFile = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry entry = zipEntries.nextElement();
+                entries.add(entry.getName() + " " + entry.getSize() + " " + entry.getCrc());
+            }
+        }
+        return entries;
+    }
+
+    private static List<String> listWithCentralDirectory(File file) throws IOException {
+        final List<String> entries = new ArrayList<>();
+        try (ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(file.toPath())) {
+            centralDirectory.accept(new ZipCentralDirectory.EntryVisitor() {
+                @Override
+                public void visitEntry(ZipCentralDirectory.Entry entry) {
+                    entries.add(entry.getName() + " " + entry.getSize() + " " + entry.getCrc());
+                }
+            });
+        }
+        return entries;
+    }
+}